@@ -3,22 +3,37 @@ package com.github.sudo_sturbia.agatha.client.model;
 import com.github.sudo_sturbia.agatha.core.BookState;
 import com.github.sudo_sturbia.agatha.core.BookStateDeserializer;
 import com.github.sudo_sturbia.agatha.core.ExecutionState;
+import com.github.sudo_sturbia.agatha.core.Frame;
 import com.github.sudo_sturbia.agatha.core.Note;
 import com.github.sudo_sturbia.agatha.core.NoteDeserializer;
+import com.github.sudo_sturbia.agatha.core.Session;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Communicator handles all network related operations on the
  * client side.
+ * <p>
+ * Connections to the server are kept open and reused between
+ * requests using a SocketPool, and use the binary protocol if the
+ * server supports it.
+ * <p>
+ * Communicator logs in before its first request, and sends the
+ * session's token in place of the password, so the server doesn't
+ * verify the password for each request. It logs in again when the
+ * session expires. If the server doesn't support sessions, the
+ * password is sent with every request.
  */
 public class Communicator
 {
@@ -34,10 +49,30 @@ public class Communicator
     /** Port to listen to. */
     private final int port;
 
-    /** The four possible request functions. */
+    /** Pool of connections to the server. */
+    private final SocketPool pool;
+
+    /** Maximum number of requests sent ahead of their responses
+     * by requestAll. */
+    private static final int WINDOW = 16;
+
+    /** Time in milliseconds before a session's expiration at which
+     * a new session is started. */
+    private static final long EXPIRATION_MARGIN = 60_000;
+
+    /** Current session. Null if client isn't logged in. */
+    private Session session;
+
+    /** Time in milliseconds after which session isn't used. */
+    private long sessionEnd;
+
+    /** False if server doesn't support sessions. */
+    private boolean sessions = true;
+
+    /** The possible request functions. BATCH is used by batch. */
     public enum FUNCTION
     {
-        CREATE, READ, UPDATE, DELETE
+        CREATE, READ, UPDATE, DELETE, BATCH
     }
 
     /**
@@ -53,6 +88,7 @@ public class Communicator
 
         this.host = host;
         this.port = port;
+        this.pool = SocketPool.of(host, port);
     }
 
     /**
@@ -75,24 +111,16 @@ public class Communicator
      */
     public boolean isServerRunning()
     {
-        try (
-                Socket socket = new Socket(this.host, this.port);
-                PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        ) {
-            out.println("Gibberish."); // Send request
-            String response = in.readLine();
-            if (new Gson().fromJson(response, ExecutionState.class).getCode() == 1)
-            {
-                return true;
-            }
+        // Not a valid function in either protocol
+        List<String> responses = this.exchange(List.of(new Frame(Frame.Opcode.RESPONSE, 0, "Gibberish.")));
+        try
+        {
+            return !responses.isEmpty() && new Gson().fromJson(responses.get(0), ExecutionState.class).getCode() == 1;
         }
-        catch (IOException | JsonParseException e)
+        catch (JsonParseException e)
         {
-            // Request failed ..
+            return false; // Request failed ..
         }
-
-        return false;
     }
 
     /**
@@ -112,69 +140,438 @@ public class Communicator
      * @throws IllegalArgumentException if function is null.
      */
     public <T> T request(Class<? extends T> type, FUNCTION function, String object) throws IllegalArgumentException
+    {
+        return this.requestAll(type, function, Collections.singletonList(object)).get(0);
+    }
+
+    /**
+     * Send a request for each of given objects on one connection, and
+     * unmarshall responses to objects of type T. Requests are pipelined,
+     * up to WINDOW requests are sent before waiting for a response,
+     * and a new request is sent after each received response. The
+     * server answers requests in the order they are sent.
+     *
+     * @param type class to use for unmarshalling JSON.
+     * @param function function part of the requests.
+     * @param objects object parts of the requests.
+     * @param <T> Type to unmarshall server's responses to.
+     * @return Server's responses unmarshalled to T, in the same order
+     *         as objects. A response is null if its request failed.
+     * @throws IllegalArgumentException if function is null.
+     */
+    public <T> List<T> requestAll(Class<? extends T> type, FUNCTION function, List<String> objects) throws IllegalArgumentException
     {
         Gson gson = new GsonBuilder().registerTypeAdapter(BookState.class, new BookStateDeserializer())
                                      .registerTypeAdapter(Note.class, new NoteDeserializer())
                                      .create();
 
-        String request = this.requestStr(function, object);
-        String response = null;
-        try (
-                Socket socket = new Socket(this.host, this.port);
-                PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        ) {
-            out.println(request); // Send request
-            response = in.readLine();
+        List<String> responses = this.send(function, objects);
+
+        List<T> results = new ArrayList<>();
+        for (int i = 0; i < objects.size(); i++)
+        {
+            try
+            {
+                results.add(i < responses.size() ? gson.fromJson(responses.get(i), type) : null);
+            }
+            catch (JsonSyntaxException e)
+            {
+                results.add(null);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Create an operation to be sent in a batch.
+     *
+     * @param function operation's function, one of CREATE, UPDATE,
+     *                 or DELETE.
+     * @param object object part of the operation.
+     * @return Operation in string format.
+     * @throws IllegalArgumentException if function can't be used
+     *         in a batch.
+     */
+    public static String operation(FUNCTION function, String object) throws IllegalArgumentException
+    {
+        if (function != FUNCTION.CREATE && function != FUNCTION.UPDATE && function != FUNCTION.DELETE)
+        {
+            throw new IllegalArgumentException("Function can't be used in a batch.");
+        }
+
+        return function.name() + " " + object;
+    }
+
+    /**
+     * Send given operations in one BATCH request. Operations are
+     * performed by the server in order, until one of them fails.
+     * Whether operations before the failed one are rolled back
+     * depends on server's storage, the returned states tell which
+     * operations succeeded.
+     *
+     * @param operations operations created using <code>operation</code>.
+     * @return ExecutionState of each operation. If the whole request
+     *         failed, all operations share its ExecutionState, or are
+     *         null if no response was received.
+     */
+    public List<ExecutionState> batch(List<String> operations)
+    {
+        List<ExecutionState> states = new ArrayList<>(Collections.nCopies(operations.size(), null));
+        if (operations.isEmpty())
+        {
+            return states;
+        }
+
+        List<String> responses = this.send(FUNCTION.BATCH, List.of("/" + new Gson().toJson(operations)));
+        if (responses.isEmpty())
+        {
+            return states;
+        }
+
+        Gson gson = new Gson();
+        try
+        {
+            JsonElement response = JsonParser.parseString(responses.get(0));
+            if (response.isJsonArray() && response.getAsJsonArray().size() == operations.size())
+            {
+                return Arrays.asList(gson.fromJson(response, ExecutionState[].class));
+            }
+            else if (response.isJsonObject())
+            {
+                // Request failed as a whole
+                Collections.fill(states, gson.fromJson(response, ExecutionState.class));
+            }
+        }
+        catch (JsonParseException e)
+        {
+            // Invalid response
+        }
+
+        return states;
+    }
+
+    /**
+     * Send a request for each of given objects, and get the raw
+     * responses. Requests rejected because the session expired are
+     * sent again once with a new session. A request that creates the
+     * user is sent with the password.
+     *
+     * @param function function part of the requests.
+     * @param objects object parts of the requests.
+     * @return Received responses in request order. Has less responses
+     *         than requests if the connection failed.
+     * @throws IllegalArgumentException if function is null.
+     */
+    private List<String> send(FUNCTION function, List<String> objects) throws IllegalArgumentException
+    {
+        String secret;
+        try
+        {
+            // A user that is being created can't login yet
+            secret = function == FUNCTION.CREATE && objects.contains("") ? this.password : this.secret();
+        }
+        catch (LoginException e)
+        {
+            return new ArrayList<>(Collections.nCopies(objects.size(), e.getMessage()));
+        }
+
+        List<Frame> requests = new ArrayList<>();
+        for (String object : objects)
+        {
+            requests.add(this.request(function, secret, object, requests.size()));
+        }
+
+        List<String> responses = this.exchange(requests);
+
+        List<Integer> expired = new ArrayList<>();
+        for (int i = 0; i < responses.size(); i++)
+        {
+            if (Communicator.isExpired(responses.get(i)))
+            {
+                expired.add(i);
+            }
+        }
+
+        if (expired.isEmpty())
+        {
+            return responses;
+        }
+
+        // Login again, and resend rejected requests
+        this.expire(secret);
+        try
+        {
+            secret = this.secret();
+        }
+        catch (LoginException e)
+        {
+            for (int i : expired)
+            {
+                responses.set(i, e.getMessage());
+            }
+
+            return responses;
+        }
+
+        requests.clear();
+        for (int i : expired)
+        {
+            requests.add(this.request(function, secret, objects.get(i), requests.size()));
+        }
+
+        List<String> resent = this.exchange(requests);
+        for (int i = 0; i < resent.size(); i++)
+        {
+            responses.set(expired.get(i), resent.get(i));
+        }
+
+        return responses;
+    }
+
+    /**
+     * Get the secret to send with requests. Logs in if there's no
+     * session, or current session is about to expire.
+     *
+     * @return Session's token, or client's password if server doesn't
+     *         support sessions or login failed to get a response.
+     * @throws LoginException if server rejected client's credentials.
+     */
+    private synchronized String secret() throws LoginException
+    {
+        if (this.session != null && System.currentTimeMillis() < this.sessionEnd)
+        {
+            return this.session.getToken();
+        }
+        else if (!this.sessions)
+        {
+            return this.password;
+        }
+
+        this.session = null;
+
+        List<String> responses = this.exchange(List.of(new Frame(Frame.Opcode.LOGIN, 0, this.username + ":" + this.password)));
+        try
+        {
+            JsonObject response = responses.isEmpty() ? null : JsonParser.parseString(responses.get(0)).getAsJsonObject();
+            if (response != null && response.has("token"))
+            {
+                this.session = new Gson().fromJson(response, Session.class);
+                this.sessionEnd = System.currentTimeMillis() + this.session.getExpiresIn() * 1000 - EXPIRATION_MARGIN;
+                return this.session.getToken();
+            }
+            else if (response != null)
+            {
+                ExecutionState state = new Gson().fromJson(response, ExecutionState.class);
+                if (state.getCode() == 1)
+                {
+                    this.sessions = false; // LOGIN isn't supported
+                }
+                else
+                {
+                    // Sending requests would count as more failed logins
+                    throw new LoginException(responses.get(0));
+                }
+            }
+        }
+        catch (JsonParseException | IllegalStateException e)
+        {
+            // Invalid response
+        }
+
+        return this.password;
+    }
+
+    /**
+     * Stop using a session that the server rejected.
+     *
+     * @param token rejected token.
+     */
+    private synchronized void expire(String token)
+    {
+        if (this.session != null && this.session.getToken().equals(token))
+        {
+            this.session = null;
         }
-        catch (IOException e)
+    }
+
+    /**
+     * Check if a response is an ExecutionState with code 7, which
+     * means the session's token was rejected.
+     *
+     * @param response a JSON response.
+     * @return True if session expired, false otherwise.
+     */
+    private static boolean isExpired(String response)
+    {
+        if (response == null || !response.contains("\"code\":7"))
         {
-            System.err.println(e.getMessage());
+            return false;
         }
 
         try
         {
-            return response != null ? gson.fromJson(response, type) : null;
+            JsonElement element = JsonParser.parseString(response);
+            return element.isJsonObject()
+                    && element.getAsJsonObject().has("code")
+                    && element.getAsJsonObject().has("message")
+                    && element.getAsJsonObject().get("code").getAsInt() == 7;
+        }
+        catch (JsonParseException | IllegalStateException | NumberFormatException | UnsupportedOperationException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Send given requests on a pooled connection and read their
+     * responses. Requests are sent as frames if the connection uses
+     * the binary protocol, or as lines otherwise. If a reused
+     * connection fails before any response is read, it was most likely
+     * closed by the server while idle, so requests are sent again once
+     * on a new connection, but only if none of them changes data, as
+     * the server may have performed them.
+     *
+     * @param requests requests to send.
+     * @return Received responses in request order. Has less responses
+     *         than requests if the connection failed.
+     */
+    private List<String> exchange(List<Frame> requests)
+    {
+        List<String> responses = new ArrayList<>();
+        if (requests.isEmpty())
+        {
+            return responses;
+        }
+
+        boolean retry;
+        do
+        {
+            retry = false;
+
+            SocketPool.Connection connection = null;
+            try
+            {
+                connection = this.pool.acquire();
+
+                int sent = 0;
+                for (; sent < Math.min(WINDOW, requests.size()); sent++)
+                {
+                    connection.send(requests.get(sent));
+                }
+                connection.flush();
+
+                String response;
+                while (responses.size() < requests.size() && (response = connection.receive()) != null)
+                {
+                    responses.add(response);
+                    if (sent < requests.size())
+                    {
+                        connection.send(requests.get(sent++));
+                        connection.flush();
+                    }
+                }
+
+                if (responses.size() == requests.size())
+                {
+                    this.pool.release(connection);
+                    return responses;
+                }
+
+                throw new IOException("Connection was closed by server.");
+            }
+            catch (IOException e)
+            {
+                if (connection != null)
+                {
+                    this.pool.discard(connection);
+
+                    // Only a reused connection may have been closed while idle
+                    retry = connection.isReused() && responses.isEmpty()
+                            && requests.stream().allMatch(Communicator::isSafe);
+                }
+
+                if (!retry)
+                {
+                    System.err.println(e.getMessage());
+                }
+            }
         }
-        catch (JsonSyntaxException e)
+        while (retry);
+
+        return responses;
+    }
+
+    /**
+     * Check if a request can be sent again without changing data
+     * twice.
+     *
+     * @param request request to check.
+     * @return True if request is a READ, a LOGIN, or a probe, false
+     *         otherwise.
+     */
+    private static boolean isSafe(Frame request)
+    {
+        switch (request.getOpcode())
         {
-            return null;
+            case READ:
+            case LOGIN:
+            case RESPONSE:
+                return true;
+            default:
+                return false;
         }
     }
 
     /**
-     * Create a request string using given parameters.
+     * Create a request using given parameters. Request's payload is
+     * of the form <code>username:secret/object</code>.
      *
      * @param function function part of the request.
+     * @param secret client's password or session token.
      * @param object object part of the request.
-     * @return A string request.
+     * @param id request's id.
+     * @return A request frame.
      */
-    private String requestStr(FUNCTION function, String object)
+    private Frame request(FUNCTION function, String secret, String object, int id)
     {
-        StringBuilder builder = new StringBuilder();
+        Frame.Opcode opcode;
         switch (function)
         {
             case CREATE:
-                builder.append("CREATE ");
+                opcode = Frame.Opcode.CREATE;
                 break;
             case READ:
-                builder.append("READ ");
+                opcode = Frame.Opcode.READ;
                 break;
             case UPDATE:
-                builder.append("UPDATE ");
+                opcode = Frame.Opcode.UPDATE;
                 break;
             case DELETE:
-                builder.append("DELETE ");
+                opcode = Frame.Opcode.DELETE;
+                break;
+            case BATCH:
+                opcode = Frame.Opcode.BATCH;
                 break;
             default:
                 throw new IllegalArgumentException("Function is null.");
         }
 
-        builder.append(this.username);
-        builder.append(":");
-        builder.append(this.password);
-        builder.append(object);
+        return new Frame(opcode, id, this.username + ":" + secret + object);
+    }
 
-        return builder.toString();
+    /**
+     * LoginException is thrown when the server rejects client's
+     * credentials at login. Its message is server's response.
+     */
+    private static class LoginException extends Exception
+    {
+        /** Version of serialized form. */
+        private static final long serialVersionUID = 1L;
+
+        private LoginException(String response)
+        {
+            super(response);
+        }
     }
 }
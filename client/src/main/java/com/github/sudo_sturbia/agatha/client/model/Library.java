@@ -111,6 +111,30 @@ public class Library
         return this.communicator.request(BookImp.class, Communicator.FUNCTION.READ, String.format("/b/%s", name));
     }
 
+    /**
+     * Get Books with given names in one request.
+     *
+     * @param names names to search for.
+     * @return A list of Books ordered by name, names that don't
+     *         exist are left out. Null in case of failure.
+     */
+    public List<Book> getBooksWithNames(List<String> names)
+    {
+        if (names.isEmpty())
+        {
+            return new ArrayList<>();
+        }
+        else if (names.size() == 1)
+        {
+            Book book = this.getBookWithName(names.get(0));
+            return book != null ? new ArrayList<>(List.of(book)) : new ArrayList<>();
+        }
+
+        BookImp[] books = this.communicator.request(BookImp[].class, Communicator.FUNCTION.READ,
+                String.format("/b/%s", String.join(",", names)));
+        return books != null ? new ArrayList<>(Arrays.asList(books)) : null;
+    }
+
     /**
      * Update a book that already exists in the library.
      *
@@ -156,16 +180,20 @@ public class Library
     }
 
     /**
-     * Add a collection of books to the library.
+     * Add a collection of books to the library. Books are added
+     * in one batch, and stop at the first book that can't be added.
      *
      * @param books books to add.
      */
     public void addBooks(Collection<Book> books)
     {
+        List<String> operations = new ArrayList<>();
         for (Book book : books)
         {
-            this.addBook(book);
+            operations.add(Communicator.operation(Communicator.FUNCTION.CREATE, String.format("/b/%s", new Gson().toJson(book))));
         }
+
+        this.communicator.batch(operations);
     }
 
     /**
@@ -180,11 +208,14 @@ public class Library
     {
         this.addLabel(label);
 
+        List<String> operations = new ArrayList<>();
         for (Book book : books)
         {
-            this.addBook(book);
-            this.communicator.request(ExecutionState.class, Communicator.FUNCTION.UPDATE, String.format("/l/%s/add/b/%s", label, book.getName()));
+            operations.add(Communicator.operation(Communicator.FUNCTION.CREATE, String.format("/b/%s", new Gson().toJson(book))));
+            operations.add(Communicator.operation(Communicator.FUNCTION.UPDATE, String.format("/l/%s/add/b/%s", label, book.getName())));
         }
+
+        this.communicator.batch(operations);
     }
 
     /**
@@ -232,11 +263,13 @@ public class Library
      */
     public void deleteBooksWithLabel(String label)
     {
-        List<String> books = this.getNamesOfBooksWithLabel(label);
-        for (String book : books)
+        List<String> operations = new ArrayList<>();
+        for (String book : this.getNamesOfBooksWithLabel(label))
         {
-            this.deleteBookWithName(book);
+            operations.add(Communicator.operation(Communicator.FUNCTION.DELETE, String.format("/b/%s", book)));
         }
+
+        this.communicator.batch(operations);
     }
 
     /**
@@ -0,0 +1,324 @@
+package com.github.sudo_sturbia.agatha.client.model;
+
+import com.github.sudo_sturbia.agatha.core.Frame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SocketPool keeps connections to a server open between requests,
+ * so that consecutive requests don't pay for a new TCP connection.
+ * <p>
+ * Agatha's protocol is stateless, every request carries its own
+ * credentials, so a connection can be used by any Communicator
+ * that talks to the same server. There's one pool per host and port.
+ * <p>
+ * A connection is used by one exchange at a time. Connections that
+ * stay idle for longer than IDLE_TIMEOUT are closed, which is less
+ * than the shortest time the server keeps an idle connection open
+ * (one second, using platform threads). If the server closed a
+ * connection anyway, using it fails, and Communicator sends requests
+ * that don't change data again on a new connection.
+ */
+class SocketPool
+{
+    /** Maximum time in milliseconds a connection is kept idle. */
+    static final long IDLE_TIMEOUT = 500;
+
+    /** Maximum number of idle connections kept. */
+    static final int MAX_IDLE = 4;
+
+    /** Pools by host and port. */
+    private static final Map<String, SocketPool> pools = new ConcurrentHashMap<>();
+
+    /** Name of server's host. */
+    private final String host;
+
+    /** Server's port. */
+    private final int port;
+
+    /** Idle connections, most recently used first. */
+    private final Deque<Connection> idle;
+
+    /**
+     * SocketPool's constructor.
+     *
+     * @param host name of server's host.
+     * @param port server's port.
+     */
+    private SocketPool(String host, int port)
+    {
+        this.host = host;
+        this.port = port;
+        this.idle = new ArrayDeque<>();
+    }
+
+    /**
+     * Get the pool of connections to given server.
+     *
+     * @param host name of server's host.
+     * @param port server's port.
+     * @return Server's SocketPool.
+     */
+    static SocketPool of(String host, int port)
+    {
+        return SocketPool.pools.computeIfAbsent(host + ":" + port, key -> new SocketPool(host, port));
+    }
+
+    /**
+     * Get a connection to the server. An idle connection is reused
+     * if one exists, a new connection is opened otherwise.
+     *
+     * @return A connection to the server.
+     * @throws IOException if a new connection can't be opened.
+     */
+    Connection acquire() throws IOException
+    {
+        synchronized (this.idle)
+        {
+            this.evict();
+
+            Connection connection = this.idle.pollFirst();
+            if (connection != null)
+            {
+                connection.reused = true;
+                return connection;
+            }
+        }
+
+        return new Connection(new Socket(this.host, this.port));
+    }
+
+    /**
+     * Give a connection back after its response was read completely.
+     *
+     * @param connection connection to give back.
+     */
+    void release(Connection connection)
+    {
+        connection.lastUsed = System.currentTimeMillis();
+        synchronized (this.idle)
+        {
+            this.evict();
+            if (this.idle.size() < MAX_IDLE)
+            {
+                this.idle.addFirst(connection);
+                return;
+            }
+        }
+
+        connection.close();
+    }
+
+    /**
+     * Close a connection that failed or can't be used anymore.
+     *
+     * @param connection connection to close.
+     */
+    void discard(Connection connection)
+    {
+        connection.close();
+    }
+
+    /**
+     * Close connections that were idle for too long. Should be
+     * called while holding idle's lock.
+     */
+    private void evict()
+    {
+        long now = System.currentTimeMillis();
+        while (!this.idle.isEmpty() && now - this.idle.peekLast().lastUsed > IDLE_TIMEOUT)
+        {
+            this.idle.pollLast().close();
+        }
+    }
+
+    /**
+     * Connection is an open socket to the server. When opened, the
+     * binary protocol is offered, and the text protocol is used if
+     * the server doesn't support it.
+     *
+     * @see Frame
+     */
+    static class Connection
+    {
+        /** Connection's socket. */
+        private final Socket socket;
+
+        /** Connection's input. */
+        private final DataInputStream in;
+
+        /** Connection's output. */
+        private final DataOutputStream out;
+
+        /** True if connection uses the binary protocol. */
+        private final boolean binary;
+
+        /** Reads responses of the text protocol. Null if binary
+         * protocol is used. */
+        private final BufferedReader reader;
+
+        /** Ids of sent requests whose responses weren't received. */
+        private final Deque<Integer> ids;
+
+        /** Last time the connection was given back. */
+        private long lastUsed;
+
+        /** True if the connection was used by a previous request. */
+        private boolean reused;
+
+        private Connection(Socket socket) throws IOException
+        {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.ids = new ArrayDeque<>();
+
+            try
+            {
+                this.binary = this.handshake();
+            }
+            catch (IOException e)
+            {
+                this.close();
+                throw e;
+            }
+
+            this.reader = this.binary ? null : new BufferedReader(new InputStreamReader(this.in, StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Offer the binary protocol. A server that doesn't support it
+         * answers the handshake with a text line, which is skipped.
+         *
+         * @return True if server accepted the binary protocol.
+         * @throws IOException if connection fails.
+         */
+        private boolean handshake() throws IOException
+        {
+            this.out.write(Frame.MAGIC);
+            this.out.flush();
+
+            int first = this.in.read();
+            if (first == Frame.MAGIC[0])
+            {
+                byte[] rest = new byte[Frame.MAGIC.length - 1];
+                this.in.readFully(rest);
+                if (!Arrays.equals(rest, Arrays.copyOfRange(Frame.MAGIC, 1, Frame.MAGIC.length)))
+                {
+                    throw new IOException("Invalid handshake.");
+                }
+
+                return true;
+            }
+
+            // Skip text response
+            for (int b = first; b != '\n'; b = this.in.read())
+            {
+                if (b == -1)
+                {
+                    throw new IOException("Connection was closed by server.");
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Send a request. Output isn't flushed.
+         *
+         * @param request request to send.
+         * @throws IOException if sending fails.
+         */
+        void send(Frame request) throws IOException
+        {
+            if (this.binary)
+            {
+                request.write(this.out);
+                this.ids.add(request.getRequestId());
+            }
+            else
+            {
+                this.out.write((request.toText() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        /**
+         * Flush sent requests.
+         *
+         * @throws IOException if sending fails.
+         */
+        void flush() throws IOException
+        {
+            this.out.flush();
+        }
+
+        /**
+         * Receive the response of the oldest request whose response
+         * wasn't received.
+         *
+         * @return A JSON response, or null if server closed the connection.
+         * @throws IOException if receiving fails or response doesn't
+         *         belong to the expected request.
+         */
+        String receive() throws IOException
+        {
+            if (!this.binary)
+            {
+                return this.reader.readLine();
+            }
+
+            Frame response = Frame.read(this.in);
+            if (response == null)
+            {
+                return null;
+            }
+
+            Integer id = this.ids.poll();
+            if (response.getOpcode() != Frame.Opcode.RESPONSE || id == null || response.getRequestId() != id)
+            {
+                throw new IOException("Unexpected response.");
+            }
+
+            return response.getPayload();
+        }
+
+        /**
+         * Check if connection was used before. A reused connection
+         * may have been closed by the server while idle.
+         *
+         * @return True if connection was used by a previous request.
+         */
+        boolean isReused()
+        {
+            return this.reused;
+        }
+
+        /**
+         * Close connection's socket.
+         */
+        private void close()
+        {
+            try
+            {
+                this.socket.close();
+            }
+            catch (IOException e)
+            {
+                System.err.println(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.sudo_sturbia.agatha.client.model;
+
+import com.github.sudo_sturbia.agatha.core.ExecutionState;
+import com.github.sudo_sturbia.agatha.core.Frame;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test sending requests on pooled connections.
+ */
+public class CommunicatorTest
+{
+    @DisplayName("Test a server that isn't running.")
+    @Test
+    void serverDown() throws IOException
+    {
+        int port;
+        try (ServerSocket serverSocket = new ServerSocket(0))
+        {
+            port = serverSocket.getLocalPort();
+        }
+
+        Communicator communicator = new Communicator("username", "password", port, "localhost");
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () ->
+                assertFalse(communicator.isServerRunning(), "Server that isn't running was found."));
+    }
+
+    @DisplayName("Test a connection closed by server while idle is replaced.")
+    @Test
+    void closedIdle() throws IOException
+    {
+        AtomicInteger connections = new AtomicInteger();
+        try (ServerSocket serverSocket = new ServerSocket(0))
+        {
+            // Answers one request on each connection, then closes it
+            Thread server = new Thread(() -> {
+                try
+                {
+                    while (true)
+                    {
+                        try (
+                                Socket socket = serverSocket.accept();
+                                DataInputStream in = new DataInputStream(socket.getInputStream());
+                                PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                        ) {
+                            connections.incrementAndGet();
+
+                            // Text protocol, handshake is a wrong request
+                            in.readFully(new byte[Frame.MAGIC.length]);
+                            out.println(new Gson().toJson(new ExecutionState(1)));
+
+                            new BufferedReader(new InputStreamReader(in)).readLine();
+                            out.println(new Gson().toJson(new ExecutionState(1)));
+                        }
+                    }
+                }
+                catch (IOException e)
+                {
+                    // Socket closed
+                }
+            });
+            server.setDaemon(true);
+            server.start();
+
+            Communicator communicator = new Communicator("username", "password", serverSocket.getLocalPort(), "localhost");
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                assertTrue(communicator.isServerRunning(), "Server wasn't found.");
+                assertTrue(communicator.isServerRunning(), "Closed connection wasn't replaced.");
+            });
+            assertEquals(2, connections.get(), "Incorrect number of connections.");
+        }
+    }
+}
@@ -11,6 +11,9 @@ package com.github.sudo_sturbia.agatha.core;
  *     2. Incorrect credentials.
  *     3. Operation failed.
  *     4. Account locked for invalid login attempts.
+ *     5. Invalid characters in username/password/book's name.
+ *     6. Server is busy.
+ *     7. Session expired.
  * </pre>
  * All codes are accompanied by a message.
  */
@@ -48,7 +51,13 @@ public class ExecutionState
                 this.message = "Account locked for invalid login attempts.";
                 break;
             case 5:
-                this.message = "Uses invalid characters in username/book's name.";
+                this.message = "Uses invalid characters in username/password/book's name.";
+                break;
+            case 6:
+                this.message = "Server is busy, try again later.";
+                break;
+            case 7:
+                this.message = "Session expired, login again.";
                 break;
             default:
                 throw new IllegalArgumentException("Invalid execution code.");
@@ -0,0 +1,195 @@
+package com.github.sudo_sturbia.agatha.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Frame is a message of Agatha's binary protocol.
+ * <p>
+ * The binary protocol is an alternative to the line based text
+ * protocol. A client starts it by sending MAGIC as the first bytes of
+ * a connection, and a server that supports it answers with MAGIC.
+ * A server that doesn't answers with an ExecutionState line with
+ * code 1, and the connection continues using the text protocol.
+ * <p>
+ * After the handshake, each request and response is one frame.
+ * <pre>
+ *     int    length of payload in bytes
+ *     byte   opcode
+ *     int    request id
+ *     byte[] UTF-8 payload
+ * </pre>
+ * A request's payload is the request's text without the function,
+ * which is given by the opcode, for example
+ * <code>username:password/b/name</code>. A response has opcode
+ * RESPONSE, the id of its request, and the JSON response as payload.
+ * As payloads are length-prefixed they can contain new lines.
+ */
+public class Frame
+{
+    /** Bytes sent by both sides to start the binary protocol. */
+    public static final byte[] MAGIC = {0x00, 'A', 'G', 'B', '\n'};
+
+    /** Maximum length of a payload in bytes. */
+    public static final int MAX_LENGTH = 16 * 1024 * 1024;
+
+    /** Frame's opcodes. */
+    public enum Opcode
+    {
+        RESPONSE(0), CREATE(1), READ(2), UPDATE(3), DELETE(4), BATCH(5), LOGIN(6);
+
+        /** Opcode's byte on the wire. */
+        private final byte code;
+
+        Opcode(int code)
+        {
+            this.code = (byte) code;
+        }
+
+        /**
+         * Get opcode with given byte.
+         *
+         * @param code opcode's byte.
+         * @return The opcode.
+         * @throws IOException if byte isn't a known opcode.
+         */
+        private static Opcode of(byte code) throws IOException
+        {
+            for (Opcode opcode : Opcode.values())
+            {
+                if (opcode.code == code)
+                {
+                    return opcode;
+                }
+            }
+
+            throw new IOException("Unknown opcode.");
+        }
+    }
+
+    /** Frame's opcode. */
+    private final Opcode opcode;
+
+    /** Id of frame's request. */
+    private final int requestId;
+
+    /** Frame's payload. */
+    private final String payload;
+
+    /**
+     * Create a Frame.
+     *
+     * @param opcode frame's opcode.
+     * @param requestId id of frame's request.
+     * @param payload frame's payload.
+     * @throws IllegalArgumentException if opcode or payload is null.
+     */
+    public Frame(Opcode opcode, int requestId, String payload) throws IllegalArgumentException
+    {
+        if (opcode == null || payload == null)
+        {
+            throw new IllegalArgumentException("Opcode or payload is null.");
+        }
+
+        this.opcode = opcode;
+        this.requestId = requestId;
+        this.payload = payload;
+    }
+
+    /**
+     * Read a frame.
+     *
+     * @param in stream to read from.
+     * @return The read frame, or null if stream ended before a frame.
+     * @throws IOException if reading fails, stream ends in the middle
+     *         of a frame, or frame is invalid.
+     */
+    public static Frame read(DataInputStream in) throws IOException
+    {
+        int length;
+        try
+        {
+            length = in.readInt();
+        }
+        catch (EOFException e)
+        {
+            return null;
+        }
+
+        if (length < 0 || length > MAX_LENGTH)
+        {
+            throw new IOException("Invalid frame length.");
+        }
+
+        Opcode opcode = Opcode.of(in.readByte());
+        int requestId = in.readInt();
+
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+
+        return new Frame(opcode, requestId, new String(payload, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write the frame. Stream isn't flushed.
+     *
+     * @param out stream to write to.
+     * @throws IOException if writing fails or payload is too long.
+     */
+    public void write(DataOutputStream out) throws IOException
+    {
+        byte[] payload = this.payload.getBytes(StandardCharsets.UTF_8);
+        if (payload.length > MAX_LENGTH)
+        {
+            throw new IOException("Payload is too long.");
+        }
+
+        out.writeInt(payload.length);
+        out.writeByte(this.opcode.code);
+        out.writeInt(this.requestId);
+        out.write(payload);
+    }
+
+    /**
+     * Get frame as a request of the text protocol.
+     *
+     * @return Frame's opcode followed by its payload.
+     */
+    public String toText()
+    {
+        return this.opcode.name() + " " + this.payload;
+    }
+
+    /**
+     * Get frame's opcode.
+     *
+     * @return Frame's opcode.
+     */
+    public Opcode getOpcode()
+    {
+        return this.opcode;
+    }
+
+    /**
+     * Get id of frame's request.
+     *
+     * @return Frame's request id.
+     */
+    public int getRequestId()
+    {
+        return this.requestId;
+    }
+
+    /**
+     * Get frame's payload.
+     *
+     * @return Frame's payload.
+     */
+    public String getPayload()
+    {
+        return this.payload;
+    }
+}
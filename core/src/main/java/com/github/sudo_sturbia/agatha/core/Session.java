@@ -0,0 +1,61 @@
+package com.github.sudo_sturbia.agatha.core;
+
+/**
+ * Session is the server's response to a successful LOGIN request.
+ * <p>
+ * A session's token can be used in place of a client's password in
+ * any request until the session expires. Requests that use an expired
+ * or unknown token fail with an ExecutionState with code 7, after
+ * which the client should login again.
+ */
+public class Session
+{
+    /** Session's token. */
+    private final String token;
+
+    /** Number of seconds until session expires. */
+    private final long expiresIn;
+
+    /**
+     * Create a Session object.
+     *
+     * @param token session's token.
+     * @param expiresIn number of seconds until session expires.
+     * @throws IllegalArgumentException if token is null or expiresIn
+     *         is &lt; 0.
+     */
+    public Session(String token, long expiresIn) throws IllegalArgumentException
+    {
+        if (token == null)
+        {
+            throw new IllegalArgumentException("No token is given.");
+        }
+        else if (expiresIn < 0)
+        {
+            throw new IllegalArgumentException("Invalid expiration time.");
+        }
+
+        this.token = token;
+        this.expiresIn = expiresIn;
+    }
+
+    /**
+     * Get session's token.
+     *
+     * @return Session's token.
+     */
+    public String getToken()
+    {
+        return this.token;
+    }
+
+    /**
+     * Get number of seconds until session expires.
+     *
+     * @return Seconds until session expires.
+     */
+    public long getExpiresIn()
+    {
+        return this.expiresIn;
+    }
+}
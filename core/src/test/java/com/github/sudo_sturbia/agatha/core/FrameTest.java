@@ -0,0 +1,75 @@
+package com.github.sudo_sturbia.agatha.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test Frame's encoding and decoding.
+ */
+class FrameTest
+{
+    @DisplayName("Test writing and reading frames.")
+    @Test
+    void roundTrip() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        String payload = "user:pass/b/name/{\"name\":\"Book\",\n\"notes\":\"é\"}";
+        new Frame(Frame.Opcode.UPDATE, 7, payload).write(out);
+        new Frame(Frame.Opcode.RESPONSE, 8, "").write(out);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+        Frame frame = Frame.read(in);
+        assertEquals(Frame.Opcode.UPDATE, frame.getOpcode(), "Wrong opcode.");
+        assertEquals(7, frame.getRequestId(), "Wrong request id.");
+        assertEquals(payload, frame.getPayload(), "Wrong payload.");
+        assertEquals("UPDATE " + payload, frame.toText(), "Wrong text request.");
+
+        frame = Frame.read(in);
+        assertEquals(Frame.Opcode.RESPONSE, frame.getOpcode(), "Wrong opcode.");
+        assertEquals("", frame.getPayload(), "Wrong payload.");
+
+        assertNull(Frame.read(in), "Stream should have ended.");
+    }
+
+    @DisplayName("Test reading invalid frames.")
+    @Test
+    void invalid() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new Frame(Frame.Opcode.READ, 1, "user:pass/b/*").write(new DataOutputStream(bytes));
+        byte[] frame = bytes.toByteArray();
+
+        // Stream ends in the middle of a frame
+        assertThrows(IOException.class,
+                () -> Frame.read(new DataInputStream(new ByteArrayInputStream(Arrays.copyOf(frame, frame.length - 1)))),
+                "Truncated frame was read.");
+
+        // Unknown opcode
+        byte[] opcode = frame.clone();
+        opcode[4] = 100;
+        assertThrows(IOException.class, () -> Frame.read(new DataInputStream(new ByteArrayInputStream(opcode))),
+                "Frame with unknown opcode was read.");
+
+        // Length is too long
+        byte[] length = frame.clone();
+        length[0] = 0x7f;
+        assertThrows(IOException.class, () -> Frame.read(new DataInputStream(new ByteArrayInputStream(length))),
+                "Frame with invalid length was read.");
+
+        assertThrows(IllegalArgumentException.class, () -> new Frame(null, 0, ""), "No opcode given.");
+    }
+}
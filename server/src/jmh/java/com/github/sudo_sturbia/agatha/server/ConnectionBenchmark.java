@@ -0,0 +1,178 @@
+package com.github.sudo_sturbia.agatha.server;
+
+import com.github.sudo_sturbia.agatha.core.ExecutionState;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of clients' requests while IDLE other clients
+ * are connected, using platform and virtual threads. Requests are
+ * invalid, and are answered without accessing the database, so only
+ * connection handling is measured.
+ * <p>
+ * Using platform threads, idle clients beyond the workers are rejected,
+ * and the rest are closed once idle, so a client is served after it
+ * connects again. Using virtual threads all clients are held.
+ * <p>
+ * Run using <code>./gradlew :server:jmh</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectionBenchmark
+{
+    /** Number of clients that connect and stay idle. */
+    private static final int IDLE = 1000;
+
+    /** Number of clients that send requests. */
+    private static final int ACTIVE = 50;
+
+    /** Number of platform worker threads. */
+    private static final int PLATFORM_WORKERS = 200;
+
+    /** Type of threads to serve connections on. */
+    @Param({"PLATFORM", "VIRTUAL"})
+    public ServerBuilder.ThreadType threads;
+
+    /** Handler of accepted connections. */
+    private ConnectionHandler handler;
+
+    /** Socket connections are accepted on. */
+    private ServerSocket serverSocket;
+
+    /** Idle clients' sockets. */
+    private List<Socket> idle;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        int workers = this.threads == ServerBuilder.ThreadType.VIRTUAL ? IDLE + ACTIVE : PLATFORM_WORKERS;
+        this.handler = new ConnectionHandler("AgathaBenchmark", workers, 0, this.threads);
+        this.serverSocket = new ServerSocket(0, IDLE + ACTIVE);
+
+        Thread acceptor = new Thread(() -> {
+            try
+            {
+                while (true)
+                {
+                    this.handler.handle(this.serverSocket.accept());
+                }
+            }
+            catch (IOException e)
+            {
+                // Socket closed
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        this.idle = new ArrayList<>();
+        for (int i = 0; i < IDLE; i++)
+        {
+            this.idle.add(new Socket("localhost", this.serverSocket.getLocalPort()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        for (Socket socket : this.idle)
+        {
+            socket.close();
+        }
+
+        this.serverSocket.close();
+        this.handler.shutdown();
+    }
+
+    @Benchmark
+    @Threads(ACTIVE)
+    public int request(Client client) throws IOException
+    {
+        return client.request();
+    }
+
+    /**
+     * Client is an active client's connection.
+     */
+    @State(Scope.Thread)
+    public static class Client
+    {
+        /** Parses responses. */
+        private final Gson gson = new Gson();
+
+        /** Client's socket. */
+        private Socket socket;
+
+        /** Socket's output. */
+        private PrintWriter out;
+
+        /** Socket's input. */
+        private BufferedReader in;
+
+        @Setup(Level.Trial)
+        public void connect(ConnectionBenchmark benchmark) throws IOException, InterruptedException
+        {
+            while (true)
+            {
+                this.socket = new Socket("localhost", benchmark.serverSocket.getLocalPort());
+                this.out = new PrintWriter(this.socket.getOutputStream(), true);
+                this.in = new BufferedReader(new InputStreamReader(this.socket.getInputStream()));
+                if (this.request() == 1)
+                {
+                    return;
+                }
+
+                // Server is busy
+                this.socket.close();
+                Thread.sleep(100);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException
+        {
+            this.socket.close();
+        }
+
+        /**
+         * Send an invalid request and read its response.
+         *
+         * @return Response's code, 6 if connection was closed.
+         * @throws IOException if communication fails.
+         */
+        private int request() throws IOException
+        {
+            this.out.println("Gibberish.");
+
+            String response = this.in.readLine();
+            return response == null ? 6 : this.gson.fromJson(response, ExecutionState.class).getCode();
+        }
+    }
+}
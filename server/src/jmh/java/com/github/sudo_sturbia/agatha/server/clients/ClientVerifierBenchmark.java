@@ -0,0 +1,131 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures throughput of credential verification with an increasing
+ * number of threads. Stored credentials are kept in memory, with an
+ * optional delay that stands for a database round trip, so the
+ * benchmark runs without MySQL. Verification is measured with and
+ * without hits in the credential cache.
+ * <p>
+ * Run using <code>./gradlew :server:jmh</code>. Throughput should
+ * grow with the number of threads up to the number of cores, or
+ * beyond it when latency is simulated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientVerifierBenchmark
+{
+    /** Number of users. */
+    private static final int USERS = 1024;
+
+    /** Simulated database latency in microseconds. */
+    @Param({"0", "200"})
+    public int latency;
+
+    /** Capacity of credential cache. With 16 entries every lookup
+     * misses, as users are verified in turn. */
+    @Param({"16", "10000"})
+    public int capacity;
+
+    /** Verifier to benchmark. */
+    private ClientVerifier verifier;
+
+    @Setup
+    public void setup()
+    {
+        Map<String, String[]> users = new HashMap<>();
+        for (int i = 0; i < USERS; i++)
+        {
+            String salt = "salt" + i;
+            users.put("username" + i, new String[]{"username" + i, DigestUtils.sha256Hex("password" + i + salt), salt});
+        }
+
+        this.verifier = new ClientVerifier((dbName, username) -> {
+            if (this.latency > 0)
+            {
+                LockSupport.parkNanos(this.latency * 1000L);
+            }
+
+            return users.get(username);
+        }, new CredentialCache(this.capacity, CredentialCache.TTL));
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        this.verifier.close();
+    }
+
+    /**
+     * Next user verified by a benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Caller
+    {
+        int next;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public ClientManager.LoginStatus threads01(Caller caller)
+    {
+        return this.verify(caller);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ClientManager.LoginStatus threads04(Caller caller)
+    {
+        return this.verify(caller);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public ClientManager.LoginStatus threads16(Caller caller)
+    {
+        return this.verify(caller);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public ClientManager.LoginStatus threads32(Caller caller)
+    {
+        return this.verify(caller);
+    }
+
+    /**
+     * Verify correct credentials of caller's next user.
+     *
+     * @param caller benchmark thread's state.
+     * @return Verification's status.
+     */
+    private ClientManager.LoginStatus verify(Caller caller)
+    {
+        int i = caller.next++ % USERS;
+        return this.verifier.verify("benchmarkDB", "username" + i, "password" + i);
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of LockoutTracker from 1 to 32 threads. Each
+ * operation checks if a random account is locked, and counts a failed
+ * login for one in four accounts, as a login would. With one stripe
+ * all threads share one lock, the same as a single monitor.
+ * <p>
+ * Run using <code>./gradlew :server:jmh</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LockoutTrackerBenchmark
+{
+    /** Number of usernames. */
+    private static final int USERS = 1 << 16;
+
+    /** Number of stripes. */
+    @Param({"1", "64"})
+    public int stripes;
+
+    /** Tracker to benchmark. */
+    private LockoutTracker tracker;
+
+    /** Usernames used by the benchmark. */
+    private String[] usernames;
+
+    @Setup
+    public void setup()
+    {
+        this.tracker = new LockoutTracker(this.stripes, LockoutTracker.MAX_FAILED, LockoutTracker.LOCK_TIME,
+                LockoutTracker.COUNT_TIME, LockoutTracker.TICK);
+
+        this.usernames = new String[USERS];
+        for (int i = 0; i < USERS; i++)
+        {
+            this.usernames[i] = "username" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        this.tracker.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean threads01()
+    {
+        return this.login();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean threads04()
+    {
+        return this.login();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean threads16()
+    {
+        return this.login();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public boolean threads32()
+    {
+        return this.login();
+    }
+
+    /**
+     * Check a random account, and count a failed login for one in
+     * four accounts.
+     *
+     * @return True if account is locked.
+     */
+    private boolean login()
+    {
+        int i = ThreadLocalRandom.current().nextInt(USERS);
+        boolean locked = this.tracker.isLocked(this.usernames[i]);
+        if (!locked && (i & 3) == 0)
+        {
+            this.tracker.failed(this.usernames[i]);
+        }
+
+        return locked;
+    }
+}
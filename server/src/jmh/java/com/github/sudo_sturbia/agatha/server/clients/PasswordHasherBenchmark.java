@@ -0,0 +1,77 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of password verification at different hashing
+ * costs. Cost 0 is SHA-256, other costs are numbers of PBKDF2
+ * iterations. Verifications run on PasswordHashing's threads, one per
+ * processor, while 32 threads submit them, the same as a burst of
+ * logins. Hashing directly on the calling threads is measured for
+ * comparison.
+ * <p>
+ * Run using <code>./gradlew :server:jmh</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PasswordHasherBenchmark
+{
+    /** Hashing cost. */
+    @Param({"0", "10000", "100000", "210000"})
+    public int cost;
+
+    /** Pool to benchmark. */
+    private PasswordHashing hashing;
+
+    /** Hasher used by calling threads. */
+    private PasswordHasher hasher;
+
+    /** Stored hash of password. */
+    private String hash;
+
+    @Setup
+    public void setup()
+    {
+        this.hashing = new PasswordHashing(PasswordHashing.THREADS, PasswordHashing.QUEUE_SIZE);
+        this.hasher = this.cost == 0 ? PasswordHasher.sha256() : PasswordHasher.pbkdf2(this.cost);
+        this.hash = this.hasher.hash("password", "salt");
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        this.hashing.close();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public boolean pool()
+    {
+        return this.hashing.verify("password", "salt", this.hash);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public boolean inline()
+    {
+        return this.hasher.verify("password", "salt", this.hash);
+    }
+}
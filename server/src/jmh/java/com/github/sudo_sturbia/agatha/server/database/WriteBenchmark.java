@@ -0,0 +1,164 @@
+package com.github.sudo_sturbia.agatha.server.database;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of writing books with different JDBC driver
+ * options. Books are inserted one per statement, the same as CREATE,
+ * and in batches of BATCH_SIZE, the same as BATCH. Statements are
+ * prepared for every write, as request handlers do, so driver side
+ * statement caching is measured too.
+ * <p>
+ * Needs a MySQL server, given by the AGATHA_JDBC_URL, AGATHA_DB_USER,
+ * and AGATHA_DB_PASSWORD environment variables. Writes to a database
+ * named AgathaBenchmark which is dropped at the end.
+ * <p>
+ * Run using <code>./gradlew :server:jmh</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark
+{
+    /** Number of books written per batch. */
+    private static final int BATCH_SIZE = 100;
+
+    /** Insert statement of a book. */
+    private static final String INSERT = "INSERT INTO AgathaBenchmark.Books VALUES (?, ?, ?, ?, ?, ?, ?);";
+
+    /** Comma separated JDBC driver properties. */
+    @Param({
+            "none",
+            "rewriteBatchedStatements=true",
+            "useServerPrepStmts=true,cachePrepStmts=true",
+            "rewriteBatchedStatements=true,useServerPrepStmts=true,cachePrepStmts=true"
+    })
+    public String options;
+
+    /** Connector to benchmark. */
+    private DriverConnector connector;
+
+    /** Connection used for writes. */
+    private Connection connection;
+
+    /** Number of written books, used to name books. */
+    private long written;
+
+    @Setup
+    public void setup() throws SQLException
+    {
+        Properties info = new Properties();
+        if (!this.options.equals("none"))
+        {
+            for (String option : this.options.split(","))
+            {
+                String[] pair = option.split("=", 2);
+                info.setProperty(pair[0], pair[1]);
+            }
+        }
+
+        Map<String, String> environment = System.getenv();
+        info.setProperty("user", Objects.requireNonNullElse(environment.get("AGATHA_DB_USER"), "root"));
+        info.setProperty("password", Objects.requireNonNullElse(environment.get("AGATHA_DB_PASSWORD"), ""));
+
+        this.connector = new DriverConnector(
+                Objects.requireNonNullElse(environment.get("AGATHA_JDBC_URL"), ConnectorBuilder.DEFAULT_URL), info);
+        this.connection = this.connector.connection();
+
+        try (Statement statement = this.connection.createStatement())
+        {
+            statement.executeUpdate("CREATE DATABASE IF NOT EXISTS AgathaBenchmark;");
+            statement.executeUpdate("DROP TABLE IF EXISTS AgathaBenchmark.Books;");
+            statement.executeUpdate("CREATE TABLE AgathaBenchmark.Books (" +
+                    "bookName varchar(255) NOT NULL, " +
+                    "author varchar(255), " +
+                    "state varchar(10) NOT NULL, " +
+                    "pages int(255) NOT NULL, " +
+                    "readPages int(255), " +
+                    "coverPath varchar(255), " +
+                    "hasNotes bool, " +
+                    "PRIMARY KEY(bookName)" +
+                    ");");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException
+    {
+        try (Statement statement = this.connection.createStatement())
+        {
+            statement.executeUpdate("DROP DATABASE IF EXISTS AgathaBenchmark;");
+        }
+        finally
+        {
+            this.connection.close();
+        }
+    }
+
+    @Benchmark
+    public int insert() throws SQLException
+    {
+        try (PreparedStatement statement = this.connection.prepareStatement(INSERT))
+        {
+            this.bind(statement);
+            return statement.executeUpdate();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] insertBatch() throws SQLException
+    {
+        try (PreparedStatement statement = this.connection.prepareStatement(INSERT))
+        {
+            for (int i = 0; i < BATCH_SIZE; i++)
+            {
+                this.bind(statement);
+                statement.addBatch();
+            }
+
+            return statement.executeBatch();
+        }
+    }
+
+    /**
+     * Bind values of a new book.
+     *
+     * @param statement insert statement.
+     * @throws SQLException in case of a SQL error.
+     */
+    private void bind(PreparedStatement statement) throws SQLException
+    {
+        statement.setString(1, "Book " + this.written++);
+        statement.setString(2, "Author");
+        statement.setString(3, "READ");
+        statement.setInt(4, 300);
+        statement.setInt(5, 100);
+        statement.setString(6, "");
+        statement.setBoolean(7, false);
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.sudo_sturbia.agatha.server.storage;
+
+import com.github.sudo_sturbia.agatha.core.Note;
+import com.github.sudo_sturbia.agatha.core.NoteImp;
+import com.github.sudo_sturbia.agatha.server.database.ConnectorBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures time to write all notes of a book. Notes are written one
+ * statement and one commit per note, the same as before batching, and
+ * in batches in one transaction using StorageUtil.insertNotes, the
+ * same as CREATE and UPDATE of a book.
+ * <p>
+ * Needs a MySQL server, given by the AGATHA_JDBC_URL, AGATHA_DB_USER,
+ * and AGATHA_DB_PASSWORD environment variables. Writes to a database
+ * named AgathaBenchmark which is dropped at the end.
+ * <p>
+ * Run using <code>./gradlew :server:jmh</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotesBenchmark
+{
+    /** Insert statement of a note. */
+    private static final String INSERT = "INSERT INTO AgathaBenchmark.Notes VALUES (?, ?);";
+
+    /** Number of notes in book. */
+    @Param({"10", "1000", "10000"})
+    public int notes;
+
+    /** Value of rewriteBatchedStatements driver property. */
+    @Param({"false", "true"})
+    public boolean rewrite;
+
+    /** Connection used for writes. */
+    private Connection connection;
+
+    /** Notes of book. */
+    private List<Note> book;
+
+    @Setup
+    public void setup() throws SQLException
+    {
+        Map<String, String> environment = System.getenv();
+        Properties info = new Properties();
+        info.setProperty("user", Objects.requireNonNullElse(environment.get("AGATHA_DB_USER"), "root"));
+        info.setProperty("password", Objects.requireNonNullElse(environment.get("AGATHA_DB_PASSWORD"), ""));
+        info.setProperty("rewriteBatchedStatements", String.valueOf(this.rewrite));
+
+        this.connection = DriverManager.getConnection(
+                Objects.requireNonNullElse(environment.get("AGATHA_JDBC_URL"), ConnectorBuilder.DEFAULT_URL), info);
+
+        try (Statement statement = this.connection.createStatement())
+        {
+            statement.executeUpdate("CREATE DATABASE IF NOT EXISTS AgathaBenchmark;");
+            statement.executeUpdate("DROP TABLE IF EXISTS AgathaBenchmark.Notes;");
+            statement.executeUpdate("CREATE TABLE AgathaBenchmark.Notes (" +
+                    "note text, " +
+                    "page int(255) NOT NULL, " +
+                    "PRIMARY KEY(page)" +
+                    ");");
+        }
+
+        this.book = new ArrayList<>();
+        for (int i = 1; i <= this.notes; i++)
+        {
+            this.book.add(new NoteImp(this.notes, "Note of page " + i, i));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void clear() throws SQLException
+    {
+        try (Statement statement = this.connection.createStatement())
+        {
+            statement.executeUpdate("TRUNCATE TABLE AgathaBenchmark.Notes;");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException
+    {
+        try (Statement statement = this.connection.createStatement())
+        {
+            statement.executeUpdate("DROP DATABASE IF EXISTS AgathaBenchmark;");
+        }
+        finally
+        {
+            this.connection.close();
+        }
+    }
+
+    @Benchmark
+    public void perNote() throws SQLException
+    {
+        try (PreparedStatement insert = this.connection.prepareStatement(INSERT))
+        {
+            for (Note note : this.book)
+            {
+                insert.setString(1, note.getNote());
+                insert.setInt(2, note.getPageNumber());
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    @Benchmark
+    public void batched() throws SQLException
+    {
+        this.connection.setAutoCommit(false);
+        try (PreparedStatement insert = this.connection.prepareStatement(INSERT))
+        {
+            StorageUtil.insertNotes(insert, this.book);
+            this.connection.commit();
+        }
+        catch (SQLException e)
+        {
+            this.connection.rollback();
+            throw e;
+        }
+        finally
+        {
+            this.connection.setAutoCommit(true);
+        }
+    }
+}
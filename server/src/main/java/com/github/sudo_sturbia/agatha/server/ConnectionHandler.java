@@ -0,0 +1,252 @@
+package com.github.sudo_sturbia.agatha.server;
+
+import com.github.sudo_sturbia.agatha.core.ExecutionState;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ConnectionHandler hands accepted sockets over to worker threads,
+ * each of which runs a ServerThread.
+ * <p>
+ * Using platform threads, at most <code>workers</code> connections
+ * are served at the same time by a bounded pool, and at most
+ * <code>queueSize</code> connections wait for a worker to become free.
+ * <p>
+ * Using virtual threads, every connection gets its own virtual thread,
+ * so blocking reads and JDBC calls don't hold a platform thread. The
+ * number of connections served at the same time is still limited
+ * to <code>workers</code>, and no connections wait.
+ * <p>
+ * Any connection beyond these limits is answered with an ExecutionState
+ * object with code 6 (server busy) and closed.
+ * <p>
+ * A pooled worker serving an idle connection can't serve any other,
+ * so using platform threads, a connection is closed after being idle
+ * for POOLED_IDLE_TIMEOUT, enough for a client's consecutive requests.
+ * Using virtual threads an idle connection holds no platform thread,
+ * and is kept open for ServerThread's default idle timeout.
+ * <p>
+ * Requests pipelined on a connection are handled by a second executor.
+ * Using platform threads it's a pool of at most <code>workers</code>
+ * threads, and a request is handled by the connection's own thread
+ * when the pool is full. Using virtual threads every request gets its
+ * own virtual thread. Requests submitted after the handler is cleaned
+ * are rejected, and answered with code 6.
+ */
+public class ConnectionHandler
+{
+    /** Time in milliseconds an idle connection is kept open by a
+     * platform worker. */
+    static final int POOLED_IDLE_TIMEOUT = 1_000;
+
+    /** Name of Application's database. */
+    private final String dbName;
+
+    /** Executor running connections' ServerThreads. */
+    private final ExecutorService executor;
+
+    /** Executor handling pipelined requests. */
+    private final ExecutorService requests;
+
+    /** Limits number of connections served by virtual threads.
+     * Null if platform threads are used. */
+    private final Semaphore permits;
+
+    /** Time in milliseconds an idle connection is kept open. */
+    private final int idleTimeout;
+
+    /**
+     * ConnectionHandler's constructor.
+     *
+     * @param dbName name of application's database.
+     * @param workers maximum number of worker threads.
+     * @param queueSize maximum number of connections waiting for a
+     *                  worker. If zero, connections are handed off
+     *                  directly to workers with no waiting. Not used
+     *                  with virtual threads.
+     * @param threads type of threads to serve connections on.
+     * @throws IllegalArgumentException if workers &lt;= zero, queueSize
+     *         &lt; zero, or threads is null.
+     */
+    ConnectionHandler(String dbName, int workers, int queueSize, ServerBuilder.ThreadType threads)
+            throws IllegalArgumentException
+    {
+        if (workers <= 0)
+        {
+            throw new IllegalArgumentException("Invalid number of workers.");
+        }
+        else if (queueSize < 0)
+        {
+            throw new IllegalArgumentException("Invalid queue size.");
+        }
+        else if (threads == null)
+        {
+            throw new IllegalArgumentException("Thread type is not given.");
+        }
+
+        this.dbName = dbName;
+        if (threads == ServerBuilder.ThreadType.VIRTUAL)
+        {
+            this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ServerThread-", 1).factory());
+            this.permits = new Semaphore(workers);
+            this.requests = this.executor;
+            this.idleTimeout = ServerThread.IDLE_TIMEOUT;
+        }
+        else
+        {
+            BlockingQueue<Runnable> queue = queueSize == 0 ?
+                    new SynchronousQueue<>() :
+                    new ArrayBlockingQueue<>(queueSize);
+
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                    queue, new WorkerFactory("ServerThread-"), new ThreadPoolExecutor.AbortPolicy());
+
+            // Let idle workers die so a quiet server holds no threads
+            pool.allowCoreThreadTimeOut(true);
+
+            this.executor = pool;
+            this.permits = null;
+            this.requests = new ThreadPoolExecutor(0, workers, 60, TimeUnit.SECONDS,
+                    new SynchronousQueue<>(), new WorkerFactory("RequestThread-"), new CallerRunsUntilShutdown());
+            this.idleTimeout = ConnectionHandler.POOLED_IDLE_TIMEOUT;
+        }
+    }
+
+    /**
+     * Handle an accepted socket connection. The connection is given
+     * to a worker if one is available, queued if not (platform threads
+     * only), or rejected with a server busy response if limits are
+     * reached.
+     *
+     * @param socket an accepted socket.
+     */
+    public void handle(Socket socket)
+    {
+        if (this.permits == null)
+        {
+            try
+            {
+                this.executor.execute(new ServerThread(socket, this.dbName, this.requests, this.idleTimeout));
+            }
+            catch (RejectedExecutionException e)
+            {
+                this.reject(socket);
+            }
+
+            return;
+        }
+
+        // Virtual threads
+        if (!this.permits.tryAcquire())
+        {
+            this.reject(socket);
+            return;
+        }
+
+        try
+        {
+            ServerThread thread = new ServerThread(socket, this.dbName, this.requests, this.idleTimeout);
+            this.executor.execute(() -> {
+                try
+                {
+                    thread.run();
+                }
+                finally
+                {
+                    this.permits.release();
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            this.permits.release();
+            this.reject(socket);
+        }
+    }
+
+    /**
+     * Stop accepting connections and interrupt running workers.
+     */
+    public void shutdown()
+    {
+        this.executor.shutdownNow();
+        this.requests.shutdownNow();
+    }
+
+    /**
+     * Send a server busy response on given socket and close it.
+     *
+     * @param socket socket to reject.
+     */
+    private void reject(Socket socket)
+    {
+        try (
+                Socket rejected = socket;
+                PrintWriter out = new PrintWriter(rejected.getOutputStream(), true);
+        ) {
+            out.println(new Gson().toJson(new ExecutionState(6))); // Server busy
+        }
+        catch (IOException e)
+        {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * CallerRunsUntilShutdown runs a task that doesn't fit in the pool
+     * on the submitting thread. Unlike CallerRunsPolicy, it rejects
+     * tasks once the pool is shut down instead of dropping them, so
+     * their futures complete.
+     */
+    static class CallerRunsUntilShutdown implements RejectedExecutionHandler
+    {
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor pool)
+        {
+            if (pool.isShutdown())
+            {
+                throw new RejectedExecutionException("Request executor is shut down.");
+            }
+
+            task.run();
+        }
+    }
+
+    /**
+     * WorkerFactory creates named worker threads.
+     */
+    private static class WorkerFactory implements ThreadFactory
+    {
+        /** Prefix of threads' names. */
+        private final String prefix;
+
+        /** Number of created threads. */
+        private final AtomicInteger count = new AtomicInteger();
+
+        private WorkerFactory(String prefix)
+        {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            return new Thread(runnable, this.prefix + this.count.incrementAndGet());
+        }
+    }
+}
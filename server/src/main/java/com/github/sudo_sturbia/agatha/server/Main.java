@@ -1,5 +1,11 @@
 package com.github.sudo_sturbia.agatha.server;
 
+import com.github.sudo_sturbia.agatha.server.clients.ClientManager;
+import com.github.sudo_sturbia.agatha.server.clients.PasswordHasher;
+import com.github.sudo_sturbia.agatha.server.database.ConnectorBuilder;
+import com.github.sudo_sturbia.agatha.server.database.ReplicatedConnector;
+import com.github.sudo_sturbia.agatha.server.storage.Migration;
+import com.github.sudo_sturbia.agatha.server.storage.StorageBuilder;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -7,6 +13,11 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Main handles command line flags and runs an instance of the
  * Agatha server.
@@ -17,6 +28,18 @@ import org.apache.commons.cli.ParseException;
  *     -d  --database <name>            Name of database to user, default: Agatha
  *     -su --db-server-username <name>  Username for database server (MySQL), default: root
  *     -sp --db-server-password <pass>  Password for database server (MySQL), default: ""
+ *     -u  --jdbc-url <url>             JDBC URL of database server, default: jdbc:mysql://localhost:3306/
+ *     -o  --jdbc-option <key=value>    JDBC driver property, can be repeated, default: none
+ *     -r  --replica-url <url>          JDBC URL of a read replica, can be repeated, default: none
+ *     -rr --replica-routing <type>     How replicas are chosen (round_robin or least_loaded), default: least_loaded
+ *     -s  --storage <layout>           Layout of clients' data (tables or shared), default: tables
+ *     -m  --migrate                    Copy clients' data from tables layout to shared layout and exit
+ *     -bc --book-cache <number>        Maximum number of cached books (0 to disable), default: 10000
+ *     -w  --workers <number>           Maximum number of worker threads, default: 64
+ *     -q  --queue-size <number>        Maximum number of connections waiting for a worker, default: 128
+ *     -t  --threads <type>             Type of threads serving connections (platform or virtual), default: platform
+ *     -tr --transport <type>           Transport serving connections (blocking or nio), default: blocking
+ *     -hc --hash-cost <number>         PBKDF2 iterations of new password hashes (0 for SHA-256), default: 210000
  * </pre>
  */
 public class Main
@@ -36,19 +59,132 @@ public class Main
 
             Server server = ServerBuilder.newServer()
                                          .dbName(cmd.getOptionValue("d", "Agatha"))
-                                         .port(cmd.hasOption("p") ? (Integer) cmd.getParsedOptionValue("p") : 54321)
+                                         .port(Main.number(cmd, "p", 54321))
                                          .dbServerUsername(cmd.getOptionValue("su", "root"))
                                          .dbServerPass(cmd.getOptionValue("sp", ""))
+                                         .jdbcUrl(cmd.getOptionValue("u", ConnectorBuilder.DEFAULT_URL))
+                                         .jdbcProperties(Main.properties(cmd.getOptionValues("o")))
+                                         .replicaUrls(cmd.hasOption("r") ? List.of(cmd.getOptionValues("r")) : List.of())
+                                         .replicaRouting(ReplicatedConnector.Routing.valueOf(cmd.getOptionValue("rr", "least_loaded").toUpperCase()))
+                                         .storage(StorageBuilder.Layout.valueOf(cmd.getOptionValue("s", "tables").toUpperCase()))
+                                         .bookCache(Main.number(cmd, "bc", StorageBuilder.CACHE_CAPACITY))
+                                         .workers(Main.number(cmd, "w", 64))
+                                         .queueSize(Main.number(cmd, "q", 128))
+                                         .threads(ServerBuilder.ThreadType.valueOf(cmd.getOptionValue("t", "platform").toUpperCase()))
+                                         .transport(ServerBuilder.Transport.valueOf(cmd.getOptionValue("tr", "blocking").toUpperCase()))
+                                         .passwordHasher(Main.hasher(Main.number(cmd, "hc", PasswordHasher.PBKDF2_ITERATIONS)))
                                          .build();
 
+            if (cmd.hasOption("m"))
+            {
+                Main.migrate(cmd.getOptionValue("d", "Agatha"));
+                return;
+            }
+
             server.run();
         }
-        catch (ServerSetupException | ParseException e)
+        catch (ServerSetupException | ParseException | IllegalArgumentException e)
         {
             System.err.println(e.getMessage());
         }
     }
 
+    /**
+     * Copy clients' data of a database from tables layout to shared
+     * layout, without starting the server.
+     *
+     * @param dbName name of application's database.
+     * @throws ServerSetupException if database can't be set up.
+     */
+    private static void migrate(String dbName) throws ServerSetupException
+    {
+        ServerSetupManager.setup(dbName, false);
+
+        Migration migration = new Migration(dbName);
+        try
+        {
+            migration.run();
+        }
+        catch (SQLException e)
+        {
+            System.err.println("Migration failed: " + e.getMessage());
+        }
+        finally
+        {
+            System.out.println("Migrated " + migration.getUsers() + " users, " + migration.getBooks() + " books, and " +
+                    migration.getNotes() + " notes.");
+            ConnectorBuilder.connector().clean();
+            ClientManager.get().stopManagerThread();
+        }
+    }
+
+    /**
+     * Get password hasher with given cost.
+     *
+     * @param cost number of PBKDF2 iterations, 0 for SHA-256.
+     * @return A PasswordHasher.
+     * @throws IllegalArgumentException if cost is negative.
+     */
+    private static PasswordHasher hasher(int cost) throws IllegalArgumentException
+    {
+        return cost == 0 ? PasswordHasher.sha256() : PasswordHasher.pbkdf2(cost);
+    }
+
+    /**
+     * Get value of a numeric option.
+     *
+     * @param cmd parsed command line.
+     * @param option option's name.
+     * @param defaultValue value used if option isn't given.
+     * @return Option's value.
+     * @throws IllegalArgumentException if option's value isn't a number.
+     */
+    private static int number(CommandLine cmd, String option, int defaultValue) throws IllegalArgumentException
+    {
+        if (!cmd.hasOption(option))
+        {
+            return defaultValue;
+        }
+
+        try
+        {
+            return Integer.parseInt(cmd.getOptionValue(option));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Value of option " + option + " isn't a number.");
+        }
+    }
+
+    /**
+     * Parse JDBC driver properties.
+     *
+     * @param options properties of the form key=value, or null.
+     * @return A map of properties.
+     * @throws IllegalArgumentException if a property isn't of the form key=value.
+     */
+    private static Map<String, String> properties(String[] options) throws IllegalArgumentException
+    {
+        Map<String, String> properties = new LinkedHashMap<>();
+        if (options == null)
+        {
+            return properties;
+        }
+
+        for (String option : options)
+        {
+            int equals = option.indexOf('=');
+            if (equals <= 0)
+            {
+                throw new IllegalArgumentException("JDBC option " + option + " isn't of the form key=value.");
+            }
+
+            properties.put(option.substring(0, equals), option.substring(equals + 1));
+        }
+
+        return properties;
+    }
+
     /**
      * Create command line options.
      *
@@ -61,7 +197,7 @@ public class Main
                                 .longOpt("port")
                                 .argName("number")
                                 .hasArg()
-                                .type(Integer.class)
+                                .type(String.class)
                                 .desc("Port number to listen to, default: 54321")
                                 .build());
 
@@ -89,6 +225,99 @@ public class Main
                                 .desc("")
                                 .build());
 
+        options.addOption(Option.builder("u")
+                                .longOpt("jdbc-url")
+                                .argName("url")
+                                .hasArg()
+                                .type(String.class)
+                                .desc("JDBC URL of database server, default: jdbc:mysql://localhost:3306/")
+                                .build());
+
+        options.addOption(Option.builder("o")
+                                .longOpt("jdbc-option")
+                                .argName("key=value")
+                                .hasArg()
+                                .type(String.class)
+                                .desc("JDBC driver property, can be repeated, default: none")
+                                .build());
+
+        options.addOption(Option.builder("r")
+                                .longOpt("replica-url")
+                                .argName("url")
+                                .hasArg()
+                                .type(String.class)
+                                .desc("JDBC URL of a read replica, can be repeated, default: none")
+                                .build());
+
+        options.addOption(Option.builder("rr")
+                                .longOpt("replica-routing")
+                                .argName("type")
+                                .hasArg()
+                                .type(String.class)
+                                .desc("How replicas are chosen (round_robin or least_loaded), default: least_loaded")
+                                .build());
+
+        options.addOption(Option.builder("s")
+                                .longOpt("storage")
+                                .argName("layout")
+                                .hasArg()
+                                .type(String.class)
+                                .desc("Layout of clients' data (tables or shared), default: tables")
+                                .build());
+
+        options.addOption(Option.builder("m")
+                                .longOpt("migrate")
+                                .desc("Copy clients' data from tables layout to shared layout and exit")
+                                .build());
+
+        options.addOption(Option.builder("bc")
+                                .longOpt("book-cache")
+                                .argName("number")
+                                .hasArg()
+                                .type(String.class)
+                                .desc("Maximum number of cached books (0 to disable), default: 10000")
+                                .build());
+
+        options.addOption(Option.builder("w")
+                                .longOpt("workers")
+                                .argName("number")
+                                .hasArg()
+                                .type(String.class)
+                                .desc("Maximum number of worker threads, default: 64")
+                                .build());
+
+        options.addOption(Option.builder("q")
+                                .longOpt("queue-size")
+                                .argName("number")
+                                .hasArg()
+                                .type(String.class)
+                                .desc("Maximum number of connections waiting for a worker, default: 128")
+                                .build());
+
+        options.addOption(Option.builder("t")
+                                .longOpt("threads")
+                                .argName("type")
+                                .hasArg()
+                                .type(String.class)
+                                .desc("Type of threads serving connections (platform or virtual), default: platform")
+                                .build());
+
+        options.addOption(Option.builder("tr")
+                                .longOpt("transport")
+                                .argName("type")
+                                .hasArg()
+                                .type(String.class)
+                                .desc("Transport serving connections (blocking or nio), default: blocking")
+                                .build());
+
+        options.addOption(Option.builder("hc")
+                                .longOpt("hash-cost")
+                                .argName("number")
+                                .hasArg()
+                                .type(String.class)
+                                .desc("PBKDF2 iterations of new password hashes (0 for SHA-256), default: 210000")
+                                .build());
+
         return options;
     }
 }
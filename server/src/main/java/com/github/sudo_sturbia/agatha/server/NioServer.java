@@ -0,0 +1,492 @@
+package com.github.sudo_sturbia.agatha.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * NioServer is an implementation of Agatha's server that uses one
+ * selector thread for all network I/O.
+ * <p>
+ * The selector thread reads from every connection into one reusable
+ * buffer, and splits the read bytes into newline-delimited requests
+ * itself. Complete requests are handed over to a bounded pool of
+ * workers that call Protocol.handle, and responses are written back
+ * by the selector thread. An idle connection costs no thread at all.
+ * <p>
+ * The protocol on the wire is the same as ServerImp's, so any client
+ * of ServerImp works with NioServer. Requests pipelined on one connection
+ * are handled by a Pipeline, so responses are written in request order,
+ * and an empty line ends the connection. If the workers' queue is full
+ * a request is answered with an ExecutionState object with code 6
+ * (server busy).
+ * <p>
+ * NioServer only speaks the text protocol. A binary protocol handshake
+ * is answered like any invalid request, so clients fall back to text.
+ *
+ * @see com.github.sudo_sturbia.agatha.server.Protocol
+ * @see Pipeline
+ */
+public class NioServer implements Server
+{
+    /** Size of the buffer used for reads. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Maximum length of a request in bytes. Longer requests
+     * close the connection. */
+    private static final int MAX_REQUEST = 16 * 1024 * 1024;
+
+    /** Maximum number of requests read ahead on one connection. */
+    private static final int MAX_PENDING = 64;
+
+    /** Name of Application's database. */
+    private final String dbName;
+
+    /** Port to listen to. */
+    private final int port;
+
+    /** Maximum number of worker threads. */
+    private final int workers;
+
+    /** Maximum number of requests waiting for a worker. */
+    private final int queueSize;
+
+    /** Responses produced by workers, waiting to be written by
+     * the selector thread. */
+    private final Queue<Response> responses;
+
+    /** Selector used for all connections. */
+    private volatile Selector selector;
+
+    /** False when the server should stop. */
+    private volatile boolean running;
+
+    /**
+     * NioServer's constructor.
+     *
+     * @param dbName name of application's database.
+     * @param port port to listen to.
+     * @param workers maximum number of worker threads.
+     * @param queueSize maximum number of requests waiting for a worker.
+     */
+    NioServer(String dbName, int port, int workers, int queueSize)
+    {
+        this.dbName = dbName;
+        this.port = port;
+        this.workers = workers;
+        this.queueSize = queueSize;
+        this.responses = new ConcurrentLinkedQueue<>();
+    }
+
+    @Override
+    public void run() throws ServerSetupException
+    {
+        ServerSetupManager.setup(this.dbName, true);
+
+        try (ServerSocketChannel channel = ServerSocketChannel.open())
+        {
+            channel.bind(new InetSocketAddress(this.port));
+            this.serve(channel);
+        }
+        catch (IOException e)
+        {
+            throw new ServerSetupException("Couldn't open socket.");
+        }
+    }
+
+    /**
+     * Accept connections on given channel and serve them until
+     * the server is stopped.
+     *
+     * @param server a bound server channel.
+     * @throws IOException if selector can't be used.
+     */
+    void serve(ServerSocketChannel server) throws IOException
+    {
+        BlockingQueue<Runnable> queue = this.queueSize == 0 ?
+                new SynchronousQueue<>() :
+                new ArrayBlockingQueue<>(this.queueSize);
+
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(this.workers, this.workers, 60, TimeUnit.SECONDS,
+                queue, runnable -> new Thread(runnable, "NioWorker-" + count.incrementAndGet()));
+        executor.allowCoreThreadTimeOut(true);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (Selector selector = Selector.open())
+        {
+            this.selector = selector;
+            this.running = true;
+
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+
+            while (this.running)
+            {
+                selector.select();
+
+                // Queue responses produced by workers
+                Response response;
+                while ((response = this.responses.poll()) != null)
+                {
+                    response.connection.respond(response.response);
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext())
+                {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    try
+                    {
+                        if (!key.isValid())
+                        {
+                            continue;
+                        }
+
+                        if (key.isAcceptable())
+                        {
+                            this.accept(server, selector, executor);
+                            continue;
+                        }
+
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable())
+                        {
+                            connection.read(buffer);
+                        }
+
+                        if (key.isValid() && key.isWritable())
+                        {
+                            connection.write();
+                        }
+                    }
+                    catch (IOException e)
+                    {
+                        // Connection failed, drop it
+                        if (key.attachment() != null)
+                        {
+                            ((Connection) key.attachment()).close();
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stop serving connections.
+     */
+    void stop()
+    {
+        this.running = false;
+
+        Selector selector = this.selector;
+        if (selector != null)
+        {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Accept a pending connection and register it for reads.
+     *
+     * @param server server channel to accept from.
+     * @param selector selector to register connection with.
+     * @param executor workers' executor.
+     * @throws IOException if connection can't be registered.
+     */
+    private void accept(ServerSocketChannel server, Selector selector, ThreadPoolExecutor executor) throws IOException
+    {
+        SocketChannel channel = server.accept();
+        if (channel == null)
+        {
+            return;
+        }
+
+        channel.configureBlocking(false);
+
+        Connection connection = new Connection(channel, executor);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    /**
+     * Response is a worker's response to a connection's request.
+     */
+    private static class Response
+    {
+        /** Connection the request was read from. */
+        private final Connection connection;
+
+        /** JSON response. */
+        private final String response;
+
+        private Response(Connection connection, String response)
+        {
+            this.connection = connection;
+            this.response = response;
+        }
+    }
+
+    /**
+     * Connection holds the state of one client connection. All its
+     * methods are called by the selector thread only.
+     */
+    private class Connection
+    {
+        /** Connection's channel. */
+        private final SocketChannel channel;
+
+        /** Bytes of a request that hasn't been completed yet. */
+        private byte[] partial;
+
+        /** Number of bytes used in partial. */
+        private int length;
+
+        /** Complete requests waiting to be handled. */
+        private final Deque<String> requests;
+
+        /** Encoded responses waiting to be written. */
+        private final Deque<ByteBuffer> writes;
+
+        /** Pipeline handling connection's requests. */
+        private final Pipeline pipeline;
+
+        /** Connection's selection key. */
+        private SelectionKey key;
+
+        /** Number of submitted requests whose responses weren't
+         * queued yet. */
+        private int inFlight;
+
+        /** True if client has ended the connection. */
+        private boolean ended;
+
+        private Connection(SocketChannel channel, ThreadPoolExecutor executor)
+        {
+            this.channel = channel;
+            this.partial = new byte[256];
+            this.requests = new ArrayDeque<>();
+            this.writes = new ArrayDeque<>();
+            this.pipeline = new Pipeline(executor, request -> Protocol.handle(request, NioServer.this.dbName), response -> {
+                NioServer.this.responses.add(new Response(this, response));
+                NioServer.this.selector.wakeup();
+            });
+        }
+
+        /**
+         * Read available bytes and queue any complete requests.
+         *
+         * @param buffer buffer to read into.
+         * @throws IOException if read fails.
+         */
+        private void read(ByteBuffer buffer) throws IOException
+        {
+            buffer.clear();
+            if (this.channel.read(buffer) == -1)
+            {
+                this.end();
+                return;
+            }
+
+            buffer.flip();
+            while (buffer.hasRemaining() && !this.ended)
+            {
+                byte b = buffer.get();
+                if (b != '\n')
+                {
+                    this.append(b);
+                    continue;
+                }
+
+                // Drop carriage return of \r\n line endings
+                int end = this.length > 0 && this.partial[this.length - 1] == '\r' ? this.length - 1 : this.length;
+                this.length = 0;
+
+                if (end == 0)
+                {
+                    this.end(); // An empty line ends the connection
+                }
+                else
+                {
+                    this.requests.add(new String(this.partial, 0, end, StandardCharsets.UTF_8));
+                }
+            }
+
+            this.dispatch();
+        }
+
+        /**
+         * Append a byte to the partial request.
+         *
+         * @param b byte to append.
+         * @throws IOException if request is too long.
+         */
+        private void append(byte b) throws IOException
+        {
+            if (this.length == this.partial.length)
+            {
+                if (this.length >= MAX_REQUEST)
+                {
+                    throw new IOException("Request is too long.");
+                }
+
+                byte[] grown = new byte[Math.min(this.length * 2, MAX_REQUEST)];
+                System.arraycopy(this.partial, 0, grown, 0, this.length);
+                this.partial = grown;
+            }
+
+            this.partial[this.length++] = b;
+        }
+
+        /**
+         * Submit queued requests to the pipeline while it has room.
+         * Pipeline's room is never smaller than what's counted by
+         * inFlight, so submitting never blocks the selector thread.
+         */
+        private void dispatch()
+        {
+            while (this.inFlight < Pipeline.MAX_IN_FLIGHT && !this.requests.isEmpty())
+            {
+                try
+                {
+                    this.pipeline.submit(this.requests.poll());
+                    this.inFlight++;
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            this.updateInterest();
+            this.closeIfDone();
+        }
+
+        /**
+         * Queue a response for writing and submit more requests.
+         *
+         * @param response JSON response.
+         */
+        private void respond(String response)
+        {
+            this.inFlight--;
+            if (!this.key.isValid())
+            {
+                return;
+            }
+
+            this.writes.add(StandardCharsets.UTF_8.encode(response + System.lineSeparator()));
+            this.dispatch();
+        }
+
+        /**
+         * Write as much of queued responses as the channel accepts.
+         *
+         * @throws IOException if write fails.
+         */
+        private void write() throws IOException
+        {
+            while (!this.writes.isEmpty())
+            {
+                ByteBuffer head = this.writes.peek();
+                this.channel.write(head);
+                if (head.hasRemaining())
+                {
+                    break; // Channel is full, wait until it's writable
+                }
+
+                this.writes.poll();
+            }
+
+            this.updateInterest();
+            this.closeIfDone();
+        }
+
+        /**
+         * Stop reading from the connection. Connection is closed after
+         * queued requests are answered.
+         */
+        private void end()
+        {
+            this.ended = true;
+            this.length = 0;
+        }
+
+        /**
+         * Update operations the connection is interested in. Reads stop
+         * when too many requests are waiting, and writes are only
+         * selected when there's something to write.
+         */
+        private void updateInterest()
+        {
+            if (!this.key.isValid())
+            {
+                return;
+            }
+
+            int ops = 0;
+            if (!this.ended && this.requests.size() < MAX_PENDING)
+            {
+                ops |= SelectionKey.OP_READ;
+            }
+
+            if (!this.writes.isEmpty())
+            {
+                ops |= SelectionKey.OP_WRITE;
+            }
+
+            this.key.interestOps(ops);
+        }
+
+        /**
+         * Close the connection if client has ended it and all requests
+         * are answered.
+         */
+        private void closeIfDone()
+        {
+            if (this.ended && this.inFlight == 0 && this.requests.isEmpty() && this.writes.isEmpty())
+            {
+                this.close();
+            }
+        }
+
+        /**
+         * Close the connection.
+         */
+        private void close()
+        {
+            this.key.cancel();
+            try
+            {
+                this.channel.close();
+            }
+            catch (IOException e)
+            {
+                System.err.println(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.sudo_sturbia.agatha.server;
+
+import com.github.sudo_sturbia.agatha.core.ExecutionState;
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Pipeline handles requests pipelined on one connection, which are
+ * requests sent by a client before responses of previous requests
+ * are received.
+ * <p>
+ * Consecutive READ requests don't depend on each other, so they are
+ * handled concurrently. Any other request changes the database, so
+ * it's handled only after all requests before it are done, and
+ * requests after it wait for it. Responses are given to the sink in
+ * the same order requests were submitted, whatever order requests
+ * finish in.
+ * <p>
+ * At most MAX_IN_FLIGHT requests are handled or waiting for their
+ * response to be written at a time, submit blocks when that limit
+ * is reached. A Pipeline is used by the thread reading a connection,
+ * so submit and drain should be called from one thread only.
+ */
+class Pipeline
+{
+    /** Maximum number of requests in flight. */
+    static final int MAX_IN_FLIGHT = 32;
+
+    /** Executor to handle requests on. */
+    private final Executor executor;
+
+    /** Handles a request and returns its response. */
+    private final Function<String, String> handler;
+
+    /** Receives responses in order. */
+    private final Consumer<String> sink;
+
+    /** Limits number of requests in flight. */
+    private final Semaphore permits;
+
+    /** Reads submitted after the last write request. */
+    private final List<CompletableFuture<String>> reads;
+
+    /** Completes when the last write request and all requests
+     * before it are handled. */
+    private CompletableFuture<Void> barrier;
+
+    /** Completes when all responses are given to the sink. */
+    private CompletableFuture<Void> written;
+
+    /**
+     * Pipeline's constructor.
+     *
+     * @param executor executor to handle requests on.
+     * @param handler handles a request and returns its response.
+     * @param sink receives responses in request order.
+     */
+    Pipeline(Executor executor, Function<String, String> handler, Consumer<String> sink)
+    {
+        this.executor = executor;
+        this.handler = handler;
+        this.sink = sink;
+        this.permits = new Semaphore(MAX_IN_FLIGHT);
+        this.reads = new ArrayList<>();
+        this.barrier = CompletableFuture.completedFuture(null);
+        this.written = CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Submit a request to be handled. Blocks if MAX_IN_FLIGHT requests
+     * are in flight.
+     *
+     * @param request request to handle.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    void submit(String request) throws InterruptedException
+    {
+        this.permits.acquire();
+
+        CompletableFuture<String> response;
+        if (Pipeline.isRead(request))
+        {
+            response = this.handle(this.barrier, request);
+            this.reads.add(response);
+        }
+        else
+        {
+            // Wait for all requests before this one
+            List<CompletableFuture<?>> before = new ArrayList<>(this.reads);
+            before.add(this.barrier);
+
+            response = this.handle(CompletableFuture.allOf(before.toArray(new CompletableFuture<?>[0])), request);
+            this.barrier = response.thenApply(ignored -> null);
+            this.reads.clear();
+        }
+
+        this.written = this.written.thenCombine(response, (ignored, result) -> {
+            this.permits.release();
+            this.sink.accept(result);
+            return null;
+        });
+    }
+
+    /**
+     * Wait until all submitted requests are handled and their
+     * responses given to the sink.
+     */
+    void drain()
+    {
+        this.written.join();
+    }
+
+    /**
+     * Handle a request after a stage completes.
+     *
+     * @param after stage to wait for.
+     * @param request request to handle.
+     * @return A future response. A request that couldn't be given to
+     *         the executor gets a server busy response, and one that
+     *         failed gets a failure response.
+     */
+    private CompletableFuture<String> handle(CompletableFuture<?> after, String request)
+    {
+        return after.thenApplyAsync(ignored -> this.handler.apply(request), this.executor)
+                    .handle((result, e) -> {
+                        if (e == null)
+                        {
+                            return result;
+                        }
+
+                        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                        return new Gson().toJson(new ExecutionState(cause instanceof RejectedExecutionException ? 6 : 3));
+                    });
+    }
+
+    /**
+     * Check if given request only reads.
+     *
+     * @param request request to check.
+     * @return True if request's function is READ, in any case,
+     *         false otherwise.
+     */
+    static boolean isRead(String request)
+    {
+        // Same as RequestBuilder
+        return request.split("\\s+", 2)[0].equalsIgnoreCase("read");
+    }
+}
@@ -1,8 +1,11 @@
 package com.github.sudo_sturbia.agatha.server;
 
 import com.github.sudo_sturbia.agatha.core.ExecutionState;
+import com.github.sudo_sturbia.agatha.server.database.ConnectionTimeoutException;
+import com.github.sudo_sturbia.agatha.server.database.ConnectorBuilder;
 import com.github.sudo_sturbia.agatha.server.request.Request;
 import com.github.sudo_sturbia.agatha.server.request.RequestBuilder;
+import com.github.sudo_sturbia.agatha.server.request.RequestUtil;
 
 import com.google.gson.Gson;
 
@@ -24,6 +27,8 @@ import com.google.gson.Gson;
  * FUNCTION can be any of the CRUD operations, each of which is
  * represented by a class implementing Request interface. Each
  * function is documented separately in its implementing class.
+ * BATCH performs multiple CREATE, UPDATE, and DELETE operations
+ * in one request and one transaction.
  * object can be a book, note, label, or collection of books.
  * <p>
  * Due to the structure of requests, a request should not contain
@@ -34,8 +39,24 @@ import com.google.gson.Gson;
  * <p>
  * Usernames and book names can only contain alphanumeric characters
  * and spaces. Any other characters are rejected.
+ * <p>
+ * LOGIN starts a session and responds with a session token, which can
+ * be given in place of the password in any other request until it
+ * expires. Requests with a token are verified without accessing the
+ * database. Passwords can't start with the token prefix @.
+ * <p>
+ * Each request is sent on its own line, and multiple requests can be
+ * sent on one connection without waiting for responses (pipelining).
+ * Responses are always sent back in the same order as requests. An
+ * empty line ends the connection.
+ * <p>
+ * Requests can also be sent using a length-prefixed binary protocol,
+ * which is negotiated at the start of a connection and described in
+ * Frame. A frame carries the same request, with the function given
+ * by an opcode, so its payload can contain new lines.
  *
  * @see com.github.sudo_sturbia.agatha.server.request
+ * @see com.github.sudo_sturbia.agatha.core.Frame
  */
 public class Protocol
 {
@@ -43,7 +64,12 @@ public class Protocol
      * Handle given request string, and produce a response.
      * <p>
      * Request's response is a JSON object. Either the requested object
-     * or an ExecutionState object.
+     * or an ExecutionState object. If no database connection is
+     * available in time, response is an ExecutionState with code 6.
+     * <p>
+     * After any request other than READ and LOGIN, the connector is
+     * told that client's data was written, so that client's next
+     * reads aren't served by a replica that is behind.
      *
      * @param requestString a string request.
      * @param dbName name of application's database.
@@ -54,7 +80,22 @@ public class Protocol
         Request request = RequestBuilder.build(requestString, dbName);
         if (request != null)
         {
-            return request.handle();
+            try
+            {
+                return request.handle();
+            }
+            catch (ConnectionTimeoutException e)
+            {
+                return new Gson().toJson(new ExecutionState(6)); // Server is busy
+            }
+            finally
+            {
+                String username = RequestUtil.writer(requestString);
+                if (username != null)
+                {
+                    ConnectorBuilder.connector().written(dbName, username);
+                }
+            }
         }
 
         return new Gson().toJson(new ExecutionState(1)); // Wrong syntax
@@ -1,6 +1,15 @@
 package com.github.sudo_sturbia.agatha.server;
 
+import com.github.sudo_sturbia.agatha.server.clients.ClientManager;
+import com.github.sudo_sturbia.agatha.server.clients.PasswordHasher;
 import com.github.sudo_sturbia.agatha.server.database.ConnectorBuilder;
+import com.github.sudo_sturbia.agatha.server.database.ReplicatedConnector;
+import com.github.sudo_sturbia.agatha.server.storage.StorageBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * ServerBuilder provides more configuration options when building
@@ -12,12 +21,35 @@ import com.github.sudo_sturbia.agatha.server.database.ConnectorBuilder;
  *                                  .port(54321)
  *                                  .dbServerUsername("root")
  *                                  .dbServerPass("")
+ *                                  .jdbcUrl("jdbc:mysql://localhost:3306/")
+ *                                  .jdbcProperties(Map.of("rewriteBatchedStatements", "true"))
+ *                                  .replicaUrls(List.of("jdbc:mysql://replica:3306/"))
+ *                                  .replicaRouting(ReplicatedConnector.Routing.LEAST_LOADED)
  *                                  .connector(ConnectorBuilder.ConnectorType.POOL)
+ *                                  .storage(StorageBuilder.Layout.TABLES)
+ *                                  .bookCache(StorageBuilder.CACHE_CAPACITY)
+ *                                  .workers(64)
+ *                                  .queueSize(128)
+ *                                  .threads(ServerBuilder.ThreadType.PLATFORM)
+ *                                  .transport(ServerBuilder.Transport.BLOCKING)
+ *                                  .passwordHasher(PasswordHasher.pbkdf2(PasswordHasher.PBKDF2_ITERATIONS))
  *                                  .build();
  * </pre>
  */
 public class ServerBuilder
 {
+    /** Available types of threads to serve connections on. */
+    public enum ThreadType
+    {
+        PLATFORM, VIRTUAL
+    }
+
+    /** Available transports to serve connections with. */
+    public enum Transport
+    {
+        BLOCKING, NIO
+    }
+
     /** Name of Application's database. */
     private String dbName;
 
@@ -30,9 +62,42 @@ public class ServerBuilder
     /** Password for database server (MySQL). */
     private String dbServerPass;
 
+    /** JDBC URL of database server. */
+    private String jdbcUrl;
+
+    /** JDBC driver properties. */
+    private Map<String, String> jdbcProperties;
+
+    /** JDBC URLs of read replicas. */
+    private List<String> replicaUrls;
+
+    /** How read replicas are chosen. */
+    private ReplicatedConnector.Routing replicaRouting;
+
     /** Type of connector to use. */
     private ConnectorBuilder.ConnectorType connector;
 
+    /** Layout of clients' data. */
+    private StorageBuilder.Layout storage;
+
+    /** Maximum number of cached books. */
+    private int bookCache;
+
+    /** Maximum number of worker threads. */
+    private int workers;
+
+    /** Maximum number of connections waiting for a worker. */
+    private int queueSize;
+
+    /** Type of threads serving connections. */
+    private ThreadType threads;
+
+    /** Transport serving connections. */
+    private Transport transport;
+
+    /** Scheme used to hash new passwords. */
+    private PasswordHasher passwordHasher;
+
     /** Private constructor. Sets values to default. */
     private ServerBuilder()
     {
@@ -40,7 +105,18 @@ public class ServerBuilder
         this.port = 54321;
         this.dbServerUsername = "root";
         this.dbServerPass = "";
+        this.jdbcUrl = ConnectorBuilder.DEFAULT_URL;
+        this.jdbcProperties = new LinkedHashMap<>();
+        this.replicaUrls = new ArrayList<>();
+        this.replicaRouting = ReplicatedConnector.Routing.LEAST_LOADED;
         this.connector = ConnectorBuilder.ConnectorType.POOL;
+        this.storage = StorageBuilder.Layout.TABLES;
+        this.bookCache = StorageBuilder.CACHE_CAPACITY;
+        this.workers = 64;
+        this.queueSize = 128;
+        this.threads = ThreadType.PLATFORM;
+        this.transport = Transport.BLOCKING;
+        this.passwordHasher = PasswordHasher.pbkdf2(PasswordHasher.PBKDF2_ITERATIONS);
     }
 
     /**
@@ -52,7 +128,18 @@ public class ServerBuilder
      *     port = 54321
      *     database server username = "root"
      *     database server password = ""
+     *     JDBC URL = "jdbc:mysql://localhost:3306/"
+     *     JDBC properties = none
+     *     replica URLs = none
+     *     replica routing = least loaded
      *     connector = pool
+     *     storage = tables
+     *     book cache = CACHE_CAPACITY books
+     *     workers = 64
+     *     queue size = 128
+     *     threads = platform
+     *     transport = blocking
+     *     password hasher = PBKDF2 with PBKDF2_ITERATIONS
      * </pre>
      */
     public static ServerBuilder newServer()
@@ -63,8 +150,8 @@ public class ServerBuilder
     /**
      * Build a new server object with given configurations. If any
      * of the options are set to an invalid value (null or "" for
-     * strings except dbServerPass, -ve for integers.) default values
-     * are used.
+     * strings except dbServerPass, -ve for integers, zero for workers.)
+     * default values are used.
      *
      * @return A newly created Server object with specified configs.
      */
@@ -75,10 +162,31 @@ public class ServerBuilder
         this.port = this.port < 0 ? 54321 : this.port;
         this.dbServerUsername = this.dbServerUsername == null || this.dbServerUsername.isEmpty() ? "root" : this.dbServerUsername;
         this.dbServerPass = this.dbServerPass == null ? "" : this.dbServerPass;
+        this.jdbcUrl = this.jdbcUrl == null || this.jdbcUrl.isEmpty() ? ConnectorBuilder.DEFAULT_URL : this.jdbcUrl;
+        this.jdbcProperties = this.jdbcProperties == null ? new LinkedHashMap<>() : this.jdbcProperties;
+        this.replicaUrls = this.replicaUrls == null ? new ArrayList<>() : this.replicaUrls;
+        this.replicaRouting = this.replicaRouting == null ? ReplicatedConnector.Routing.LEAST_LOADED : this.replicaRouting;
         this.connector = this.connector == null ? ConnectorBuilder.ConnectorType.POOL : this.connector;
+        this.storage = this.storage == null ? StorageBuilder.Layout.TABLES : this.storage;
+        this.bookCache = this.bookCache < 0 ? StorageBuilder.CACHE_CAPACITY : this.bookCache;
+        this.workers = this.workers <= 0 ? 64 : this.workers;
+        this.queueSize = this.queueSize < 0 ? 128 : this.queueSize;
+        this.threads = this.threads == null ? ThreadType.PLATFORM : this.threads;
+        this.transport = this.transport == null ? Transport.BLOCKING : this.transport;
+        this.passwordHasher = this.passwordHasher == null ?
+                PasswordHasher.pbkdf2(PasswordHasher.PBKDF2_ITERATIONS) :
+                this.passwordHasher;
 
-        ConnectorBuilder.setup(this.connector, this.dbServerUsername, this.dbServerPass);
-        return new ServerImp(this.dbName, this.port);
+        ConnectorBuilder.setup(this.connector, this.jdbcUrl, this.replicaUrls, this.replicaRouting,
+                this.dbServerUsername, this.dbServerPass, this.jdbcProperties);
+        StorageBuilder.setup(this.storage, this.bookCache);
+        ClientManager.setPasswordHasher(this.passwordHasher);
+        if (this.transport == Transport.NIO)
+        {
+            return new NioServer(this.dbName, this.port, this.workers, this.queueSize);
+        }
+
+        return new ServerImp(this.dbName, this.port, this.workers, this.queueSize, this.threads);
     }
 
     /**
@@ -129,6 +237,61 @@ public class ServerBuilder
         return this;
     }
 
+    /**
+     * Set JDBC URL of database server (MySQL.) URL shouldn't name a
+     * database, as the database is set using <code>dbName</code>.
+     *
+     * @param url database server's JDBC URL.
+     * @return A ServerBuilder instance with jdbcUrl set.
+     */
+    public ServerBuilder jdbcUrl(String url)
+    {
+        this.jdbcUrl = url;
+        return this;
+    }
+
+    /**
+     * Set properties passed to the JDBC driver when connecting, for
+     * example <code>rewriteBatchedStatements</code>,
+     * <code>useServerPrepStmts</code>, <code>cachePrepStmts</code>,
+     * or <code>useCompression</code>.
+     *
+     * @param properties JDBC driver properties.
+     * @return A ServerBuilder instance with jdbcProperties set.
+     */
+    public ServerBuilder jdbcProperties(Map<String, String> properties)
+    {
+        this.jdbcProperties = properties == null ? null : new LinkedHashMap<>(properties);
+        return this;
+    }
+
+    /**
+     * Set JDBC URLs of read replicas of database server. READ requests
+     * and credential checks are spread over replicas, except for
+     * clients that wrote shortly before. Replicas use the same
+     * credentials and JDBC properties as the database server.
+     *
+     * @param urls JDBC URLs of replicas.
+     * @return A ServerBuilder instance with replicaUrls set.
+     */
+    public ServerBuilder replicaUrls(List<String> urls)
+    {
+        this.replicaUrls = urls == null ? null : new ArrayList<>(urls);
+        return this;
+    }
+
+    /**
+     * Set how read replicas are chosen.
+     *
+     * @param routing how replicas are chosen.
+     * @return A ServerBuilder instance with replicaRouting set.
+     */
+    public ServerBuilder replicaRouting(ReplicatedConnector.Routing routing)
+    {
+        this.replicaRouting = routing;
+        return this;
+    }
+
     /**
      * Set type of connector to use.
      *
@@ -140,4 +303,107 @@ public class ServerBuilder
         this.connector = connector;
         return this;
     }
+
+    /**
+     * Set layout of clients' data. Tables layout creates a table for
+     * each user and book, while shared layout keeps all users' data in
+     * a few shared tables, and suits databases with many users. Data
+     * can be copied from tables layout to shared layout using
+     * Migration.
+     *
+     * @param storage layout of clients' data.
+     * @return A ServerBuilder instance with storage set.
+     */
+    public ServerBuilder storage(StorageBuilder.Layout storage)
+    {
+        this.storage = storage;
+        return this;
+    }
+
+    /**
+     * Set maximum number of books kept in memory, so that reading them
+     * again doesn't access the database. Zero disables the cache, which
+     * should be done if the database is changed by anything other than
+     * this server.
+     *
+     * @param bookCache maximum number of cached books.
+     * @return A ServerBuilder instance with bookCache set.
+     */
+    public ServerBuilder bookCache(int bookCache)
+    {
+        this.bookCache = bookCache;
+        return this;
+    }
+
+    /**
+     * Set maximum number of worker threads, which is the maximum
+     * number of connections served at the same time. When using
+     * virtual threads, every connection gets its own thread, so this
+     * only limits the number of connections.
+     *
+     * @param workers maximum number of worker threads.
+     * @return A ServerBuilder instance with workers set.
+     */
+    public ServerBuilder workers(int workers)
+    {
+        this.workers = workers;
+        return this;
+    }
+
+    /**
+     * Set maximum number of connections waiting for a free worker.
+     * Connections that arrive when the queue is full are rejected
+     * with a server busy response.
+     *
+     * @param queueSize maximum number of waiting connections.
+     * @return A ServerBuilder instance with queueSize set.
+     */
+    public ServerBuilder queueSize(int queueSize)
+    {
+        this.queueSize = queueSize;
+        return this;
+    }
+
+    /**
+     * Set type of threads to serve connections on. Virtual threads
+     * allow holding a lot more connections with blocking reads and
+     * database calls than platform threads.
+     *
+     * @param threads type of threads to use.
+     * @return A ServerBuilder instance with threads set.
+     */
+    public ServerBuilder threads(ThreadType threads)
+    {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Set transport to serve connections with. The blocking transport
+     * serves every connection on its own thread, while NIO multiplexes
+     * all connections on one selector thread and uses worker threads
+     * only to handle requests. Thread type is not used with NIO.
+     *
+     * @param transport transport to use.
+     * @return A ServerBuilder instance with transport set.
+     */
+    public ServerBuilder transport(Transport transport)
+    {
+        this.transport = transport;
+        return this;
+    }
+
+    /**
+     * Set scheme used to hash new passwords. Stored passwords are
+     * verified using the scheme that hashed them, so the scheme or
+     * its cost can be changed without breaking existing accounts.
+     *
+     * @param passwordHasher scheme to hash new passwords with.
+     * @return A ServerBuilder instance with passwordHasher set.
+     */
+    public ServerBuilder passwordHasher(PasswordHasher passwordHasher)
+    {
+        this.passwordHasher = passwordHasher;
+        return this;
+    }
 }
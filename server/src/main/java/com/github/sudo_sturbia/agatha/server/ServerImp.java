@@ -16,16 +16,31 @@ public class ServerImp implements Server
     /** Port to listen to. */
     private final int port;
 
+    /** Maximum number of worker threads. */
+    private final int workers;
+
+    /** Maximum number of connections waiting for a worker. */
+    private final int queueSize;
+
+    /** Type of threads serving connections. */
+    private final ServerBuilder.ThreadType threads;
+
     /**
      * ServerImp's constructor.
      *
      * @param dbName name of application's database.
      * @param port port to listen to.
+     * @param workers maximum number of worker threads.
+     * @param queueSize maximum number of connections waiting for a worker.
+     * @param threads type of threads serving connections.
      */
-    ServerImp(String dbName, int port)
+    ServerImp(String dbName, int port, int workers, int queueSize, ServerBuilder.ThreadType threads)
     {
         this.dbName = dbName;
         this.port = port;
+        this.workers = workers;
+        this.queueSize = queueSize;
+        this.threads = threads;
     }
 
 
@@ -34,19 +49,24 @@ public class ServerImp implements Server
     {
         ServerSetupManager.setup(this.dbName, true);
 
+        ConnectionHandler handler = new ConnectionHandler(this.dbName, this.workers, this.queueSize, this.threads);
         try (ServerSocket serverSocket = new ServerSocket(this.port))
         {
             // Listen to requests
             while (true)
             {
-                // Accept a socket connection, and Create a new
-                // thread to handle the request.
-                new ServerThread(serverSocket.accept(), this.dbName).start();
+                // Accept a socket connection, and pass it to
+                // a worker to handle the request.
+                handler.handle(serverSocket.accept());
             }
         }
         catch (IOException e)
         {
             throw new ServerSetupException("Couldn't open socket.");
         }
+        finally
+        {
+            handler.shutdown();
+        }
     }
 }
@@ -2,20 +2,24 @@ package com.github.sudo_sturbia.agatha.server;
 
 import com.github.sudo_sturbia.agatha.server.clients.ClientManager;
 import com.github.sudo_sturbia.agatha.server.database.ConnectorBuilder;
+import com.github.sudo_sturbia.agatha.server.storage.StorageBuilder;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 /**
  * ServerSetupManager creates a new database to be used by the
  * server, performs initial configuration on it, and creates a shutdown
  * hook to terminate all components when the server finishes execution.
  * <p>
- * An Agatha database consists of a Users table, a table for each
- * client containing client's books, and a table for each book containing
- * book's notes. DatabaseSetupManager sets up the initial database
- * with the Users table, the rest are left to be created on demand.
+ * An Agatha database consists of a Users table, and the tables of
+ * the chosen Storage, which hold clients' books, notes, and labels.
+ * ServerSetupManager sets up the initial database with the Users table
+ * and lets the storage create its tables, tables the storage creates
+ * on demand are left for later.
  */
 public class ServerSetupManager
 {
@@ -48,18 +52,50 @@ public class ServerSetupManager
                 PreparedStatement usersTable = connection.prepareStatement(
                         "CREATE TABLE IF NOT EXISTS " + dbName + ".Users (" +
                                 "username varchar(255) NOT NULL, " +
-                                "password char(64) NOT NULL, " +
+                                "password varchar(255) NOT NULL, " +
                                 "salt char(16) NOT NULL, " +
                                 "PRIMARY KEY(username)" +
                                 ");")
         ) {
             database.executeUpdate();
             usersTable.executeUpdate();
+
+            ServerSetupManager.widenPasswords(connection, dbName);
+            StorageBuilder.storage().setup(dbName);
         }
         catch (SQLException e)
         {
             throw new ServerSetupException("Couldn't perform initial database setup.");
         }
+
+        ClientManager.get().loadUsernames(dbName);
+    }
+
+    /**
+     * Widen password column of a Users table created when all hashes
+     * were 64 characters, so it fits hashes of all PasswordHashers.
+     *
+     * @param connection connection to use.
+     * @param dbName name of application's database.
+     * @throws SQLException in case of a SQL error.
+     */
+    private static void widenPasswords(Connection connection, String dbName) throws SQLException
+    {
+        try (
+                PreparedStatement type = connection.prepareStatement(
+                        "SELECT DATA_TYPE FROM information_schema.COLUMNS " +
+                                "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = 'Users' AND COLUMN_NAME = 'password';");
+                Statement alter = connection.createStatement()
+        ) {
+            type.setString(1, dbName);
+            try (ResultSet set = type.executeQuery())
+            {
+                if (set.next() && set.getString(1).equalsIgnoreCase("char"))
+                {
+                    alter.executeUpdate("ALTER TABLE " + dbName + ".Users MODIFY password varchar(255) NOT NULL;");
+                }
+            }
+        }
     }
 
     /**
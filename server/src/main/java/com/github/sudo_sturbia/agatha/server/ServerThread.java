@@ -1,53 +1,308 @@
 package com.github.sudo_sturbia.agatha.server;
 
+import com.github.sudo_sturbia.agatha.core.Frame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 
 /**
- * ServerThread handles one request sent on a given socket.
+ * ServerThread handles requests sent on a given socket. It's run
+ * by one of ConnectionHandler's workers.
+ * <p>
+ * A connection uses the text protocol, unless it starts with
+ * Frame.MAGIC, in which case the handshake is answered and the
+ * connection uses the binary protocol.
+ * <p>
+ * Requests that arrive one at a time are handled on the thread reading
+ * the socket. Once a client sends requests without waiting for
+ * responses, the rest of the connection's requests are handled by
+ * a Pipeline on the given executor.
+ * <p>
+ * Clients may keep a connection open between requests. A connection
+ * that sends no request for the given idle timeout is closed, which
+ * frees the thread running the ServerThread.
+ *
+ * @see ConnectionHandler
+ * @see Pipeline
+ * @see Frame
  */
-public class ServerThread extends Thread
+public class ServerThread implements Runnable
 {
+    /** Default time in milliseconds an idle connection is kept open. */
+    static final int IDLE_TIMEOUT = 60_000;
+
     /** A socket to use for communication. */
     private final Socket socket;
 
     /** Name of Application's database. */
     private final String dbName;
 
+    /** Executor to handle pipelined requests on. */
+    private final Executor executor;
+
+    /** Time in milliseconds an idle connection is kept open. */
+    private final int idleTimeout;
+
     /**
-     * ServerThread's constructor.
+     * ServerThread's constructor. Pipelined requests are handled
+     * one after another on the thread reading the socket.
      *
      * @param socket socket to use for communication.
      * @param dbName name of application's database.
      */
     public ServerThread(Socket socket, String dbName)
     {
-        super("ServerThread");
+        this(socket, dbName, Runnable::run);
+    }
+
+    /**
+     * ServerThread's constructor.
+     *
+     * @param socket socket to use for communication.
+     * @param dbName name of application's database.
+     * @param executor executor to handle pipelined requests on.
+     */
+    public ServerThread(Socket socket, String dbName, Executor executor)
+    {
+        this(socket, dbName, executor, ServerThread.IDLE_TIMEOUT);
+    }
+
+    /**
+     * ServerThread's constructor.
+     *
+     * @param socket socket to use for communication.
+     * @param dbName name of application's database.
+     * @param executor executor to handle pipelined requests on.
+     * @param idleTimeout time in milliseconds an idle connection is
+     *                    kept open.
+     * @throws IllegalArgumentException if idleTimeout is &lt;= 0.
+     */
+    public ServerThread(Socket socket, String dbName, Executor executor, int idleTimeout)
+            throws IllegalArgumentException
+    {
+        if (idleTimeout <= 0)
+        {
+            throw new IllegalArgumentException("Invalid idle timeout.");
+        }
+
         this.socket = socket;
         this.dbName = dbName;
+        this.executor = executor;
+        this.idleTimeout = idleTimeout;
     }
 
     @Override
     public void run()
     {
         try (
-                PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                Socket socket = this.socket;
+                BufferedInputStream input = new BufferedInputStream(socket.getInputStream());
+                OutputStream output = socket.getOutputStream();
         ) {
-            String inputLine;
-            while ((inputLine = in.readLine()) != null && !inputLine.isEmpty())
+            socket.setSoTimeout(this.idleTimeout);
+
+            if (ServerThread.isBinary(input))
+            {
+                this.serveBinary(input, output);
+            }
+            else
+            {
+                this.serveText(input, output);
+            }
+        }
+        catch (SocketTimeoutException e)
+        {
+            // Connection was idle
+        }
+        catch (IOException e)
+        {
+            System.err.println(e.getMessage());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Serve requests of the text protocol.
+     *
+     * @param input connection's input.
+     * @param output connection's output.
+     * @throws IOException if communication fails.
+     * @throws InterruptedException if interrupted while waiting for
+     *         a pipelined request.
+     */
+    private void serveText(InputStream input, OutputStream output) throws IOException, InterruptedException
+    {
+        PrintWriter out = new PrintWriter(output, true);
+        BufferedReader in = new BufferedReader(new InputStreamReader(input));
+
+        Pipeline pipeline = null;
+
+        String inputLine;
+        while ((inputLine = ServerThread.readRequest(in)) != null && !inputLine.isEmpty())
+        {
+            if (pipeline == null && !in.ready())
             {
-                // Handle the request using Protocol
-                String response = Protocol.handle(inputLine, this.dbName);
+                // No more requests were sent, handle the request using Protocol
+                out.println(Protocol.handle(inputLine, this.dbName));
+                continue;
+            }
 
-                // Send response to client
-                out.println(response);
+            if (pipeline == null)
+            {
+                pipeline = new Pipeline(this.executor, request -> Protocol.handle(request, this.dbName), out::println);
             }
 
-            socket.close();
+            pipeline.submit(inputLine);
+        }
+
+        if (pipeline != null)
+        {
+            pipeline.drain();
+        }
+    }
+
+    /**
+     * Serve requests of the binary protocol. Handshake is answered
+     * first. Requests are handled the same as text requests, and
+     * each response is sent with its request's id.
+     *
+     * @param input connection's input.
+     * @param output connection's output.
+     * @throws IOException if communication fails.
+     * @throws InterruptedException if interrupted while waiting for
+     *         a pipelined request.
+     */
+    private void serveBinary(InputStream input, OutputStream output) throws IOException, InterruptedException
+    {
+        DataInputStream in = new DataInputStream(input);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+
+        out.write(Frame.MAGIC);
+        out.flush();
+
+        // Ids of pipelined requests, in the order responses are sent
+        Queue<Integer> ids = new ConcurrentLinkedQueue<>();
+        Pipeline pipeline = null;
+
+        Frame frame;
+        while ((frame = ServerThread.readFrame(in)) != null)
+        {
+            if (pipeline == null && in.available() == 0)
+            {
+                ServerThread.send(out, new Frame(Frame.Opcode.RESPONSE, frame.getRequestId(),
+                        Protocol.handle(frame.toText(), this.dbName)));
+                continue;
+            }
+
+            if (pipeline == null)
+            {
+                pipeline = new Pipeline(this.executor, request -> Protocol.handle(request, this.dbName),
+                        response -> ServerThread.send(out, new Frame(Frame.Opcode.RESPONSE, ids.poll(), response)));
+            }
+
+            ids.add(frame.getRequestId());
+            pipeline.submit(frame.toText());
+        }
+
+        if (pipeline != null)
+        {
+            pipeline.drain();
+        }
+    }
+
+    /**
+     * Check if a connection starts with the binary protocol's handshake.
+     * Only the first byte is waited for, as text requests never start
+     * with the handshake's first byte. If there is no handshake, input
+     * is reset to its start.
+     *
+     * @param input connection's input.
+     * @return True if connection uses the binary protocol, false otherwise.
+     * @throws IOException if reading fails.
+     */
+    private static boolean isBinary(BufferedInputStream input) throws IOException
+    {
+        input.mark(Frame.MAGIC.length);
+        if (input.read() == Frame.MAGIC[0]
+                && Arrays.equals(input.readNBytes(Frame.MAGIC.length - 1),
+                                 Arrays.copyOfRange(Frame.MAGIC, 1, Frame.MAGIC.length)))
+        {
+            return true;
+        }
+
+        input.reset();
+        return false;
+    }
+
+    /**
+     * Read the next request from a connection.
+     *
+     * @param in connection's reader.
+     * @return Next request, or null if connection was closed or was
+     *         idle for too long.
+     * @throws IOException if read fails.
+     */
+    private static String readRequest(BufferedReader in) throws IOException
+    {
+        try
+        {
+            return in.readLine();
+        }
+        catch (SocketTimeoutException e)
+        {
+            return null; // Idle connection
+        }
+    }
+
+    /**
+     * Read the next frame from a connection.
+     *
+     * @param in connection's input.
+     * @return Next frame, or null if connection was closed or was
+     *         idle for too long.
+     * @throws IOException if read fails or frame is invalid.
+     */
+    private static Frame readFrame(DataInputStream in) throws IOException
+    {
+        try
+        {
+            return Frame.read(in);
+        }
+        catch (SocketTimeoutException e)
+        {
+            return null; // Idle connection
+        }
+    }
+
+    /**
+     * Send a frame and flush it.
+     *
+     * @param out connection's output.
+     * @param frame frame to send.
+     */
+    private static void send(DataOutputStream out, Frame frame)
+    {
+        try
+        {
+            frame.write(out);
+            out.flush();
         }
         catch (IOException e)
         {
@@ -1,45 +1,44 @@
 package com.github.sudo_sturbia.agatha.server.clients;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * ClientManager manages client related information. It can be used
  * to verify a client's credentials, or the existence of a username
  * (to avoid conflicts.)
  * <p>
- * ClientManager manages, and communicates with a ClientManagerThread
- * that runs parallel to the main thread throughout the execution of
- * the server.
+ * ClientManager can be used by any number of threads at the same
+ * time. Each verification runs on the calling thread, using a
+ * ClientVerifier shared by all threads, except for password hashing
+ * which runs on a bounded pool of threads.
+ * <p>
+ * New passwords are hashed using the PasswordHasher set using
+ * <code>setPasswordHasher</code>, SHA-256 by default. Stored hashes
+ * are verified using the scheme that produced them.
  */
 public class ClientManager
 {
     /** Singleton manager instance. */
-    private static ClientManager manager;
+    private static volatile ClientManager manager;
 
-    /** Thread to manage client credentials. */
-    private final ClientManagerThread thread;
+    /** Scheme used to hash new passwords. */
+    private static volatile PasswordHasher hasher = PasswordHasher.sha256();
 
-    /** Sender/Receiver pair used for communication with thread. */
-    private final BlockingQueue<Credentials> sender;
-    private final BlockingQueue<LoginStatus> receiver;
+    /** Verifier of client credentials. */
+    private final ClientVerifier verifier;
 
     /**
      * Status of login, depends on given credentials.
      */
     public enum LoginStatus
     {
-        SUCCEEDED, FAILED, TIMEOUT
+        SUCCEEDED, FAILED, TIMEOUT, BUSY
     }
 
     /** Private singleton constructor. */
     private ClientManager()
     {
-        this.sender = new LinkedBlockingQueue<>();
-        this.receiver = new LinkedBlockingQueue<>();
-
-        this.thread = new ClientManagerThread(this.receiver, this.sender);
-        this.thread.start();
+        this.verifier = new ClientVerifier();
     }
 
     /**
@@ -49,21 +48,89 @@ public class ClientManager
      */
     public static ClientManager get()
     {
-        if (ClientManager.manager == null)
+        ClientManager manager = ClientManager.manager;
+        if (manager == null)
+        {
+            synchronized (ClientManager.class)
+            {
+                if ((manager = ClientManager.manager) == null)
+                {
+                    ClientManager.manager = manager = new ClientManager();
+                }
+            }
+        }
+
+        return manager;
+    }
+
+    /**
+     * Set the scheme used to hash new passwords. Passwords that are
+     * already stored keep their scheme.
+     *
+     * @param hasher scheme to hash new passwords with.
+     * @throws IllegalArgumentException if hasher is null.
+     */
+    public static void setPasswordHasher(PasswordHasher hasher) throws IllegalArgumentException
+    {
+        if (hasher == null)
         {
-            ClientManager.manager = new ClientManager();
+            throw new IllegalArgumentException("Password hasher is not given.");
         }
 
-        return ClientManager.manager;
+        ClientManager.hasher = hasher;
     }
 
     /**
-     * End execution of ClientManagerThread.
+     * End execution of ClientManager's timers. A new ClientManager
+     * is created if <code>get</code> is called again.
      */
     public void stopManagerThread()
     {
-        ClientManager.manager = null;
-        this.thread.interrupt();
+        synchronized (ClientManager.class)
+        {
+            if (ClientManager.manager == this)
+            {
+                ClientManager.manager = null;
+            }
+        }
+
+        this.verifier.close();
+    }
+
+    /**
+     * Load usernames of a database, so that verifying the existence
+     * of a username that doesn't exist needs no database query.
+     * Should be called once the database's Users table exists.
+     *
+     * @param dbName name of application's database.
+     */
+    public void loadUsernames(String dbName)
+    {
+        this.verifier.load(dbName);
+    }
+
+    /**
+     * Record a username that is about to be written to the database.
+     * Must be followed by <code>usernameRemoved</code> if writing fails.
+     *
+     * @param dbName name of application's database.
+     * @param username client's username.
+     */
+    public void usernameAdded(String dbName, String username)
+    {
+        this.verifier.added(dbName, username);
+    }
+
+    /**
+     * Record a username that was deleted from the database, or that
+     * failed to be written after <code>usernameAdded</code>.
+     *
+     * @param dbName name of application's database.
+     * @param username client's username.
+     */
+    public void usernameRemoved(String dbName, String username)
+    {
+        this.verifier.removed(dbName, username);
     }
 
     /**
@@ -75,24 +142,7 @@ public class ClientManager
      */
     public boolean doesExist(String dbName, String username)
     {
-        try
-        {
-            this.sender.put(new Credentials(dbName, username, null));
-
-            switch(this.receiver.take())
-            {
-                case FAILED:
-                    return false;
-                case SUCCEEDED:
-                case TIMEOUT: // Can't happen
-                default: // Can't happen
-                    return true;
-            }
-        }
-        catch (InterruptedException e)  // Shouldn't happen, Returns true for safety
-        {
-            return true;
-        }
+        return this.verifier.exists(dbName, username);
     }
 
     /**
@@ -108,17 +158,100 @@ public class ClientManager
      *      the account (gave an incorrect password) five or more
      *      times in the last 30 minutes. Time is calculated starting
      *      from the last failed attempt.
+     *      LoginStatus.BUSY: if too many passwords are being hashed.
      */
     public LoginStatus doesExist(String dbName, String username, String password)
     {
-        try
-        {
-            this.sender.put(new Credentials(dbName, username, password));
-            return this.receiver.take();
-        }
-        catch (InterruptedException e) // Shouldn't happen, Returns failed for safety
-        {
-            return LoginStatus.FAILED;
-        }
+        return this.verifier.verify(dbName, username, password);
+    }
+
+    /**
+     * Hash a new password using the scheme set by
+     * <code>setPasswordHasher</code>.
+     *
+     * @param password password to hash.
+     * @param salt password's salt.
+     * @return Password's hash, at most 255 characters.
+     * @throws RejectedExecutionException if too many passwords are
+     *         being hashed.
+     */
+    public String hashPassword(String password, String salt) throws RejectedExecutionException
+    {
+        return this.verifier.getHashing().hash(ClientManager.hasher, password, salt);
+    }
+
+    /**
+     * Forget verified credentials of a client. Should be called when
+     * a client is deleted or its password changes.
+     *
+     * @param dbName name of application's database.
+     * @param username client's username.
+     */
+    public void invalidate(String dbName, String username)
+    {
+        this.verifier.invalidate(dbName, username);
+    }
+
+    /**
+     * Get number of verifications that used cached credentials.
+     *
+     * @return Number of credential cache hits.
+     */
+    public long getCacheHits()
+    {
+        return this.verifier.getCache().getHits();
+    }
+
+    /**
+     * Get number of verifications that didn't find cached credentials.
+     *
+     * @return Number of credential cache misses.
+     */
+    public long getCacheMisses()
+    {
+        return this.verifier.getCache().getMisses();
+    }
+
+    /**
+     * Get number of passwords hashed or verified.
+     *
+     * @return Number of hashes.
+     */
+    public long getHashCount()
+    {
+        return this.verifier.getHashing().getCount();
+    }
+
+    /**
+     * Get mean latency of hashing a password, including time spent
+     * waiting for a hashing thread.
+     *
+     * @return Mean hash latency in nanoseconds.
+     */
+    public long getMeanHashNanos()
+    {
+        return this.verifier.getHashing().getMeanNanos();
+    }
+
+    /**
+     * Get maximum latency of hashing a password, including time spent
+     * waiting for a hashing thread.
+     *
+     * @return Maximum hash latency in nanoseconds.
+     */
+    public long getMaxHashNanos()
+    {
+        return this.verifier.getHashing().getMaxNanos();
+    }
+
+    /**
+     * Get number of hashes rejected because too many passwords were
+     * being hashed.
+     *
+     * @return Number of rejected hashes.
+     */
+    public long getRejectedHashes()
+    {
+        return this.verifier.getHashing().getRejected();
     }
 }
@@ -0,0 +1,369 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import com.github.sudo_sturbia.agatha.server.database.ConnectionTimeoutException;
+import com.github.sudo_sturbia.agatha.server.database.ConnectorBuilder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * ClientVerifier verifies clients' credentials, as well as the
+ * existence of usernames (to avoid conflicts.)
+ * <p>
+ * Verification runs on the thread that asks for it, so any number of
+ * requests are verified at the same time, limited only by the threads
+ * handling requests and the database's connections. State shared
+ * between verifications is kept in concurrent structures.
+ * <p>
+ * Correct credentials are kept in a CredentialCache, so a client that
+ * sends the same password again is verified without a database query.
+ * Usernames are kept in a UsernameFilter, so a username that doesn't
+ * exist is known without a database query. Passwords are hashed on a
+ * bounded pool of threads using PasswordHashing.
+ * <p>
+ * ClientVerifier also enforces a timeout mechanism in case of failure
+ * to login, using a LockoutTracker. So if a client fails to login
+ * (submits an incorrect password) five or more times the account is
+ * subsequently locked for 30 minutes starting from the last failed
+ * attempt.
+ */
+class ClientVerifier
+{
+    /**
+     * Users finds the stored credentials of a user.
+     */
+    @FunctionalInterface
+    interface Users
+    {
+        /**
+         * Find a user's stored credentials. Usernames may be matched
+         * ignoring case.
+         *
+         * @param dbName name of application's database.
+         * @param username user's username.
+         * @return An array of user's stored username, hashed password,
+         *         and salt, or null if user doesn't exist.
+         * @throws SQLException in case of a SQL error.
+         */
+        String[] find(String dbName, String username) throws SQLException;
+
+        /**
+         * List all usernames of a database.
+         *
+         * @param dbName name of application's database.
+         * @return A Source of database's usernames.
+         */
+        default UsernameFilter.Source all(String dbName)
+        {
+            return action -> ClientVerifier.usernames(dbName, action);
+        }
+
+        /**
+         * Count users of a database.
+         *
+         * @param dbName name of application's database.
+         * @return Number of users.
+         * @throws SQLException in case of a SQL error.
+         */
+        default int count(String dbName) throws SQLException
+        {
+            return ClientVerifier.count(dbName);
+        }
+    }
+
+    /** Source of stored credentials. */
+    private final Users users;
+
+    /** Recently verified credentials. */
+    private final CredentialCache cache;
+
+    /** Failed logins and locked accounts. */
+    private final LockoutTracker lockout;
+
+    /** Usernames of each database. */
+    private final UsernameFilter usernames;
+
+    /** Threads that hash passwords. */
+    private final PasswordHashing hashing;
+
+    /**
+     * Create a ClientVerifier that finds credentials in application's
+     * database.
+     */
+    ClientVerifier()
+    {
+        this(ClientVerifier::query, new CredentialCache(CredentialCache.CAPACITY, CredentialCache.TTL),
+                new PasswordHashing(PasswordHashing.THREADS, PasswordHashing.QUEUE_SIZE));
+    }
+
+    /**
+     * Create a ClientVerifier that finds credentials using given Users.
+     *
+     * @param users source of stored credentials.
+     * @param cache cache of verified credentials.
+     */
+    ClientVerifier(Users users, CredentialCache cache)
+    {
+        this(users, cache, new PasswordHashing(PasswordHashing.THREADS, PasswordHashing.QUEUE_SIZE));
+    }
+
+    /**
+     * Create a ClientVerifier that finds credentials using given Users,
+     * and hashes passwords using given PasswordHashing.
+     *
+     * @param users source of stored credentials.
+     * @param cache cache of verified credentials.
+     * @param hashing threads that hash passwords.
+     */
+    ClientVerifier(Users users, CredentialCache cache, PasswordHashing hashing)
+    {
+        this.users = users;
+        this.cache = cache;
+        this.hashing = hashing;
+        this.lockout = new LockoutTracker();
+        this.usernames = new UsernameFilter();
+    }
+
+    /**
+     * Load usernames of a database, so that usernames that don't exist
+     * are known without a query. If loading fails, existence of
+     * usernames is verified using the database.
+     *
+     * @param dbName name of application's database.
+     */
+    void load(String dbName)
+    {
+        try
+        {
+            this.usernames.load(dbName, this.users.count(dbName), this.users.all(dbName));
+        }
+        catch (SQLException | ConnectionTimeoutException e)
+        {
+            // Use database only
+        }
+    }
+
+    /**
+     * Add a username that is about to be written to the database.
+     *
+     * @param dbName name of application's database.
+     * @param username username to add.
+     */
+    void added(String dbName, String username)
+    {
+        this.usernames.add(dbName, username);
+    }
+
+    /**
+     * Remove a username that was deleted from the database, or that
+     * failed to be written after being added.
+     *
+     * @param dbName name of application's database.
+     * @param username username to remove.
+     */
+    void removed(String dbName, String username)
+    {
+        this.usernames.remove(dbName, username);
+    }
+
+    /**
+     * Verify that username exists in the database.
+     *
+     * @param dbName name of application's database.
+     * @param username username to verify.
+     * @return True if username exists, false otherwise.
+     */
+    boolean exists(String dbName, String username)
+    {
+        if (!this.usernames.mightExist(dbName, username))
+        {
+            return false;
+        }
+
+        try
+        {
+            return this.users.find(dbName, username) != null;
+        }
+        catch (SQLException e)
+        {
+            return true; // Safety fallback
+        }
+    }
+
+    /**
+     * Verify client's credentials (username, and password.)
+     *
+     * @param dbName name of application's database.
+     * @param username username to verify.
+     * @param password password to verify.
+     * @return
+     *      LoginStatus.SUCCEEDED: if credentials are correct.
+     *      LoginStatus.FAILED: if credentials are incorrect.
+     *      LoginStatus.TIMEOUT: if account is locked.
+     *      LoginStatus.BUSY: if too many passwords are being hashed.
+     */
+    ClientManager.LoginStatus verify(String dbName, String username, String password)
+    {
+        if (this.lockout.isLocked(username))
+        {
+            return ClientManager.LoginStatus.TIMEOUT;
+        }
+        else if (this.cache.contains(dbName, username, password))
+        {
+            return ClientManager.LoginStatus.SUCCEEDED;
+        }
+
+        String[] stored;
+        try
+        {
+            stored = this.users.find(dbName, username);
+        }
+        catch (SQLException e)
+        {
+            return ClientManager.LoginStatus.FAILED; // Safety fallback
+        }
+
+        boolean correct;
+        try
+        {
+            correct = stored != null && stored[0].equals(username) && this.hashing.verify(password, stored[2], stored[1]);
+        }
+        catch (RejectedExecutionException e)
+        {
+            return ClientManager.LoginStatus.BUSY;
+        }
+
+        if (!correct)
+        {
+            this.lockout.failed(username);
+            return ClientManager.LoginStatus.FAILED;
+        }
+
+        this.cache.put(dbName, username, password);
+        return ClientManager.LoginStatus.SUCCEEDED;
+    }
+
+    /**
+     * Forget verified credentials of a user. Should be called when
+     * a user is deleted or its password changes.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     */
+    void invalidate(String dbName, String username)
+    {
+        this.cache.invalidate(dbName, username);
+    }
+
+    /**
+     * Get cache of verified credentials.
+     *
+     * @return Verifier's CredentialCache.
+     */
+    CredentialCache getCache()
+    {
+        return this.cache;
+    }
+
+    /**
+     * Get filter of existing usernames.
+     *
+     * @return Verifier's UsernameFilter.
+     */
+    UsernameFilter getUsernames()
+    {
+        return this.usernames;
+    }
+
+    /**
+     * Get threads that hash passwords.
+     *
+     * @return Verifier's PasswordHashing.
+     */
+    PasswordHashing getHashing()
+    {
+        return this.hashing;
+    }
+
+    /**
+     * Stop the lockout timer and hashing threads.
+     */
+    void close()
+    {
+        this.lockout.close();
+        this.hashing.close();
+    }
+
+    /**
+     * Find a user's stored credentials in application's database.
+     * Credentials may be read from a replica.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @return An array of user's stored username, hashed password,
+     *         and salt, or null if user doesn't exist.
+     * @throws SQLException in case of a SQL error.
+     */
+    private static String[] query(String dbName, String username) throws SQLException
+    {
+        try (
+                Connection connection = ConnectorBuilder.connector().readConnection(dbName, username);
+                PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + dbName + ".Users WHERE username = ?;");
+        ) {
+            statement.setString(1, username);
+
+            try (ResultSet set = statement.executeQuery())
+            {
+                if (set.next())
+                {
+                    return new String[]{set.getString("username"), set.getString("password"), set.getString("salt")};
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Pass each username of application's database to given action.
+     *
+     * @param dbName name of application's database.
+     * @param action action to perform on each username.
+     * @throws SQLException in case of a SQL error.
+     */
+    private static void usernames(String dbName, Consumer<String> action) throws SQLException
+    {
+        try (
+                Connection connection = ConnectorBuilder.connector().connection();
+                PreparedStatement statement = connection.prepareStatement("SELECT username FROM " + dbName + ".Users;");
+                ResultSet set = statement.executeQuery()
+        ) {
+            while (set.next())
+            {
+                action.accept(set.getString("username"));
+            }
+        }
+    }
+
+    /**
+     * Count users of application's database.
+     *
+     * @param dbName name of application's database.
+     * @return Number of users.
+     * @throws SQLException in case of a SQL error.
+     */
+    private static int count(String dbName) throws SQLException
+    {
+        try (
+                Connection connection = ConnectorBuilder.connector().connection();
+                PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM " + dbName + ".Users;");
+                ResultSet set = statement.executeQuery()
+        ) {
+            return set.next() ? set.getInt(1) : 0;
+        }
+    }
+}
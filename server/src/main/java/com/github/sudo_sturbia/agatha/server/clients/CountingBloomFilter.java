@@ -0,0 +1,191 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * CountingBloomFilter is a Bloom filter that supports removal.
+ * <p>
+ * Each item is hashed to a number of 4-bit counters, which are
+ * incremented when the item is added and decremented when it's
+ * removed. An item whose counters are all above 0 might have been
+ * added, while an item with a counter at 0 was definitely not added
+ * (or was removed.) A counter that reaches its maximum stays at it,
+ * so it's never decremented below the number of items using it.
+ * <p>
+ * Counters are packed sixteen to a long and updated using
+ * compare-and-set, so any number of threads can use the filter at the
+ * same time without locking. Only items that were added should be
+ * removed, removing other items can cause false negatives.
+ */
+class CountingBloomFilter
+{
+    /** Maximum value of a counter. */
+    private static final int MAX_COUNT = 15;
+
+    /** Packed counters. */
+    private final AtomicLongArray counters;
+
+    /** Number of counters. */
+    private final int size;
+
+    /** Number of counters per item. */
+    private final int hashes;
+
+    /**
+     * Create a CountingBloomFilter sized for a number of items.
+     *
+     * @param expected expected number of items.
+     * @param fpp false positive probability at expected number of items.
+     * @throws IllegalArgumentException if expected is &lt;= 0 or fpp
+     *         isn't between 0 and 1.
+     */
+    CountingBloomFilter(int expected, double fpp) throws IllegalArgumentException
+    {
+        if (expected <= 0 || fpp <= 0 || fpp >= 1)
+        {
+            throw new IllegalArgumentException("Invalid expected number of items or probability.");
+        }
+
+        long size = (long) Math.ceil(-expected * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.size = (int) Math.min(Math.max(size, 64), Integer.MAX_VALUE - 64);
+        this.hashes = (int) Math.min(Math.max(Math.round((double) this.size / expected * Math.log(2)), 1), 16);
+        this.counters = new AtomicLongArray((this.size + 15) / 16);
+    }
+
+    /**
+     * Add an item.
+     *
+     * @param item item to add.
+     */
+    void add(String item)
+    {
+        long hash = CountingBloomFilter.hash(item);
+        for (int i = 0; i < this.hashes; i++)
+        {
+            this.increment(this.index(hash, i));
+        }
+    }
+
+    /**
+     * Remove an item that was added.
+     *
+     * @param item item to remove.
+     */
+    void remove(String item)
+    {
+        long hash = CountingBloomFilter.hash(item);
+        for (int i = 0; i < this.hashes; i++)
+        {
+            this.decrement(this.index(hash, i));
+        }
+    }
+
+    /**
+     * Check if an item might have been added.
+     *
+     * @param item item to check.
+     * @return False if item definitely wasn't added, true otherwise.
+     */
+    boolean mightContain(String item)
+    {
+        long hash = CountingBloomFilter.hash(item);
+        for (int i = 0; i < this.hashes; i++)
+        {
+            if (this.count(this.index(hash, i)) == 0)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Get value of a counter.
+     *
+     * @param index counter's index.
+     * @return Counter's value.
+     */
+    private int count(int index)
+    {
+        return (int) (this.counters.get(index >>> 4) >>> ((index & 15) << 2)) & MAX_COUNT;
+    }
+
+    /**
+     * Increment a counter, unless it's at its maximum.
+     *
+     * @param index counter's index.
+     */
+    private void increment(int index)
+    {
+        int shift = (index & 15) << 2;
+        long word;
+        do
+        {
+            word = this.counters.get(index >>> 4);
+            if (((word >>> shift) & MAX_COUNT) == MAX_COUNT)
+            {
+                return; // Saturated
+            }
+        }
+        while (!this.counters.compareAndSet(index >>> 4, word, word + (1L << shift)));
+    }
+
+    /**
+     * Decrement a counter, unless it's at 0 or at its maximum.
+     *
+     * @param index counter's index.
+     */
+    private void decrement(int index)
+    {
+        int shift = (index & 15) << 2;
+        long word;
+        do
+        {
+            word = this.counters.get(index >>> 4);
+            long count = (word >>> shift) & MAX_COUNT;
+            if (count == 0 || count == MAX_COUNT)
+            {
+                return; // Empty or saturated
+            }
+        }
+        while (!this.counters.compareAndSet(index >>> 4, word, word - (1L << shift)));
+    }
+
+    /**
+     * Get index of an item's counter, using double hashing.
+     *
+     * @param hash item's hash.
+     * @param i number of the counter.
+     * @return Counter's index.
+     */
+    private int index(long hash, int i)
+    {
+        int combined = (int) hash + i * (int) (hash >>> 32);
+        return Math.floorMod(combined, this.size);
+    }
+
+    /**
+     * Hash an item to 64 bits, using FNV-1a followed by a finalizer
+     * that spreads its bits.
+     *
+     * @param item item to hash.
+     * @return Item's hash.
+     */
+    private static long hash(String item)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < item.length(); i++)
+        {
+            hash ^= item.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
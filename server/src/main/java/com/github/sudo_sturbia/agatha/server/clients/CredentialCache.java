@@ -0,0 +1,255 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CredentialCache remembers credentials that were verified recently,
+ * so that a client sending the same correct password again is verified
+ * without accessing the database.
+ * <p>
+ * Passwords aren't stored. Each entry holds an HMAC of the password,
+ * computed using a random key created when the cache is created, so
+ * entries can't be used to find passwords offline.
+ * <p>
+ * The cache is bounded, and split into segments that are locked
+ * separately, each evicting its least recently used entries. Entries
+ * expire a fixed time after they are added, and must be invalidated
+ * when a user is deleted or its password changes.
+ */
+class CredentialCache
+{
+    /** Default maximum number of entries. */
+    static final int CAPACITY = 10_000;
+
+    /** Default time in milliseconds an entry is kept. */
+    static final long TTL = 5 * 60_000;
+
+    /** Number of segments. */
+    private static final int SEGMENTS = 16;
+
+    /** Algorithm used to digest passwords. */
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /** Time in milliseconds an entry is kept. */
+    private final long ttl;
+
+    /** Cache's segments. */
+    private final Segment[] segments;
+
+    /** Key used to digest passwords. */
+    private final SecretKeySpec key;
+
+    /** MAC of each thread, as Mac objects aren't thread safe. */
+    private final ThreadLocal<Mac> mac;
+
+    /** Number of lookups that found the credentials. */
+    private final LongAdder hits;
+
+    /** Number of lookups that didn't find the credentials. */
+    private final LongAdder misses;
+
+    /**
+     * Create a CredentialCache.
+     *
+     * @param capacity maximum number of entries.
+     * @param ttl time in milliseconds an entry is kept.
+     * @throws IllegalArgumentException if capacity or ttl is &lt;= 0.
+     */
+    CredentialCache(int capacity, long ttl) throws IllegalArgumentException
+    {
+        if (capacity <= 0 || ttl <= 0)
+        {
+            throw new IllegalArgumentException("Invalid capacity or TTL.");
+        }
+
+        this.ttl = ttl;
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++)
+        {
+            this.segments[i] = new Segment(Math.max(1, capacity / SEGMENTS));
+        }
+
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        this.key = new SecretKeySpec(bytes, ALGORITHM);
+
+        this.mac = ThreadLocal.withInitial(() -> {
+            try
+            {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(this.key);
+                return mac;
+            }
+            catch (GeneralSecurityException e)
+            {
+                throw new IllegalStateException(e); // HmacSHA256 is always available
+            }
+        });
+
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    /**
+     * Check if given credentials were verified recently.
+     *
+     * @param dbName name of application's database.
+     * @param username client's username.
+     * @param password client's password.
+     * @return True if credentials are cached, false otherwise.
+     */
+    boolean contains(String dbName, String username, String password)
+    {
+        String key = CredentialCache.key(dbName, username);
+        Entry entry = this.segment(key).get(key);
+
+        boolean hit = entry != null
+                && entry.expires > System.currentTimeMillis()
+                && MessageDigest.isEqual(entry.digest, this.digest(password));
+
+        (hit ? this.hits : this.misses).increment();
+        return hit;
+    }
+
+    /**
+     * Cache verified credentials.
+     *
+     * @param dbName name of application's database.
+     * @param username client's username.
+     * @param password client's password.
+     */
+    void put(String dbName, String username, String password)
+    {
+        String key = CredentialCache.key(dbName, username);
+        this.segment(key).put(key, new Entry(this.digest(password), System.currentTimeMillis() + this.ttl));
+    }
+
+    /**
+     * Remove a user's credentials.
+     *
+     * @param dbName name of application's database.
+     * @param username client's username.
+     */
+    void invalidate(String dbName, String username)
+    {
+        String key = CredentialCache.key(dbName, username);
+        this.segment(key).remove(key);
+    }
+
+    /**
+     * Get number of lookups that found the credentials.
+     *
+     * @return Number of cache hits.
+     */
+    long getHits()
+    {
+        return this.hits.sum();
+    }
+
+    /**
+     * Get number of lookups that didn't find the credentials.
+     *
+     * @return Number of cache misses.
+     */
+    long getMisses()
+    {
+        return this.misses.sum();
+    }
+
+    /**
+     * Digest a password using cache's key.
+     *
+     * @param password password to digest.
+     * @return Password's HMAC.
+     */
+    private byte[] digest(String password)
+    {
+        return this.mac.get().doFinal(password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Get the segment of given key.
+     *
+     * @param key entry's key.
+     * @return Key's segment.
+     */
+    private Segment segment(String key)
+    {
+        return this.segments[Math.floorMod(key.hashCode(), SEGMENTS)];
+    }
+
+    /**
+     * Get key of a user's entry.
+     *
+     * @param dbName name of application's database.
+     * @param username client's username.
+     * @return Entry's key.
+     */
+    private static String key(String dbName, String username)
+    {
+        return dbName + ":" + username;
+    }
+
+    /**
+     * Segment is a part of the cache with its own lock, that evicts
+     * its least recently used entry when full.
+     */
+    private static class Segment
+    {
+        /** Segment's entries, least recently used first. */
+        private final Map<String, Entry> entries;
+
+        private Segment(int capacity)
+        {
+            this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+                {
+                    return this.size() > capacity;
+                }
+            };
+        }
+
+        private synchronized Entry get(String key)
+        {
+            return this.entries.get(key);
+        }
+
+        private synchronized void put(String key, Entry entry)
+        {
+            this.entries.put(key, entry);
+        }
+
+        private synchronized void remove(String key)
+        {
+            this.entries.remove(key);
+        }
+    }
+
+    /**
+     * Entry is a digest of verified password and its expiration time.
+     */
+    private static class Entry
+    {
+        /** Password's HMAC. */
+        private final byte[] digest;
+
+        /** Time in milliseconds at which entry expires. */
+        private final long expires;
+
+        private Entry(byte[] digest, long expires)
+        {
+            this.digest = digest;
+            this.expires = expires;
+        }
+    }
+}
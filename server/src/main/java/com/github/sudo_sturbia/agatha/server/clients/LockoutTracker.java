@@ -0,0 +1,275 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LockoutTracker counts failed logins and locks accounts that fail
+ * too often.
+ * <p>
+ * If a client fails to login (submits an incorrect password) five or
+ * more times the account is subsequently locked for 30 minutes
+ * starting from the last failed attempt. Failed attempts are forgotten
+ * 5 hours after the first one.
+ * <p>
+ * Usernames are split between stripes, each with its own lock, and a
+ * username's count and lock time are only changed while holding its
+ * stripe's lock. Concurrent logins of different users rarely use the
+ * same stripe, so they don't wait for each other. Counts and locks
+ * are expired by timing wheels, driven by one timer thread, so any
+ * number of usernames can be tracked without a thread per username.
+ */
+class LockoutTracker
+{
+    /** Default number of stripes. */
+    static final int STRIPES = 64;
+
+    /** Default number of failed logins after which an account is locked. */
+    static final int MAX_FAILED = 5;
+
+    /** Default time in milliseconds an account is locked for. */
+    static final long LOCK_TIME = 30 * 60000;
+
+    /** Default time in milliseconds failed attempts are counted for. */
+    static final long COUNT_TIME = 5 * 3600000;
+
+    /** Default length of a tick of the timing wheels in milliseconds. */
+    static final long TICK = 1000;
+
+    /** Number of slots of the timing wheels. */
+    private static final int SLOTS = 4096;
+
+    /** Tracker's stripes. */
+    private final Stripe[] stripes;
+
+    /** Number of failed logins after which an account is locked. */
+    private final int maxFailed;
+
+    /** Time in milliseconds an account is locked for. */
+    private final long lockTime;
+
+    /** Time in milliseconds failed attempts are counted for. */
+    private final long countTime;
+
+    /** Clears failed login counts. */
+    private final TimingWheel<String> counts;
+
+    /** Unlocks accounts when their lock time ends. */
+    private final TimingWheel<String> locks;
+
+    /** Advances the timing wheels once every tick. */
+    private final ScheduledExecutorService timer;
+
+    /**
+     * Create a LockoutTracker with default settings.
+     */
+    LockoutTracker()
+    {
+        this(STRIPES, MAX_FAILED, LOCK_TIME, COUNT_TIME, TICK);
+    }
+
+    /**
+     * Create a LockoutTracker.
+     *
+     * @param stripes number of stripes.
+     * @param maxFailed number of failed logins after which an account
+     *                  is locked.
+     * @param lockTime time in milliseconds an account is locked for.
+     * @param countTime time in milliseconds failed attempts are
+     *                  counted for.
+     * @param tick length of a tick of the timing wheels in milliseconds.
+     * @throws IllegalArgumentException if any argument is &lt;= 0.
+     */
+    LockoutTracker(int stripes, int maxFailed, long lockTime, long countTime, long tick) throws IllegalArgumentException
+    {
+        if (stripes <= 0 || maxFailed <= 0 || lockTime <= 0 || countTime <= 0 || tick <= 0)
+        {
+            throw new IllegalArgumentException("Invalid lockout settings.");
+        }
+
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++)
+        {
+            this.stripes[i] = new Stripe();
+        }
+
+        this.maxFailed = maxFailed;
+        this.lockTime = lockTime;
+        this.countTime = countTime;
+        this.counts = new TimingWheel<>(tick, SLOTS, this::clearCount);
+        this.locks = new TimingWheel<>(tick, SLOTS, this::unlock);
+
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LockoutTimer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.scheduleAtFixedRate(
+                () -> {
+                    long now = System.currentTimeMillis();
+                    this.counts.advance(now);
+                    this.locks.advance(now);
+                }, tick, tick, TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Check if an account is locked.
+     *
+     * @param username client's username.
+     * @return True if account is locked, false otherwise.
+     */
+    boolean isLocked(String username)
+    {
+        Stripe stripe = this.stripe(username);
+        synchronized (stripe)
+        {
+            State state = stripe.states.get(username);
+            return state != null
+                    && state.lockedSince != 0
+                    && System.currentTimeMillis() - state.lockedSince < this.lockTime;
+        }
+    }
+
+    /**
+     * Handle client's failure to login. Increments number of
+     * failed attempts for the user. Locks the account if login
+     * attempt failed maxFailed or more times.
+     *
+     * @param username client's username.
+     */
+    void failed(String username)
+    {
+        long now = System.currentTimeMillis();
+        boolean first, locked;
+
+        Stripe stripe = this.stripe(username);
+        synchronized (stripe)
+        {
+            State state = stripe.states.computeIfAbsent(username, key -> new State());
+
+            first = state.failures++ == 0;
+            locked = state.failures >= this.maxFailed && state.lockedSince == 0;
+            if (state.failures >= this.maxFailed)
+            {
+                state.lockedSince = now;
+            }
+        }
+
+        if (first)
+        {
+            this.counts.schedule(username, now + this.countTime);
+        }
+
+        if (locked)
+        {
+            this.locks.schedule(username, now + this.lockTime);
+        }
+    }
+
+    /**
+     * Stop the timer.
+     */
+    void close()
+    {
+        this.timer.shutdownNow();
+    }
+
+    /**
+     * Forget a user's failed attempts. The user is forgotten if
+     * its account isn't locked.
+     *
+     * @param username client's username.
+     */
+    private void clearCount(String username)
+    {
+        Stripe stripe = this.stripe(username);
+        synchronized (stripe)
+        {
+            State state = stripe.states.get(username);
+            if (state == null)
+            {
+                return;
+            }
+
+            state.failures = 0;
+            if (state.lockedSince == 0)
+            {
+                stripe.states.remove(username);
+            }
+        }
+    }
+
+    /**
+     * Unlock an account whose lock time ended. If the account failed
+     * to login again while locked, its lock is extended instead.
+     *
+     * @param username client's username.
+     */
+    private void unlock(String username)
+    {
+        long end;
+
+        Stripe stripe = this.stripe(username);
+        synchronized (stripe)
+        {
+            State state = stripe.states.get(username);
+            if (state == null || state.lockedSince == 0)
+            {
+                return;
+            }
+
+            end = state.lockedSince + this.lockTime;
+            if (end <= System.currentTimeMillis())
+            {
+                state.lockedSince = 0;
+                if (state.failures == 0)
+                {
+                    stripe.states.remove(username);
+                }
+
+                return;
+            }
+        }
+
+        this.locks.schedule(username, end); // Lock was extended
+    }
+
+    /**
+     * Get the stripe of a username.
+     *
+     * @param username client's username.
+     * @return Username's stripe.
+     */
+    private Stripe stripe(String username)
+    {
+        int hash = username.hashCode();
+        return this.stripes[Math.floorMod(hash ^ (hash >>> 16), this.stripes.length)];
+    }
+
+    /**
+     * Stripe is a part of the tracker's users with its own lock.
+     */
+    private static class Stripe
+    {
+        /** Failed login state of stripe's users. */
+        private final Map<String, State> states = new HashMap<>();
+    }
+
+    /**
+     * State is a user's failed logins. Only changed while holding
+     * its stripe's lock.
+     */
+    private static class State
+    {
+        /** Number of failed logins. */
+        private int failures;
+
+        /** Time of last failed login since account was locked, or 0
+         * if account isn't locked. */
+        private long lockedSince;
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+/**
+ * PasswordHasher is a scheme used to hash clients' passwords before
+ * storing them.
+ * <p>
+ * Each scheme produces hashes in its own format, so hashes of all
+ * schemes can be stored in the same table, and a stored hash is
+ * verified using the scheme that produced it. This allows changing
+ * the scheme (or its cost) used for new passwords without breaking
+ * existing ones.
+ * <p>
+ * Two schemes are available: <code>sha256()</code>, a single salted
+ * SHA-256 digest, and <code>pbkdf2(iterations)</code>, PBKDF2 with
+ * HMAC-SHA256 whose cost grows linearly with the number of iterations.
+ */
+public interface PasswordHasher
+{
+    /** Recommended number of PBKDF2 iterations. */
+    int PBKDF2_ITERATIONS = 210_000;
+
+    /**
+     * Hash a password.
+     *
+     * @param password password to hash.
+     * @param salt password's salt.
+     * @return Password's hash, at most 255 characters.
+     */
+    String hash(String password, String salt);
+
+    /**
+     * Check if a stored hash was produced by this scheme.
+     *
+     * @param hash stored hash.
+     * @return True if hash is in this scheme's format, false otherwise.
+     */
+    boolean recognizes(String hash);
+
+    /**
+     * Verify a password against a hash produced by this scheme. The
+     * hash is verified using its own cost, which may be different
+     * from the cost of this hasher.
+     *
+     * @param password password to verify.
+     * @param salt password's salt.
+     * @param hash stored hash.
+     * @return True if password matches hash, false otherwise.
+     */
+    boolean verify(String password, String salt, String hash);
+
+    /**
+     * Get a hasher that uses a single salted SHA-256 digest.
+     *
+     * @return A SHA-256 PasswordHasher.
+     */
+    static PasswordHasher sha256()
+    {
+        return new Sha256Hasher();
+    }
+
+    /**
+     * Get a hasher that uses PBKDF2 with HMAC-SHA256.
+     *
+     * @param iterations number of iterations, the cost of a hash.
+     * @return A PBKDF2 PasswordHasher.
+     * @throws IllegalArgumentException if iterations is &lt;= 0.
+     */
+    static PasswordHasher pbkdf2(int iterations) throws IllegalArgumentException
+    {
+        return new Pbkdf2Hasher(iterations);
+    }
+}
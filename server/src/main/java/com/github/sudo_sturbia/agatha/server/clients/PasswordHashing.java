@@ -0,0 +1,219 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PasswordHashing hashes and verifies passwords on a bounded pool
+ * of threads, one per processor by default.
+ * <p>
+ * Hashing is CPU bound, and with a costly scheme can take a large
+ * part of a second. Running it on its own pool keeps the number of
+ * hashes computed at the same time at the number of processors, so
+ * a burst of logins or sign-ups queues up instead of taking the CPU
+ * from threads that handle other requests. Callers wait for their
+ * hash to finish. When the queue is full, hashing is rejected.
+ * <p>
+ * The latency of each hash, from being submitted to finishing, is
+ * recorded, so the cost of the chosen scheme can be monitored.
+ */
+class PasswordHashing
+{
+    /** Default number of hashing threads. */
+    static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    /** Default maximum number of hashes waiting for a thread. */
+    static final int QUEUE_SIZE = 1024;
+
+    /** Schemes used to verify stored hashes, by format. */
+    private static final PasswordHasher[] SCHEMES = {new Pbkdf2Hasher(PasswordHasher.PBKDF2_ITERATIONS), new Sha256Hasher()};
+
+    /** Hashing threads. */
+    private final ThreadPoolExecutor executor;
+
+    /** Number of finished hashes. */
+    private final LongAdder count;
+
+    /** Total latency of finished hashes in nanoseconds. */
+    private final LongAdder nanos;
+
+    /** Maximum latency of a hash in nanoseconds. */
+    private final LongAccumulator maxNanos;
+
+    /** Number of rejected hashes. */
+    private final LongAdder rejected;
+
+    /**
+     * Create a PasswordHashing.
+     *
+     * @param threads number of hashing threads.
+     * @param queueSize maximum number of hashes waiting for a thread.
+     * @throws IllegalArgumentException if threads or queueSize is &lt;= 0.
+     */
+    PasswordHashing(int threads, int queueSize) throws IllegalArgumentException
+    {
+        if (threads <= 0 || queueSize <= 0)
+        {
+            throw new IllegalArgumentException("Number of threads and queue size must be positive.");
+        }
+
+        AtomicInteger number = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "PasswordHashing-" + number.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        this.count = new LongAdder();
+        this.nanos = new LongAdder();
+        this.maxNanos = new LongAccumulator(Math::max, 0);
+        this.rejected = new LongAdder();
+    }
+
+    /**
+     * Hash a password.
+     *
+     * @param hasher scheme to hash with.
+     * @param password password to hash.
+     * @param salt password's salt.
+     * @return Password's hash.
+     * @throws RejectedExecutionException if too many hashes are waiting,
+     *         or calling thread is interrupted while waiting.
+     */
+    String hash(PasswordHasher hasher, String password, String salt) throws RejectedExecutionException
+    {
+        return this.run(() -> hasher.hash(password, salt));
+    }
+
+    /**
+     * Verify a password against a stored hash, using the scheme that
+     * produced the hash.
+     *
+     * @param password password to verify.
+     * @param salt password's salt.
+     * @param hash stored hash.
+     * @return True if password matches hash, false otherwise or if
+     *         hash's scheme is unknown.
+     * @throws RejectedExecutionException if too many hashes are waiting,
+     *         or calling thread is interrupted while waiting.
+     */
+    boolean verify(String password, String salt, String hash) throws RejectedExecutionException
+    {
+        for (PasswordHasher scheme : SCHEMES)
+        {
+            if (scheme.recognizes(hash))
+            {
+                return this.run(() -> scheme.verify(password, salt, hash));
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Run a hashing task on a hashing thread, and wait for it.
+     *
+     * @param task task to run.
+     * @param <T> task's result type.
+     * @return Task's result.
+     * @throws RejectedExecutionException if too many tasks are waiting,
+     *         or calling thread is interrupted while waiting.
+     */
+    private <T> T run(Callable<T> task) throws RejectedExecutionException
+    {
+        long start = System.nanoTime();
+
+        Future<T> future;
+        try
+        {
+            future = this.executor.submit(task);
+        }
+        catch (RejectedExecutionException e)
+        {
+            this.rejected.increment();
+            throw e;
+        }
+
+        try
+        {
+            T result = future.get();
+
+            long latency = System.nanoTime() - start;
+            this.count.increment();
+            this.nanos.add(latency);
+            this.maxNanos.accumulate(latency);
+
+            return result;
+        }
+        catch (InterruptedException e)
+        {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while hashing.", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException("Hashing failed.", e.getCause());
+        }
+    }
+
+    /**
+     * Get number of finished hashes.
+     *
+     * @return Number of hashes.
+     */
+    long getCount()
+    {
+        return this.count.sum();
+    }
+
+    /**
+     * Get mean latency of finished hashes, including time spent
+     * waiting for a thread.
+     *
+     * @return Mean latency in nanoseconds, or 0 if no hashes finished.
+     */
+    long getMeanNanos()
+    {
+        long count = this.count.sum();
+        return count == 0 ? 0 : this.nanos.sum() / count;
+    }
+
+    /**
+     * Get maximum latency of a finished hash, including time spent
+     * waiting for a thread.
+     *
+     * @return Maximum latency in nanoseconds.
+     */
+    long getMaxNanos()
+    {
+        return this.maxNanos.get();
+    }
+
+    /**
+     * Get number of hashes rejected because the queue was full.
+     *
+     * @return Number of rejected hashes.
+     */
+    long getRejected()
+    {
+        return this.rejected.sum();
+    }
+
+    /**
+     * Stop hashing threads. Hashes that are waiting are cancelled.
+     */
+    void close()
+    {
+        this.executor.shutdownNow();
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import org.apache.commons.codec.binary.Hex;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+/**
+ * Pbkdf2Hasher hashes passwords using PBKDF2 with HMAC-SHA256. The
+ * time needed to hash a password grows linearly with the number of
+ * iterations.
+ * <p>
+ * Hashes are of the form <code>pbkdf2$iterations$hex</code>, where hex
+ * is a 256 bit derived key, so the cost of each hash is stored with it.
+ */
+class Pbkdf2Hasher implements PasswordHasher
+{
+    /** Prefix of all hashes. */
+    private static final String PREFIX = "pbkdf2$";
+
+    /** Length of derived keys in bits. */
+    private static final int KEY_LENGTH = 256;
+
+    /** Number of iterations of new hashes. */
+    private final int iterations;
+
+    /**
+     * Create a Pbkdf2Hasher.
+     *
+     * @param iterations number of iterations of new hashes.
+     * @throws IllegalArgumentException if iterations is &lt;= 0.
+     */
+    Pbkdf2Hasher(int iterations) throws IllegalArgumentException
+    {
+        if (iterations <= 0)
+        {
+            throw new IllegalArgumentException("Number of iterations must be positive.");
+        }
+
+        this.iterations = iterations;
+    }
+
+    @Override
+    public String hash(String password, String salt)
+    {
+        return PREFIX + this.iterations + "$" + Pbkdf2Hasher.derive(password, salt, this.iterations);
+    }
+
+    @Override
+    public boolean recognizes(String hash)
+    {
+        return hash != null && hash.matches("pbkdf2\\$[1-9][0-9]{0,8}\\$[0-9a-f]{64}");
+    }
+
+    @Override
+    public boolean verify(String password, String salt, String hash)
+    {
+        String[] parts = hash.split("\\$");
+        String derived = Pbkdf2Hasher.derive(password, salt, Integer.parseInt(parts[1]));
+
+        return MessageDigest.isEqual(derived.getBytes(StandardCharsets.UTF_8), parts[2].getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Derive a key from a password.
+     *
+     * @param password password to derive key from.
+     * @param salt password's salt.
+     * @param iterations number of iterations.
+     * @return Derived key in hex.
+     */
+    private static String derive(String password, String salt, int iterations)
+    {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt.getBytes(StandardCharsets.UTF_8), iterations, KEY_LENGTH);
+        try
+        {
+            return Hex.encodeHexString(SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded());
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new IllegalStateException("PBKDF2 isn't available.", e); // Required by all Java platforms
+        }
+        finally
+        {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import com.github.sudo_sturbia.agatha.core.Session;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * SessionManager keeps the sessions of logged in clients.
+ * <p>
+ * A client that logs in gets a session token which can be used in
+ * place of its password until the session expires. Verifying a token
+ * is a lookup in an in-memory table, so requests that use a token
+ * neither query the database nor hash a password.
+ * <p>
+ * Tokens are TOKEN_PREFIX followed by base64url characters, and
+ * contain no : or /, so they fit in requests the same as passwords.
+ * Only a secret of exactly that shape is taken for a token. New
+ * passwords can't start with TOKEN_PREFIX, but passwords created
+ * before sessions existed may, and are still verified as passwords.
+ * Sessions are kept only in memory, so they end when the server
+ * stops.
+ */
+public class SessionManager
+{
+    /** Prefix of all tokens. */
+    public static final String TOKEN_PREFIX = "@";
+
+    /** Default time in milliseconds a session lasts. */
+    static final long TTL = 30 * 60_000;
+
+    /** Number of random bytes in a token. */
+    private static final int TOKEN_BYTES = 32;
+
+    /** Shape of a token, TOKEN_BYTES encoded without padding. */
+    private static final Pattern TOKEN = Pattern.compile(
+            Pattern.quote(SessionManager.TOKEN_PREFIX) + "[A-Za-z0-9_-]{" + (SessionManager.TOKEN_BYTES * 4 + 2) / 3 + "}");
+
+    /** Singleton manager instance. */
+    private static final SessionManager manager = new SessionManager(SessionManager.TTL);
+
+    /** Time in milliseconds a session lasts. */
+    private final long ttl;
+
+    /** Sessions by token. */
+    private final Map<String, Entry> sessions;
+
+    /** Time after which expired sessions are removed. */
+    private final AtomicLong nextPurge;
+
+    /** Used to generate tokens. */
+    private final SecureRandom random;
+
+    /**
+     * SessionManager's constructor.
+     *
+     * @param ttl time in milliseconds a session lasts.
+     */
+    SessionManager(long ttl)
+    {
+        this.ttl = ttl;
+        this.sessions = new ConcurrentHashMap<>();
+        this.nextPurge = new AtomicLong(System.currentTimeMillis() + ttl);
+        this.random = new SecureRandom();
+    }
+
+    /**
+     * Get singleton instance of SessionManager.
+     *
+     * @return A singleton SessionManager object.
+     */
+    public static SessionManager get()
+    {
+        return SessionManager.manager;
+    }
+
+    /**
+     * Check if given password has the shape of a session token.
+     *
+     * @param password password to check.
+     * @return True if password is a token, false otherwise.
+     */
+    public static boolean isToken(String password)
+    {
+        return password != null && SessionManager.TOKEN.matcher(password).matches();
+    }
+
+    /**
+     * Create a session for a client whose credentials were verified.
+     *
+     * @param dbName name of application's database.
+     * @param username client's username.
+     * @return The created session.
+     */
+    public Session create(String dbName, String username)
+    {
+        this.purge();
+
+        byte[] bytes = new byte[SessionManager.TOKEN_BYTES];
+        this.random.nextBytes(bytes);
+
+        String token = SessionManager.TOKEN_PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        this.sessions.put(token, new Entry(dbName, username, System.currentTimeMillis() + this.ttl));
+
+        return new Session(token, this.ttl / 1000);
+    }
+
+    /**
+     * Verify that given token belongs to a session of given client
+     * that hasn't expired.
+     *
+     * @param dbName name of application's database.
+     * @param username client's username.
+     * @param token session's token.
+     * @return True if session is valid, false otherwise.
+     */
+    public boolean isValid(String dbName, String username, String token)
+    {
+        Entry entry = this.sessions.get(token);
+        if (entry == null)
+        {
+            return false;
+        }
+        else if (entry.expires < System.currentTimeMillis())
+        {
+            this.sessions.remove(token, entry);
+            return false;
+        }
+
+        return entry.dbName.equals(dbName) && entry.username.equals(username);
+    }
+
+    /**
+     * End all sessions of a client.
+     *
+     * @param dbName name of application's database.
+     * @param username client's username.
+     */
+    public void invalidate(String dbName, String username)
+    {
+        this.sessions.values().removeIf(entry -> entry.dbName.equals(dbName) && entry.username.equals(username));
+    }
+
+    /**
+     * Remove expired sessions. Runs at most once per TTL, so sessions
+     * that are never used again don't stay in memory.
+     */
+    private void purge()
+    {
+        long now = System.currentTimeMillis();
+        long next = this.nextPurge.get();
+        if (now < next || !this.nextPurge.compareAndSet(next, now + this.ttl))
+        {
+            return;
+        }
+
+        this.sessions.values().removeIf(entry -> entry.expires < now);
+    }
+
+    /**
+     * Entry is a session's owner and expiration time.
+     */
+    private static class Entry
+    {
+        /** Name of application's database. */
+        private final String dbName;
+
+        /** Client's username. */
+        private final String username;
+
+        /** Time in milliseconds at which session expires. */
+        private final long expires;
+
+        private Entry(String dbName, String username, long expires)
+        {
+            this.dbName = dbName;
+            this.username = username;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Sha256Hasher hashes passwords using a single SHA-256 digest of the
+ * password followed by its salt. Hashes are 64 hex characters.
+ * <p>
+ * This is the scheme used before hashers could be chosen, it's fast
+ * and so offers little protection if hashes are leaked.
+ */
+class Sha256Hasher implements PasswordHasher
+{
+    @Override
+    public String hash(String password, String salt)
+    {
+        return DigestUtils.sha256Hex(password + salt);
+    }
+
+    @Override
+    public boolean recognizes(String hash)
+    {
+        return hash != null && hash.matches("[0-9a-f]{64}");
+    }
+
+    @Override
+    public boolean verify(String password, String salt, String hash)
+    {
+        return MessageDigest.isEqual(this.hash(password, salt).getBytes(StandardCharsets.UTF_8),
+                hash.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * TimingWheel is a hashed timing wheel that expires keys at given
+ * times without a thread or a timer per key.
+ * <p>
+ * Time is split into ticks, and the wheel has a fixed number of
+ * slots. A key is added to the slot of the first tick that starts at
+ * or after its expiration, which takes constant time, so all of the
+ * slot's keys of the current rotation have expired once the slot is
+ * visited. <code>advance</code> visits the slots
+ * of the ticks that passed since it was last called, expiring the
+ * keys whose time has come. Keys that expire in later rotations of the
+ * wheel stay in their slot. Expiration is precise to one tick.
+ * <p>
+ * The wheel doesn't run by itself, its owner should call
+ * <code>advance</code> once every tick. Keys can be added by any
+ * number of threads, and <code>advance</code> should be called by
+ * one thread at a time.
+ *
+ * @param <K> type of keys.
+ */
+class TimingWheel<K>
+{
+    /** Length of a tick in milliseconds. */
+    private final long tick;
+
+    /** Wheel's slots. */
+    private final Queue<Node<K>>[] slots;
+
+    /** Called with each expired key. */
+    private final Consumer<K> expired;
+
+    /** Last tick visited by advance. */
+    private volatile long current;
+
+    /**
+     * Create a TimingWheel.
+     *
+     * @param tick length of a tick in milliseconds.
+     * @param slots number of slots.
+     * @param expired called with each expired key, on the thread
+     *                calling advance.
+     * @throws IllegalArgumentException if tick or slots is &lt;= 0.
+     */
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tick, int slots, Consumer<K> expired) throws IllegalArgumentException
+    {
+        if (tick <= 0 || slots <= 0)
+        {
+            throw new IllegalArgumentException("Invalid tick or number of slots.");
+        }
+
+        this.tick = tick;
+        this.expired = expired;
+        this.slots = (Queue<Node<K>>[]) new Queue<?>[slots];
+        for (int i = 0; i < slots; i++)
+        {
+            this.slots[i] = new ConcurrentLinkedQueue<>();
+        }
+
+        this.current = System.currentTimeMillis() / tick;
+    }
+
+    /**
+     * Expire given key at given time. A key that is added more than
+     * once expires once for each time it was added.
+     *
+     * @param key key to expire.
+     * @param deadline time in milliseconds at which key expires.
+     */
+    void schedule(K key, long deadline)
+    {
+        // A slot is visited once per rotation, after its tick starts
+        long tick = Math.max(Math.floorDiv(deadline + this.tick - 1, this.tick), this.current + 1);
+        this.slots[(int) Math.floorMod(tick, (long) this.slots.length)].add(new Node<>(key, deadline));
+    }
+
+    /**
+     * Visit the slots of ticks that passed since last call, and expire
+     * keys whose time has come.
+     *
+     * @param now current time in milliseconds.
+     */
+    void advance(long now)
+    {
+        long last = Math.min(now / this.tick, this.current + this.slots.length);
+        for (long tick = this.current + 1; tick <= last; tick++)
+        {
+            Iterator<Node<K>> iterator = this.slots[(int) Math.floorMod(tick, (long) this.slots.length)].iterator();
+            while (iterator.hasNext())
+            {
+                Node<K> node = iterator.next();
+                if (node.deadline <= now)
+                {
+                    iterator.remove();
+                    this.expired.accept(node.key);
+                }
+            }
+        }
+
+        this.current = Math.max(this.current, now / this.tick);
+    }
+
+    /**
+     * Node is a key and the time at which it expires.
+     *
+     * @param <K> type of key.
+     */
+    private static class Node<K>
+    {
+        /** Node's key. */
+        private final K key;
+
+        /** Time in milliseconds at which key expires. */
+        private final long deadline;
+
+        private Node(K key, long deadline)
+        {
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * UsernameFilter keeps the usernames of each database in a
+ * CountingBloomFilter, so that a username that doesn't exist is
+ * known without querying the database.
+ * <p>
+ * A database's filter is loaded once, and is then updated when users
+ * are created or deleted. The filter can give false positives, which
+ * are checked using the database, but never false negatives. Until a
+ * database's filter is loaded, all usernames might exist.
+ * <p>
+ * Usernames are compared ignoring case and trailing spaces, the same
+ * as MySQL's default collation.
+ */
+class UsernameFilter
+{
+    /** Minimum number of usernames a filter is sized for. */
+    private static final int MIN_CAPACITY = 100_000;
+
+    /** False positive probability at a filter's capacity. */
+    private static final double FPP = 0.01;
+
+    /**
+     * Source lists all usernames of a database.
+     */
+    @FunctionalInterface
+    interface Source
+    {
+        /**
+         * Pass each username to given action.
+         *
+         * @param action action to perform on each username.
+         * @throws SQLException in case of a SQL error.
+         */
+        void forEach(Consumer<String> action) throws SQLException;
+    }
+
+    /** Filters by database name. */
+    private final Map<String, Filter> filters;
+
+    /**
+     * Create a UsernameFilter with no loaded databases.
+     */
+    UsernameFilter()
+    {
+        this.filters = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Load a database's usernames, if they weren't loaded before.
+     * Users created while loading are added to the filter.
+     *
+     * @param dbName name of application's database.
+     * @param expected number of existing usernames.
+     * @param source source of existing usernames.
+     * @throws SQLException if usernames can't be listed, in which case
+     *         no filter is used for the database.
+     */
+    void load(String dbName, int expected, Source source) throws SQLException
+    {
+        Filter filter = new Filter(new CountingBloomFilter(Math.max(MIN_CAPACITY, 2 * expected), FPP));
+        if (this.filters.putIfAbsent(dbName, filter) != null)
+        {
+            return; // Already loaded
+        }
+
+        try
+        {
+            source.forEach(username -> filter.usernames.add(UsernameFilter.normalize(username)));
+        }
+        catch (SQLException | RuntimeException e)
+        {
+            this.filters.remove(dbName, filter);
+            throw e;
+        }
+
+        filter.ready = true;
+    }
+
+    /**
+     * Check if a username might exist.
+     *
+     * @param dbName name of application's database.
+     * @param username username to check.
+     * @return False if username definitely doesn't exist, true otherwise.
+     */
+    boolean mightExist(String dbName, String username)
+    {
+        Filter filter = this.filters.get(dbName);
+        return filter == null || !filter.ready || filter.usernames.mightContain(UsernameFilter.normalize(username));
+    }
+
+    /**
+     * Add a username. Should be called before the user is written, so
+     * that the user is never missing from the filter.
+     *
+     * @param dbName name of application's database.
+     * @param username username to add.
+     */
+    void add(String dbName, String username)
+    {
+        Filter filter = this.filters.get(dbName);
+        if (filter != null)
+        {
+            filter.usernames.add(UsernameFilter.normalize(username));
+        }
+    }
+
+    /**
+     * Remove a username that was added, after the user is deleted
+     * or failed to be written. Removals while loading are skipped,
+     * as the username might not have been loaded yet.
+     *
+     * @param dbName name of application's database.
+     * @param username username to remove.
+     */
+    void remove(String dbName, String username)
+    {
+        Filter filter = this.filters.get(dbName);
+        if (filter != null && filter.ready)
+        {
+            filter.usernames.remove(UsernameFilter.normalize(username));
+        }
+    }
+
+    /**
+     * Normalize a username the way the database compares usernames.
+     *
+     * @param username username to normalize.
+     * @return Normalized username.
+     */
+    private static String normalize(String username)
+    {
+        return username.toLowerCase(Locale.ROOT).stripTrailing();
+    }
+
+    /**
+     * Filter is a database's usernames.
+     */
+    private static class Filter
+    {
+        /** Filter of usernames. */
+        private final CountingBloomFilter usernames;
+
+        /** True once existing usernames are loaded. */
+        private volatile boolean ready;
+
+        private Filter(CountingBloomFilter usernames)
+        {
+            this.usernames = usernames;
+        }
+    }
+}
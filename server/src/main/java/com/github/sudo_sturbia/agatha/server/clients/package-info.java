@@ -2,9 +2,11 @@
  * Provides the classes that represent Agatha's client verification
  * system.
  * <p>
- * The sub-system runs parallel to the main thread of the server
- * and is used to verify user credentials, and existence of usernames
+ * The sub-system is used by all request handling threads at the same
+ * time to verify user credentials, and existence of usernames
  * to help avoid conflicts. It also implements a locking mechanism
  * for accounts if the client attempts several failed logins.
+ * SessionManager keeps the sessions of logged in clients. Passwords are
+ * hashed using a PasswordHasher on a bounded pool of threads.
  */
 package com.github.sudo_sturbia.agatha.server.clients;
\ No newline at end of file
@@ -0,0 +1,726 @@
+package com.github.sudo_sturbia.agatha.server.database;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+/**
+ * CachedStatement is a PreparedStatement kept in a StatementCache, to
+ * be reused every time the same SQL is prepared on its connection.
+ * <p>
+ * Closing it returns it to its cache, where its parameters are cleared
+ * and its open ResultSet is closed, instead of closing it. All methods
+ * except <code>close</code>, <code>isClosed</code>, and
+ * <code>getConnection</code> are simple delegations.
+ */
+class CachedStatement implements PreparedStatement
+{
+    /** A prepared statement. */
+    private final PreparedStatement statement;
+
+    /** Cache statement belongs to. */
+    private final StatementCache cache;
+
+    /** SQL of statement. */
+    private final String sql;
+
+    /** Connection statement was last prepared by. */
+    private Connection connection;
+
+    /** True while statement is prepared and not closed. */
+    private boolean inUse;
+
+    /** True if statement was removed from cache while in use. */
+    private boolean evicted;
+
+    /**
+     * CachedStatement's constructor.
+     *
+     * @param statement an instantiated statement object.
+     * @param cache cache statement belongs to.
+     * @param sql SQL of statement.
+     */
+    CachedStatement(PreparedStatement statement, StatementCache cache, String sql)
+    {
+        this.statement = statement;
+        this.cache = cache;
+        this.sql = sql;
+    }
+
+    /**
+     * Get SQL of statement.
+     *
+     * @return Statement's SQL.
+     */
+    String getSql()
+    {
+        return this.sql;
+    }
+
+    /**
+     * Get statement that is cached.
+     *
+     * @return The cached PreparedStatement.
+     */
+    PreparedStatement getStatement()
+    {
+        return this.statement;
+    }
+
+    /**
+     * Check if statement is in use. Guarded by cache.
+     *
+     * @return True if statement is in use.
+     */
+    boolean isInUse()
+    {
+        return this.inUse;
+    }
+
+    /**
+     * Mark statement as in use or not in use. Guarded by cache.
+     *
+     * @param inUse true if statement is in use.
+     * @param connection connection statement is used by.
+     */
+    void setInUse(boolean inUse, Connection connection)
+    {
+        this.inUse = inUse;
+        this.connection = connection;
+    }
+
+    /**
+     * Check if statement was evicted while in use. Guarded by cache.
+     *
+     * @return True if statement was evicted.
+     */
+    boolean isEvicted()
+    {
+        return this.evicted;
+    }
+
+    /**
+     * Mark statement as evicted while in use. Guarded by cache.
+     */
+    void setEvicted()
+    {
+        this.evicted = true;
+    }
+
+    @Override
+    public void close() throws SQLException
+    {
+        this.cache.release(this);
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException
+    {
+        synchronized (this.cache)
+        {
+            return !this.inUse || this.statement.isClosed();
+        }
+    }
+
+    @Override
+    public boolean execute() throws SQLException
+    {
+        return this.statement.execute();
+    }
+
+    @Override
+    public void setBoolean(int i, boolean b) throws SQLException
+    {
+        this.statement.setBoolean(i, b);
+    }
+
+    @Override
+    public void setByte(int i, byte b) throws SQLException
+    {
+        this.statement.setByte(i, b);
+    }
+
+    @Override
+    public void setShort(int i, short i1) throws SQLException
+    {
+        this.statement.setShort(i, i1);
+    }
+
+    @Override
+    public void setInt(int i, int i1) throws SQLException
+    {
+        this.statement.setInt(i, i1);
+    }
+
+    @Override
+    public void setLong(int i, long l) throws SQLException
+    {
+        this.statement.setLong(i, l);
+    }
+
+    @Override
+    public void setFloat(int i, float v) throws SQLException
+    {
+        this.statement.setFloat(i, v);
+    }
+
+    @Override
+    public void setDouble(int i, double v) throws SQLException
+    {
+        this.statement.setDouble(i, v);
+    }
+
+    @Override
+    public void setURL(int i, URL url) throws SQLException
+    {
+        this.statement.setURL(i, url);
+    }
+
+    @Override
+    public void setArray(int i, Array array) throws SQLException
+    {
+        this.statement.setArray(i, array);
+    }
+
+    @Override
+    public void setTime(int i, Time time, Calendar calendar) throws SQLException
+    {
+        this.statement.setTime(i, time, calendar);
+    }
+
+    @Override
+    public void setTime(int i, Time time) throws SQLException
+    {
+        this.statement.setTime(i, time);
+    }
+
+    @Override
+    public void setDate(int i, Date date, Calendar calendar) throws SQLException
+    {
+        this.statement.setDate(i, date, calendar);
+    }
+
+    @Override
+    public void setDate(int i, Date date) throws SQLException
+    {
+        this.statement.setDate(i, date);
+    }
+
+    @Override
+    public ResultSet executeQuery() throws SQLException
+    {
+        return this.statement.executeQuery();
+    }
+
+    @Override
+    public int executeUpdate() throws SQLException
+    {
+        return this.statement.executeUpdate();
+    }
+
+    @Override
+    public void setNull(int i, int i1) throws SQLException
+    {
+        this.statement.setNull(i, i1);
+    }
+
+    @Override
+    public void setNull(int i, int i1, String s) throws SQLException
+    {
+        this.statement.setNull(i, i1, s);
+    }
+
+    @Override
+    public void setBigDecimal(int i, BigDecimal bigDecimal) throws SQLException
+    {
+        this.statement.setBigDecimal(i, bigDecimal);
+    }
+
+    @Override
+    public void setString(int i, String s) throws SQLException
+    {
+        this.statement.setString(i, s);
+    }
+
+    @Override
+    public void setBytes(int i, byte[] bytes) throws SQLException
+    {
+        this.statement.setBytes(i, bytes);
+    }
+
+    @Override
+    public void setTimestamp(int i, Timestamp timestamp, Calendar calendar) throws SQLException
+    {
+        this.statement.setTimestamp(i, timestamp, calendar);
+    }
+
+    @Override
+    public void setTimestamp(int i, Timestamp timestamp) throws SQLException
+    {
+        this.statement.setTimestamp(i, timestamp);
+    }
+
+    @Override
+    public void setAsciiStream(int i, InputStream inputStream) throws SQLException
+    {
+        this.statement.setAsciiStream(i, inputStream);
+    }
+
+    @Override
+    public void setAsciiStream(int i, InputStream inputStream, int i1) throws SQLException
+    {
+        this.statement.setAsciiStream(i, inputStream, i1);
+    }
+
+    @Override
+    public void setAsciiStream(int i, InputStream inputStream, long l) throws SQLException
+    {
+        this.statement.setAsciiStream(i, inputStream, l);
+    }
+
+    @Override
+    @Deprecated
+    public void setUnicodeStream(int i, InputStream inputStream, int i1) throws SQLException
+    {
+        this.statement.setUnicodeStream(i, inputStream, i1);
+    }
+
+    @Override
+    public void setBinaryStream(int i, InputStream inputStream) throws SQLException
+    {
+        this.statement.setBinaryStream(i, inputStream);
+    }
+
+    @Override
+    public void setBinaryStream(int i, InputStream inputStream, long l) throws SQLException
+    {
+        this.statement.setBinaryStream(i, inputStream, l);
+    }
+
+    @Override
+    public void setBinaryStream(int i, InputStream inputStream, int i1) throws SQLException
+    {
+        this.statement.setBinaryStream(i, inputStream, i1);
+    }
+
+    @Override
+    public void clearParameters() throws SQLException
+    {
+        this.statement.clearParameters();
+    }
+
+    @Override
+    public void setObject(int i, Object o) throws SQLException
+    {
+        this.statement.setObject(i, o);
+    }
+
+    @Override
+    public void setObject(int i, Object o, int i1, int i2) throws SQLException
+    {
+        this.statement.setObject(i, o, i1, i2);
+    }
+
+    @Override
+    public void setObject(int i, Object o, int i1) throws SQLException
+    {
+        this.statement.setObject(i, o, i1);
+    }
+
+    @Override
+    public void addBatch() throws SQLException
+    {
+        this.statement.addBatch();
+    }
+
+    @Override
+    public void setCharacterStream(int i, Reader reader, int i1) throws SQLException
+    {
+        this.statement.setCharacterStream(i, reader, i1);
+    }
+
+    @Override
+    public void setCharacterStream(int i, Reader reader) throws SQLException
+    {
+        this.statement.setCharacterStream(i, reader);
+    }
+
+    @Override
+    public void setCharacterStream(int i, Reader reader, long l) throws SQLException
+    {
+        this.statement.setCharacterStream(i, reader, l);
+    }
+
+    @Override
+    public void setRef(int i, Ref ref) throws SQLException
+    {
+        this.statement.setRef(i, ref);
+    }
+
+    @Override
+    public void setBlob(int i, Blob blob) throws SQLException
+    {
+        this.statement.setBlob(i, blob);
+    }
+
+    @Override
+    public void setBlob(int i, InputStream inputStream) throws SQLException
+    {
+        this.statement.setBlob(i, inputStream);
+    }
+
+    @Override
+    public void setBlob(int i, InputStream inputStream, long l) throws SQLException
+    {
+        this.statement.setBlob(i, inputStream, l);
+    }
+
+    @Override
+    public void setClob(int i, Clob clob) throws SQLException
+    {
+        this.statement.setClob(i, clob);
+    }
+
+    @Override
+    public void setClob(int i, Reader reader, long l) throws SQLException
+    {
+        this.statement.setClob(i, reader, l);
+    }
+
+    @Override
+    public void setClob(int i, Reader reader) throws SQLException
+    {
+        this.statement.setClob(i, reader);
+    }
+
+    @Override
+    public ResultSetMetaData getMetaData() throws SQLException
+    {
+        return this.statement.getMetaData();
+    }
+
+    @Override
+    public ParameterMetaData getParameterMetaData() throws SQLException
+    {
+        return this.statement.getParameterMetaData();
+    }
+
+    @Override
+    public void setRowId(int i, RowId rowId) throws SQLException
+    {
+        this.statement.setRowId(i, rowId);
+    }
+
+    @Override
+    public void setNString(int i, String s) throws SQLException
+    {
+        this.statement.setNString(i, s);
+    }
+
+    @Override
+    public void setNCharacterStream(int i, Reader reader) throws SQLException
+    {
+        this.statement.setNCharacterStream(i, reader);
+    }
+
+    @Override
+    public void setNCharacterStream(int i, Reader reader, long l) throws SQLException
+    {
+        this.statement.setNCharacterStream(i, reader, l);
+    }
+
+    @Override
+    public void setNClob(int i, Reader reader, long l) throws SQLException
+    {
+        this.statement.setNClob(i, reader, l);
+    }
+
+    @Override
+    public void setNClob(int i, Reader reader) throws SQLException
+    {
+        this.statement.setNClob(i, reader);
+    }
+
+    @Override
+    public void setNClob(int i, NClob nClob) throws SQLException
+    {
+        this.statement.setNClob(i, nClob);
+    }
+
+    @Override
+    public void setSQLXML(int i, SQLXML sqlxml) throws SQLException
+    {
+        this.statement.setSQLXML(i, sqlxml);
+    }
+
+    @Override
+    public boolean execute(String s, int i) throws SQLException
+    {
+        return this.statement.execute(s, i);
+    }
+
+    @Override
+    public boolean execute(String s, int[] ints) throws SQLException
+    {
+        return this.statement.execute(s, ints);
+    }
+
+    @Override
+    public boolean execute(String s, String[] strings) throws SQLException
+    {
+        return this.statement.execute(s, strings);
+    }
+
+    @Override
+    public boolean execute(String s) throws SQLException
+    {
+        return this.statement.execute(s);
+    }
+
+    @Override
+    public void cancel() throws SQLException
+    {
+        this.statement.cancel();
+    }
+
+    @Override
+    public ResultSet executeQuery(String s) throws SQLException
+    {
+        return this.statement.executeQuery(s);
+    }
+
+    @Override
+    public int executeUpdate(String s, int i) throws SQLException
+    {
+        return this.statement.executeUpdate(s, i);
+    }
+
+    @Override
+    public int executeUpdate(String s, int[] ints) throws SQLException
+    {
+        return this.statement.executeUpdate(s, ints);
+    }
+
+    @Override
+    public int executeUpdate(String s) throws SQLException
+    {
+        return this.statement.executeUpdate(s);
+    }
+
+    @Override
+    public int executeUpdate(String s, String[] strings) throws SQLException
+    {
+        return this.statement.executeUpdate(s, strings);
+    }
+
+    @Override
+    public void addBatch(String s) throws SQLException
+    {
+        this.statement.addBatch(s);
+    }
+
+    @Override
+    public int getMaxFieldSize() throws SQLException
+    {
+        return this.statement.getMaxFieldSize();
+    }
+
+    @Override
+    public void setMaxFieldSize(int i) throws SQLException
+    {
+        this.statement.setMaxFieldSize(i);
+    }
+
+    @Override
+    public int getMaxRows() throws SQLException
+    {
+        return this.statement.getMaxRows();
+    }
+
+    @Override
+    public void setMaxRows(int i) throws SQLException
+    {
+        this.statement.setMaxRows(i);
+    }
+
+    @Override
+    public void setEscapeProcessing(boolean b) throws SQLException
+    {
+        this.statement.setEscapeProcessing(b);
+    }
+
+    @Override
+    public int getQueryTimeout() throws SQLException
+    {
+        return this.statement.getQueryTimeout();
+    }
+
+    @Override
+    public void setQueryTimeout(int i) throws SQLException
+    {
+        this.statement.setQueryTimeout(i);
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException
+    {
+        return this.statement.getWarnings();
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException
+    {
+        this.statement.clearWarnings();
+    }
+
+    @Override
+    public void setCursorName(String s) throws SQLException
+    {
+        this.statement.setCursorName(s);
+    }
+
+    @Override
+    public ResultSet getResultSet() throws SQLException
+    {
+        return this.statement.getResultSet();
+    }
+
+    @Override
+    public int getUpdateCount() throws SQLException
+    {
+        return this.statement.getUpdateCount();
+    }
+
+    @Override
+    public boolean getMoreResults(int i) throws SQLException
+    {
+        return this.statement.getMoreResults(i);
+    }
+
+    @Override
+    public boolean getMoreResults() throws SQLException
+    {
+        return this.statement.getMoreResults();
+    }
+
+    @Override
+    public void setFetchDirection(int i) throws SQLException
+    {
+        this.statement.setFetchDirection(i);
+    }
+
+    @Override
+    public int getFetchDirection() throws SQLException
+    {
+        return this.statement.getFetchDirection();
+    }
+
+    @Override
+    public void setFetchSize(int i) throws SQLException
+    {
+        this.statement.setFetchSize(i);
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException
+    {
+        return this.statement.getFetchSize();
+    }
+
+    @Override
+    public int getResultSetConcurrency() throws SQLException
+    {
+        return this.statement.getResultSetConcurrency();
+    }
+
+    @Override
+    public int getResultSetType() throws SQLException
+    {
+        return this.statement.getResultSetType();
+    }
+
+    @Override
+    public void clearBatch() throws SQLException
+    {
+        this.statement.clearBatch();
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException
+    {
+        return this.statement.executeBatch();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException
+    {
+        return this.connection;
+    }
+
+    @Override
+    public ResultSet getGeneratedKeys() throws SQLException
+    {
+        return this.statement.getGeneratedKeys();
+    }
+
+    @Override
+    public int getResultSetHoldability() throws SQLException
+    {
+        return this.statement.getResultSetHoldability();
+    }
+
+    @Override
+    public void setPoolable(boolean b) throws SQLException
+    {
+        this.statement.setPoolable(b);
+    }
+
+    @Override
+    public boolean isPoolable() throws SQLException
+    {
+        return this.statement.isPoolable();
+    }
+
+    @Override
+    public void closeOnCompletion() throws SQLException
+    {
+        this.statement.closeOnCompletion();
+    }
+
+    @Override
+    public boolean isCloseOnCompletion() throws SQLException
+    {
+        return this.statement.isCloseOnCompletion();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> aClass) throws SQLException
+    {
+        return this.statement.unwrap(aClass);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> aClass) throws SQLException
+    {
+        return this.statement.isWrapperFor(aClass);
+    }
+}
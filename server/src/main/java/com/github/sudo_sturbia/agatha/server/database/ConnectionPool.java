@@ -4,87 +4,664 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * ConnectionPool is an implementation of Connector that provides
- * a dynamic pool of connections.
+ * a bounded pool of connections.
+ * <p>
+ * At most <code>maxSize</code> connections are open at any time. A
+ * thread that asks for a connection while all of them are in use
+ * waits until one is returned, threads are served in the order they
+ * started waiting. If no connection is returned within the timeout, a
+ * ConnectionTimeoutException is thrown, which requests report as a
+ * server busy response.
+ * <p>
+ * Idle connections are kept in a lock-free deque, used as a stack by
+ * requests, so the most recently used connection is reused first. Connections are opened when needed,
+ * beyond a minimum number of idle connections kept open.
+ * <p>
+ * A background housekeeper periodically checks idle connections,
+ * so that connections dropped by the database server (for example
+ * after MySQL's <code>wait_timeout</code>) are never given to a
+ * request. It closes connections that
+ * <ul>
+ *     <li>fail <code>Connection.isValid</code>,</li>
+ *     <li>have been open longer than the maximum lifetime,</li>
+ *     <li>have been idle longer than the maximum idle time, as long as
+ *     the minimum number of idle connections stays open,</li>
+ * </ul>
+ * and then opens connections until the minimum number is idle.
+ * Connections are checked one at a time, each holding one permit, so
+ * a slow validation keeps at most one connection from requests. A
+ * connection that outlives its maximum lifetime while in use is closed
+ * when it's returned.
+ * <p>
+ * Each connection has a StatementCache, so statements prepared again
+ * on the same connection are reused.
+ * <p>
+ * A connection that isn't returned within the leak threshold is
+ * reported once, as it is most likely never closed. Capturing a stack
+ * trace is too slow to do for every connection, so one in TRACE_SAMPLE
+ * connections is taken with a trace, which is printed if it leaks.
+ * A leak threshold of zero disables leak detection.
  */
 public class ConnectionPool implements Connector
 {
-    /** Username for database server (MySQL). */
-    private final String dbServerUsername;
+    /** Default maximum number of open connections. */
+    static final int MAX_SIZE = 32;
 
-    /** Password for database server (MySQL). */
-    private final String dbServerPass;
+    /** Default minimum number of idle connections. */
+    static final int MIN_IDLE = 16;
 
-    /** Connections' pool. */
-    private final List<Connection> pool;
+    /** Default time in milliseconds to wait for a connection. */
+    static final long TIMEOUT = 5000;
+
+    /** Default time in milliseconds after which a connection is leaked. */
+    static final long LEAK_THRESHOLD = 60_000;
+
+    /** One in this many connections is taken with a stack trace. */
+    static final int TRACE_SAMPLE = 64;
+
+    /** Default time in milliseconds after which an idle connection is closed. */
+    static final long MAX_IDLE = 10 * 60_000;
+
+    /** Default time in milliseconds after which a connection is closed. */
+    static final long MAX_LIFETIME = 30 * 60_000;
+
+    /** Default time in milliseconds between housekeeping runs. */
+    static final long HOUSEKEEPING = 30_000;
+
+    /** Time in seconds to wait for a connection to be validated. */
+    private static final int VALIDATION_TIMEOUT = 5;
 
     /**
-     * DriverConnector's constructor.
+     * Source opens new physical connections.
+     */
+    @FunctionalInterface
+    interface Source
+    {
+        /**
+         * Open a new connection.
+         *
+         * @return A new Connection object.
+         * @throws SQLException in case of a SQL error.
+         */
+        Connection open() throws SQLException;
+    }
+
+    /** Source of new connections. */
+    private final Source source;
+
+    /** Minimum number of idle connections. */
+    private final int minIdle;
+
+    /** Time in milliseconds to wait for a connection. */
+    private final long timeout;
+
+    /** Time in milliseconds after which a connection is leaked. */
+    private final long leakThreshold;
+
+    /** Time in milliseconds after which an idle connection is closed. */
+    private final long maxIdle;
+
+    /** Time in milliseconds after which a connection is closed. */
+    private final long maxLifetime;
+
+    /** Permits to use a connection, one per connection that can be open. */
+    private final Semaphore permits;
+
+    /** Idle connections, most recently used first. */
+    private final Deque<Pooled> idle;
+
+    /** Number of idle connections. */
+    private final AtomicInteger idleCount;
+
+    /** Connections in use. */
+    private final Map<Connection, Lease> leases;
+
+    /** Number of times a connection wasn't available in time. */
+    private final LongAdder timeouts;
+
+    /** Number of leaked connections. */
+    private final LongAdder leaks;
+
+    /** Number of connections closed by housekeeper or when returned. */
+    private final LongAdder evictions;
+
+    /** Number of prepared statements reused. */
+    private final LongAdder statementHits;
+
+    /** Number of statements prepared. */
+    private final LongAdder statementMisses;
+
+    /** Checks idle connections and connections in use. */
+    private final ScheduledExecutorService housekeeper;
+
+    /** True once pool is cleaned. */
+    private volatile boolean closed;
+
+    /**
+     * ConnectionPool's constructor.
      *
-     * @param dbServerUsername username for database server (MySQL.)
-     * @param dbServerPass password for database server (MySQL.)
+     * @param url JDBC URL of database server.
+     * @param info JDBC driver properties, including credentials.
      */
-    ConnectionPool(String dbServerUsername, String dbServerPass)
+    ConnectionPool(String url, Properties info)
     {
-        this.dbServerUsername = dbServerUsername;
-        this.dbServerPass = dbServerPass;
-        this.pool = new ArrayList<>();
+        this(() -> DriverManager.getConnection(url, info),
+                MAX_SIZE, MIN_IDLE, TIMEOUT, LEAK_THRESHOLD, MAX_IDLE, MAX_LIFETIME, HOUSEKEEPING);
     }
 
-    @Override
-    public void setup() throws SQLException
+    /**
+     * ConnectionPool's constructor.
+     *
+     * @param source source of new connections.
+     * @param maxSize maximum number of open connections.
+     * @param minIdle minimum number of idle connections.
+     * @param timeout time in milliseconds to wait for a connection.
+     * @param leakThreshold time in milliseconds after which a connection
+     *        that wasn't returned is reported as leaked, zero to disable
+     *        leak detection.
+     * @param maxIdle time in milliseconds after which an idle
+     *        connection is closed.
+     * @param maxLifetime time in milliseconds after which a connection
+     *        is closed.
+     * @param housekeeping time in milliseconds between housekeeping runs.
+     * @throws IllegalArgumentException if maxSize or any time is &lt;= 0,
+     *         or minIdle or leakThreshold is negative.
+     */
+    ConnectionPool(Source source, int maxSize, int minIdle, long timeout, long leakThreshold,
+                   long maxIdle, long maxLifetime, long housekeeping) throws IllegalArgumentException
     {
-        final int INITIAL_CAPACITY = 16;
-        for (int i = 0; i < INITIAL_CAPACITY; i++)
+        if (maxSize <= 0 || minIdle < 0 || timeout <= 0 || leakThreshold < 0
+                || maxIdle <= 0 || maxLifetime <= 0 || housekeeping <= 0)
         {
-            this.pool.add(DriverManager.getConnection("jdbc:mysql://localhost:3306/",
-                            this.dbServerUsername, this.dbServerPass));
+            throw new IllegalArgumentException("Invalid pool size or time.");
         }
+
+        this.source = source;
+        this.minIdle = Math.min(minIdle, maxSize);
+        this.timeout = timeout;
+        this.leakThreshold = leakThreshold;
+        this.maxIdle = maxIdle;
+        this.maxLifetime = maxLifetime;
+        this.permits = new Semaphore(maxSize, true);
+        this.idle = new ConcurrentLinkedDeque<>();
+        this.idleCount = new AtomicInteger();
+        this.leases = new ConcurrentHashMap<>();
+        this.timeouts = new LongAdder();
+        this.leaks = new LongAdder();
+        this.evictions = new LongAdder();
+        this.statementHits = new LongAdder();
+        this.statementMisses = new LongAdder();
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ConnectionPool-Housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep, housekeeping, housekeeping, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void setup() throws SQLException
+    {
+        this.fill();
     }
 
+    /**
+     * Get a database connection, waiting for one to be returned if
+     * all connections are in use.
+     *
+     * @return A Connection object connected to application's database.
+     * @throws SQLException in case of a SQL error, if pool is cleaned,
+     *         or if thread is interrupted while waiting.
+     * @throws ConnectionTimeoutException if no connection is available
+     *         within the timeout.
+     */
     @Override
-    public Connection connection() throws SQLException
+    public Connection connection() throws SQLException, ConnectionTimeoutException
     {
-        if (!this.pool.isEmpty())
+        if (this.closed)
         {
-            return new CustomConnection(this.pool.remove(this.pool.size() - 1));
+            throw new SQLException("Connection pool is closed.");
         }
 
-        return new CustomConnection(
-                DriverManager.getConnection("jdbc:mysql://localhost:3306/",
-                        this.dbServerUsername, this.dbServerPass)
-        );
-    }
+        try
+        {
+            if (!this.permits.tryAcquire(this.timeout, TimeUnit.MILLISECONDS))
+            {
+                this.timeouts.increment();
+                throw new ConnectionTimeoutException("No connection available within " + this.timeout + "ms.");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection.", e);
+        }
+
+        Pooled pooled;
+        try
+        {
+            pooled = this.pop();
+            if (pooled == null)
+            {
+                pooled = this.open();
+            }
+        }
+        catch (SQLException | RuntimeException e)
+        {
+            this.permits.release();
+            throw e;
+        }
 
+        // Tracing only the sampled leases keeps the stack walk off most requests
+        boolean trace = this.leakThreshold > 0 && ThreadLocalRandom.current().nextInt(TRACE_SAMPLE) == 0;
+        this.leases.put(pooled.connection, new Lease(pooled, trace));
+        return new CustomConnection(pooled.connection, this, pooled.statements);
+    }
 
     @Override
     public void close(Connection connection) throws SQLException
     {
-        final int MAX_CAPACITY = 32;
-        if (this.pool.size() < MAX_CAPACITY)
+        Lease lease = this.leases.remove(connection);
+        if (lease == null)
+        {
+            return; // Not in use
+        }
+
+        try
         {
-            this.pool.add(connection);
+            long now = System.currentTimeMillis();
+            if (this.closed || connection.isClosed())
+            {
+                connection.close();
+            }
+            else if (now - lease.pooled.created > this.maxLifetime)
+            {
+                this.evictions.increment();
+                connection.close();
+            }
+            else
+            {
+                lease.pooled.lastUsed = now;
+                this.push(lease.pooled);
+            }
         }
-        else
+        finally
         {
-            connection.close();
+            this.permits.release();
         }
     }
 
     @Override
     public void clean()
     {
-        for (Connection connection : this.pool)
+        this.closed = true;
+        this.housekeeper.shutdownNow();
+
+        Pooled pooled;
+        while ((pooled = this.pop()) != null)
         {
-            try {
-                connection.close();
+            ConnectionPool.closeQuietly(pooled.connection);
+        }
+    }
+
+    /**
+     * Get number of connections in use.
+     *
+     * @return Number of connections in use.
+     */
+    public int getActive()
+    {
+        return this.leases.size();
+    }
+
+    /**
+     * Get number of idle connections.
+     *
+     * @return Number of idle connections.
+     */
+    public int getIdle()
+    {
+        return this.idleCount.get();
+    }
+
+    /**
+     * Get number of threads waiting for a connection.
+     *
+     * @return Estimated number of waiting threads.
+     */
+    public int getWaiting()
+    {
+        return this.permits.getQueueLength();
+    }
+
+    /**
+     * Get number of times a connection wasn't available in time.
+     *
+     * @return Number of timeouts.
+     */
+    public long getTimeouts()
+    {
+        return this.timeouts.sum();
+    }
+
+    /**
+     * Get number of connections reported as leaked.
+     *
+     * @return Number of leaked connections.
+     */
+    public long getLeaks()
+    {
+        return this.leaks.sum();
+    }
+
+    /**
+     * Get number of connections closed for being invalid, idle for
+     * too long, or open for too long.
+     *
+     * @return Number of evicted connections.
+     */
+    public long getEvictions()
+    {
+        return this.evictions.sum();
+    }
+
+    /**
+     * Get number of statements that were reused instead of prepared.
+     *
+     * @return Number of statement cache hits.
+     */
+    public long getStatementHits()
+    {
+        return this.statementHits.sum();
+    }
+
+    /**
+     * Get number of statements that were prepared.
+     *
+     * @return Number of statement cache misses.
+     */
+    public long getStatementMisses()
+    {
+        return this.statementMisses.sum();
+    }
+
+    /**
+     * Open a new connection.
+     *
+     * @return The new connection.
+     * @throws SQLException in case of a SQL error.
+     */
+    private Pooled open() throws SQLException
+    {
+        Connection connection = this.source.open();
+        return new Pooled(connection,
+                new StatementCache(connection, StatementCache.CAPACITY, this.statementHits, this.statementMisses));
+    }
+
+    /**
+     * Push a connection on top of the idle connections.
+     *
+     * @param pooled idle connection.
+     */
+    private void push(Pooled pooled)
+    {
+        this.idle.offerFirst(pooled);
+        this.idleCount.incrementAndGet();
+    }
+
+    /**
+     * Pop the most recently used idle connection.
+     *
+     * @return An idle connection, or null if there are none.
+     */
+    private Pooled pop()
+    {
+        Pooled pooled = this.idle.pollFirst();
+        if (pooled != null)
+        {
+            this.idleCount.decrementAndGet();
+        }
+
+        return pooled;
+    }
+
+    /**
+     * Take a given idle connection.
+     *
+     * @param pooled connection to take.
+     * @return True if connection was taken, false if it isn't idle.
+     */
+    private boolean take(Pooled pooled)
+    {
+        if (!this.idle.removeFirstOccurrence(pooled))
+        {
+            return false;
+        }
+
+        this.idleCount.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Open connections until the minimum number is idle, or the
+     * maximum number is open.
+     *
+     * @throws SQLException in case of a SQL error.
+     */
+    private void fill() throws SQLException
+    {
+        // A permit is held while opening, so the maximum isn't exceeded
+        while (!this.closed && this.idleCount.get() < this.minIdle && this.permits.tryAcquire())
+        {
+            try
+            {
+                this.push(this.open());
+            }
+            finally
+            {
+                this.permits.release();
+            }
+        }
+    }
+
+    /**
+     * Check idle connections, close those that are invalid or too old,
+     * and open connections until the minimum number is idle. Also
+     * report leaked connections.
+     */
+    private void housekeep()
+    {
+        // Least recently used first
+        List<Pooled> snapshot = new ArrayList<>();
+        this.idle.descendingIterator().forEachRemaining(snapshot::add);
+
+        for (Pooled pooled : snapshot)
+        {
+            // Holding a permit, so requests never get a connection that
+            // is being checked, and the maximum isn't exceeded
+            if (!this.permits.tryAcquire())
+            {
+                break; // All connections are in use
+            }
+
+            try
+            {
+                if (!this.take(pooled))
+                {
+                    continue; // Taken by a request
+                }
+
+                long now = System.currentTimeMillis();
+                boolean evict = now - pooled.created > this.maxLifetime
+                        || (now - pooled.lastUsed > this.maxIdle && this.idleCount.get() >= this.minIdle)
+                        || !ConnectionPool.isValid(pooled.connection);
+
+                if (evict)
+                {
+                    this.evictions.increment();
+                    ConnectionPool.closeQuietly(pooled.connection);
+                }
+                else
+                {
+                    // Wasn't used, so stays below used connections
+                    this.idle.offerLast(pooled);
+                    this.idleCount.incrementAndGet();
+                }
+            }
+            finally
+            {
+                this.permits.release();
             }
-            catch (SQLException e) {
-                // Ignore
+        }
+
+        try
+        {
+            this.fill();
+        }
+        catch (SQLException | RuntimeException e)
+        {
+            // Retried on next run
+        }
+
+        this.detectLeaks();
+    }
+
+    /**
+     * Check if a connection is still usable.
+     *
+     * @param connection connection to check.
+     * @return True if connection is valid, false otherwise.
+     */
+    private static boolean isValid(Connection connection)
+    {
+        try
+        {
+            return connection.isValid(VALIDATION_TIMEOUT);
+        }
+        catch (SQLException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Close a connection, ignoring errors.
+     *
+     * @param connection connection to close.
+     */
+    private static void closeQuietly(Connection connection)
+    {
+        try {
+            connection.close();
+        }
+        catch (SQLException e) {
+            // Ignore
+        }
+    }
+
+    /**
+     * Report connections that have been in use longer than the leak
+     * threshold. Each connection is reported once.
+     */
+    private void detectLeaks()
+    {
+        if (this.leakThreshold == 0)
+        {
+            return; // Disabled
+        }
+
+        long now = System.currentTimeMillis();
+        for (Lease lease : this.leases.values())
+        {
+            if (!lease.reported && now - lease.since > this.leakThreshold)
+            {
+                lease.reported = true;
+                this.leaks.increment();
+
+                StringBuilder message = new StringBuilder("Connection taken by " + lease.thread + " wasn't returned for "
+                        + (now - lease.since) + "ms, possible leak.");
+                if (lease.trace != null)
+                {
+                    for (StackTraceElement element : lease.trace.getStackTrace())
+                    {
+                        message.append(System.lineSeparator()).append("\tat ").append(element);
+                    }
+                }
+
+                System.err.println(message);
             }
         }
     }
+
+    /**
+     * Pooled is a physical connection, its statements, and its age.
+     */
+    private static class Pooled
+    {
+        /** Physical connection. */
+        private final Connection connection;
+
+        /** Connection's prepared statements. */
+        private final StatementCache statements;
+
+        /** Time in milliseconds at which connection was opened. */
+        private final long created;
+
+        /** Time in milliseconds at which connection was last returned. */
+        private volatile long lastUsed;
+
+        private Pooled(Connection connection, StatementCache statements)
+        {
+            this.connection = connection;
+            this.statements = statements;
+            this.created = System.currentTimeMillis();
+            this.lastUsed = this.created;
+        }
+    }
+
+    /**
+     * Lease is the use of a connection by a thread.
+     */
+    private static class Lease
+    {
+        /** Connection in use. */
+        private final Pooled pooled;
+
+        /** Time in milliseconds at which connection was taken. */
+        private final long since;
+
+        /** Name of thread that took connection. */
+        private final String thread;
+
+        /** Where connection was taken, null if lease wasn't sampled. */
+        private final Throwable trace;
+
+        /** True once lease is reported as leaked. */
+        private volatile boolean reported;
+
+        private Lease(Pooled pooled, boolean trace)
+        {
+            this.pooled = pooled;
+            this.since = System.currentTimeMillis();
+            this.thread = Thread.currentThread().getName();
+            this.trace = trace ? new Throwable() : null;
+        }
+    }
 }
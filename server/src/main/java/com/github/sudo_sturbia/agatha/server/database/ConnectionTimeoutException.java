@@ -0,0 +1,25 @@
+package com.github.sudo_sturbia.agatha.server.database;
+
+/**
+ * ConnectionTimeoutException is thrown by a Connector when no database
+ * connection becomes available in time.
+ * <p>
+ * It's unchecked, so it passes through request handlers (which
+ * treat SQLExceptions as failed operations) and is reported to
+ * the client as a server busy response.
+ */
+public class ConnectionTimeoutException extends RuntimeException
+{
+    /** Version of serialized form. */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Construct a ConnectionTimeoutException with a given message.
+     *
+     * @param message detail message.
+     */
+    public ConnectionTimeoutException(String message)
+    {
+        super(message);
+    }
+}
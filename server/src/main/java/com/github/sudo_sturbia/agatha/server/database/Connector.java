@@ -9,6 +9,11 @@ import java.sql.SQLException;
  * The interface is meant to not be too specific so that it
  * can be implemented in different ways e.g. a connection pool or
  * a simple wrapper around DriverManager.getConnection.
+ * <p>
+ * Reads of a client's data that may be served by a read replica
+ * use <code>readConnection</code>, and writes of a client's data are
+ * reported using <code>written</code>, so a connector with replicas
+ * can send the client's next reads to the primary server.
  */
 public interface Connector
 {
@@ -24,8 +29,38 @@ public interface Connector
      *
      * @return A Connection object connected to application's database.
      * @throws SQLException in case of a SQL error.
+     * @throws ConnectionTimeoutException if connector limits the number
+     *         of connections, and none became available in time.
+     */
+    public Connection connection() throws SQLException, ConnectionTimeoutException;
+
+    /**
+     * Get a database connection to only read a client's data. The
+     * connection may be to a read replica, and by default is the same
+     * as <code>connection()</code>.
+     *
+     * @param dbName name of application's database.
+     * @param username client's username.
+     * @return A Connection object connected to application's database.
+     * @throws SQLException in case of a SQL error.
+     * @throws ConnectionTimeoutException if connector limits the number
+     *         of connections, and none became available in time.
+     */
+    default Connection readConnection(String dbName, String username) throws SQLException, ConnectionTimeoutException
+    {
+        return this.connection();
+    }
+
+    /**
+     * Report that a client's data was written. Does nothing by default.
+     *
+     * @param dbName name of application's database.
+     * @param username client's username.
      */
-    public Connection connection() throws SQLException;
+    default void written(String dbName, String username)
+    {
+        // No replicas
+    }
 
     /**
      * Close or return a database connection.
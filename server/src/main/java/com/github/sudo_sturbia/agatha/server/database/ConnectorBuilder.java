@@ -1,5 +1,10 @@
 package com.github.sudo_sturbia.agatha.server.database;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
 /**
  * ConnectorBuilder handles the creation of a Connector object
  * and insures that only one Connector exists at any time.
@@ -12,12 +17,16 @@ public class ConnectorBuilder
         NORMAL, POOL
     }
 
+    /** Default JDBC URL of database server. */
+    public static final String DEFAULT_URL = "jdbc:mysql://localhost:3306/";
+
     /** Database connector. */
     private static Connector connector;
 
     /**
-     * Create a singleton connector object with specified fields.
-     * Should be called only once.
+     * Create a singleton connector object with specified fields,
+     * connecting to a local database server using default driver
+     * properties. Should be called only once.
      *
      * @param type type of connector.
      * @param dbServerUsername username for database server (MySQL).
@@ -27,6 +36,59 @@ public class ConnectorBuilder
      */
     public static void setup(ConnectorType type, String dbServerUsername, String dbServerPass)
             throws IllegalArgumentException, IllegalStateException
+    {
+        ConnectorBuilder.setup(type, DEFAULT_URL, dbServerUsername, dbServerPass, Map.of());
+    }
+
+    /**
+     * Create a singleton connector object with specified fields.
+     * Should be called only once.
+     * <p>
+     * URL shouldn't name a database, as all queries name the database
+     * they use. Properties are passed to the JDBC driver along with
+     * the credentials, for example <code>rewriteBatchedStatements</code>
+     * or <code>useServerPrepStmts</code>, and can also be given in URL.
+     *
+     * @param type type of connector.
+     * @param url JDBC URL of database server.
+     * @param dbServerUsername username for database server (MySQL).
+     * @param dbServerPass password for database server (MySQL).
+     * @param properties JDBC driver properties.
+     * @throws IllegalArgumentException if any given argument is null,
+     *         or URL isn't a JDBC URL.
+     * @throws IllegalStateException if method was called before.
+     */
+    public static void setup(ConnectorType type, String url, String dbServerUsername, String dbServerPass,
+                             Map<String, String> properties) throws IllegalArgumentException, IllegalStateException
+    {
+        ConnectorBuilder.setup(type, url, List.of(), ReplicatedConnector.Routing.LEAST_LOADED,
+                dbServerUsername, dbServerPass, properties);
+    }
+
+    /**
+     * Create a singleton connector object with specified fields, that
+     * reads clients' data from given read replicas. Should be called
+     * only once.
+     * <p>
+     * Each server, primary or replica, gets its own connector of given
+     * type. Replicas use the same credentials and properties as the
+     * primary. If no replicas are given, the connector is the same as
+     * one created without replicas.
+     *
+     * @param type type of connector.
+     * @param url JDBC URL of primary database server.
+     * @param replicaUrls JDBC URLs of read replicas.
+     * @param routing how replicas are chosen.
+     * @param dbServerUsername username for database server (MySQL).
+     * @param dbServerPass password for database server (MySQL).
+     * @param properties JDBC driver properties.
+     * @throws IllegalArgumentException if any given argument is null,
+     *         or a URL isn't a JDBC URL.
+     * @throws IllegalStateException if method was called before.
+     */
+    public static void setup(ConnectorType type, String url, List<String> replicaUrls,
+                             ReplicatedConnector.Routing routing, String dbServerUsername, String dbServerPass,
+                             Map<String, String> properties) throws IllegalArgumentException, IllegalStateException
     {
         // If method was called before
         if (connector != null)
@@ -46,10 +108,61 @@ public class ConnectorBuilder
         {
             throw new IllegalArgumentException("Database server password is not given.");
         }
+        else if (url == null || !url.startsWith("jdbc:"))
+        {
+            throw new IllegalArgumentException("Database server URL is not a JDBC URL.");
+        }
+        else if (properties == null)
+        {
+            throw new IllegalArgumentException("JDBC properties are not given.");
+        }
+        else if (replicaUrls == null || routing == null)
+        {
+            throw new IllegalArgumentException("Replicas or routing is not given.");
+        }
 
-        connector = type == ConnectorType.POOL ?
-                new ConnectionPool(dbServerUsername, dbServerPass) :
-                new DriverConnector(dbServerUsername, dbServerPass);
+        for (String replicaUrl : replicaUrls)
+        {
+            if (replicaUrl == null || !replicaUrl.startsWith("jdbc:"))
+            {
+                throw new IllegalArgumentException("Replica URL is not a JDBC URL.");
+            }
+        }
+
+        Properties info = new Properties();
+        info.putAll(properties);
+        info.setProperty("user", dbServerUsername);
+        info.setProperty("password", dbServerPass);
+
+        if (replicaUrls.isEmpty())
+        {
+            connector = ConnectorBuilder.create(type, url, info);
+            return;
+        }
+
+        List<Connector> replicas = new ArrayList<>();
+        for (String replicaUrl : replicaUrls)
+        {
+            replicas.add(ConnectorBuilder.create(type, replicaUrl, info));
+        }
+
+        connector = new ReplicatedConnector(ConnectorBuilder.create(type, url, info), replicas, routing,
+                ReplicatedConnector.WINDOW);
+    }
+
+    /**
+     * Create a connector of one database server.
+     *
+     * @param type type of connector.
+     * @param url JDBC URL of database server.
+     * @param info JDBC driver properties, including credentials.
+     * @return A Connector object.
+     */
+    private static Connector create(ConnectorType type, String url, Properties info)
+    {
+        return type == ConnectorType.POOL ?
+                new ConnectionPool(url, info) :
+                new DriverConnector(url, info);
     }
 
     /**
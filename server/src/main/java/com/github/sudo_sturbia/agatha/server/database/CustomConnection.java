@@ -18,25 +18,54 @@ import java.sql.Struct;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * CustomConnection is a wrapper around Connection object to be used
  * by a Connector. Its purpose is to facilitate closing of connections.
  * <p>
- * All methods except <code>close</code> are simple delegations.
+ * All methods except <code>close</code>, <code>isClosed</code>, and
+ * <code>prepareStatement(String)</code> are simple delegations.
+ * Closing returns the connection to its Connector only the first time,
+ * so a connection closed twice isn't returned twice. If connection has
+ * a StatementCache, statements are prepared using the cache.
  */
 public class CustomConnection implements Connection
 {
     /** A database connection. */
     private final Connection connection;
 
+    /** Connector to return connection to, null for ConnectorBuilder's. */
+    private final Connector connector;
+
+    /** Cache of connection's statements, null if not cached. */
+    private final StatementCache statements;
+
+    /** True once connection is closed. */
+    private final AtomicBoolean closed;
+
     /**
-     * PoolConnection's constructor.
+     * PoolConnection's constructor. Connection is returned to
+     * ConnectorBuilder's connector when closed.
      *
      * @param connection an instantiated connection object.
      * @throws IllegalArgumentException if connection is null.
      */
     public CustomConnection(final Connection connection) throws IllegalArgumentException
+    {
+        this(connection, null, null);
+    }
+
+    /**
+     * PoolConnection's constructor.
+     *
+     * @param connection an instantiated connection object.
+     * @param connector connector to return connection to when closed.
+     * @param statements cache of connection's statements, or null.
+     * @throws IllegalArgumentException if connection is null.
+     */
+    CustomConnection(final Connection connection, final Connector connector, final StatementCache statements)
+            throws IllegalArgumentException
     {
         if (connection == null)
         {
@@ -44,13 +73,21 @@ public class CustomConnection implements Connection
         }
 
         this.connection = connection;
+        this.connector = connector;
+        this.statements = statements;
+        this.closed = new AtomicBoolean();
     }
 
     @Override
     public void close() throws SQLException
     {
+        if (!this.closed.compareAndSet(false, true))
+        {
+            return; // Already returned
+        }
+
         // Return connection without a wrapper
-        ConnectorBuilder.connector().close(this.connection);
+        (this.connector != null ? this.connector : ConnectorBuilder.connector()).close(this.connection);
     }
 
     @Override
@@ -62,7 +99,7 @@ public class CustomConnection implements Connection
     @Override
     public PreparedStatement prepareStatement(String s) throws SQLException
     {
-        return this.connection.prepareStatement(s);
+        return this.statements != null ? this.statements.prepare(s, this) : this.connection.prepareStatement(s);
     }
 
     @Override
@@ -104,7 +141,7 @@ public class CustomConnection implements Connection
     @Override
     public boolean isClosed() throws SQLException
     {
-        return this.connection.isClosed();
+        return this.closed.get() || this.connection.isClosed();
     }
 
     @Override
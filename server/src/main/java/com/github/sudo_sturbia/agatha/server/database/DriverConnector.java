@@ -3,6 +3,7 @@ package com.github.sudo_sturbia.agatha.server.database;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Properties;
 
 /**
  * DriverConnector is a wrapper around DriverManager to use
@@ -10,22 +11,22 @@ import java.sql.SQLException;
  */
 public class DriverConnector implements Connector
 {
-    /** Username for database server (MySQL). */
-    private final String dbServerUsername;
+    /** JDBC URL of database server. */
+    private final String url;
 
-    /** Password for database server (MySQL). */
-    private final String dbServerPass;
+    /** JDBC driver properties, including credentials. */
+    private final Properties info;
 
     /**
      * DriverConnector's constructor.
      *
-     * @param dbServerUsername username for database server (MySQL.)
-     * @param dbServerPass password for database server (MySQL.)
+     * @param url JDBC URL of database server.
+     * @param info JDBC driver properties, including credentials.
      */
-    DriverConnector(String dbServerUsername, String dbServerPass)
+    DriverConnector(String url, Properties info)
     {
-        this.dbServerUsername = dbServerUsername;
-        this.dbServerPass = dbServerPass;
+        this.url = url;
+        this.info = info;
     }
 
     @Override
@@ -39,8 +40,9 @@ public class DriverConnector implements Connector
     {
         // Return a CustomConnection
         return new CustomConnection(
-                DriverManager.getConnection("jdbc:mysql://localhost:3306/",
-                        this.dbServerUsername, this.dbServerPass)
+                DriverManager.getConnection(this.url, this.info),
+                this,
+                null
         );
     }
 
@@ -0,0 +1,334 @@
+package com.github.sudo_sturbia.agatha.server.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ReplicatedConnector is an implementation of Connector that routes
+ * connections between one primary database server and its read
+ * replicas, each having its own Connector (usually a pool.)
+ * <p>
+ * <code>connection()</code> always returns a primary connection, so
+ * writes, transactions, and setup use the primary. Reads that ask for
+ * a connection using <code>readConnection</code> are spread over the
+ * replicas, either round-robin or to the replica with the fewest
+ * connections in use.
+ * <p>
+ * As replicas lag behind the primary, a client whose data was written
+ * within the read-your-writes window reads from the primary, so a
+ * client never reads its old data right after changing it. If a
+ * replica can't give a connection, the read falls back to the primary.
+ */
+public class ReplicatedConnector implements Connector
+{
+    /** Available ways of choosing a replica. */
+    public enum Routing
+    {
+        ROUND_ROBIN, LEAST_LOADED
+    }
+
+    /** Default time in milliseconds a client reads from primary after a write. */
+    static final long WINDOW = 5000;
+
+    /** Connector of primary server. */
+    private final Connector primary;
+
+    /** Replicas of primary server. */
+    private final List<Replica> replicas;
+
+    /** How replicas are chosen. */
+    private final Routing routing;
+
+    /** Time in milliseconds a client reads from primary after a write. */
+    private final long window;
+
+    /** Time until which each client reads from primary, by client. */
+    private final Map<String, Long> written;
+
+    /** Replica connections in use, by connection. */
+    private final Map<Connection, Replica> leases;
+
+    /** Index of next replica in round-robin order. */
+    private final AtomicInteger next;
+
+    /** Time after which expired windows are removed. */
+    private final AtomicLong nextPurge;
+
+    /** Number of reads served by primary because of a recent write. */
+    private final LongAdder primaryReads;
+
+    /** Number of reads served by primary because no replica was available. */
+    private final LongAdder fallbacks;
+
+    /**
+     * ReplicatedConnector's constructor.
+     *
+     * @param primary connector of primary server.
+     * @param replicas connectors of replica servers.
+     * @param routing how replicas are chosen.
+     * @param window time in milliseconds a client reads from primary
+     *        after a write.
+     * @throws IllegalArgumentException if any argument is null, there are
+     *         no replicas, or window is negative.
+     */
+    ReplicatedConnector(Connector primary, List<Connector> replicas, Routing routing, long window)
+            throws IllegalArgumentException
+    {
+        if (primary == null || replicas == null || replicas.isEmpty() || routing == null)
+        {
+            throw new IllegalArgumentException("Primary, replicas, or routing is not given.");
+        }
+        else if (window < 0)
+        {
+            throw new IllegalArgumentException("Read-your-writes window is negative.");
+        }
+
+        this.primary = primary;
+        this.replicas = new ArrayList<>();
+        for (Connector replica : replicas)
+        {
+            this.replicas.add(new Replica(replica));
+        }
+
+        this.routing = routing;
+        this.window = window;
+        this.written = new ConcurrentHashMap<>();
+        this.leases = new ConcurrentHashMap<>();
+        this.next = new AtomicInteger();
+        this.nextPurge = new AtomicLong(System.currentTimeMillis() + window);
+        this.primaryReads = new LongAdder();
+        this.fallbacks = new LongAdder();
+    }
+
+    @Override
+    public void setup() throws SQLException
+    {
+        this.primary.setup();
+        for (Replica replica : this.replicas)
+        {
+            replica.connector.setup();
+        }
+    }
+
+    @Override
+    public Connection connection() throws SQLException, ConnectionTimeoutException
+    {
+        return this.primary.connection();
+    }
+
+    /**
+     * Get a connection to read a client's data. Connection is to a
+     * replica, unless client's data was written within the
+     * read-your-writes window, or no replica is available.
+     *
+     * @param dbName name of application's database.
+     * @param username client's username.
+     * @return A Connection object connected to application's database.
+     * @throws SQLException in case of a SQL error.
+     * @throws ConnectionTimeoutException if no connection is available in time.
+     */
+    @Override
+    public Connection readConnection(String dbName, String username) throws SQLException, ConnectionTimeoutException
+    {
+        long now = System.currentTimeMillis();
+        this.purge(now);
+
+        String key = ReplicatedConnector.key(dbName, username);
+        Long until = this.written.get(key);
+        if (until != null && until >= now)
+        {
+            this.primaryReads.increment();
+            return this.primary.connection();
+        }
+        else if (until != null)
+        {
+            this.written.remove(key, until);
+        }
+
+        Replica replica = this.choose();
+        Connection connection;
+        try
+        {
+            connection = replica.connector.connection();
+        }
+        catch (SQLException | ConnectionTimeoutException e)
+        {
+            // Replica is down or busy
+            this.fallbacks.increment();
+            return this.primary.connection();
+        }
+
+        replica.active.incrementAndGet();
+        replica.reads.increment();
+        this.leases.put(connection, replica);
+        return new CustomConnection(connection, this, null);
+    }
+
+    @Override
+    public void written(String dbName, String username)
+    {
+        this.written.put(ReplicatedConnector.key(dbName, username), System.currentTimeMillis() + this.window);
+    }
+
+    /**
+     * Return a connection. Replica connections are returned to their
+     * replica's connector, all others to primary's.
+     *
+     * @param connection database connection to close.
+     * @throws SQLException in case of a SQL error.
+     */
+    @Override
+    public void close(Connection connection) throws SQLException
+    {
+        Replica replica = this.leases.remove(connection);
+        if (replica == null)
+        {
+            this.primary.close(connection);
+            return;
+        }
+
+        try
+        {
+            connection.close(); // Returned to replica's connector
+        }
+        finally
+        {
+            replica.active.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void clean()
+    {
+        this.primary.clean();
+        for (Replica replica : this.replicas)
+        {
+            replica.connector.clean();
+        }
+    }
+
+    /**
+     * Get number of reads served by each replica.
+     *
+     * @return Number of reads of each replica, in order.
+     */
+    public long[] getReplicaReads()
+    {
+        long[] reads = new long[this.replicas.size()];
+        for (int i = 0; i < reads.length; i++)
+        {
+            reads[i] = this.replicas.get(i).reads.sum();
+        }
+
+        return reads;
+    }
+
+    /**
+     * Get number of reads served by primary because client's data was
+     * written within the read-your-writes window.
+     *
+     * @return Number of reads from primary.
+     */
+    public long getPrimaryReads()
+    {
+        return this.primaryReads.sum();
+    }
+
+    /**
+     * Get number of reads served by primary because a replica couldn't
+     * give a connection.
+     *
+     * @return Number of fallbacks to primary.
+     */
+    public long getFallbacks()
+    {
+        return this.fallbacks.sum();
+    }
+
+    /**
+     * Choose a replica to read from.
+     *
+     * @return The chosen replica.
+     */
+    private Replica choose()
+    {
+        int start = Math.floorMod(this.next.getAndIncrement(), this.replicas.size());
+        if (this.routing == Routing.ROUND_ROBIN)
+        {
+            return this.replicas.get(start);
+        }
+
+        // Ties go to the next replica in round-robin order
+        Replica chosen = null;
+        for (int i = 0; i < this.replicas.size(); i++)
+        {
+            Replica replica = this.replicas.get((start + i) % this.replicas.size());
+            if (chosen == null || replica.active.get() < chosen.active.get())
+            {
+                chosen = replica;
+            }
+        }
+
+        return chosen;
+    }
+
+    /**
+     * Remove expired read-your-writes windows. Runs at most once per
+     * window, so windows of clients that don't read again don't stay
+     * in memory.
+     *
+     * @param now current time in milliseconds.
+     */
+    private void purge(long now)
+    {
+        long next = this.nextPurge.get();
+        if (now < next || !this.nextPurge.compareAndSet(next, now + Math.max(this.window, 1000)))
+        {
+            return;
+        }
+
+        this.written.values().removeIf(until -> until < now);
+    }
+
+    /**
+     * Get key of a client's read-your-writes window.
+     *
+     * @param dbName name of application's database.
+     * @param username client's username.
+     * @return Client's key.
+     */
+    private static String key(String dbName, String username)
+    {
+        return dbName + "." + username.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Replica is a replica server's connector and its load.
+     */
+    private static class Replica
+    {
+        /** Connector of replica server. */
+        private final Connector connector;
+
+        /** Number of connections in use. */
+        private final AtomicInteger active;
+
+        /** Number of reads served. */
+        private final LongAdder reads;
+
+        private Replica(Connector connector)
+        {
+            this.connector = connector;
+            this.active = new AtomicInteger();
+            this.reads = new LongAdder();
+        }
+    }
+}
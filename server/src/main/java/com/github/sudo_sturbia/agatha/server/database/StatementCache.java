@@ -0,0 +1,186 @@
+package com.github.sudo_sturbia.agatha.server.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * StatementCache keeps the prepared statements of one physical
+ * connection, so that preparing the same SQL again reuses the
+ * statement instead of parsing the SQL again.
+ * <p>
+ * Statements are keyed by their SQL text. The least recently used
+ * statement is closed when the cache is full. A statement is given
+ * to one user at a time, preparing SQL whose statement is in use
+ * (which happens only if a statement is prepared twice before being
+ * closed) returns a new statement that isn't cached.
+ * <p>
+ * Hits and misses are counted in counters that can be shared by
+ * the caches of all connections of a pool.
+ */
+class StatementCache
+{
+    /** Default maximum number of statements per connection. */
+    static final int CAPACITY = 256;
+
+    /** Physical connection statements are prepared on. */
+    private final Connection connection;
+
+    /** Statements by SQL, in access order. Guarded by this. */
+    private final Map<String, CachedStatement> statements;
+
+    /** Number of prepares that reused a statement. */
+    private final LongAdder hits;
+
+    /** Number of prepares that prepared a new statement. */
+    private final LongAdder misses;
+
+    /**
+     * Create a StatementCache.
+     *
+     * @param connection physical connection to prepare statements on.
+     * @param capacity maximum number of statements.
+     * @param hits counter of prepares that reused a statement.
+     * @param misses counter of prepares that prepared a new statement.
+     * @throws IllegalArgumentException if capacity is &lt;= 0.
+     */
+    StatementCache(Connection connection, int capacity, LongAdder hits, LongAdder misses) throws IllegalArgumentException
+    {
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+
+        this.connection = connection;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest)
+            {
+                if (this.size() <= capacity)
+                {
+                    return false;
+                }
+
+                StatementCache.this.evict(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Prepare a statement, reusing a cached statement with the same
+     * SQL if one isn't in use.
+     *
+     * @param sql statement's SQL.
+     * @param owner connection that statement is prepared by.
+     * @return A PreparedStatement that is returned to cache when closed.
+     * @throws SQLException in case of a SQL error.
+     */
+    PreparedStatement prepare(String sql, Connection owner) throws SQLException
+    {
+        synchronized (this)
+        {
+            CachedStatement cached = this.statements.get(sql);
+            if (cached != null && !cached.isInUse())
+            {
+                this.hits.increment();
+                cached.setInUse(true, owner);
+                return cached;
+            }
+            else if (cached != null)
+            {
+                this.misses.increment();
+                return this.connection.prepareStatement(sql); // Not cached
+            }
+        }
+
+        this.misses.increment();
+        CachedStatement cached = new CachedStatement(this.connection.prepareStatement(sql), this, sql);
+        synchronized (this)
+        {
+            cached.setInUse(true, owner);
+            this.statements.putIfAbsent(sql, cached);
+        }
+
+        return cached;
+    }
+
+    /**
+     * Return a statement to cache. Its parameters are cleared and its
+     * open ResultSet is closed, a statement that can't be reset is
+     * closed and removed.
+     *
+     * @param cached statement to return.
+     * @throws SQLException if statement was evicted and can't be closed.
+     */
+    void release(CachedStatement cached) throws SQLException
+    {
+        boolean reset = true;
+        try
+        {
+            PreparedStatement statement = cached.getStatement();
+            ResultSet set = statement.getResultSet();
+            if (set != null)
+            {
+                set.close();
+            }
+
+            statement.clearParameters();
+            statement.clearBatch();
+        }
+        catch (SQLException e)
+        {
+            reset = false;
+        }
+
+        boolean close;
+        synchronized (this)
+        {
+            if (!cached.isInUse())
+            {
+                return; // Already released
+            }
+
+            cached.setInUse(false, null);
+            close = cached.isEvicted() || !reset || this.statements.get(cached.getSql()) != cached;
+            if (close)
+            {
+                this.statements.remove(cached.getSql(), cached);
+            }
+        }
+
+        if (close)
+        {
+            cached.getStatement().close();
+        }
+    }
+
+    /**
+     * Close a statement removed from cache, or mark it to be closed
+     * when it's released if it's in use. Called with lock held.
+     *
+     * @param cached removed statement.
+     */
+    private void evict(CachedStatement cached)
+    {
+        if (cached.isInUse())
+        {
+            cached.setEvicted();
+            return;
+        }
+
+        try {
+            cached.getStatement().close();
+        }
+        catch (SQLException e) {
+            // Ignore
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.github.sudo_sturbia.agatha.server.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transaction runs a group of database operations on one connection
+ * and commits or rolls them back together.
+ * <p>
+ * While a transaction runs, its connection is bound to the running
+ * thread, and <code>Transaction.connection()</code> returns it to any
+ * code on that thread, so request handlers join the transaction
+ * without being changed. Outside of a transaction,
+ * <code>Transaction.connection()</code> is the same as
+ * <code>ConnectorBuilder.connector().connection()</code>.
+ * <p>
+ * Actions given to <code>Transaction.whenDone()</code> run after the
+ * transaction is committed or rolled back, so that caches are updated
+ * only once changes are visible to other connections.
+ * <p>
+ * Note that MySQL commits implicitly before and after statements that
+ * change the structure of tables (CREATE, ALTER, DROP), so only
+ * changes to rows are rolled back.
+ */
+public class Transaction
+{
+    /** Connection of the transaction running on each thread. */
+    private static final ThreadLocal<Connection> current = new ThreadLocal<>();
+
+    /** Actions to run when the transaction running on each thread ends. */
+    private static final ThreadLocal<List<Runnable>> done = new ThreadLocal<>();
+
+    /**
+     * Body is a group of operations run in a transaction.
+     */
+    @FunctionalInterface
+    public interface Body
+    {
+        /**
+         * Run transaction's operations.
+         *
+         * @return True if operations should be committed, false if
+         *         they should be rolled back.
+         * @throws SQLException in case of a SQL error.
+         */
+        boolean run() throws SQLException;
+    }
+
+    /** Private constructor. */
+    private Transaction()
+    {
+    }
+
+    /**
+     * Run given body in a transaction. If a transaction is already
+     * running on current thread, body joins it, and it's committed
+     * or rolled back with the transaction.
+     *
+     * @param body operations to run.
+     * @return True if body was committed, false if it was rolled back.
+     * @throws SQLException in case of a SQL error, body is rolled back.
+     */
+    public static boolean run(Body body) throws SQLException
+    {
+        if (Transaction.current.get() != null)
+        {
+            return body.run();
+        }
+
+        try (Connection connection = ConnectorBuilder.connector().connection())
+        {
+            connection.setAutoCommit(false);
+            Transaction.current.set(connection);
+            Transaction.done.set(new ArrayList<>());
+            try
+            {
+                boolean commit = body.run();
+                if (commit)
+                {
+                    connection.commit();
+                }
+                else
+                {
+                    connection.rollback();
+                }
+
+                return commit;
+            }
+            catch (SQLException | RuntimeException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                List<Runnable> actions = Transaction.done.get();
+                Transaction.current.remove();
+                Transaction.done.remove();
+
+                // Connection must be restored before it's returned, even if an action fails
+                try
+                {
+                    connection.setAutoCommit(true);
+                }
+                finally
+                {
+                    Transaction.runAll(actions);
+                }
+            }
+        }
+    }
+
+    /**
+     * Run actions of an ended transaction. An action that throws
+     * doesn't stop the ones after it.
+     *
+     * @param actions actions to run.
+     */
+    private static void runAll(List<Runnable> actions)
+    {
+        for (Runnable action : actions)
+        {
+            try
+            {
+                action.run();
+            }
+            catch (RuntimeException e)
+            {
+                System.err.println(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Run given action when the transaction running on current thread
+     * is committed or rolled back, or now if no transaction is running.
+     *
+     * @param action action to run.
+     */
+    public static void whenDone(Runnable action)
+    {
+        List<Runnable> actions = Transaction.done.get();
+        if (actions != null)
+        {
+            actions.add(action);
+        }
+        else
+        {
+            action.run();
+        }
+    }
+
+    /**
+     * Get a database connection. If a transaction is running on current
+     * thread, its connection is returned, and closing it doesn't end
+     * the transaction.
+     *
+     * @return A Connection object connected to application's database.
+     * @throws SQLException in case of a SQL error.
+     */
+    public static Connection connection() throws SQLException
+    {
+        Connection connection = Transaction.current.get();
+        return connection != null ?
+                new JoinedConnection(connection) :
+                ConnectorBuilder.connector().connection();
+    }
+
+    /**
+     * JoinedConnection is a transaction's connection used by an
+     * operation in the transaction. Closing it does nothing, the
+     * connection is closed when the transaction ends.
+     */
+    private static class JoinedConnection extends CustomConnection
+    {
+        private JoinedConnection(Connection connection)
+        {
+            super(connection);
+        }
+
+        @Override
+        public void close()
+        {
+            // Closed by transaction
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.github.sudo_sturbia.agatha.server.request;
+
+import com.github.sudo_sturbia.agatha.core.ExecutionState;
+import com.github.sudo_sturbia.agatha.server.clients.Credentials;
+import com.github.sudo_sturbia.agatha.server.database.Transaction;
+import com.github.sudo_sturbia.agatha.server.storage.Storage;
+import com.github.sudo_sturbia.agatha.server.storage.StorageBuilder;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Batch handles client's BATCH requests. BATCH is used to perform
+ * multiple CREATE, UPDATE, and DELETE operations with one request.
+ * <p>
+ * A BATCH request is of the form
+ * <pre>
+ *     BATCH username:password/["FUNCTION /object", ...]
+ * </pre>
+ * where each element of the JSON array is a CREATE, UPDATE, or DELETE
+ * request without credentials, for example
+ * <code>"UPDATE /l/labelName/add/b/bookName"</code>. Operations on
+ * users themselves (with no object) aren't allowed.
+ * <p>
+ * Credentials are verified once for all operations. Operations are
+ * performed in order, and stop at the first operation that fails.
+ * <p>
+ * If the storage is transactional, operations are performed in one
+ * database transaction. If all operations succeed, they are committed,
+ * otherwise all of them are rolled back. Otherwise, as MySQL commits
+ * before creating or dropping tables, each operation is committed when
+ * it's performed, and operations before a failed one aren't undone.
+ * <p>
+ * Response is a JSON array of ExecutionState objects, one for each
+ * operation. If an operation fails, it keeps its own ExecutionState,
+ * and all operations that weren't committed get code 3. If the request
+ * itself is wrong or credentials are incorrect, response is a single
+ * ExecutionState object.
+ *
+ * @see Transaction
+ * @see Storage#isTransactional()
+ */
+public class Batch implements Request
+{
+    /** Maximum number of operations in a batch. */
+    static final int MAX_OPERATIONS = 1000;
+
+    /** String representing request. */
+    private final String request;
+
+    /** Name of application's database. */
+    private final String dbName;
+
+    /**
+     * Batch's constructor. Used only by RequestBuilder.
+     *
+     * @param request request to handle.
+     * @param dbName name of application's database.
+     */
+    Batch(final String request, final String dbName)
+    {
+        this.request = request;
+        this.dbName = dbName;
+    }
+
+    /**
+     * Handles the request and returns an array of ExecutionState
+     * objects in JSON.
+     *
+     * @return A JSON array of ExecutionState objects, or a JSON
+     *         ExecutionState object if request is wrong.
+     */
+    @Override
+    public String handle()
+    {
+        Gson gson = new Gson();
+
+        Matcher matcher = Pattern.compile("^BATCH\\s+([^:]+):([^:/]+)/(\\[.*])$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL)
+                                 .matcher(this.request);
+        if (!matcher.matches())
+        {
+            return gson.toJson(new ExecutionState(1)); // Wrong syntax
+        }
+
+        String[] operations;
+        try
+        {
+            operations = gson.fromJson(matcher.group(3), String[].class);
+        }
+        catch (JsonParseException e)
+        {
+            return gson.toJson(new ExecutionState(1)); // Wrong syntax
+        }
+
+        if (operations.length > MAX_OPERATIONS || !Arrays.stream(operations).allMatch(Batch::isOperation))
+        {
+            return gson.toJson(new ExecutionState(1)); // Wrong syntax
+        }
+
+        String username = matcher.group(1);
+        String password = matcher.group(2);
+
+        String state;
+        if ((state = RequestUtil.verify(this.dbName, new String[]{username, password}, 2)) != null)
+        {
+            return state;
+        }
+
+        ExecutionState[] states = new ExecutionState[operations.length];
+        RequestUtil.trust(new Credentials(this.dbName, username, password));
+        try
+        {
+            if (!StorageBuilder.storage().isTransactional())
+            {
+                this.perform(operations, username, password, states);
+            }
+            else if (!Transaction.run(() -> this.perform(operations, username, password, states)))
+            {
+                // Failed operation keeps its state, all others were rolled back
+                for (int i = 0; i < states.length; i++)
+                {
+                    states[i] = states[i] != null && states[i].getCode() != 0 ? states[i] : new ExecutionState(3);
+                }
+            }
+        }
+        catch (SQLException e)
+        {
+            Arrays.fill(states, new ExecutionState(3)); // Operation failed
+        }
+        finally
+        {
+            RequestUtil.untrust();
+        }
+
+        return gson.toJson(states);
+    }
+
+    /**
+     * Perform operations in order, until one of them fails. Operations
+     * that aren't performed get code 3.
+     *
+     * @param operations operations to perform.
+     * @param username client's username.
+     * @param password client's password.
+     * @param states array to put ExecutionState of each operation in.
+     * @return True if all operations succeeded, false otherwise.
+     */
+    private boolean perform(String[] operations, String username, String password, ExecutionState[] states)
+    {
+        Gson gson = new Gson();
+        for (int i = 0; i < operations.length; i++)
+        {
+            String[] split = operations[i].split("\\s+", 2);
+            Request request = RequestBuilder.build(split[0] + " " + username + ":" + password + split[1], this.dbName);
+
+            states[i] = gson.fromJson(request.handle(), ExecutionState.class);
+            if (states[i].getCode() != 0)
+            {
+                Arrays.fill(states, i + 1, states.length, new ExecutionState(3)); // Not performed
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if given string is an operation allowed in a batch.
+     *
+     * @param operation string to check.
+     * @return True if operation is a CREATE, UPDATE, or DELETE
+     *         request with an object, false otherwise.
+     */
+    private static boolean isOperation(String operation)
+    {
+        return operation != null &&
+                Pattern.compile("^(CREATE|UPDATE|DELETE)\\s+/.+$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL)
+                       .matcher(operation).matches();
+    }
+}
@@ -9,18 +9,18 @@ import com.github.sudo_sturbia.agatha.core.Note;
 import com.github.sudo_sturbia.agatha.core.NoteDeserializer;
 import com.github.sudo_sturbia.agatha.core.NoteImp;
 import com.github.sudo_sturbia.agatha.server.clients.ClientManager;
-import com.github.sudo_sturbia.agatha.server.database.ConnectorBuilder;
+import com.github.sudo_sturbia.agatha.server.clients.SessionManager;
+import com.github.sudo_sturbia.agatha.server.database.Transaction;
+import com.github.sudo_sturbia.agatha.server.storage.StorageBuilder;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
-import org.apache.commons.codec.digest.DigestUtils;
 
 import java.security.SecureRandom;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.regex.Pattern;
 
 /**
@@ -101,7 +101,8 @@ public class Create implements Request
 
     /**
      * Creates a new application user. Only alphanumeric characters
-     * and spaces are allowed in username.
+     * and spaces are allowed in username. Password can't start with
+     * SessionManager.TOKEN_PREFIX, as it would be taken for a token.
      *
      * @return A JSON response.
      */
@@ -113,14 +114,38 @@ public class Create implements Request
             return new Gson().toJson(new ExecutionState(1)); // Wrong structure
         }
 
-        if (!list[0].matches("[a-zA-Z0-9\\s]+")) // Non alphanumeric characters
+        if (!list[0].matches("[a-zA-Z0-9\\s]+") // Non alphanumeric characters
+                || list[1].startsWith(SessionManager.TOKEN_PREFIX))
         {
             return new Gson().toJson(new ExecutionState(5)); // Invalid characters
         }
 
-        return ClientManager.get().doesExist(this.dbName, list[0]) || !this.writeUser(list[0], list[1]) ?
-                new Gson().toJson(new ExecutionState(3)) : // Operation failed
-                new Gson().toJson(new ExecutionState(0)); // Successful
+        ClientManager manager = ClientManager.get();
+        if (manager.doesExist(this.dbName, list[0]))
+        {
+            return new Gson().toJson(new ExecutionState(3)); // Operation failed
+        }
+
+        String salt = this.salt();
+        String hash;
+        try
+        {
+            hash = manager.hashPassword(list[1], salt);
+        }
+        catch (RejectedExecutionException e)
+        {
+            return new Gson().toJson(new ExecutionState(6)); // Server is busy
+        }
+
+        // Added before writing, so the user is never missing from filter
+        manager.usernameAdded(this.dbName, list[0]);
+        if (!this.writeUser(list[0], hash, salt))
+        {
+            manager.usernameRemoved(this.dbName, list[0]);
+            return new Gson().toJson(new ExecutionState(3)); // Operation failed
+        }
+
+        return new Gson().toJson(new ExecutionState(0)); // Successful
     }
 
     /**
@@ -249,41 +274,28 @@ public class Create implements Request
     }
 
     /**
-     * Saves a new user's credentials to Users table. Creates a
-     * books' table for the user.
+     * Saves a new user's credentials to Users table, and prepares
+     * storage for the user's books.
      *
      * @param username user's username.
-     * @param password user's password.
+     * @param hash hash of user's password.
+     * @param salt salt of user's password.
      * @return True if operation is performed successfully, false otherwise.
      */
-    private boolean writeUser(String username, String password)
+    private boolean writeUser(String username, String hash, String salt)
     {
         try (
-                Connection connection = ConnectorBuilder.connector().connection();
+                Connection connection = Transaction.connection();
                 PreparedStatement addUser = connection.prepareStatement(
-                        "INSERT INTO " + this.dbName + ".Users VALUES (?, ?, ?);"
-                );
-                PreparedStatement createTable = connection.prepareStatement(
-                        "CREATE TABLE IF NOT EXISTS " + this.dbName + "." + Sanitizer.sanitize(username) + " (" +
-                                "bookName varchar(255) NOT NULL, " +
-                                "author varchar(255), " +
-                                "state varchar(10) NOT NULL, " +
-                                "pages int(255) NOT NULL, " +
-                                "readPages int(255), " +
-                                "coverPath varchar(255), " +
-                                "hasNotes bool, " +
-                                "PRIMARY KEY(bookName)" +
-                                ");"
+                        "INSERT INTO " + this.dbName + ".Users (username, password, salt) VALUES (?, ?, ?);"
                 );
         ) {
-            String salt = this.salt();
-
             addUser.setString(1, username);
-            addUser.setString(2, DigestUtils.sha256Hex(password + salt));
+            addUser.setString(2, hash);
             addUser.setString(3, salt);
             addUser.executeUpdate();
 
-            createTable.executeUpdate();
+            StorageBuilder.storage().createUser(this.dbName, username);
         }
         catch (SQLException e)
         {
@@ -317,119 +329,30 @@ public class Create implements Request
     }
 
     /**
-     * Writes a Book object to a user's table. Verifies that book's
-     * name doesn't already exist in the table, returns false if it
-     * does exist.
+     * Writes a Book object and its notes to storage. Verifies that
+     * book's name doesn't already exist, returns false if it does.
+     * <p>
+     * Book and its notes are written in one transaction, so either
+     * all of them are written or none.
      *
-     * @param book book to write to table.
-     * @param username name of current user (also name of user's table.)
+     * @param book book to write.
+     * @param username user's username.
      * @return True if operation performed successfully, false otherwise.
      */
     private boolean writeBook(Book book, String username)
     {
-        // Verifies that book's name doesn't already exist.
-        // Writes book's fields to user's table, and writes all
-        // of book's notes (if any exist) to book's table.
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement checkBook = connection.prepareStatement(
-                        "SELECT * FROM " + this.dbName + "." + Sanitizer.sanitize(username) + " WHERE bookName = ?;"
-                );
-                PreparedStatement addBook = connection.prepareStatement(
-                        "INSERT INTO " + this.dbName + "." + Sanitizer.sanitize(username) +
-                                "(bookName, author, state, pages, readPages, coverPath, hasNotes) " +
-                                "VALUES (?, ?, ?, ?, ?, ?, ?);"
-                );
-                PreparedStatement createNotesTable = connection.prepareStatement(
-                        "CREATE TABLE IF NOT EXISTS " + this.dbName + "." + Sanitizer.sanitize(username + book.getName()) + " (" +
-                                "note text, " +
-                                "page int(255) NOT NULL, " +
-                                "PRIMARY KEY(page)" +
-                                ");"
-                )
-        ) {
-            // Verify that book's name doesn't already exist
-            checkBook.setString(1, book.getName());
-            try (ResultSet set = checkBook.executeQuery())
-            {
-                // Book's name already exists
-                if (set.next())
-                {
-                    return false;
-                }
-            }
-
-            // Insert book
-            addBook.setString(1, book.getName());
-            addBook.setString(2, book.getAuthor());
-            addBook.setString(3, book.getStateToString());
-            addBook.setInt(4, book.getNumberOfPages());
-            addBook.setInt(5, book.getNumberOfReadPages());
-            addBook.setString(6, book.getCoverImagePath());
-            addBook.setBoolean(7, book.getNotes().size() > 0);
-
-            addBook.executeUpdate();
-
-            // Create notes table
-            createNotesTable.executeUpdate();
-
-            if (!this.writeNotes(book.getNotes(), username, book.getName()))
-            {
-                return false;
-            }
-        }
-        catch (SQLException e)
+        try
         {
-            return false;
-        }
-
-        return true;
-    }
-
-    /**
-     * Writes a list of notes to user's book's table.
-     *
-     * @param notes notes to write to table.
-     * @param username user's username.
-     * @param bookName name of the book containing the note.
-     * @return True if operation is performed successfully, false otherwise.
-     */
-    private boolean writeNotes(List<Note> notes, String username, String bookName)
-    {
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement insertNote = connection.prepareStatement(
-                        "INSERT INTO " + this.dbName + "." + Sanitizer.sanitize(username + bookName) + " " +
-                                "VALUES (?, ?);"
-                );
-                PreparedStatement hasNotes = connection.prepareStatement(
-                        "UPDATE " + this.dbName + "." + Sanitizer.sanitize(username) + " " +
-                                "SET hasNotes = ? " +
-                                "WHERE bookName = ? "
-                );
-        ) {
-            for (Note note : notes)
-            {
-                insertNote.setString(1, note.getNote());
-                insertNote.setInt(2, note.getPageNumber());
-
-                insertNote.executeUpdate();
-            }
-
-            hasNotes.setBoolean(1, true);
-            hasNotes.setString(2, bookName);
-            hasNotes.executeUpdate();
+            return StorageBuilder.storage().createBook(this.dbName, username, book);
         }
         catch (SQLException e)
         {
             return false;
         }
-
-        return true;
     }
 
     /**
-     * Write note to user's table. Verifies that the given book
+     * Write note to a user's book. Verifies that the given book
      * name exists and that given page is not already in use,
      * returns false if it is.
      *
@@ -440,46 +363,14 @@ public class Create implements Request
      */
     private boolean writeNote(Note note, String username, String bookName)
     {
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement checkBookName = connection.prepareStatement(
-                        "SELECT * FROM " + this.dbName + "." + Sanitizer.sanitize(username) + " WHERE bookName = ?;"
-                );
-                PreparedStatement checkPage = connection.prepareStatement(
-                        "SELECT * FROM " + this.dbName + "." + Sanitizer.sanitize(username + bookName) + " WHERE page = ?;"
-                );
-                PreparedStatement insertNote = connection.prepareStatement(
-                        "INSERT INTO " + this.dbName + "." + Sanitizer.sanitize(username + bookName) + " " +
-                                "VALUES (?, ?);"
-                )
-        ) {
-            checkBookName.setString(1, bookName);
-
-            ResultSet book = checkBookName.executeQuery();
-            if (!book.next()) // Book's name doesn't exist
-            {
-                return false;
-            }
-
-            checkPage.setInt(1, note.getPageNumber());
-
-            ResultSet set = checkPage.executeQuery();
-            if (set.next()) // Page's number is used
-            {
-                return false;
-            }
-
-            insertNote.setString(1, note.getNote());
-            insertNote.setInt(2, note.getPageNumber());
-
-            insertNote.executeUpdate();
+        try
+        {
+            return StorageBuilder.storage().createNote(this.dbName, username, bookName, note);
         }
         catch (SQLException e)
         {
             return false;
         }
-
-        return true;
     }
 
     /**
@@ -491,15 +382,9 @@ public class Create implements Request
      */
     private boolean writeLabel(String username, String label)
     {
-        // Add a new boolean column to user's books table.
-        // Default value is false.
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement addColumn = connection.prepareStatement(
-                        "ALTER TABLE " + this.dbName + "." + Sanitizer.sanitize(username) + " ADD " + label + " bool NOT NULL DEFAULT 0;"
-                );
-        ) {
-            addColumn.executeUpdate();
+        try
+        {
+            StorageBuilder.storage().createLabel(this.dbName, username, label);
         }
         catch (SQLException e)
         {
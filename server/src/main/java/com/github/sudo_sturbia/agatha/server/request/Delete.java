@@ -1,18 +1,15 @@
 package com.github.sudo_sturbia.agatha.server.request;
 
 import com.github.sudo_sturbia.agatha.core.ExecutionState;
-import com.github.sudo_sturbia.agatha.server.database.ConnectorBuilder;
+import com.github.sudo_sturbia.agatha.server.clients.ClientManager;
+import com.github.sudo_sturbia.agatha.server.clients.SessionManager;
+import com.github.sudo_sturbia.agatha.server.database.Transaction;
+import com.github.sudo_sturbia.agatha.server.storage.StorageBuilder;
 import com.google.gson.Gson;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
 import java.util.regex.Pattern;
 
 /**
@@ -321,37 +318,32 @@ public class Delete implements Request
     }
 
     /**
-     * Delete all client associated data from database.
+     * Delete all client associated data from database, forget its
+     * verified credentials, and end its sessions.
      *
      * @param username user's username.
      * @return True if operation succeeded, false otherwise.
      */
     private boolean deleteClient(String username)
     {
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement delete = connection.prepareStatement(
-                        "DELETE FROM " + this.dbName + ".Users WHERE username = ?;"
-                );
-                PreparedStatement getNames = connection.prepareStatement(
-                        "SELECT bookName FROM " + this.dbName + "." + Sanitizer.sanitize(username) + ";"
-                );
-                Statement dropTable = connection.createStatement();
-        ) {
-            delete.setString(1, username);
-            delete.executeUpdate();
-
-            // Delete book's tables
-            ResultSet set = getNames.executeQuery();
-
-            String dropTableQuery = "DROP TABLE " + dbName + ".";
-            while (set.next())
-            {
-                dropTable.executeUpdate(dropTableQuery + Sanitizer.sanitize(username + set.getString("bookName")) + ";");
-            }
-
-            // Delete user table
-            dropTable.executeUpdate(dropTableQuery + username);
+        // Whether user's row existed, set by the transaction
+        boolean[] deleted = new boolean[1];
+        try
+        {
+            Transaction.run(() -> {
+                try (
+                        Connection connection = Transaction.connection();
+                        PreparedStatement delete = connection.prepareStatement(
+                                "DELETE FROM " + this.dbName + ".Users WHERE username = ?;"
+                        );
+                ) {
+                    StorageBuilder.storage().deleteUser(this.dbName, username);
+
+                    delete.setString(1, username);
+                    deleted[0] = delete.executeUpdate() > 0;
+                    return true;
+                }
+            });
         }
         catch (SQLException e)
         {
@@ -359,11 +351,19 @@ public class Delete implements Request
             return false;
         }
 
+        if (deleted[0])
+        {
+            // Removed only once per user, a second removal could hide another username
+            ClientManager.get().usernameRemoved(this.dbName, username);
+        }
+
+        ClientManager.get().invalidate(this.dbName, username);
+        SessionManager.get().invalidate(this.dbName, username);
         return true;
     }
 
     /**
-     * Delete a book from user's table.
+     * Delete a book and its notes.
      *
      * @param username user's username.
      * @param bookName name of book to delete.
@@ -371,19 +371,9 @@ public class Delete implements Request
      */
     private boolean deleteBook(String username, String bookName)
     {
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement deleteBook = connection.prepareStatement(
-                        "DELETE FROM " + this.dbName + "." + Sanitizer.sanitize(username) + " WHERE bookName = ?;"
-                );
-                PreparedStatement dropTable = connection.prepareStatement(
-                        "DROP TABLE " + this.dbName + "." + Sanitizer.sanitize(username + bookName) + ";"
-                )
-        ) {
-            deleteBook.setString(1, bookName);
-            deleteBook.executeUpdate();
-
-            dropTable.executeUpdate();
+        try
+        {
+            StorageBuilder.storage().deleteBook(this.dbName, username, bookName);
         }
         catch (SQLException e)
         {
@@ -395,33 +385,16 @@ public class Delete implements Request
     }
 
     /**
-     * Delete all books from user's table.
+     * Delete all of user's books.
      *
      * @param username user's username.
      * @return True if operation succeeded, false otherwise.
      */
     private boolean deleteAllBooks(String username)
     {
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement getNames = connection.prepareStatement(
-                        "SELECT bookName FROM " + this.dbName + "." + Sanitizer.sanitize(username) + ";"
-                );
-                Statement dropTable = connection.createStatement();
-                PreparedStatement deleteBooks = connection.prepareStatement(
-                        "DELETE FROM " + this.dbName + "." + Sanitizer.sanitize(username) + ";"
-                );
-        ) {
-            // Delete book's tables
-            ResultSet set = getNames.executeQuery();
-
-            String dropTableQuery = "DROP TABLE " + dbName + ".";
-            while (set.next())
-            {
-                dropTable.executeUpdate(dropTableQuery + Sanitizer.sanitize(username + set.getString("bookName")) + ";");
-            }
-
-            deleteBooks.executeUpdate();
+        try
+        {
+            StorageBuilder.storage().deleteBooks(this.dbName, username);
         }
         catch (SQLException e)
         {
@@ -433,7 +406,7 @@ public class Delete implements Request
     }
 
     /**
-     * Delete a label from user's table.
+     * Delete a label, removing it from all of user's books.
      *
      * @param username user's username.
      * @param label name of the label to be deleted.
@@ -441,13 +414,9 @@ public class Delete implements Request
      */
     private boolean deleteLabel(String username, String label)
     {
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement deleteLabel = connection.prepareStatement(
-                        "ALTER TABLE " + this.dbName + "." + Sanitizer.sanitize(username) + " DROP COLUMN " + label + ";"
-                );
-        ) {
-            deleteLabel.executeUpdate();
+        try
+        {
+            StorageBuilder.storage().deleteLabel(this.dbName, username, label);
         }
         catch (SQLException e)
         {
@@ -459,36 +428,16 @@ public class Delete implements Request
     }
 
     /**
-     * Delete all labels from user's database.
+     * Delete all of user's labels.
      *
      * @param username user's username.
      * @return True if operation succeeded, false otherwise.
      */
     private boolean deleteAllLabels(String username)
     {
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement getLabels = connection.prepareStatement(
-                        "SELECT * FROM " + this.dbName + "." + Sanitizer.sanitize(username) + ";"
-                );
-                Statement deleteLabel = connection.createStatement();
-        ) {
-            ResultSet set = getLabels.executeQuery();
-            ResultSetMetaData data = set.getMetaData();
-
-            // Find label names and delete them
-            List<String> columns = new ArrayList<>(Arrays.asList("bookName", "author", "state", "pages", "readPages", "coverPath"));
-
-            String deleteLabelQuery = "ALTER TABLE " + this.dbName + "." + Sanitizer.sanitize(username) + " DROP COLUMN ";
-            for (int i = 1, count = data.getColumnCount(); i <= count; i++)
-            {
-                // If column is a label
-                String columnName = data.getColumnName(i);
-                if (!columns.contains(columnName))
-                {
-                    deleteLabel.executeUpdate(deleteLabelQuery + columnName + ";");
-                }
-            }
+        try
+        {
+            StorageBuilder.storage().deleteLabels(this.dbName, username);
         }
         catch (SQLException e)
         {
@@ -509,15 +458,9 @@ public class Delete implements Request
      */
     private boolean deleteNote(String username, String bookName, int page)
     {
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement deleteNote = connection.prepareStatement(
-                        "DELETE FROM " + this.dbName + "." + Sanitizer.sanitize(username + bookName) + " " +
-                                "WHERE page = ?;"
-                );
-        ) {
-            deleteNote.setInt(1, page);
-            deleteNote.executeUpdate();
+        try
+        {
+            StorageBuilder.storage().deleteNote(this.dbName, username, bookName, page);
         }
         catch (SQLException e)
         {
@@ -537,13 +480,9 @@ public class Delete implements Request
      */
     private boolean deleteAllNotes(String username, String bookName)
     {
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement deleteNotes = connection.prepareStatement(
-                        "DELETE FROM " + this.dbName + "." + Sanitizer.sanitize(username + bookName) + ";"
-                );
-        ) {
-            deleteNotes.executeUpdate();
+        try
+        {
+            StorageBuilder.storage().deleteNotes(this.dbName, username, bookName);
         }
         catch (SQLException e)
         {
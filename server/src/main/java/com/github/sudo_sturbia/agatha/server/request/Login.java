@@ -0,0 +1,70 @@
+package com.github.sudo_sturbia.agatha.server.request;
+
+import com.github.sudo_sturbia.agatha.core.ExecutionState;
+import com.github.sudo_sturbia.agatha.server.clients.SessionManager;
+import com.google.gson.Gson;
+
+import java.util.regex.Pattern;
+
+/**
+ * Login handles client's LOGIN requests. LOGIN is used to start
+ * a session, so that later requests don't need the password.
+ * <p>
+ * A LOGIN request is of the form
+ * <pre>
+ *     LOGIN username:password
+ * </pre>
+ * and its response is a JSON Session object whose token can be used
+ * in place of the password in all other requests, for example
+ * <code>READ username:token/b/bookName</code>. A token can't be
+ * used to login, the password is always verified as a password, so
+ * clients whose old passwords look like tokens can still login.
+ *
+ * @see SessionManager
+ */
+public class Login implements Request
+{
+    /** String representing request. */
+    private final String request;
+
+    /** Name of application's database. */
+    private final String dbName;
+
+    /**
+     * Login's constructor. Used only by RequestBuilder.
+     *
+     * @param request request to handle.
+     * @param dbName name of application's database.
+     */
+    Login(final String request, final String dbName)
+    {
+        this.request = request;
+        this.dbName = dbName;
+    }
+
+    /**
+     * Handles the request and returns a JSON object.
+     *
+     * @return A JSON Session object if credentials are correct, an
+     *         ExecutionState object otherwise.
+     */
+    @Override
+    public String handle()
+    {
+        if (!Pattern.compile("^LOGIN\\s+[^:]+:[^:/]+$", Pattern.CASE_INSENSITIVE).matcher(this.request).matches())
+        {
+            return new Gson().toJson(new ExecutionState(1)); // Wrong syntax
+        }
+
+        String[] list = RequestUtil.removeEmpty(this.request.split("^LOGIN\\s+|:"));
+        if (list.length != 2)
+        {
+            return new Gson().toJson(new ExecutionState(1)); // Wrong syntax
+        }
+
+        String state;
+        return (state = RequestUtil.verifyPassword(this.dbName, list[0], list[1])) != null ?
+                state :
+                new Gson().toJson(SessionManager.get().create(this.dbName, list[0]));
+    }
+}
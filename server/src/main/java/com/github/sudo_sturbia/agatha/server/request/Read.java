@@ -1,15 +1,12 @@
 package com.github.sudo_sturbia.agatha.server.request;
 
-import com.github.sudo_sturbia.agatha.core.Book;
-import com.github.sudo_sturbia.agatha.core.BookBuilder;
-import com.github.sudo_sturbia.agatha.core.BookState;
 import com.github.sudo_sturbia.agatha.core.ExecutionState;
-import com.github.sudo_sturbia.agatha.server.database.ConnectorBuilder;
+import com.github.sudo_sturbia.agatha.server.storage.StorageBuilder;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -25,9 +22,14 @@ import java.util.regex.Pattern;
  * <pre>
  *     READ username:password             // Verify client's credentials.
  *     READ username:password/b/bookName  // Get book.
+ *     READ username:password/b/name,name // Get a list of books, ordered by name.
  *     READ username:password/b/*         // Get a list of names all user's books.
  *     READ username:password/l/labelName // Get a list of names all books with label.
  * </pre>
+ * <P>
+ * Books are written to the response directly from the result of
+ * one query, which also returns their notes. Requested books that
+ * don't exist are left out of a list of books.
  */
 public class Read implements Request
 {
@@ -66,6 +68,10 @@ public class Read implements Request
         {
             return this.readBooksNames();
         }
+        else if (this.isReadBooks())
+        {
+            return this.readBooks();
+        }
         else if (this.isReadBook())
         {
             return this.readBook();
@@ -138,6 +144,50 @@ public class Read implements Request
                 this.loadBook(list[2], list[0]);
     }
 
+    /**
+     * Returns true if request is of the form
+     * <pre>
+     *     READ username:password/b/bookName,bookName,...
+     * </pre>
+     *
+     * @return True if read books statement, false otherwise.
+     */
+    private boolean isReadBooks()
+    {
+        return Pattern.compile("^READ\\s+[^:]+:[^:/]+/b/[^/,]+(,[^/,]+)+$", Pattern.CASE_INSENSITIVE)
+                .matcher(this.request).matches();
+    }
+
+    /**
+     * Load a list of books from user's library. Returns a JSON
+     * list of the books.
+     *
+     * @return A JSON response.
+     */
+    private String readBooks()
+    {
+        String[] list = RequestUtil.removeEmpty(this.request.split("^READ\\s+|:|/b/"));
+
+        String state;
+        if ((state = RequestUtil.verify(this.dbName, list, 3)) != null)
+        {
+            return state;
+        }
+
+        List<String> bookNames = new ArrayList<>();
+        for (String bookName : list[2].split(","))
+        {
+            if (!bookName.matches("[a-zA-Z0-9\\s]+")) // Non alphanumeric characters
+            {
+                return new Gson().toJson(new ExecutionState(1)); // Wrong syntax
+            }
+
+            bookNames.add(bookName);
+        }
+
+        return this.loadBooks(bookNames, list[0]);
+    }
+
     /**
      * Returns true if request is of the form
      * <pre>
@@ -199,7 +249,7 @@ public class Read implements Request
     }
 
     /**
-     * Load a book from user's table.
+     * Load a book from user's library.
      *
      * @param bookName name of book to load.
      * @param username user's username.
@@ -207,61 +257,15 @@ public class Read implements Request
      */
     private String loadBook(String bookName, String username)
     {
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement getBook = connection.prepareStatement(
-                        "SELECT * FROM " + this.dbName + "." + Sanitizer.sanitize(username) + " WHERE bookName = ?;"
-                );
-                PreparedStatement getNotes = connection.prepareStatement(
-                        "SELECT * FROM " + this.dbName + "." + Sanitizer.sanitize(username + bookName) + ";"
-                );
-        ) {
-            getBook.setString(1, bookName);
-
-            ResultSet set = getBook.executeQuery();
-            if (set.next())
+        try
+        {
+            StringWriter json = new StringWriter();
+            if (StorageBuilder.storage().writeBook(this.dbName, username, bookName, Read.writer(json)))
             {
-                BookState.State state;
-                switch (set.getString("state"))
-                {
-                    case "reading":
-                        state = BookState.State.CURRENTLY_READING;
-                        break;
-                    case "read":
-                        state = BookState.State.READ;
-                        break;
-                    case "interested":
-                        state = BookState.State.INTERESTED;
-                        break;
-                    default:
-                        // Can't happen
-                        state = null;
-                }
-
-                Book book = BookBuilder.newBook()
-                                       .name(set.getString("bookName"))
-                                       .author(set.getString("author"))
-                                       .state(state)
-                                       .numberOfPages(set.getInt("pages"))
-                                       .coverPath(set.getString("coverPath"))
-                                       .build();
-
-                book.setNumberOfReadPages(set.getInt("readPages"));
-
-                // Load user's notes
-                if (set.getBoolean("hasNotes"))
-                {
-                    ResultSet noteSet = getNotes.executeQuery();
-                    while (noteSet.next())
-                    {
-                        book.addNote(noteSet.getString("note"), noteSet.getInt("page"));
-                    }
-                }
-
-                return new Gson().toJson(book);
+                return json.toString();
             }
         }
-        catch (SQLException e)
+        catch (SQLException | IOException e)
         {
             // Operation failed
         }
@@ -269,6 +273,43 @@ public class Read implements Request
         return new Gson().toJson(new ExecutionState(3)); // Operation failed
     }
 
+    /**
+     * Load a list of books from user's library.
+     *
+     * @param bookNames names of books to load.
+     * @param username user's username.
+     * @return A JSON list of books or ExecutionState in case of failure.
+     */
+    private String loadBooks(List<String> bookNames, String username)
+    {
+        try
+        {
+            StringWriter json = new StringWriter();
+            StorageBuilder.storage().writeBooks(this.dbName, username, bookNames, Read.writer(json));
+            return json.toString();
+        }
+        catch (SQLException | IOException e)
+        {
+            // Operation failed
+        }
+
+        return new Gson().toJson(new ExecutionState(3)); // Operation failed
+    }
+
+    /**
+     * Create a JsonWriter that writes to given writer the way
+     * Gson writes responses.
+     *
+     * @param json writer to write to.
+     * @return A JsonWriter.
+     */
+    private static JsonWriter writer(StringWriter json)
+    {
+        JsonWriter writer = new JsonWriter(json);
+        writer.setSerializeNulls(false);
+        return writer;
+    }
+
     /**
      * Return a JSON list containing names of all user's books.
      *
@@ -277,21 +318,9 @@ public class Read implements Request
      */
     private String loadBooksNames(String username)
     {
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement getNames = connection.prepareStatement(
-                        "SELECT bookName FROM " + this.dbName + "." + Sanitizer.sanitize(username) + ";"
-                );
-        ) {
-            List<String> bookNames = new ArrayList<>();
-
-            ResultSet set = getNames.executeQuery();
-            while (set.next())
-            {
-                bookNames.add(set.getString("bookName"));
-            }
-
-            return new Gson().toJson(bookNames);
+        try
+        {
+            return new Gson().toJson(StorageBuilder.storage().readBookNames(this.dbName, username));
         }
         catch (SQLException e)
         {
@@ -311,21 +340,9 @@ public class Read implements Request
      */
     private String loadBooksNamesWithLabel(String label, String username)
     {
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement getNames = connection.prepareStatement(
-                        "SELECT bookName FROM " + this.dbName + "." + Sanitizer.sanitize(username) + " WHERE " + label + " = 1;"
-                );
-        ) {
-            List<String> bookNames = new ArrayList<>();
-
-            ResultSet names = getNames.executeQuery();
-            while (names.next())
-            {
-                bookNames.add(names.getString("bookName"));
-            }
-
-            return new Gson().toJson(bookNames);
+        try
+        {
+            return new Gson().toJson(StorageBuilder.storage().readBookNames(this.dbName, username, label));
         }
         catch (SQLException e)
         {
@@ -29,6 +29,10 @@ public class RequestBuilder
                 return new Update(request, dbName);
             case "delete":
                 return new Delete(request, dbName);
+            case "batch":
+                return new Batch(request, dbName);
+            case "login":
+                return new Login(request, dbName);
             default:
                 return null;
         }
@@ -2,6 +2,8 @@ package com.github.sudo_sturbia.agatha.server.request;
 
 import com.github.sudo_sturbia.agatha.core.ExecutionState;
 import com.github.sudo_sturbia.agatha.server.clients.ClientManager;
+import com.github.sudo_sturbia.agatha.server.clients.Credentials;
+import com.github.sudo_sturbia.agatha.server.clients.SessionManager;
 import com.google.gson.Gson;
 
 import java.util.ArrayList;
@@ -14,11 +16,19 @@ import java.util.List;
  */
 public class RequestUtil
 {
+    /** Credentials already verified for requests handled by current
+     * thread. Used by Batch to verify credentials once for all of
+     * its operations. */
+    private static final ThreadLocal<Credentials> trusted = new ThreadLocal<>();
+
     /**
      * Takes an array of strings that should contain a username as the
      * first element, and password as the second element. Verifies
      * both the size of the given array against a given size, and the
-     * existence of username/password.
+     * existence of username/password. A session token can be given in
+     * place of the password, it's verified without querying the
+     * database. A password that doesn't have the shape of a token is
+     * verified as a password, even if it starts with the token prefix.
      *
      * @param dbName name of application's database.
      * @param list an array of strings.
@@ -26,6 +36,8 @@ public class RequestUtil
      * @return
      *      A JSON ExecutionState object with code 3 if sizes don't match.
      *      A JSON ExecutionState object with code 2 if credentials are wrong.
+     *      A JSON ExecutionState object with code 6 if server is busy.
+     *      A JSON ExecutionState object with code 7 if token is invalid.
      *      Null otherwise.
      */
     public static String verify(String dbName, String[] list, int size)
@@ -35,18 +47,94 @@ public class RequestUtil
             return new Gson().toJson(new ExecutionState(1));
         }
 
-        switch (ClientManager.get().doesExist(dbName, list[0], list[1]))
+        Credentials credentials = RequestUtil.trusted.get();
+        if (credentials != null
+                && credentials.getDatabaseName().equals(dbName)
+                && credentials.getUsername().equals(list[0])
+                && credentials.getPassword().equals(list[1]))
+        {
+            return null; // Already verified
+        }
+
+        if (SessionManager.isToken(list[1]))
+        {
+            return SessionManager.get().isValid(dbName, list[0], list[1]) ?
+                    null :
+                    new Gson().toJson(new ExecutionState(7)); // Session expired
+        }
+
+        return RequestUtil.verifyPassword(dbName, list[0], list[1]);
+    }
+
+    /**
+     * Verify a username and password, without taking the password for
+     * a session token.
+     *
+     * @param dbName name of application's database.
+     * @param username client's username.
+     * @param password client's password.
+     * @return
+     *      A JSON ExecutionState object with code 2 if credentials are wrong.
+     *      A JSON ExecutionState object with code 4 if account is locked.
+     *      A JSON ExecutionState object with code 6 if server is busy.
+     *      Null otherwise.
+     */
+    static String verifyPassword(String dbName, String username, String password)
+    {
+        switch (ClientManager.get().doesExist(dbName, username, password))
         {
             case SUCCEEDED:
                 return null; // Succeeded
             case TIMEOUT:
                 return new Gson().toJson(new ExecutionState(4)); // Account locked
+            case BUSY:
+                return new Gson().toJson(new ExecutionState(6)); // Server is busy
             case FAILED:
             default: // Can't happen
                 return new Gson().toJson(new ExecutionState(2)); // Wrong credentials
         }
     }
 
+    /**
+     * Trust given credentials for requests handled by current thread
+     * until <code>untrust</code> is called. Credentials should be
+     * verified before being trusted.
+     *
+     * @param credentials verified credentials.
+     */
+    static void trust(Credentials credentials)
+    {
+        RequestUtil.trusted.set(credentials);
+    }
+
+    /**
+     * Stop trusting credentials given to <code>trust</code>.
+     */
+    static void untrust()
+    {
+        RequestUtil.trusted.remove();
+    }
+
+    /**
+     * Get username of a request that writes client's data, that is
+     * any request except READ and LOGIN.
+     *
+     * @param request request in string format.
+     * @return Request's username, or null if request doesn't write
+     *         or has no username.
+     */
+    public static String writer(String request)
+    {
+        String[] split = request.trim().split("\\s+", 2);
+        if (split.length != 2 || split[0].equalsIgnoreCase("read") || split[0].equalsIgnoreCase("login"))
+        {
+            return null;
+        }
+
+        int colon = split[1].indexOf(':');
+        return colon > 0 ? split[1].substring(0, colon) : null;
+    }
+
     /**
      * Remove empty strings from an array.
      *
@@ -8,16 +8,14 @@ import com.github.sudo_sturbia.agatha.core.ExecutionState;
 import com.github.sudo_sturbia.agatha.core.Note;
 import com.github.sudo_sturbia.agatha.core.NoteDeserializer;
 import com.github.sudo_sturbia.agatha.core.NoteImp;
-import com.github.sudo_sturbia.agatha.server.database.ConnectorBuilder;
+import com.github.sudo_sturbia.agatha.server.storage.StorageBuilder;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.Arrays;
-import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Pattern;
 
 /**
@@ -34,9 +32,17 @@ import java.util.regex.Pattern;
  *     UPDATE username:password/l/labelName/add/b/bookName      // Add label to book.
  *     UPDATE username:password/l/labelName/remove/b/bookName   // Remove label from book.
  * </pre>
+ * Replacing a book writes only the notes that differ from the stored
+ * ones, so a client can send the whole book after editing one note.
  */
 public class Update implements Request
 {
+    /** Number of notes in books given to UPDATE book requests. */
+    private static final LongAdder notesReceived = new LongAdder();
+
+    /** Number of note rows written by UPDATE book requests. */
+    private static final LongAdder notesWritten = new LongAdder();
+
     /** String representing request. */
     private final String request;
 
@@ -92,6 +98,28 @@ public class Update implements Request
         return new Gson().toJson(new ExecutionState(1)); // Wrong syntax
     }
 
+    /**
+     * Get number of notes in books given to UPDATE book requests.
+     *
+     * @return Number of received notes.
+     */
+    public static long getNotesReceived()
+    {
+        return Update.notesReceived.sum();
+    }
+
+    /**
+     * Get number of note rows inserted, updated, or deleted by UPDATE
+     * book requests. Only notes that changed are written, so this is
+     * usually much lower than the number of received notes.
+     *
+     * @return Number of written note rows.
+     */
+    public static long getNotesWritten()
+    {
+        return Update.notesWritten.sum();
+    }
+
     /**
      * Returns true if request is of the form
      * <pre>
@@ -308,7 +336,8 @@ public class Update implements Request
 
     /**
      * Update an existing book with information from given
-     * book.
+     * book. Book and its notes are updated in one transaction,
+     * and only notes that changed are written.
      *
      * @param book new book to write to database.
      * @param username user's username.
@@ -317,79 +346,16 @@ public class Update implements Request
      */
     private boolean updateBook(Book book, String username, String bookName)
     {
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement updateBook = connection.prepareStatement(
-                        "UPDATE " + this.dbName + "." + Sanitizer.sanitize(username) + " " +
-                                "SET " +
-                                "bookName = ?, " +
-                                "author = ?, " +
-                                "state = ?, " +
-                                "pages = ?, " +
-                                "readPages = ?, " +
-                                "coverPath = ?, " +
-                                "hasNotes = ? " +
-                                "WHERE bookName = ?;"
-                );
-        ) {
-            updateBook.setString(1, book.getName());
-            updateBook.setString(2, book.getAuthor());
-            updateBook.setString(3, book.getStateToString());
-            updateBook.setInt(4, book.getNumberOfPages());
-            updateBook.setInt(5, book.getNumberOfReadPages());
-            updateBook.setString(6, book.getCoverImagePath());
-            updateBook.setBoolean(7, book.getNotes().size() > 0);
-
-            updateBook.setString(8, bookName);
-
-            updateBook.executeUpdate();
-
-            if (this.updateNotes(book.getNotes(), username, bookName))
-            {
-                return true;
-            }
-        }
-        catch (SQLException e)
+        try
         {
-            // Operation failed
-        }
-
-        return false;
-    }
+            int written = StorageBuilder.storage().updateBook(this.dbName, username, bookName, book);
 
-    /**
-     * Delete all notes in a book and replace them with the
-     * given list.
-     *
-     * @param notes notes to write.
-     * @param username user's username.
-     * @param bookName name of book to update.
-     * @return True if operation succeeded, false otherwise.
-     */
-    private boolean updateNotes(List<Note> notes, String username, String bookName)
-    {
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement deleteOld = connection.prepareStatement(
-                        "DELETE FROM " + this.dbName + "." + Sanitizer.sanitize(username + bookName) + ";"
-                );
-                PreparedStatement insertNotes = connection.prepareStatement(
-                        "INSERT INTO " + this.dbName + "." + Sanitizer.sanitize(username + bookName) + " " +
-                                "VALUES (?, ?);"
-                );
-        ) {
-            deleteOld.executeUpdate();
-
-            for (Note note : notes)
-            {
-                insertNotes.setString(1, note.getNote());
-                insertNotes.setInt(2, note.getPageNumber());
-
-                insertNotes.executeUpdate();
-            }
+            Update.notesReceived.add(book.getNotes().size());
+            Update.notesWritten.add(written);
         }
         catch (SQLException e)
         {
+            // Operation failed
             return false;
         }
 
@@ -408,29 +374,16 @@ public class Update implements Request
      */
     private boolean updateBooksField(String username, String bookName, String fieldName, String fieldValue)
     {
-        // Verify field's name, and Add '' around fieldValue
-        // if field is a varchar.
-        if (Arrays.asList("author", "state", "coverPath").contains(fieldName))
-        {
-            fieldValue = "'" + fieldValue + "'";
-        }
-        else if (!fieldName.equals("readPages"))
+        // Verify field's name
+        if (!Arrays.asList("author", "state", "coverPath", "readPages").contains(fieldName))
         {
             return false;
         }
 
         // Update value in database
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement updateBook = connection.prepareStatement(
-                        "UPDATE " + this.dbName + "." + Sanitizer.sanitize(username) + " " +
-                                "SET " +
-                                fieldName + " = " + fieldValue + " " +
-                                "WHERE bookName = ?;"
-                );
-        ) {
-            updateBook.setString(1, bookName);
-            updateBook.executeUpdate();
+        try
+        {
+            StorageBuilder.storage().updateBookField(this.dbName, username, bookName, fieldName, fieldValue);
         }
         catch (SQLException e)
         {
@@ -442,8 +395,8 @@ public class Update implements Request
     }
 
     /**
-     * Update a note in user's book's database using values from
-     * a given object.
+     * Update a note in user's book using values from a given
+     * object.
      *
      * @param note updated note object.
      * @param username user's username.
@@ -453,20 +406,9 @@ public class Update implements Request
      */
     private boolean updateNote(Note note, String username, String bookName, int page)
     {
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement updateNote = connection.prepareStatement(
-                        "UPDATE " + this.dbName + "." + Sanitizer.sanitize(username + bookName) + " " +
-                                "SET " +
-                                "note = ?," +
-                                "page = ? " +
-                                "WHERE page = ?;"
-                );
-        ) {
-            updateNote.setString(1, note.getNote());
-            updateNote.setInt(2, page);
-            updateNote.setInt(3, page);
-            updateNote.executeUpdate();
+        try
+        {
+            StorageBuilder.storage().updateNote(this.dbName, username, bookName, page, note);
         }
         catch (SQLException e)
         {
@@ -490,29 +432,16 @@ public class Update implements Request
      */
     private boolean updateNotesField(String username, String bookName, int page, String fieldName, String fieldValue)
     {
-        // Verify field's name, and Add '' to fieldValue if
-        // field is a varchar.
-        if (fieldName.equals("note"))
-        {
-            fieldValue = "'" + fieldValue + "'";
-        }
-        else if (!fieldName.equals("page"))
+        // Verify field's name
+        if (!fieldName.equals("note") && !fieldName.equals("page"))
         {
             return false;
         }
 
         // Update value in database
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement updateNote = connection.prepareStatement(
-                        "UPDATE " + this.dbName + "." + Sanitizer.sanitize(username + bookName) + " " +
-                                "SET " +
-                                fieldName + " = " + fieldValue + " " +
-                                "WHERE page = ?;"
-                );
-        ) {
-            updateNote.setInt(1, page);
-            updateNote.executeUpdate();
+        try
+        {
+            StorageBuilder.storage().updateNoteField(this.dbName, username, bookName, page, fieldName, fieldValue);
         }
         catch (SQLException e)
         {
@@ -534,25 +463,14 @@ public class Update implements Request
      */
     private boolean bookLabel(String username, String bookName, String label, boolean isAdd)
     {
-        try (
-                Connection connection = ConnectorBuilder.connector().connection();
-                PreparedStatement addLabel = connection.prepareStatement(
-                        "UPDATE " + this.dbName + "." + Sanitizer.sanitize(username) + " " +
-                                "SET " +
-                                label + " = ? " +
-                                "WHERE bookName = ?;"
-                );
-        ) {
-            addLabel.setBoolean(1, isAdd);
-            addLabel.setString(2, bookName);
-            addLabel.executeUpdate();
+        try
+        {
+            return StorageBuilder.storage().labelBook(this.dbName, username, bookName, label, isAdd);
         }
         catch (SQLException e)
         {
             // Operation failed
             return false;
         }
-
-        return true;
     }
 }
@@ -0,0 +1,373 @@
+package com.github.sudo_sturbia.agatha.server.storage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * BookCache keeps the JSON of recently read books, so that a book that
+ * is read again is returned without accessing the database.
+ * <p>
+ * The cache is bounded both by number of books and by their total
+ * weight, which is the length of their JSON, and split into segments
+ * that are locked separately, each evicting its least recently used
+ * books. A book must be invalidated after every change to it is
+ * committed.
+ * <p>
+ * Each segment has a version that is incremented when any of its
+ * books is invalidated. A book is loaded with the version it had
+ * before the load, and isn't cached if the version changed, so a load
+ * that ran while the book was being changed can't cache old data.
+ */
+class BookCache
+{
+    /** Default maximum total length of books' JSON. */
+    static final long WEIGHT = 32L * 1024 * 1024;
+
+    /** Number of segments. */
+    private static final int SEGMENTS = 16;
+
+    /** Cache's segments. */
+    private final Segment[] segments;
+
+    /** Number of lookups that found the book. */
+    private final LongAdder hits;
+
+    /** Number of lookups that didn't find the book. */
+    private final LongAdder misses;
+
+    /** Number of books evicted to make room for others. */
+    private final LongAdder evictions;
+
+    /**
+     * Create a BookCache.
+     *
+     * @param capacity maximum number of books.
+     * @param weight maximum total length of books' JSON.
+     * @throws IllegalArgumentException if capacity or weight is &lt;= 0.
+     */
+    BookCache(int capacity, long weight) throws IllegalArgumentException
+    {
+        if (capacity <= 0 || weight <= 0)
+        {
+            throw new IllegalArgumentException("Invalid capacity or weight.");
+        }
+
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++)
+        {
+            this.segments[i] = new Segment(Math.max(1, capacity / SEGMENTS), Math.max(1, weight / SEGMENTS));
+        }
+
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * Get a cached book.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of book.
+     * @return Book's JSON, null if book isn't cached.
+     */
+    String get(String dbName, String username, String bookName)
+    {
+        String key = BookCache.key(dbName, username, bookName);
+        String json = this.segment(key).get(key);
+
+        (json != null ? this.hits : this.misses).increment();
+        return json;
+    }
+
+    /**
+     * Get current version of a book, to be given to put after the
+     * book is loaded.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of book.
+     * @return Version of book's segment.
+     */
+    long version(String dbName, String username, String bookName)
+    {
+        String key = BookCache.key(dbName, username, bookName);
+        return this.segment(key).version();
+    }
+
+    /**
+     * Cache a loaded book, unless a book of its segment was
+     * invalidated since the book's version was taken.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of book.
+     * @param json book's JSON.
+     * @param version book's version before it was loaded.
+     */
+    void put(String dbName, String username, String bookName, String json, long version)
+    {
+        String key = BookCache.key(dbName, username, bookName);
+        this.evictions.add(this.segment(key).put(key, json, version));
+    }
+
+    /**
+     * Remove a book.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of book.
+     */
+    void invalidate(String dbName, String username, String bookName)
+    {
+        String key = BookCache.key(dbName, username, bookName);
+        this.segment(key).remove(key);
+    }
+
+    /**
+     * Remove all of a user's books.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     */
+    void invalidate(String dbName, String username)
+    {
+        String prefix = BookCache.key(dbName, username, "");
+        for (Segment segment : this.segments)
+        {
+            segment.removeAll(prefix);
+        }
+    }
+
+    /**
+     * Remove all books of a database.
+     *
+     * @param dbName name of application's database.
+     */
+    void invalidate(String dbName)
+    {
+        String prefix = BookCache.normalize(dbName) + ":";
+        for (Segment segment : this.segments)
+        {
+            segment.removeAll(prefix);
+        }
+    }
+
+    /**
+     * Get number of lookups that found the book.
+     *
+     * @return Number of cache hits.
+     */
+    long getHits()
+    {
+        return this.hits.sum();
+    }
+
+    /**
+     * Get number of lookups that didn't find the book.
+     *
+     * @return Number of cache misses.
+     */
+    long getMisses()
+    {
+        return this.misses.sum();
+    }
+
+    /**
+     * Get ratio of lookups that found the book.
+     *
+     * @return Hit ratio between 0 and 1, 0 if there were no lookups.
+     */
+    double getHitRatio()
+    {
+        long hits = this.hits.sum();
+        long lookups = hits + this.misses.sum();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Get number of books evicted to make room for others.
+     *
+     * @return Number of evictions.
+     */
+    long getEvictions()
+    {
+        return this.evictions.sum();
+    }
+
+    /**
+     * Get number of cached books.
+     *
+     * @return Number of books.
+     */
+    int getSize()
+    {
+        int size = 0;
+        for (Segment segment : this.segments)
+        {
+            size += segment.size();
+        }
+
+        return size;
+    }
+
+    /**
+     * Get total length of cached books' JSON.
+     *
+     * @return Cache's weight.
+     */
+    long getWeight()
+    {
+        long weight = 0;
+        for (Segment segment : this.segments)
+        {
+            weight += segment.weight();
+        }
+
+        return weight;
+    }
+
+    /**
+     * Get the segment of given key.
+     *
+     * @param key book's key.
+     * @return Key's segment.
+     */
+    private Segment segment(String key)
+    {
+        return this.segments[Math.floorMod(key.hashCode(), SEGMENTS)];
+    }
+
+    /**
+     * Get key of a book. Names are compared by the database ignoring
+     * case and trailing spaces, so they're normalized to have one key.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of book.
+     * @return Book's key.
+     */
+    private static String key(String dbName, String username, String bookName)
+    {
+        return BookCache.normalize(dbName) + ":" + BookCache.normalize(username) + "/" + BookCache.normalize(bookName);
+    }
+
+    /**
+     * Normalize a part of a key.
+     *
+     * @param name name to normalize.
+     * @return Name in lower case, without trailing spaces.
+     */
+    private static String normalize(String name)
+    {
+        int end = name.length();
+        while (end > 0 && name.charAt(end - 1) == ' ')
+        {
+            end--;
+        }
+
+        return name.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Segment is a part of the cache with its own lock, that evicts
+     * its least recently used books when full.
+     */
+    private static class Segment
+    {
+        /** Maximum number of books. */
+        private final int capacity;
+
+        /** Maximum total length of books' JSON. */
+        private final long maxWeight;
+
+        /** Segment's books, least recently used first. */
+        private final Map<String, String> books;
+
+        /** Total length of books' JSON. */
+        private long weight;
+
+        /** Number of invalidations. */
+        private long version;
+
+        private Segment(int capacity, long maxWeight)
+        {
+            this.capacity = capacity;
+            this.maxWeight = maxWeight;
+            this.books = new LinkedHashMap<>(16, 0.75f, true);
+        }
+
+        private synchronized String get(String key)
+        {
+            return this.books.get(key);
+        }
+
+        private synchronized long version()
+        {
+            return this.version;
+        }
+
+        private synchronized int put(String key, String json, long version)
+        {
+            if (version != this.version || json.length() > this.maxWeight)
+            {
+                return 0;
+            }
+
+            String old = this.books.put(key, json);
+            this.weight += json.length() - (old != null ? old.length() : 0);
+
+            // Evict least recently used books, other than the added one
+            int evicted = 0;
+            Iterator<String> books = this.books.values().iterator();
+            while (this.books.size() > this.capacity || this.weight > this.maxWeight)
+            {
+                this.weight -= books.next().length();
+                books.remove();
+                evicted++;
+            }
+
+            return evicted;
+        }
+
+        private synchronized void remove(String key)
+        {
+            String old = this.books.remove(key);
+            if (old != null)
+            {
+                this.weight -= old.length();
+            }
+
+            this.version++;
+        }
+
+        private synchronized void removeAll(String prefix)
+        {
+            Iterator<Map.Entry<String, String>> books = this.books.entrySet().iterator();
+            while (books.hasNext())
+            {
+                Map.Entry<String, String> book = books.next();
+                if (book.getKey().startsWith(prefix))
+                {
+                    this.weight -= book.getValue().length();
+                    books.remove();
+                }
+            }
+
+            this.version++;
+        }
+
+        private synchronized int size()
+        {
+            return this.books.size();
+        }
+
+        private synchronized long weight()
+        {
+            return this.weight;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.github.sudo_sturbia.agatha.server.storage;
+
+import com.github.sudo_sturbia.agatha.core.Book;
+import com.github.sudo_sturbia.agatha.core.Note;
+import com.github.sudo_sturbia.agatha.server.database.Transaction;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * CachingStorage is a Storage that keeps recently read books in a
+ * BookCache, and uses another Storage for everything else. A cached
+ * book is written without accessing the database.
+ * <p>
+ * Every operation that changes a book, its notes, or its user
+ * invalidates the book once the change is committed, whether it
+ * succeeds or not. Labels aren't part of a book's JSON, so changing
+ * them doesn't invalidate books. Books are cached only by the server
+ * that reads them, so no other process should change the database
+ * while the server is running.
+ */
+public class CachingStorage implements Storage
+{
+    /** Storage data is read from and written to. */
+    private final Storage storage;
+
+    /** Cache of books' JSON. */
+    private final BookCache cache;
+
+    /**
+     * CachingStorage's constructor.
+     *
+     * @param storage storage data is read from and written to.
+     * @param cache cache of books' JSON.
+     */
+    CachingStorage(Storage storage, BookCache cache)
+    {
+        this.storage = storage;
+        this.cache = cache;
+    }
+
+    @Override
+    public void setup(String dbName) throws SQLException
+    {
+        try
+        {
+            this.storage.setup(dbName);
+        }
+        finally
+        {
+            this.cache.invalidate(dbName);
+        }
+    }
+
+    @Override
+    public void createUser(String dbName, String username) throws SQLException
+    {
+        try
+        {
+            this.storage.createUser(dbName, username);
+        }
+        finally
+        {
+            this.invalidate(dbName, username);
+        }
+    }
+
+    @Override
+    public void deleteUser(String dbName, String username) throws SQLException
+    {
+        try
+        {
+            this.storage.deleteUser(dbName, username);
+        }
+        finally
+        {
+            this.invalidate(dbName, username);
+        }
+    }
+
+    @Override
+    public boolean createBook(String dbName, String username, Book book) throws SQLException
+    {
+        try
+        {
+            return this.storage.createBook(dbName, username, book);
+        }
+        finally
+        {
+            this.invalidate(dbName, username, book.getName());
+        }
+    }
+
+    @Override
+    public Book readBook(String dbName, String username, String bookName) throws SQLException
+    {
+        return this.storage.readBook(dbName, username, bookName);
+    }
+
+    @Override
+    public boolean writeBook(String dbName, String username, String bookName, JsonWriter writer)
+            throws SQLException, IOException
+    {
+        String json = this.cache.get(dbName, username, bookName);
+        if (json == null)
+        {
+            long version = this.cache.version(dbName, username, bookName);
+
+            // Written the same way as responses
+            StringWriter buffer = new StringWriter();
+            JsonWriter bufferWriter = new JsonWriter(buffer);
+            bufferWriter.setSerializeNulls(false);
+
+            if (!this.storage.writeBook(dbName, username, bookName, bufferWriter))
+            {
+                return false;
+            }
+
+            json = buffer.toString();
+            this.cache.put(dbName, username, bookName, json, version);
+        }
+
+        writer.jsonValue(json);
+        return true;
+    }
+
+    @Override
+    public int writeBooks(String dbName, String username, List<String> bookNames, JsonWriter writer)
+            throws SQLException, IOException
+    {
+        return this.storage.writeBooks(dbName, username, bookNames, writer);
+    }
+
+    @Override
+    public List<String> readBookNames(String dbName, String username) throws SQLException
+    {
+        return this.storage.readBookNames(dbName, username);
+    }
+
+    @Override
+    public List<String> readBookNames(String dbName, String username, String label) throws SQLException
+    {
+        return this.storage.readBookNames(dbName, username, label);
+    }
+
+    @Override
+    public int updateBook(String dbName, String username, String bookName, Book book) throws SQLException
+    {
+        try
+        {
+            return this.storage.updateBook(dbName, username, bookName, book);
+        }
+        finally
+        {
+            // Book may be renamed
+            this.invalidate(dbName, username, bookName);
+            this.invalidate(dbName, username, book.getName());
+        }
+    }
+
+    @Override
+    public void updateBookField(String dbName, String username, String bookName, String field, String value)
+            throws SQLException
+    {
+        try
+        {
+            this.storage.updateBookField(dbName, username, bookName, field, value);
+        }
+        finally
+        {
+            this.invalidate(dbName, username, bookName);
+        }
+    }
+
+    @Override
+    public void deleteBook(String dbName, String username, String bookName) throws SQLException
+    {
+        try
+        {
+            this.storage.deleteBook(dbName, username, bookName);
+        }
+        finally
+        {
+            this.invalidate(dbName, username, bookName);
+        }
+    }
+
+    @Override
+    public void deleteBooks(String dbName, String username) throws SQLException
+    {
+        try
+        {
+            this.storage.deleteBooks(dbName, username);
+        }
+        finally
+        {
+            this.invalidate(dbName, username);
+        }
+    }
+
+    @Override
+    public boolean createNote(String dbName, String username, String bookName, Note note) throws SQLException
+    {
+        try
+        {
+            return this.storage.createNote(dbName, username, bookName, note);
+        }
+        finally
+        {
+            this.invalidate(dbName, username, bookName);
+        }
+    }
+
+    @Override
+    public void updateNote(String dbName, String username, String bookName, int page, Note note) throws SQLException
+    {
+        try
+        {
+            this.storage.updateNote(dbName, username, bookName, page, note);
+        }
+        finally
+        {
+            this.invalidate(dbName, username, bookName);
+        }
+    }
+
+    @Override
+    public void updateNoteField(String dbName, String username, String bookName, int page, String field, String value)
+            throws SQLException
+    {
+        try
+        {
+            this.storage.updateNoteField(dbName, username, bookName, page, field, value);
+        }
+        finally
+        {
+            this.invalidate(dbName, username, bookName);
+        }
+    }
+
+    @Override
+    public void deleteNote(String dbName, String username, String bookName, int page) throws SQLException
+    {
+        try
+        {
+            this.storage.deleteNote(dbName, username, bookName, page);
+        }
+        finally
+        {
+            this.invalidate(dbName, username, bookName);
+        }
+    }
+
+    @Override
+    public void deleteNotes(String dbName, String username, String bookName) throws SQLException
+    {
+        try
+        {
+            this.storage.deleteNotes(dbName, username, bookName);
+        }
+        finally
+        {
+            this.invalidate(dbName, username, bookName);
+        }
+    }
+
+    @Override
+    public void createLabel(String dbName, String username, String label) throws SQLException
+    {
+        this.storage.createLabel(dbName, username, label);
+    }
+
+    @Override
+    public boolean labelBook(String dbName, String username, String bookName, String label, boolean labeled)
+            throws SQLException
+    {
+        return this.storage.labelBook(dbName, username, bookName, label, labeled);
+    }
+
+    @Override
+    public void deleteLabel(String dbName, String username, String label) throws SQLException
+    {
+        this.storage.deleteLabel(dbName, username, label);
+    }
+
+    @Override
+    public void deleteLabels(String dbName, String username) throws SQLException
+    {
+        this.storage.deleteLabels(dbName, username);
+    }
+
+    @Override
+    public boolean isTransactional()
+    {
+        return this.storage.isTransactional();
+    }
+
+    /**
+     * Invalidate a book when the running transaction ends, or now if
+     * no transaction is running. Does nothing if bookName is null.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of book.
+     */
+    private void invalidate(String dbName, String username, String bookName)
+    {
+        if (bookName == null)
+        {
+            return; // Book wasn't given
+        }
+
+        Transaction.whenDone(() -> this.cache.invalidate(dbName, username, bookName));
+    }
+
+    /**
+     * Invalidate all of a user's books when the running transaction
+     * ends, or now if no transaction is running.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     */
+    private void invalidate(String dbName, String username)
+    {
+        Transaction.whenDone(() -> this.cache.invalidate(dbName, username));
+    }
+
+    /**
+     * Get number of book reads that used a cached book.
+     *
+     * @return Number of book cache hits.
+     */
+    public long getCacheHits()
+    {
+        return this.cache.getHits();
+    }
+
+    /**
+     * Get number of book reads that didn't find a cached book.
+     *
+     * @return Number of book cache misses.
+     */
+    public long getCacheMisses()
+    {
+        return this.cache.getMisses();
+    }
+
+    /**
+     * Get ratio of book reads that used a cached book.
+     *
+     * @return Hit ratio between 0 and 1.
+     */
+    public double getCacheHitRatio()
+    {
+        return this.cache.getHitRatio();
+    }
+
+    /**
+     * Get number of books evicted from the cache to make room for
+     * others.
+     *
+     * @return Number of evictions.
+     */
+    public long getCacheEvictions()
+    {
+        return this.cache.getEvictions();
+    }
+
+    /**
+     * Get number of cached books.
+     *
+     * @return Number of books.
+     */
+    public int getCacheSize()
+    {
+        return this.cache.getSize();
+    }
+
+    /**
+     * Get total length of cached books' JSON.
+     *
+     * @return Cache's weight in characters.
+     */
+    public long getCacheWeight()
+    {
+        return this.cache.getWeight();
+    }
+}
@@ -0,0 +1,365 @@
+package com.github.sudo_sturbia.agatha.server.storage;
+
+import com.github.sudo_sturbia.agatha.server.database.ConnectorBuilder;
+import com.github.sudo_sturbia.agatha.server.database.Transaction;
+import com.github.sudo_sturbia.agatha.server.request.Sanitizer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Migration copies clients' data from TableStorage's layout to
+ * SharedStorage's layout, one user at a time.
+ * <p>
+ * Labels are copied from TableStorage's UserLabels table, after labels
+ * kept as columns of users' tables are moved to it.
+ * <p>
+ * Users are read in pages ordered by username, so the Users table is
+ * never read at once. Each user is copied in its own transaction,
+ * which locks the user's tables for reading only while they're copied,
+ * so a server using TableStorage can keep serving clients during the
+ * migration. Copying a user first deletes any of its rows that were
+ * copied before, so migration can be run again to copy changes made
+ * while it was running, and then the server restarted with
+ * SharedStorage. Old tables aren't dropped.
+ */
+public class Migration
+{
+    /** Number of usernames read at a time. */
+    static final int PAGE_SIZE = 100;
+
+    /** Name of application's database. */
+    private final String dbName;
+
+    /** Storage data is copied to. */
+    private final SharedStorage shared;
+
+    /** Number of copied users. */
+    private long users;
+
+    /** Number of copied books. */
+    private long books;
+
+    /** Number of copied notes. */
+    private long notes;
+
+    /**
+     * Migration's constructor.
+     *
+     * @param dbName name of application's database.
+     * @throws IllegalArgumentException if dbName is null.
+     */
+    public Migration(String dbName) throws IllegalArgumentException
+    {
+        if (dbName == null)
+        {
+            throw new IllegalArgumentException("Database name is not given.");
+        }
+
+        this.dbName = dbName;
+        this.shared = new SharedStorage();
+    }
+
+    /**
+     * Create SharedStorage's tables if they don't exist, and copy all
+     * users' books, notes, and labels to them.
+     *
+     * @throws SQLException in case of a SQL error, users copied before
+     *         the error stay copied.
+     */
+    public void run() throws SQLException
+    {
+        // Also moves labels kept as columns to UserLabels
+        new TableStorage().setup(this.dbName);
+        this.shared.setup(this.dbName);
+
+        String last = "";
+        List<String> page;
+        do
+        {
+            page = this.usernames(last);
+            for (String username : page)
+            {
+                this.migrate(username);
+                last = username;
+            }
+        }
+        while (page.size() == Migration.PAGE_SIZE);
+    }
+
+    /**
+     * Get a page of usernames that come after given one.
+     *
+     * @param after username to start after.
+     * @return Up to PAGE_SIZE usernames, in order.
+     * @throws SQLException in case of a SQL error.
+     */
+    private List<String> usernames(String after) throws SQLException
+    {
+        try (
+                Connection connection = ConnectorBuilder.connector().connection();
+                PreparedStatement getNames = connection.prepareStatement(
+                        "SELECT username FROM " + this.dbName + ".Users " +
+                                "WHERE username > ? ORDER BY username LIMIT " + Migration.PAGE_SIZE + ";"
+                );
+        ) {
+            getNames.setString(1, after);
+
+            List<String> usernames = new ArrayList<>();
+            try (ResultSet set = getNames.executeQuery())
+            {
+                while (set.next())
+                {
+                    usernames.add(set.getString("username"));
+                }
+            }
+
+            return usernames;
+        }
+    }
+
+    /**
+     * Copy a user's books, notes, and labels in one transaction,
+     * replacing any copied before.
+     *
+     * @param username user's username.
+     * @throws SQLException in case of a SQL error.
+     */
+    private void migrate(String username) throws SQLException
+    {
+        Set<String> tables = this.tables(username);
+        if (!tables.contains(Sanitizer.sanitize(username)))
+        {
+            return; // User has no books
+        }
+
+        long[] copied = new long[2];
+        Transaction.run(() -> {
+            this.shared.deleteBooks(this.dbName, username);
+            this.shared.deleteLabels(this.dbName, username);
+
+            try (
+                    Connection connection = Transaction.connection();
+                    PreparedStatement getBooks = connection.prepareStatement(
+                            "SELECT * FROM " + this.dbName + "." + Sanitizer.sanitize(username) + " LOCK IN SHARE MODE;"
+                    );
+                    PreparedStatement addBook = connection.prepareStatement(
+                            "INSERT INTO " + this.dbName + ".Books " +
+                                    "(userId, bookName, author, state, pages, readPages, coverPath) " +
+                                    "SELECT id, ?, ?, ?, ?, ?, ? FROM " + this.dbName + ".Users WHERE username = ?;",
+                            Statement.RETURN_GENERATED_KEYS
+                    );
+                    PreparedStatement addNotes = connection.prepareStatement(
+                            "INSERT INTO " + this.dbName + ".Notes (note, page, bookId) VALUES (?, ?, ?);"
+                    );
+                    PreparedStatement addLabel = connection.prepareStatement(
+                            "INSERT INTO " + this.dbName + ".Labels (userId, label) " +
+                                    "SELECT id, ? FROM " + this.dbName + ".Users WHERE username = ?;",
+                            Statement.RETURN_GENERATED_KEYS
+                    );
+                    PreparedStatement getLabels = connection.prepareStatement(
+                            "SELECT label, bookName FROM " + this.dbName + ".UserLabels " +
+                                    "WHERE userTable = ? ORDER BY label, bookName LOCK IN SHARE MODE;"
+                    );
+                    PreparedStatement addBookLabels = connection.prepareStatement(
+                            "INSERT INTO " + this.dbName + ".BookLabels (labelId, bookId) VALUES (?, ?);"
+                    );
+            ) {
+                // Ids of copied books, by name
+                Map<String, Long> bookIds = new HashMap<>();
+                Map<Long, String> notesTables = new LinkedHashMap<>();
+                try (ResultSet set = getBooks.executeQuery())
+                {
+                    addBook.setString(7, username);
+                    while (set.next())
+                    {
+                        String bookName = set.getString("bookName");
+                        addBook.setString(1, bookName);
+                        addBook.setString(2, set.getString("author"));
+                        addBook.setString(3, set.getString("state"));
+                        addBook.setInt(4, set.getInt("pages"));
+                        addBook.setInt(5, set.getInt("readPages"));
+                        addBook.setString(6, set.getString("coverPath"));
+                        addBook.executeUpdate();
+
+                        long bookId;
+                        try (ResultSet keys = addBook.getGeneratedKeys())
+                        {
+                            keys.next();
+                            bookId = keys.getLong(1);
+                        }
+
+                        bookIds.put(bookName, bookId);
+
+                        // Notes written without updating hasNotes are copied too
+                        String notesTable = Sanitizer.sanitize(username + bookName);
+                        if (tables.contains(notesTable))
+                        {
+                            notesTables.put(bookId, notesTable);
+                        }
+
+                        copied[0]++;
+                    }
+                }
+
+                for (Map.Entry<Long, String> entry : notesTables.entrySet())
+                {
+                    copied[1] += this.copyNotes(connection, entry.getValue(), entry.getKey(), addNotes);
+                }
+
+                // A label's row without a book comes before its books' rows
+                getLabels.setString(1, Sanitizer.sanitize(username));
+                try (ResultSet set = getLabels.executeQuery())
+                {
+                    while (set.next())
+                    {
+                        String bookName = set.getString("bookName");
+                        if (bookName.isEmpty())
+                        {
+                            addLabel.setString(1, set.getString("label"));
+                            addLabel.setString(2, username);
+                            addLabel.executeUpdate();
+
+                            try (ResultSet keys = addLabel.getGeneratedKeys())
+                            {
+                                keys.next();
+                                addBookLabels.setLong(1, keys.getLong(1));
+                            }
+                        }
+                        else if (bookIds.containsKey(bookName))
+                        {
+                            addBookLabels.setLong(2, bookIds.get(bookName));
+                            addBookLabels.addBatch();
+                        }
+                    }
+                }
+
+                addBookLabels.executeBatch();
+                return true;
+            }
+        });
+
+        this.users++;
+        this.books += copied[0];
+        this.notes += copied[1];
+    }
+
+    /**
+     * Copy the notes of a book's table in batches.
+     *
+     * @param connection transaction's connection.
+     * @param notesTable name of book's table.
+     * @param bookId id of copied book.
+     * @param addNotes statement inserting a note's text, page, and book id.
+     * @return Number of copied notes.
+     * @throws SQLException in case of a SQL error.
+     */
+    private long copyNotes(Connection connection, String notesTable, long bookId, PreparedStatement addNotes)
+            throws SQLException
+    {
+        try (
+                PreparedStatement getNotes = connection.prepareStatement(
+                        "SELECT note, page FROM " + this.dbName + "." + notesTable + " LOCK IN SHARE MODE;"
+                );
+                ResultSet set = getNotes.executeQuery()
+        ) {
+            long copied = 0;
+            int batched = 0;
+            addNotes.setLong(3, bookId);
+            while (set.next())
+            {
+                addNotes.setString(1, set.getString("note"));
+                addNotes.setInt(2, set.getInt("page"));
+                addNotes.addBatch();
+                copied++;
+
+                if (++batched == StorageUtil.BATCH_SIZE)
+                {
+                    addNotes.executeBatch();
+                    batched = 0;
+                }
+            }
+
+            if (batched > 0)
+            {
+                addNotes.executeBatch();
+            }
+
+            return copied;
+        }
+    }
+
+    /**
+     * Get names of the tables whose names start with a user's table's
+     * name, which include user's table and the tables of its books.
+     *
+     * @param username user's username.
+     * @return A set of tables' names.
+     * @throws SQLException in case of a SQL error.
+     */
+    private Set<String> tables(String username) throws SQLException
+    {
+        try (
+                Connection connection = ConnectorBuilder.connector().connection();
+                PreparedStatement getTables = connection.prepareStatement(
+                        "SELECT TABLE_NAME FROM information_schema.TABLES " +
+                                "WHERE TABLE_SCHEMA = ? AND TABLE_NAME LIKE ?;"
+                );
+        ) {
+            // Underscores match any character, so more tables than needed may be found
+            getTables.setString(1, this.dbName);
+            getTables.setString(2, Sanitizer.sanitize(username) + "%");
+
+            Set<String> tables = new HashSet<>();
+            try (ResultSet set = getTables.executeQuery())
+            {
+                while (set.next())
+                {
+                    tables.add(set.getString(1));
+                }
+            }
+
+            return tables;
+        }
+    }
+
+    /**
+     * Get number of users copied.
+     *
+     * @return Number of users.
+     */
+    public long getUsers()
+    {
+        return this.users;
+    }
+
+    /**
+     * Get number of books copied.
+     *
+     * @return Number of books.
+     */
+    public long getBooks()
+    {
+        return this.books;
+    }
+
+    /**
+     * Get number of notes copied.
+     *
+     * @return Number of notes.
+     */
+    public long getNotes()
+    {
+        return this.notes;
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.sudo_sturbia.agatha.server.storage;
+
+import com.github.sudo_sturbia.agatha.core.Note;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * NoteDiff is the difference between the notes stored in a book's
+ * table and the notes of an updated book.
+ * <p>
+ * Notes are matched by page, as a page has at most one note. A note
+ * on a page that isn't stored is inserted, a note whose text changed
+ * is updated, and a stored note whose page isn't in the updated book
+ * is deleted. Notes that didn't change aren't written, so updating
+ * one note of a large book writes one row.
+ */
+class NoteDiff
+{
+    /** Notes on pages that aren't stored. */
+    private final List<Note> inserted;
+
+    /** Notes whose text changed. */
+    private final List<Note> updated;
+
+    /** Pages whose notes were removed. */
+    private final List<Integer> deleted;
+
+    /**
+     * Compute the difference between stored and updated notes.
+     *
+     * @param stored stored notes, text by page.
+     * @param notes notes of updated book.
+     */
+    NoteDiff(Map<Integer, String> stored, List<Note> notes)
+    {
+        this.inserted = new ArrayList<>();
+        this.updated = new ArrayList<>();
+        this.deleted = new ArrayList<>();
+
+        // A later note on the same page replaces an earlier one
+        Map<Integer, Note> byPage = new LinkedHashMap<>();
+        for (Note note : notes)
+        {
+            byPage.put(note.getPageNumber(), note);
+        }
+
+        for (Note note : byPage.values())
+        {
+            if (!stored.containsKey(note.getPageNumber()))
+            {
+                this.inserted.add(note);
+            }
+            else if (!Objects.equals(stored.get(note.getPageNumber()), note.getNote()))
+            {
+                this.updated.add(note);
+            }
+        }
+
+        for (Integer page : stored.keySet())
+        {
+            if (!byPage.containsKey(page))
+            {
+                this.deleted.add(page);
+            }
+        }
+    }
+
+    /**
+     * Write the difference using given statements. Each kind of change
+     * is sent in batches, and should be written in a transaction.
+     * <p>
+     * Statements can have more parameters after the given ones, for
+     * example the id of the notes' book, which should be set before
+     * writing and are kept for all notes.
+     *
+     * @param insert statement of the form <code>INSERT INTO table VALUES (?, ?)</code>.
+     * @param update statement of the form <code>UPDATE table SET note = ? WHERE page = ?</code>.
+     * @param delete statement of the form <code>DELETE FROM table WHERE page = ?</code>.
+     * @return Number of written rows.
+     * @throws SQLException in case of a SQL error.
+     */
+    int apply(PreparedStatement insert, PreparedStatement update, PreparedStatement delete) throws SQLException
+    {
+        int batched = 0;
+        for (Integer page : this.deleted)
+        {
+            delete.setInt(1, page);
+            delete.addBatch();
+
+            if (++batched == StorageUtil.BATCH_SIZE)
+            {
+                delete.executeBatch();
+                batched = 0;
+            }
+        }
+
+        if (batched > 0)
+        {
+            delete.executeBatch();
+        }
+
+        // Update statements have the same parameters as inserts
+        StorageUtil.insertNotes(update, this.updated);
+        StorageUtil.insertNotes(insert, this.inserted);
+
+        return this.size();
+    }
+
+    /**
+     * Get notes on pages that aren't stored.
+     *
+     * @return Inserted notes.
+     */
+    List<Note> getInserted()
+    {
+        return this.inserted;
+    }
+
+    /**
+     * Get notes whose text changed.
+     *
+     * @return Updated notes.
+     */
+    List<Note> getUpdated()
+    {
+        return this.updated;
+    }
+
+    /**
+     * Get pages whose notes were removed.
+     *
+     * @return Pages of deleted notes.
+     */
+    List<Integer> getDeleted()
+    {
+        return this.deleted;
+    }
+
+    /**
+     * Get number of rows the difference writes.
+     *
+     * @return Number of inserted, updated, and deleted notes.
+     */
+    int size()
+    {
+        return this.inserted.size() + this.updated.size() + this.deleted.size();
+    }
+}
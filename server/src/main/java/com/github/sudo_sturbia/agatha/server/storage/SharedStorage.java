@@ -0,0 +1,686 @@
+package com.github.sudo_sturbia.agatha.server.storage;
+
+import com.github.sudo_sturbia.agatha.core.Book;
+import com.github.sudo_sturbia.agatha.core.Note;
+import com.github.sudo_sturbia.agatha.server.database.ConnectorBuilder;
+import com.github.sudo_sturbia.agatha.server.database.Transaction;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SharedStorage is an implementation of Storage that keeps the books,
+ * notes, and labels of all users in four shared tables.
+ * <pre>
+ *     Books      (id, userId, bookName, author, state, pages, readPages, coverPath)
+ *     Notes      (bookId, page, note)
+ *     Labels     (id, userId, label)
+ *     BookLabels (labelId, bookId)
+ * </pre>
+ * Books and labels are keyed by user's id in Users, and are unique by
+ * name for each user. Notes are clustered by book, so a book's notes
+ * are read with one range scan. Deleting a book or label deletes its
+ * notes and label rows using foreign keys.
+ * <p>
+ * Unlike TableStorage, the number of tables doesn't grow with the
+ * number of users and books, and creating or deleting a user, book,
+ * or label doesn't change the structure of any table.
+ */
+public class SharedStorage implements Storage
+{
+    /**
+     * SharedStorage's constructor.
+     */
+    SharedStorage()
+    {
+    }
+
+    @Override
+    public void setup(String dbName) throws SQLException
+    {
+        try (
+                Connection connection = ConnectorBuilder.connector().connection();
+                PreparedStatement hasId = connection.prepareStatement(
+                        "SELECT COUNT(*) FROM information_schema.COLUMNS " +
+                                "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = 'Users' AND COLUMN_NAME = 'id';"
+                );
+                Statement create = connection.createStatement()
+        ) {
+            // Users created before this layout have no id
+            hasId.setString(1, dbName);
+            try (ResultSet set = hasId.executeQuery())
+            {
+                if (set.next() && set.getInt(1) == 0)
+                {
+                    create.executeUpdate("ALTER TABLE " + dbName + ".Users ADD id bigint NOT NULL AUTO_INCREMENT UNIQUE;");
+                }
+            }
+
+            create.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS " + dbName + ".Books (" +
+                            "id bigint NOT NULL AUTO_INCREMENT, " +
+                            "userId bigint NOT NULL, " +
+                            "bookName varchar(255) NOT NULL, " +
+                            "author varchar(255), " +
+                            "state varchar(10) NOT NULL, " +
+                            "pages int NOT NULL, " +
+                            "readPages int, " +
+                            "coverPath varchar(255), " +
+                            "PRIMARY KEY(id), " +
+                            "UNIQUE KEY(userId, bookName)" +
+                            ");"
+            );
+
+            create.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS " + dbName + ".Notes (" +
+                            "bookId bigint NOT NULL, " +
+                            "page int NOT NULL, " +
+                            "note text, " +
+                            "PRIMARY KEY(bookId, page), " +
+                            "FOREIGN KEY(bookId) REFERENCES " + dbName + ".Books(id) ON DELETE CASCADE" +
+                            ");"
+            );
+
+            create.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS " + dbName + ".Labels (" +
+                            "id bigint NOT NULL AUTO_INCREMENT, " +
+                            "userId bigint NOT NULL, " +
+                            "label varchar(64) NOT NULL, " +
+                            "PRIMARY KEY(id), " +
+                            "UNIQUE KEY(userId, label)" +
+                            ");"
+            );
+
+            create.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS " + dbName + ".BookLabels (" +
+                            "labelId bigint NOT NULL, " +
+                            "bookId bigint NOT NULL, " +
+                            "PRIMARY KEY(labelId, bookId), " +
+                            "KEY(bookId), " +
+                            "FOREIGN KEY(labelId) REFERENCES " + dbName + ".Labels(id) ON DELETE CASCADE, " +
+                            "FOREIGN KEY(bookId) REFERENCES " + dbName + ".Books(id) ON DELETE CASCADE" +
+                            ");"
+            );
+        }
+    }
+
+    @Override
+    public void createUser(String dbName, String username)
+    {
+        // User's rows are created with its books
+    }
+
+    @Override
+    public void deleteUser(String dbName, String username) throws SQLException
+    {
+        Transaction.run(() -> {
+            this.deleteBooks(dbName, username);
+            this.deleteLabels(dbName, username);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean createBook(String dbName, String username, Book book) throws SQLException
+    {
+        return Transaction.run(() -> {
+            try (
+                    Connection connection = Transaction.connection();
+                    PreparedStatement addBook = connection.prepareStatement(
+                            "INSERT INTO " + dbName + ".Books " +
+                                    "(userId, bookName, author, state, pages, readPages, coverPath) " +
+                                    "SELECT id, ?, ?, ?, ?, ?, ? FROM " + dbName + ".Users WHERE username = ?;",
+                            Statement.RETURN_GENERATED_KEYS
+                    );
+                    PreparedStatement insertNotes = connection.prepareStatement(
+                            "INSERT INTO " + dbName + ".Notes (note, page, bookId) VALUES (?, ?, ?);"
+                    )
+            ) {
+                // Book's name already exists
+                if (SharedStorage.bookId(connection, dbName, username, book.getName(), false) != -1)
+                {
+                    return false;
+                }
+
+                addBook.setString(1, book.getName());
+                addBook.setString(2, book.getAuthor());
+                addBook.setString(3, book.getStateToString());
+                addBook.setInt(4, book.getNumberOfPages());
+                addBook.setInt(5, book.getNumberOfReadPages());
+                addBook.setString(6, book.getCoverImagePath());
+                addBook.setString(7, username);
+
+                if (addBook.executeUpdate() == 0)
+                {
+                    return false; // User doesn't exist
+                }
+
+                long bookId;
+                try (ResultSet keys = addBook.getGeneratedKeys())
+                {
+                    keys.next();
+                    bookId = keys.getLong(1);
+                }
+
+                insertNotes.setLong(3, bookId);
+                StorageUtil.insertNotes(insertNotes, book.getNotes());
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public Book readBook(String dbName, String username, String bookName) throws SQLException
+    {
+        try (
+                Connection connection = ConnectorBuilder.connector().readConnection(dbName, username);
+                PreparedStatement getBook = connection.prepareStatement(
+                        "SELECT b.id, b.bookName, b.author, b.state, b.pages, b.readPages, b.coverPath " +
+                                "FROM " + dbName + ".Books b JOIN " + dbName + ".Users u ON b.userId = u.id " +
+                                "WHERE u.username = ? AND b.bookName = ?;"
+                );
+                PreparedStatement getNotes = connection.prepareStatement(
+                        "SELECT page, note FROM " + dbName + ".Notes WHERE bookId = ? ORDER BY page;"
+                );
+        ) {
+            getBook.setString(1, username);
+            getBook.setString(2, bookName);
+
+            Book book;
+            try (ResultSet set = getBook.executeQuery())
+            {
+                if (!set.next())
+                {
+                    return null;
+                }
+
+                book = StorageUtil.book(set);
+                getNotes.setLong(1, set.getLong("id"));
+            }
+
+            try (ResultSet noteSet = getNotes.executeQuery())
+            {
+                while (noteSet.next())
+                {
+                    book.addNote(noteSet.getString("note"), noteSet.getInt("page"));
+                }
+            }
+
+            return book;
+        }
+    }
+
+    @Override
+    public boolean writeBook(String dbName, String username, String bookName, JsonWriter writer)
+            throws SQLException, IOException
+    {
+        try (
+                Connection connection = ConnectorBuilder.connector().readConnection(dbName, username);
+                PreparedStatement getBook = connection.prepareStatement(SharedStorage.booksQuery(dbName, 1));
+        ) {
+            getBook.setString(1, username);
+            getBook.setString(2, bookName);
+            try (ResultSet set = getBook.executeQuery())
+            {
+                return StorageUtil.writeBooks(set, writer) > 0;
+            }
+        }
+    }
+
+    @Override
+    public int writeBooks(String dbName, String username, List<String> bookNames, JsonWriter writer)
+            throws SQLException, IOException
+    {
+        writer.beginArray();
+        if (bookNames.isEmpty())
+        {
+            writer.endArray();
+            return 0;
+        }
+
+        try (
+                Connection connection = ConnectorBuilder.connector().readConnection(dbName, username);
+                PreparedStatement getBooks = connection.prepareStatement(
+                        SharedStorage.booksQuery(dbName, bookNames.size())
+                );
+        ) {
+            getBooks.setString(1, username);
+            for (int i = 0; i < bookNames.size(); i++)
+            {
+                getBooks.setString(i + 2, bookNames.get(i));
+            }
+
+            int books;
+            try (ResultSet set = getBooks.executeQuery())
+            {
+                books = StorageUtil.writeBooks(set, writer);
+            }
+
+            writer.endArray();
+            return books;
+        }
+    }
+
+    @Override
+    public List<String> readBookNames(String dbName, String username) throws SQLException
+    {
+        try (
+                Connection connection = ConnectorBuilder.connector().readConnection(dbName, username);
+                PreparedStatement getNames = connection.prepareStatement(
+                        "SELECT b.bookName " +
+                                "FROM " + dbName + ".Books b JOIN " + dbName + ".Users u ON b.userId = u.id " +
+                                "WHERE u.username = ?;"
+                );
+        ) {
+            getNames.setString(1, username);
+            return SharedStorage.names(getNames);
+        }
+    }
+
+    @Override
+    public List<String> readBookNames(String dbName, String username, String label) throws SQLException
+    {
+        try (
+                Connection connection = ConnectorBuilder.connector().readConnection(dbName, username);
+                PreparedStatement getNames = connection.prepareStatement(
+                        "SELECT b.bookName " +
+                                "FROM " + dbName + ".Users u " +
+                                "JOIN " + dbName + ".Labels l ON l.userId = u.id " +
+                                "JOIN " + dbName + ".BookLabels bl ON bl.labelId = l.id " +
+                                "JOIN " + dbName + ".Books b ON b.id = bl.bookId " +
+                                "WHERE u.username = ? AND l.label = ?;"
+                );
+        ) {
+            getNames.setString(1, username);
+            getNames.setString(2, label);
+            return SharedStorage.names(getNames);
+        }
+    }
+
+    @Override
+    public int updateBook(String dbName, String username, String bookName, Book book) throws SQLException
+    {
+        int[] written = new int[1];
+        Transaction.run(() -> {
+            try (
+                    Connection connection = Transaction.connection();
+                    PreparedStatement updateBook = connection.prepareStatement(
+                            "UPDATE " + dbName + ".Books " +
+                                    "SET " +
+                                    "bookName = ?, " +
+                                    "author = ?, " +
+                                    "state = ?, " +
+                                    "pages = ?, " +
+                                    "readPages = ?, " +
+                                    "coverPath = ? " +
+                                    "WHERE id = ?;"
+                    );
+                    PreparedStatement getNotes = connection.prepareStatement(
+                            "SELECT page, note FROM " + dbName + ".Notes WHERE bookId = ? FOR UPDATE;"
+                    );
+                    PreparedStatement insertNotes = connection.prepareStatement(
+                            "INSERT INTO " + dbName + ".Notes (note, page, bookId) VALUES (?, ?, ?);"
+                    );
+                    PreparedStatement updateNotes = connection.prepareStatement(
+                            "UPDATE " + dbName + ".Notes SET note = ? WHERE page = ? AND bookId = ?;"
+                    );
+                    PreparedStatement deleteNotes = connection.prepareStatement(
+                            "DELETE FROM " + dbName + ".Notes WHERE page = ? AND bookId = ?;"
+                    );
+            ) {
+                // Book's row is locked until transaction ends
+                long bookId = SharedStorage.bookId(connection, dbName, username, bookName, true);
+                if (bookId == -1)
+                {
+                    throw new SQLException("Book " + bookName + " doesn't exist.");
+                }
+
+                updateBook.setString(1, book.getName());
+                updateBook.setString(2, book.getAuthor());
+                updateBook.setString(3, book.getStateToString());
+                updateBook.setInt(4, book.getNumberOfPages());
+                updateBook.setInt(5, book.getNumberOfReadPages());
+                updateBook.setString(6, book.getCoverImagePath());
+                updateBook.setLong(7, bookId);
+
+                updateBook.executeUpdate();
+
+                Map<Integer, String> stored = new HashMap<>();
+                getNotes.setLong(1, bookId);
+                try (ResultSet set = getNotes.executeQuery())
+                {
+                    while (set.next())
+                    {
+                        stored.put(set.getInt("page"), set.getString("note"));
+                    }
+                }
+
+                insertNotes.setLong(3, bookId);
+                updateNotes.setLong(3, bookId);
+                deleteNotes.setLong(2, bookId);
+
+                written[0] = new NoteDiff(stored, book.getNotes()).apply(insertNotes, updateNotes, deleteNotes);
+                return true;
+            }
+        });
+
+        return written[0];
+    }
+
+    @Override
+    public void updateBookField(String dbName, String username, String bookName, String field, String value)
+            throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement updateBook = connection.prepareStatement(
+                        "UPDATE " + dbName + ".Books b JOIN " + dbName + ".Users u ON b.userId = u.id " +
+                                "SET " +
+                                "b." + field + " = ? " +
+                                "WHERE u.username = ? AND b.bookName = ?;"
+                );
+        ) {
+            updateBook.setString(1, value);
+            updateBook.setString(2, username);
+            updateBook.setString(3, bookName);
+            updateBook.executeUpdate();
+        }
+    }
+
+    @Override
+    public void deleteBook(String dbName, String username, String bookName) throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement deleteBook = connection.prepareStatement(
+                        "DELETE b FROM " + dbName + ".Books b JOIN " + dbName + ".Users u ON b.userId = u.id " +
+                                "WHERE u.username = ? AND b.bookName = ?;"
+                );
+        ) {
+            // Book's notes and labels are deleted with it
+            deleteBook.setString(1, username);
+            deleteBook.setString(2, bookName);
+            deleteBook.executeUpdate();
+        }
+    }
+
+    @Override
+    public void deleteBooks(String dbName, String username) throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement deleteBooks = connection.prepareStatement(
+                        "DELETE b FROM " + dbName + ".Books b JOIN " + dbName + ".Users u ON b.userId = u.id " +
+                                "WHERE u.username = ?;"
+                );
+        ) {
+            deleteBooks.setString(1, username);
+            deleteBooks.executeUpdate();
+        }
+    }
+
+    @Override
+    public boolean createNote(String dbName, String username, String bookName, Note note) throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement insertNote = connection.prepareStatement(
+                        "INSERT INTO " + dbName + ".Notes (note, page, bookId) " +
+                                "SELECT ?, ?, b.id " +
+                                "FROM " + dbName + ".Books b JOIN " + dbName + ".Users u ON b.userId = u.id " +
+                                "WHERE u.username = ? AND b.bookName = ?;"
+                );
+        ) {
+            // Fails if page's number is used, and inserts nothing if
+            // book doesn't exist.
+            insertNote.setString(1, note.getNote());
+            insertNote.setInt(2, note.getPageNumber());
+            insertNote.setString(3, username);
+            insertNote.setString(4, bookName);
+
+            return insertNote.executeUpdate() > 0;
+        }
+    }
+
+    @Override
+    public void updateNote(String dbName, String username, String bookName, int page, Note note) throws SQLException
+    {
+        this.updateNoteField(dbName, username, bookName, page, "note", note.getNote());
+    }
+
+    @Override
+    public void updateNoteField(String dbName, String username, String bookName, int page, String field, String value)
+            throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement updateNote = connection.prepareStatement(
+                        "UPDATE " + dbName + ".Notes n " +
+                                "JOIN " + dbName + ".Books b ON n.bookId = b.id " +
+                                "JOIN " + dbName + ".Users u ON b.userId = u.id " +
+                                "SET " +
+                                "n." + field + " = ? " +
+                                "WHERE u.username = ? AND b.bookName = ? AND n.page = ?;"
+                );
+        ) {
+            updateNote.setString(1, value);
+            updateNote.setString(2, username);
+            updateNote.setString(3, bookName);
+            updateNote.setInt(4, page);
+            updateNote.executeUpdate();
+        }
+    }
+
+    @Override
+    public void deleteNote(String dbName, String username, String bookName, int page) throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement deleteNote = connection.prepareStatement(
+                        "DELETE n FROM " + dbName + ".Notes n " +
+                                "JOIN " + dbName + ".Books b ON n.bookId = b.id " +
+                                "JOIN " + dbName + ".Users u ON b.userId = u.id " +
+                                "WHERE u.username = ? AND b.bookName = ? AND n.page = ?;"
+                );
+        ) {
+            deleteNote.setString(1, username);
+            deleteNote.setString(2, bookName);
+            deleteNote.setInt(3, page);
+            deleteNote.executeUpdate();
+        }
+    }
+
+    @Override
+    public void deleteNotes(String dbName, String username, String bookName) throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement deleteNotes = connection.prepareStatement(
+                        "DELETE n FROM " + dbName + ".Notes n " +
+                                "JOIN " + dbName + ".Books b ON n.bookId = b.id " +
+                                "JOIN " + dbName + ".Users u ON b.userId = u.id " +
+                                "WHERE u.username = ? AND b.bookName = ?;"
+                );
+        ) {
+            deleteNotes.setString(1, username);
+            deleteNotes.setString(2, bookName);
+            deleteNotes.executeUpdate();
+        }
+    }
+
+    @Override
+    public void createLabel(String dbName, String username, String label) throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement addLabel = connection.prepareStatement(
+                        "INSERT INTO " + dbName + ".Labels (userId, label) " +
+                                "SELECT id, ? FROM " + dbName + ".Users WHERE username = ?;"
+                );
+        ) {
+            // Fails if label exists
+            addLabel.setString(1, label);
+            addLabel.setString(2, username);
+            addLabel.executeUpdate();
+        }
+    }
+
+    @Override
+    public boolean labelBook(String dbName, String username, String bookName, String label, boolean labeled)
+            throws SQLException
+    {
+        String sql = labeled ?
+                "INSERT INTO " + dbName + ".BookLabels (labelId, bookId) VALUES (?, ?) " +
+                        "ON DUPLICATE KEY UPDATE labelId = labelId;" :
+                "DELETE FROM " + dbName + ".BookLabels WHERE labelId = ? AND bookId = ?;";
+
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement getIds = connection.prepareStatement(
+                        "SELECT l.id, b.id " +
+                                "FROM " + dbName + ".Users u " +
+                                "JOIN " + dbName + ".Labels l ON l.userId = u.id " +
+                                "JOIN " + dbName + ".Books b ON b.userId = u.id " +
+                                "WHERE u.username = ? AND l.label = ? AND b.bookName = ?;"
+                );
+                PreparedStatement labelBook = connection.prepareStatement(sql);
+        ) {
+            getIds.setString(1, username);
+            getIds.setString(2, label);
+            getIds.setString(3, bookName);
+            try (ResultSet set = getIds.executeQuery())
+            {
+                if (!set.next()) // Label or book doesn't exist
+                {
+                    return false;
+                }
+
+                labelBook.setLong(1, set.getLong(1));
+                labelBook.setLong(2, set.getLong(2));
+            }
+
+            // Labeling a labeled book changes nothing
+            labelBook.executeUpdate();
+        }
+
+        return true;
+    }
+
+    @Override
+    public void deleteLabel(String dbName, String username, String label) throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement deleteLabel = connection.prepareStatement(
+                        "DELETE l FROM " + dbName + ".Labels l JOIN " + dbName + ".Users u ON l.userId = u.id " +
+                                "WHERE u.username = ? AND l.label = ?;"
+                );
+        ) {
+            // Label's rows in BookLabels are deleted with it
+            deleteLabel.setString(1, username);
+            deleteLabel.setString(2, label);
+            deleteLabel.executeUpdate();
+        }
+    }
+
+    @Override
+    public void deleteLabels(String dbName, String username) throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement deleteLabels = connection.prepareStatement(
+                        "DELETE l FROM " + dbName + ".Labels l JOIN " + dbName + ".Users u ON l.userId = u.id " +
+                                "WHERE u.username = ?;"
+                );
+        ) {
+            deleteLabels.setString(1, username);
+            deleteLabels.executeUpdate();
+        }
+    }
+
+    @Override
+    public boolean isTransactional()
+    {
+        return true;
+    }
+
+    /**
+     * Get id of a user's book.
+     *
+     * @param connection connection to use.
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of book.
+     * @param lock if true, book's row is locked for update until the
+     *        running transaction ends.
+     * @return Book's id, or -1 if book doesn't exist.
+     * @throws SQLException in case of a SQL error.
+     */
+    static long bookId(Connection connection, String dbName, String username, String bookName, boolean lock)
+            throws SQLException
+    {
+        try (
+                PreparedStatement getId = connection.prepareStatement(
+                        "SELECT b.id " +
+                                "FROM " + dbName + ".Books b JOIN " + dbName + ".Users u ON b.userId = u.id " +
+                                "WHERE u.username = ? AND b.bookName = ?" + (lock ? " FOR UPDATE;" : ";")
+                );
+        ) {
+            getId.setString(1, username);
+            getId.setString(2, bookName);
+            try (ResultSet set = getId.executeQuery())
+            {
+                return set.next() ? set.getLong(1) : -1;
+            }
+        }
+    }
+
+    /**
+     * Get a query selecting books' rows joined with their notes,
+     * ordered by book and page. Query takes a username, followed by
+     * books' names.
+     *
+     * @param dbName name of application's database.
+     * @param books number of books' names.
+     * @return A query.
+     */
+    private static String booksQuery(String dbName, int books)
+    {
+        return "SELECT b.bookName, b.author, b.state, b.pages, b.readPages, b.coverPath, n.page, n.note " +
+                "FROM " + dbName + ".Books b " +
+                "JOIN " + dbName + ".Users u ON b.userId = u.id " +
+                "LEFT JOIN " + dbName + ".Notes n ON n.bookId = b.id " +
+                "WHERE u.username = ? AND b.bookName IN (" + StorageUtil.parameters(books) + ") " +
+                "ORDER BY b.bookName, n.page;";
+    }
+
+    /**
+     * Run a query selecting names of books.
+     *
+     * @param getNames query whose first column is a book's name.
+     * @return A list of books' names.
+     * @throws SQLException in case of a SQL error.
+     */
+    private static List<String> names(PreparedStatement getNames) throws SQLException
+    {
+        List<String> bookNames = new ArrayList<>();
+        try (ResultSet set = getNames.executeQuery())
+        {
+            while (set.next())
+            {
+                bookNames.add(set.getString(1));
+            }
+        }
+
+        return bookNames;
+    }
+}
@@ -0,0 +1,289 @@
+package com.github.sudo_sturbia.agatha.server.storage;
+
+import com.github.sudo_sturbia.agatha.core.Book;
+import com.github.sudo_sturbia.agatha.core.Note;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Storage reads and writes clients' books, notes, and labels in
+ * application's database. Request handlers use it so that they don't
+ * depend on how data is laid out in tables.
+ * <p>
+ * Users' credentials are kept in the Users table regardless of the
+ * storage. Operations that write more than one row run in a
+ * transaction, or join the running one. Reads use a connection that
+ * may be to a read replica.
+ * <p>
+ * Labels, book fields, and note fields are verified by request
+ * handlers before they're given to a storage.
+ */
+public interface Storage
+{
+    /**
+     * Create the tables the storage needs, if they don't exist.
+     * Called after Users table is created.
+     *
+     * @param dbName name of application's database.
+     * @throws SQLException in case of a SQL error.
+     */
+    void setup(String dbName) throws SQLException;
+
+    /**
+     * Prepare storage for a new user, whose row was written to Users.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @throws SQLException in case of a SQL error.
+     */
+    void createUser(String dbName, String username) throws SQLException;
+
+    /**
+     * Delete all books, notes, and labels of a user. User's row in
+     * Users isn't deleted.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @throws SQLException in case of a SQL error.
+     */
+    void deleteUser(String dbName, String username) throws SQLException;
+
+    /**
+     * Write a new book and its notes.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param book book to write.
+     * @return True if book was written, false if user already has a
+     *         book with the same name.
+     * @throws SQLException in case of a SQL error.
+     */
+    boolean createBook(String dbName, String username, Book book) throws SQLException;
+
+    /**
+     * Read a book and its notes.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of book to read.
+     * @return The book, or null if it doesn't exist.
+     * @throws SQLException in case of a SQL error.
+     */
+    Book readBook(String dbName, String username, String bookName) throws SQLException;
+
+    /**
+     * Write a book and its notes as a JSON object, without creating a
+     * Book. Book and notes are read using one query, and are written
+     * as they're read. Nothing is written if book doesn't exist.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of book to write.
+     * @param writer JSON writer to write book to.
+     * @return True if book was written, false if it doesn't exist.
+     * @throws SQLException in case of a SQL error.
+     * @throws IOException if writer fails.
+     */
+    boolean writeBook(String dbName, String username, String bookName, JsonWriter writer)
+            throws SQLException, IOException;
+
+    /**
+     * Write several books and their notes as a JSON array of objects,
+     * ordered by name. Books that don't exist are left out. Books are
+     * read using as few queries as the layout allows, instead of a
+     * query or two for each book.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookNames names of books to write.
+     * @param writer JSON writer to write books to.
+     * @return Number of written books.
+     * @throws SQLException in case of a SQL error.
+     * @throws IOException if writer fails.
+     */
+    int writeBooks(String dbName, String username, List<String> bookNames, JsonWriter writer)
+            throws SQLException, IOException;
+
+    /**
+     * Read names of all of a user's books.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @return A list of books' names.
+     * @throws SQLException in case of a SQL error.
+     */
+    List<String> readBookNames(String dbName, String username) throws SQLException;
+
+    /**
+     * Read names of a user's books that have a label.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param label name of label.
+     * @return A list of books' names.
+     * @throws SQLException in case of a SQL error.
+     */
+    List<String> readBookNames(String dbName, String username, String label) throws SQLException;
+
+    /**
+     * Replace a book's fields and notes with those of given book. Only
+     * notes that changed are written.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of book to update.
+     * @param book updated book.
+     * @return Number of note rows written.
+     * @throws SQLException in case of a SQL error.
+     */
+    int updateBook(String dbName, String username, String bookName, Book book) throws SQLException;
+
+    /**
+     * Update one of a book's fields.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of book to update.
+     * @param field one of author, state, coverPath, or readPages.
+     * @param value field's new value.
+     * @throws SQLException in case of a SQL error.
+     */
+    void updateBookField(String dbName, String username, String bookName, String field, String value)
+            throws SQLException;
+
+    /**
+     * Delete a book, its notes, and its labels.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of book to delete.
+     * @throws SQLException in case of a SQL error.
+     */
+    void deleteBook(String dbName, String username, String bookName) throws SQLException;
+
+    /**
+     * Delete all of a user's books.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @throws SQLException in case of a SQL error.
+     */
+    void deleteBooks(String dbName, String username) throws SQLException;
+
+    /**
+     * Write a new note to a book.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of note's book.
+     * @param note note to write.
+     * @return True if note was written, false if book doesn't exist or
+     *         note's page already has a note.
+     * @throws SQLException in case of a SQL error.
+     */
+    boolean createNote(String dbName, String username, String bookName, Note note) throws SQLException;
+
+    /**
+     * Replace the text of the note at a page.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of note's book.
+     * @param page note's page.
+     * @param note updated note.
+     * @throws SQLException in case of a SQL error.
+     */
+    void updateNote(String dbName, String username, String bookName, int page, Note note) throws SQLException;
+
+    /**
+     * Update one of a note's fields.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of note's book.
+     * @param page note's page.
+     * @param field one of note or page.
+     * @param value field's new value.
+     * @throws SQLException in case of a SQL error.
+     */
+    void updateNoteField(String dbName, String username, String bookName, int page, String field, String value)
+            throws SQLException;
+
+    /**
+     * Delete the note at a page.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of note's book.
+     * @param page note's page.
+     * @throws SQLException in case of a SQL error.
+     */
+    void deleteNote(String dbName, String username, String bookName, int page) throws SQLException;
+
+    /**
+     * Delete all notes of a book.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of book.
+     * @throws SQLException in case of a SQL error.
+     */
+    void deleteNotes(String dbName, String username, String bookName) throws SQLException;
+
+    /**
+     * Create a new label with no books.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param label name of label.
+     * @throws SQLException in case of a SQL error, or if label exists.
+     */
+    void createLabel(String dbName, String username, String label) throws SQLException;
+
+    /**
+     * Add a label to a book, or remove it.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of book.
+     * @param label name of label.
+     * @param labeled true to add label, false to remove it.
+     * @return True if label was added or removed, false if label or
+     *         book doesn't exist.
+     * @throws SQLException in case of a SQL error.
+     */
+    boolean labelBook(String dbName, String username, String bookName, String label, boolean labeled)
+            throws SQLException;
+
+    /**
+     * Delete a label, removing it from all books.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param label name of label.
+     * @throws SQLException in case of a SQL error.
+     */
+    void deleteLabel(String dbName, String username, String label) throws SQLException;
+
+    /**
+     * Delete all of a user's labels.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @throws SQLException in case of a SQL error.
+     */
+    void deleteLabels(String dbName, String username) throws SQLException;
+
+    /**
+     * Check if every operation, other than setup, only changes rows,
+     * so that it's undone if the transaction it joined is rolled back.
+     * MySQL commits the running transaction before creating or
+     * dropping a table.
+     *
+     * @return True if operations can be rolled back, false otherwise.
+     */
+    boolean isTransactional();
+}
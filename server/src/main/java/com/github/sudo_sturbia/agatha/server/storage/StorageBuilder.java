@@ -0,0 +1,87 @@
+package com.github.sudo_sturbia.agatha.server.storage;
+
+/**
+ * StorageBuilder handles the creation of a Storage object
+ * and insures that only one Storage exists at any time.
+ * <p>
+ * Unless the cache is disabled, the created Storage is a
+ * CachingStorage that caches books of the chosen layout.
+ */
+public class StorageBuilder
+{
+    /** Available layouts of clients' data. */
+    public enum Layout
+    {
+        TABLES, SHARED
+    }
+
+    /** Default maximum number of cached books. */
+    public static final int CACHE_CAPACITY = 10_000;
+
+    /** Clients' data storage. */
+    private static Storage storage;
+
+    /**
+     * Create a singleton storage object with given layout, that caches
+     * up to CACHE_CAPACITY books. Should be called only once.
+     *
+     * @param layout layout of clients' data.
+     * @throws IllegalArgumentException if layout is null.
+     * @throws IllegalStateException if method was called before.
+     */
+    public static void setup(Layout layout) throws IllegalArgumentException, IllegalStateException
+    {
+        StorageBuilder.setup(layout, StorageBuilder.CACHE_CAPACITY);
+    }
+
+    /**
+     * Create a singleton storage object with given layout. Should
+     * be called only once.
+     *
+     * @param layout layout of clients' data.
+     * @param cacheCapacity maximum number of cached books, zero to
+     *                      disable caching.
+     * @throws IllegalArgumentException if layout is null, or
+     *         cacheCapacity is &lt; 0.
+     * @throws IllegalStateException if method was called before.
+     */
+    public static void setup(Layout layout, int cacheCapacity) throws IllegalArgumentException, IllegalStateException
+    {
+        // If method was called before
+        if (storage != null)
+        {
+            throw new IllegalStateException("Attempting to reassign storage.");
+        }
+
+        if (layout == null)
+        {
+            throw new IllegalArgumentException("Storage layout is not given.");
+        }
+
+        if (cacheCapacity < 0)
+        {
+            throw new IllegalArgumentException("Invalid cache capacity.");
+        }
+
+        Storage layoutStorage = layout == Layout.SHARED ? new SharedStorage() : new TableStorage();
+        storage = cacheCapacity == 0 ?
+                layoutStorage :
+                new CachingStorage(layoutStorage, new BookCache(cacheCapacity, BookCache.WEIGHT));
+    }
+
+    /**
+     * Get singleton storage.
+     *
+     * @return A Storage object.
+     * @throws IllegalStateException if storage is null (not setup).
+     */
+    public static Storage storage() throws IllegalStateException
+    {
+        if (storage == null)
+        {
+            throw new IllegalStateException("No storage exists.");
+        }
+
+        return StorageBuilder.storage;
+    }
+}
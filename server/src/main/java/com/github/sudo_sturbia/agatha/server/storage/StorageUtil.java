@@ -0,0 +1,181 @@
+package com.github.sudo_sturbia.agatha.server.storage;
+
+import com.github.sudo_sturbia.agatha.core.Book;
+import com.github.sudo_sturbia.agatha.core.BookBuilder;
+import com.github.sudo_sturbia.agatha.core.BookState;
+import com.github.sudo_sturbia.agatha.core.Note;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * StorageUtil is a container for utility methods used by classes
+ * implementing Storage interface.
+ */
+class StorageUtil
+{
+    /** Maximum number of statements sent to database in one batch. */
+    static final int BATCH_SIZE = 1000;
+
+    /** Columns of a book, in both layouts. */
+    static final List<String> BOOK_COLUMNS = List.of("bookName", "author", "state", "pages", "readPages", "coverPath");
+
+    /** Private constructor. */
+    private StorageUtil()
+    {
+    }
+
+    /**
+     * Insert notes using a statement of the form
+     * <code>INSERT INTO table VALUES (?, ?)</code>, or any statement
+     * whose first parameters are a note's text and page. Parameters
+     * after those should be set before inserting, and are kept for all
+     * notes. Notes are sent in batches of BATCH_SIZE, so inserting many
+     * notes takes few round trips, and should be inserted in a
+     * transaction so they're committed once.
+     *
+     * @param insert statement taking a note's text and page.
+     * @param notes notes to insert.
+     * @throws SQLException in case of a SQL error.
+     */
+    static void insertNotes(PreparedStatement insert, List<Note> notes) throws SQLException
+    {
+        int batched = 0;
+        for (Note note : notes)
+        {
+            insert.setString(1, note.getNote());
+            insert.setInt(2, note.getPageNumber());
+            insert.addBatch();
+
+            if (++batched == StorageUtil.BATCH_SIZE)
+            {
+                insert.executeBatch();
+                batched = 0;
+            }
+        }
+
+        if (batched > 0)
+        {
+            insert.executeBatch();
+        }
+    }
+
+    /**
+     * Create a book, without notes, from the current row of a result
+     * set containing BOOK_COLUMNS.
+     *
+     * @param set result set positioned at a book's row.
+     * @return The book.
+     * @throws SQLException in case of a SQL error.
+     */
+    static Book book(ResultSet set) throws SQLException
+    {
+        BookState.State state;
+        switch (set.getString("state"))
+        {
+            case "reading":
+                state = BookState.State.CURRENTLY_READING;
+                break;
+            case "read":
+                state = BookState.State.READ;
+                break;
+            case "interested":
+                state = BookState.State.INTERESTED;
+                break;
+            default:
+                // Can't happen
+                state = null;
+        }
+
+        Book book = BookBuilder.newBook()
+                               .name(set.getString("bookName"))
+                               .author(set.getString("author"))
+                               .state(state)
+                               .numberOfPages(set.getInt("pages"))
+                               .coverPath(set.getString("coverPath"))
+                               .build();
+
+        book.setNumberOfReadPages(set.getInt("readPages"));
+        return book;
+    }
+
+    /**
+     * Get parameters of an IN list.
+     *
+     * @param count number of parameters, at least one.
+     * @return A string of the form <code>?, ?, ?</code>.
+     */
+    static String parameters(int count)
+    {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * Write books from a result set straight to JSON, in the same form
+     * Gson gives a Book. Result set has a row for each of a book's
+     * notes, containing BOOK_COLUMNS, page, and note, and a book's rows
+     * must follow each other. A book without notes has one row whose
+     * page is null. Each book is written as an object.
+     *
+     * @param set result set of books' and notes' rows.
+     * @param writer JSON writer to write books to.
+     * @return Number of written books.
+     * @throws SQLException in case of a SQL error.
+     * @throws IOException if writer fails.
+     */
+    static int writeBooks(ResultSet set, JsonWriter writer) throws SQLException, IOException
+    {
+        int books = 0;
+        boolean next = set.next();
+        while (next)
+        {
+            String bookName = set.getString("bookName");
+            int pages = set.getInt("pages");
+            String state = set.getString("state");
+
+            writer.beginObject();
+            writer.name("name").value(bookName);
+            writer.name("author").value(set.getString("author"));
+
+            // Same fields as BookState's implementations
+            writer.name("state").beginObject();
+            writer.name("pages").value(pages);
+            if (state.equals("reading"))
+            {
+                writer.name("readPages").value(set.getInt("readPages"));
+            }
+
+            writer.name("TYPE").value(state.equals("reading") ? "CURRENTLY_READING" :
+                    state.equals("read") ? "READ" : "INTERESTED");
+            writer.endObject();
+
+            writer.name("pages").value(pages);
+            writer.name("coverPath").value(set.getString("coverPath"));
+
+            writer.name("notes").beginObject();
+            do
+            {
+                int page = set.getInt("page");
+                if (!set.wasNull())
+                {
+                    writer.name(String.valueOf(page)).beginObject();
+                    writer.name("note").value(set.getString("note"));
+                    writer.name("pageNumber").value(page);
+                    writer.endObject();
+                }
+            }
+            while ((next = set.next()) && set.getString("bookName").equals(bookName));
+
+            writer.endObject();
+            writer.endObject();
+            books++;
+        }
+
+        return books;
+    }
+}
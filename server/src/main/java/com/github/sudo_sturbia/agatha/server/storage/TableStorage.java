@@ -0,0 +1,848 @@
+package com.github.sudo_sturbia.agatha.server.storage;
+
+import com.github.sudo_sturbia.agatha.core.Book;
+import com.github.sudo_sturbia.agatha.core.Note;
+import com.github.sudo_sturbia.agatha.server.database.ConnectorBuilder;
+import com.github.sudo_sturbia.agatha.server.database.Transaction;
+import com.github.sudo_sturbia.agatha.server.request.Sanitizer;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * TableStorage is an implementation of Storage that keeps each
+ * user's books in a table of its own, and each book's notes in a
+ * table of its own.
+ * <p>
+ * A user's table is named after the user, and has a column for each
+ * of the book's fields, and a hasNotes column. A book's table is named
+ * after the user and the book, and has a note column and a page column.
+ * Spaces in names are replaced using Sanitizer.
+ * <p>
+ * Labels of all users are kept in a UserLabels table, with a row for
+ * each labeled book, keyed by user's table, label, and book. A label
+ * also has a row with an empty book name, so labels without books
+ * exist. As the key covers all columns, finding a label's books is a
+ * range scan of the key, and creating or deleting a label changes rows
+ * instead of the structure of user's table. Labels that were kept as
+ * boolean columns of user's table by older versions are moved to
+ * UserLabels when storage is set up.
+ * <p>
+ * This is Agatha's original layout. As it creates a table for every
+ * book, it doesn't suit databases with many users, which should use
+ * SharedStorage instead.
+ */
+public class TableStorage implements Storage
+{
+    /**
+     * TableStorage's constructor.
+     */
+    TableStorage()
+    {
+    }
+
+    @Override
+    public void setup(String dbName) throws SQLException
+    {
+        // Other tables are created for each user and book
+        try (
+                Connection connection = ConnectorBuilder.connector().connection();
+                PreparedStatement createLabels = connection.prepareStatement(
+                        "CREATE TABLE IF NOT EXISTS " + dbName + ".UserLabels (" +
+                                "userTable varchar(255) NOT NULL, " +
+                                "label varchar(64) NOT NULL, " +
+                                "bookName varchar(255) NOT NULL, " +
+                                "PRIMARY KEY(userTable, label, bookName)" +
+                                ");"
+                );
+        ) {
+            createLabels.executeUpdate();
+        }
+
+        this.migrateLabels(dbName);
+    }
+
+    @Override
+    public void createUser(String dbName, String username) throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement createTable = connection.prepareStatement(
+                        "CREATE TABLE IF NOT EXISTS " + dbName + "." + Sanitizer.sanitize(username) + " (" +
+                                "bookName varchar(255) NOT NULL, " +
+                                "author varchar(255), " +
+                                "state varchar(10) NOT NULL, " +
+                                "pages int(255) NOT NULL, " +
+                                "readPages int(255), " +
+                                "coverPath varchar(255), " +
+                                "hasNotes bool, " +
+                                "PRIMARY KEY(bookName)" +
+                                ");"
+                );
+        ) {
+            createTable.executeUpdate();
+        }
+    }
+
+    @Override
+    public void deleteUser(String dbName, String username) throws SQLException
+    {
+        // Drop user's table and all book's tables in one statement
+        this.dropBookTables(dbName, username, dbName + "." + Sanitizer.sanitize(username));
+
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement deleteLabels = connection.prepareStatement(
+                        "DELETE FROM " + dbName + ".UserLabels WHERE userTable = ?;"
+                );
+        ) {
+            deleteLabels.setString(1, Sanitizer.sanitize(username));
+            deleteLabels.executeUpdate();
+        }
+    }
+
+    @Override
+    public boolean createBook(String dbName, String username, Book book) throws SQLException
+    {
+        // Verifies that book's name doesn't already exist, and
+        // creates book's notes table. MySQL commits before creating
+        // a table, so the table is created before the transaction.
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement checkBook = connection.prepareStatement(
+                        "SELECT * FROM " + dbName + "." + Sanitizer.sanitize(username) + " WHERE bookName = ?;"
+                );
+                PreparedStatement createNotesTable = connection.prepareStatement(
+                        "CREATE TABLE IF NOT EXISTS " + dbName + "." + Sanitizer.sanitize(username + book.getName()) + " (" +
+                                "note text, " +
+                                "page int(255) NOT NULL, " +
+                                "PRIMARY KEY(page)" +
+                                ");"
+                )
+        ) {
+            // Verify that book's name doesn't already exist
+            checkBook.setString(1, book.getName());
+            try (ResultSet set = checkBook.executeQuery())
+            {
+                // Book's name already exists
+                if (set.next())
+                {
+                    return false;
+                }
+            }
+
+            // Create notes table
+            createNotesTable.executeUpdate();
+        }
+
+        // Writes book's fields to user's table, and writes all
+        // of book's notes (if any exist) to book's table.
+        return Transaction.run(() -> {
+            try (
+                    Connection connection = Transaction.connection();
+                    PreparedStatement addBook = connection.prepareStatement(
+                            "INSERT INTO " + dbName + "." + Sanitizer.sanitize(username) +
+                                    "(bookName, author, state, pages, readPages, coverPath, hasNotes) " +
+                                    "VALUES (?, ?, ?, ?, ?, ?, ?);"
+                    );
+                    PreparedStatement insertNotes = connection.prepareStatement(
+                            "INSERT INTO " + dbName + "." + Sanitizer.sanitize(username + book.getName()) + " " +
+                                    "VALUES (?, ?);"
+                    )
+            ) {
+                addBook.setString(1, book.getName());
+                addBook.setString(2, book.getAuthor());
+                addBook.setString(3, book.getStateToString());
+                addBook.setInt(4, book.getNumberOfPages());
+                addBook.setInt(5, book.getNumberOfReadPages());
+                addBook.setString(6, book.getCoverImagePath());
+                addBook.setBoolean(7, book.getNotes().size() > 0);
+
+                addBook.executeUpdate();
+
+                StorageUtil.insertNotes(insertNotes, book.getNotes());
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public Book readBook(String dbName, String username, String bookName) throws SQLException
+    {
+        try (
+                Connection connection = ConnectorBuilder.connector().readConnection(dbName, username);
+                PreparedStatement getBook = connection.prepareStatement(
+                        "SELECT * FROM " + dbName + "." + Sanitizer.sanitize(username) + " WHERE bookName = ?;"
+                );
+                PreparedStatement getNotes = connection.prepareStatement(
+                        "SELECT * FROM " + dbName + "." + Sanitizer.sanitize(username + bookName) + ";"
+                );
+        ) {
+            getBook.setString(1, bookName);
+
+            Book book;
+            boolean hasNotes;
+            try (ResultSet set = getBook.executeQuery())
+            {
+                if (!set.next())
+                {
+                    return null;
+                }
+
+                book = StorageUtil.book(set);
+                hasNotes = set.getBoolean("hasNotes");
+            }
+
+            // Load user's notes
+            if (hasNotes)
+            {
+                try (ResultSet noteSet = getNotes.executeQuery())
+                {
+                    while (noteSet.next())
+                    {
+                        book.addNote(noteSet.getString("note"), noteSet.getInt("page"));
+                    }
+                }
+            }
+
+            return book;
+        }
+    }
+
+    @Override
+    public boolean writeBook(String dbName, String username, String bookName, JsonWriter writer)
+            throws SQLException, IOException
+    {
+        // Fails if book, and so its table, doesn't exist
+        try (
+                Connection connection = ConnectorBuilder.connector().readConnection(dbName, username);
+                PreparedStatement getBook = connection.prepareStatement(
+                        TableStorage.bookQuery(dbName, username, bookName) + " ORDER BY page;"
+                );
+        ) {
+            getBook.setString(1, bookName);
+            try (ResultSet set = getBook.executeQuery())
+            {
+                return StorageUtil.writeBooks(set, writer) > 0;
+            }
+        }
+    }
+
+    @Override
+    public int writeBooks(String dbName, String username, List<String> bookNames, JsonWriter writer)
+            throws SQLException, IOException
+    {
+        writer.beginArray();
+        if (bookNames.isEmpty())
+        {
+            writer.endArray();
+            return 0;
+        }
+
+        try (
+                Connection connection = ConnectorBuilder.connector().readConnection(dbName, username);
+                PreparedStatement getNames = connection.prepareStatement(
+                        "SELECT bookName FROM " + dbName + "." + Sanitizer.sanitize(username) + " " +
+                                "WHERE bookName IN (" + StorageUtil.parameters(bookNames.size()) + ");"
+                );
+        ) {
+            // Only tables of existing books can be joined
+            for (int i = 0; i < bookNames.size(); i++)
+            {
+                getNames.setString(i + 1, bookNames.get(i));
+            }
+
+            List<String> existing = new ArrayList<>();
+            try (ResultSet set = getNames.executeQuery())
+            {
+                while (set.next())
+                {
+                    existing.add(set.getString("bookName"));
+                }
+            }
+
+            int books = 0;
+            if (!existing.isEmpty())
+            {
+                StringJoiner query = new StringJoiner(" UNION ALL ", "", " ORDER BY bookName, page;");
+                for (String bookName : existing)
+                {
+                    query.add("(" + TableStorage.bookQuery(dbName, username, bookName) + ")");
+                }
+
+                try (PreparedStatement getBooks = connection.prepareStatement(query.toString()))
+                {
+                    for (int i = 0; i < existing.size(); i++)
+                    {
+                        getBooks.setString(i + 1, existing.get(i));
+                    }
+
+                    try (ResultSet set = getBooks.executeQuery())
+                    {
+                        books = StorageUtil.writeBooks(set, writer);
+                    }
+                }
+            }
+
+            writer.endArray();
+            return books;
+        }
+    }
+
+    /**
+     * Get a query selecting a book's row joined with its notes, taking
+     * book's name as a parameter. Notes are joined only if book's
+     * hasNotes is set.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param bookName name of book.
+     * @return A query without an ending semicolon.
+     */
+    private static String bookQuery(String dbName, String username, String bookName)
+    {
+        return "SELECT b.bookName, b.author, b.state, b.pages, b.readPages, b.coverPath, n.page, n.note " +
+                "FROM " + dbName + "." + Sanitizer.sanitize(username) + " b " +
+                "LEFT JOIN " + dbName + "." + Sanitizer.sanitize(username + bookName) + " n ON b.hasNotes = 1 " +
+                "WHERE b.bookName = ?";
+    }
+
+    @Override
+    public List<String> readBookNames(String dbName, String username) throws SQLException
+    {
+        try (
+                Connection connection = ConnectorBuilder.connector().readConnection(dbName, username);
+                PreparedStatement getNames = connection.prepareStatement(
+                        "SELECT bookName FROM " + dbName + "." + Sanitizer.sanitize(username) + ";"
+                );
+                ResultSet set = getNames.executeQuery()
+        ) {
+            List<String> bookNames = new ArrayList<>();
+            while (set.next())
+            {
+                bookNames.add(set.getString("bookName"));
+            }
+
+            return bookNames;
+        }
+    }
+
+    @Override
+    public List<String> readBookNames(String dbName, String username, String label) throws SQLException
+    {
+        try (
+                Connection connection = ConnectorBuilder.connector().readConnection(dbName, username);
+                PreparedStatement getNames = connection.prepareStatement(
+                        "SELECT bookName FROM " + dbName + ".UserLabels " +
+                                "WHERE userTable = ? AND label = ? AND bookName <> '';"
+                );
+        ) {
+            getNames.setString(1, Sanitizer.sanitize(username));
+            getNames.setString(2, label);
+
+            List<String> bookNames = new ArrayList<>();
+            try (ResultSet names = getNames.executeQuery())
+            {
+                while (names.next())
+                {
+                    bookNames.add(names.getString("bookName"));
+                }
+            }
+
+            return bookNames;
+        }
+    }
+
+    @Override
+    public int updateBook(String dbName, String username, String bookName, Book book) throws SQLException
+    {
+        int[] written = new int[1];
+        Transaction.run(() -> {
+            String table = dbName + "." + Sanitizer.sanitize(username + bookName);
+            try (
+                    Connection connection = Transaction.connection();
+                    PreparedStatement updateBook = connection.prepareStatement(
+                            "UPDATE " + dbName + "." + Sanitizer.sanitize(username) + " " +
+                                    "SET " +
+                                    "bookName = ?, " +
+                                    "author = ?, " +
+                                    "state = ?, " +
+                                    "pages = ?, " +
+                                    "readPages = ?, " +
+                                    "coverPath = ?, " +
+                                    "hasNotes = ? " +
+                                    "WHERE bookName = ?;"
+                    );
+                    PreparedStatement getNotes = connection.prepareStatement(
+                            "SELECT page, note FROM " + table + " FOR UPDATE;"
+                    );
+                    PreparedStatement insertNotes = connection.prepareStatement(
+                            "INSERT INTO " + table + " VALUES (?, ?);"
+                    );
+                    PreparedStatement updateNotes = connection.prepareStatement(
+                            "UPDATE " + table + " SET note = ? WHERE page = ?;"
+                    );
+                    PreparedStatement deleteNotes = connection.prepareStatement(
+                            "DELETE FROM " + table + " WHERE page = ?;"
+                    );
+                    PreparedStatement renameLabeled = connection.prepareStatement(
+                            "UPDATE " + dbName + ".UserLabels SET bookName = ? " +
+                                    "WHERE userTable = ? AND bookName = ?;"
+                    );
+            ) {
+                updateBook.setString(1, book.getName());
+                updateBook.setString(2, book.getAuthor());
+                updateBook.setString(3, book.getStateToString());
+                updateBook.setInt(4, book.getNumberOfPages());
+                updateBook.setInt(5, book.getNumberOfReadPages());
+                updateBook.setString(6, book.getCoverImagePath());
+                updateBook.setBoolean(7, book.getNotes().size() > 0);
+
+                updateBook.setString(8, bookName);
+
+                updateBook.executeUpdate();
+
+                // Labels follow a renamed book
+                if (!bookName.equals(book.getName()))
+                {
+                    renameLabeled.setString(1, book.getName());
+                    renameLabeled.setString(2, Sanitizer.sanitize(username));
+                    renameLabeled.setString(3, bookName);
+                    renameLabeled.executeUpdate();
+                }
+
+                // Stored notes are locked until transaction ends
+                Map<Integer, String> stored = new HashMap<>();
+                try (ResultSet set = getNotes.executeQuery())
+                {
+                    while (set.next())
+                    {
+                        stored.put(set.getInt("page"), set.getString("note"));
+                    }
+                }
+
+                written[0] = new NoteDiff(stored, book.getNotes()).apply(insertNotes, updateNotes, deleteNotes);
+                return true;
+            }
+        });
+
+        return written[0];
+    }
+
+    @Override
+    public void updateBookField(String dbName, String username, String bookName, String field, String value)
+            throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement updateBook = connection.prepareStatement(
+                        "UPDATE " + dbName + "." + Sanitizer.sanitize(username) + " " +
+                                "SET " +
+                                field + " = ? " +
+                                "WHERE bookName = ?;"
+                );
+        ) {
+            updateBook.setString(1, value);
+            updateBook.setString(2, bookName);
+            updateBook.executeUpdate();
+        }
+    }
+
+    @Override
+    public void deleteBook(String dbName, String username, String bookName) throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement deleteBook = connection.prepareStatement(
+                        "DELETE FROM " + dbName + "." + Sanitizer.sanitize(username) + " WHERE bookName = ?;"
+                );
+                PreparedStatement dropTable = connection.prepareStatement(
+                        "DROP TABLE " + dbName + "." + Sanitizer.sanitize(username + bookName) + ";"
+                );
+                PreparedStatement deleteLabeled = connection.prepareStatement(
+                        "DELETE FROM " + dbName + ".UserLabels WHERE userTable = ? AND bookName = ?;"
+                )
+        ) {
+            deleteBook.setString(1, bookName);
+            deleteBook.executeUpdate();
+
+            deleteLabeled.setString(1, Sanitizer.sanitize(username));
+            deleteLabeled.setString(2, bookName);
+            deleteLabeled.executeUpdate();
+
+            dropTable.executeUpdate();
+        }
+    }
+
+    @Override
+    public void deleteBooks(String dbName, String username) throws SQLException
+    {
+        this.dropBookTables(dbName, username, null);
+
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement deleteBooks = connection.prepareStatement(
+                        "DELETE FROM " + dbName + "." + Sanitizer.sanitize(username) + ";"
+                );
+                PreparedStatement deleteLabeled = connection.prepareStatement(
+                        "DELETE FROM " + dbName + ".UserLabels WHERE userTable = ? AND bookName <> '';"
+                );
+        ) {
+            deleteBooks.executeUpdate();
+
+            // Labels are kept without books
+            deleteLabeled.setString(1, Sanitizer.sanitize(username));
+            deleteLabeled.executeUpdate();
+        }
+    }
+
+    @Override
+    public boolean createNote(String dbName, String username, String bookName, Note note) throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement checkBookName = connection.prepareStatement(
+                        "SELECT * FROM " + dbName + "." + Sanitizer.sanitize(username) + " WHERE bookName = ?;"
+                );
+                PreparedStatement checkPage = connection.prepareStatement(
+                        "SELECT * FROM " + dbName + "." + Sanitizer.sanitize(username + bookName) + " WHERE page = ?;"
+                );
+                PreparedStatement insertNote = connection.prepareStatement(
+                        "INSERT INTO " + dbName + "." + Sanitizer.sanitize(username + bookName) + " " +
+                                "VALUES (?, ?);"
+                )
+        ) {
+            checkBookName.setString(1, bookName);
+            try (ResultSet book = checkBookName.executeQuery())
+            {
+                if (!book.next()) // Book's name doesn't exist
+                {
+                    return false;
+                }
+            }
+
+            checkPage.setInt(1, note.getPageNumber());
+            try (ResultSet set = checkPage.executeQuery())
+            {
+                if (set.next()) // Page's number is used
+                {
+                    return false;
+                }
+            }
+
+            insertNote.setString(1, note.getNote());
+            insertNote.setInt(2, note.getPageNumber());
+
+            insertNote.executeUpdate();
+        }
+
+        return true;
+    }
+
+    @Override
+    public void updateNote(String dbName, String username, String bookName, int page, Note note) throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement updateNote = connection.prepareStatement(
+                        "UPDATE " + dbName + "." + Sanitizer.sanitize(username + bookName) + " " +
+                                "SET " +
+                                "note = ? " +
+                                "WHERE page = ?;"
+                );
+        ) {
+            updateNote.setString(1, note.getNote());
+            updateNote.setInt(2, page);
+            updateNote.executeUpdate();
+        }
+    }
+
+    @Override
+    public void updateNoteField(String dbName, String username, String bookName, int page, String field, String value)
+            throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement updateNote = connection.prepareStatement(
+                        "UPDATE " + dbName + "." + Sanitizer.sanitize(username + bookName) + " " +
+                                "SET " +
+                                field + " = ? " +
+                                "WHERE page = ?;"
+                );
+        ) {
+            updateNote.setString(1, value);
+            updateNote.setInt(2, page);
+            updateNote.executeUpdate();
+        }
+    }
+
+    @Override
+    public void deleteNote(String dbName, String username, String bookName, int page) throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement deleteNote = connection.prepareStatement(
+                        "DELETE FROM " + dbName + "." + Sanitizer.sanitize(username + bookName) + " " +
+                                "WHERE page = ?;"
+                );
+        ) {
+            deleteNote.setInt(1, page);
+            deleteNote.executeUpdate();
+        }
+    }
+
+    @Override
+    public void deleteNotes(String dbName, String username, String bookName) throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement deleteNotes = connection.prepareStatement(
+                        "DELETE FROM " + dbName + "." + Sanitizer.sanitize(username + bookName) + ";"
+                );
+        ) {
+            deleteNotes.executeUpdate();
+        }
+    }
+
+    @Override
+    public void createLabel(String dbName, String username, String label) throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement addLabel = connection.prepareStatement(
+                        "INSERT INTO " + dbName + ".UserLabels (userTable, label, bookName) VALUES (?, ?, '');"
+                );
+        ) {
+            // Fails if label exists
+            addLabel.setString(1, Sanitizer.sanitize(username));
+            addLabel.setString(2, label);
+            addLabel.executeUpdate();
+        }
+    }
+
+    @Override
+    public boolean labelBook(String dbName, String username, String bookName, String label, boolean labeled)
+            throws SQLException
+    {
+        String sql = labeled ?
+                "INSERT IGNORE INTO " + dbName + ".UserLabels (userTable, label, bookName) VALUES (?, ?, ?);" :
+                "DELETE FROM " + dbName + ".UserLabels WHERE userTable = ? AND label = ? AND bookName = ?;";
+
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement checkLabel = connection.prepareStatement(
+                        "SELECT * FROM " + dbName + ".UserLabels l " +
+                                "JOIN " + dbName + "." + Sanitizer.sanitize(username) + " b " +
+                                "WHERE l.userTable = ? AND l.label = ? AND l.bookName = '' AND b.bookName = ?;"
+                );
+                PreparedStatement labelBook = connection.prepareStatement(sql);
+        ) {
+            checkLabel.setString(1, Sanitizer.sanitize(username));
+            checkLabel.setString(2, label);
+            checkLabel.setString(3, bookName);
+            try (ResultSet set = checkLabel.executeQuery())
+            {
+                if (!set.next()) // Label or book doesn't exist
+                {
+                    return false;
+                }
+            }
+
+            // Labeling a labeled book changes nothing
+            labelBook.setString(1, Sanitizer.sanitize(username));
+            labelBook.setString(2, label);
+            labelBook.setString(3, bookName);
+            labelBook.executeUpdate();
+        }
+
+        return true;
+    }
+
+    @Override
+    public void deleteLabel(String dbName, String username, String label) throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement deleteLabel = connection.prepareStatement(
+                        "DELETE FROM " + dbName + ".UserLabels WHERE userTable = ? AND label = ?;"
+                );
+        ) {
+            deleteLabel.setString(1, Sanitizer.sanitize(username));
+            deleteLabel.setString(2, label);
+            deleteLabel.executeUpdate();
+        }
+    }
+
+    @Override
+    public void deleteLabels(String dbName, String username) throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement deleteLabels = connection.prepareStatement(
+                        "DELETE FROM " + dbName + ".UserLabels WHERE userTable = ?;"
+                );
+        ) {
+            deleteLabels.setString(1, Sanitizer.sanitize(username));
+            deleteLabels.executeUpdate();
+        }
+    }
+
+    @Override
+    public boolean isTransactional()
+    {
+        return false; // Books' and users' tables are created and dropped
+    }
+
+    /**
+     * Move labels kept as boolean columns of users' tables to
+     * UserLabels. Each user's labels are inserted in a transaction,
+     * and then the columns are dropped, so a migration that stops
+     * midway is continued when storage is set up again.
+     *
+     * @param dbName name of application's database.
+     * @throws SQLException in case of a SQL error.
+     */
+    private void migrateLabels(String dbName) throws SQLException
+    {
+        // Users' tables are the only tables with a hasNotes column
+        Map<String, List<String>> columns = new HashMap<>();
+        try (
+                Connection connection = ConnectorBuilder.connector().connection();
+                PreparedStatement getColumns = connection.prepareStatement(
+                        "SELECT TABLE_NAME, COLUMN_NAME FROM information_schema.COLUMNS " +
+                                "WHERE TABLE_SCHEMA = ? AND TABLE_NAME IN (" +
+                                "SELECT TABLE_NAME FROM information_schema.COLUMNS " +
+                                "WHERE TABLE_SCHEMA = ? AND COLUMN_NAME = 'hasNotes');"
+                );
+        ) {
+            getColumns.setString(1, dbName);
+            getColumns.setString(2, dbName);
+            try (ResultSet set = getColumns.executeQuery())
+            {
+                while (set.next())
+                {
+                    columns.computeIfAbsent(set.getString(1), table -> new ArrayList<>()).add(set.getString(2));
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<String>> entry : columns.entrySet())
+        {
+            List<String> labels = new ArrayList<>(entry.getValue());
+            labels.removeIf(column -> StorageUtil.BOOK_COLUMNS.contains(column) || column.equals("hasNotes"));
+            if (!labels.isEmpty())
+            {
+                this.migrateLabels(dbName, entry.getKey(), labels);
+            }
+        }
+    }
+
+    /**
+     * Move the label columns of a user's table to UserLabels.
+     *
+     * @param dbName name of application's database.
+     * @param table name of user's table.
+     * @param labels names of label columns.
+     * @throws SQLException in case of a SQL error.
+     */
+    private void migrateLabels(String dbName, String table, List<String> labels) throws SQLException
+    {
+        Transaction.run(() -> {
+            try (
+                    Connection connection = Transaction.connection();
+                    PreparedStatement getBooks = connection.prepareStatement(
+                            "SELECT * FROM " + dbName + "." + table + " FOR UPDATE;"
+                    );
+                    PreparedStatement addLabels = connection.prepareStatement(
+                            "INSERT IGNORE INTO " + dbName + ".UserLabels (userTable, label, bookName) VALUES (?, ?, ?);"
+                    );
+            ) {
+                addLabels.setString(1, table);
+                for (String label : labels)
+                {
+                    addLabels.setString(2, label);
+                    addLabels.setString(3, "");
+                    addLabels.addBatch();
+                }
+
+                try (ResultSet set = getBooks.executeQuery())
+                {
+                    while (set.next())
+                    {
+                        for (String label : labels)
+                        {
+                            if (set.getBoolean(label))
+                            {
+                                addLabels.setString(2, label);
+                                addLabels.setString(3, set.getString("bookName"));
+                                addLabels.addBatch();
+                            }
+                        }
+                    }
+                }
+
+                addLabels.executeBatch();
+                return true;
+            }
+        });
+
+        // Dropped after labels are committed
+        StringJoiner columns = new StringJoiner(", DROP COLUMN ", "ALTER TABLE " + dbName + "." + table + " DROP COLUMN ", ";");
+        labels.forEach(columns::add);
+
+        try (
+                Connection connection = ConnectorBuilder.connector().connection();
+                Statement dropColumns = connection.createStatement();
+        ) {
+            dropColumns.executeUpdate(columns.toString());
+        }
+    }
+
+    /**
+     * Drop the notes tables of all of a user's books in one statement.
+     *
+     * @param dbName name of application's database.
+     * @param username user's username.
+     * @param table another table to drop, or null.
+     * @throws SQLException in case of a SQL error.
+     */
+    private void dropBookTables(String dbName, String username, String table) throws SQLException
+    {
+        try (
+                Connection connection = Transaction.connection();
+                PreparedStatement getNames = connection.prepareStatement(
+                        "SELECT bookName FROM " + dbName + "." + Sanitizer.sanitize(username) + ";"
+                );
+                Statement dropTables = connection.createStatement();
+        ) {
+            StringJoiner tables = new StringJoiner(", ", "DROP TABLE IF EXISTS ", ";");
+            try (ResultSet set = getNames.executeQuery())
+            {
+                while (set.next())
+                {
+                    tables.add(dbName + "." + Sanitizer.sanitize(username + set.getString("bookName")));
+                }
+            }
+
+            if (table != null)
+            {
+                tables.add(table);
+            }
+
+            if (tables.length() > "DROP TABLE IF EXISTS ;".length())
+            {
+                dropTables.executeUpdate(tables.toString());
+            }
+        }
+    }
+}
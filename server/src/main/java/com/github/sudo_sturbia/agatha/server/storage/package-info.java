@@ -0,0 +1,6 @@
+/**
+ * Provides the <code>Storage</code> interface and its implementations,
+ * which lay out clients' books, notes, and labels in tables, and
+ * <code>CachingStorage</code>, which caches recently read books.
+ */
+package com.github.sudo_sturbia.agatha.server.storage;
\ No newline at end of file
@@ -0,0 +1,131 @@
+package com.github.sudo_sturbia.agatha.server;
+
+import com.github.sudo_sturbia.agatha.core.Book;
+import com.github.sudo_sturbia.agatha.core.BookBuilder;
+import com.github.sudo_sturbia.agatha.core.BookImp;
+import com.github.sudo_sturbia.agatha.core.BookState;
+import com.github.sudo_sturbia.agatha.core.BookStateDeserializer;
+import com.github.sudo_sturbia.agatha.core.ExecutionState;
+import com.github.sudo_sturbia.agatha.core.Note;
+import com.github.sudo_sturbia.agatha.core.NoteDeserializer;
+import com.github.sudo_sturbia.agatha.server.storage.StorageBuilder;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Test handling of BATCH requests.
+ */
+public class BatchTest
+{
+    @BeforeAll
+    static void setup()
+    {
+        TestUtil.setup();
+    }
+
+    @DisplayName("Test BATCH syntax.")
+    @Test
+    void syntax()
+    {
+        final String dbName = "testDB";
+        final Gson gson = new Gson();
+
+        String[] requests = {
+                "BATCH username:password",
+                "BATCH username:password/{}",
+                "BATCH username:password/[not JSON",
+                "BATCH username:password/[\"READ /b/*\"]",
+                "BATCH username:password/[\"DELETE\"]",
+        };
+
+        for (String request : requests)
+        {
+            assertEquals(1, gson.fromJson(Protocol.handle(request, dbName), ExecutionState.class).getCode(),
+                    "Invalid BATCH was accepted.");
+        }
+    }
+
+    @DisplayName("Test BATCH commit.")
+    @Test
+    void commit()
+    {
+        final String dbName = "testDB";
+        final Gson gson = new Gson();
+        TestUtil.create("batch1");
+
+        Book book = BookBuilder.newBook("Batch Book", 100).build();
+        List<String> operations = List.of(
+                "CREATE /b/" + gson.toJson(book),
+                "UPDATE /l/label/add/b/Batch Book",
+                "DELETE /b/My Book"
+        );
+
+        ExecutionState[] states = gson.fromJson(
+                Protocol.handle("BATCH batch1:password/" + gson.toJson(operations), dbName), ExecutionState[].class);
+        assertEquals(operations.size(), states.length, "Incorrect number of states.");
+        for (ExecutionState state : states)
+        {
+            assertEquals(0, state.getCode(), "BATCH operation failed.");
+        }
+
+        assertEquals("Batch Book", BatchTest.read("READ batch1:password/b/Batch Book").getName(),
+                "BATCH wasn't committed.");
+    }
+
+    @DisplayName("Test BATCH rollback.")
+    @Test
+    void rollback()
+    {
+        final String dbName = "testDB";
+        final Gson gson = new Gson();
+        TestUtil.create("batch2");
+
+        List<String> operations = List.of(
+                "UPDATE /b/My Book/author=Author",
+                "UPDATE /b/My Book/invalid",
+                "DELETE /b/My Book"
+        );
+
+        ExecutionState[] states = gson.fromJson(
+                Protocol.handle("BATCH batch2:password/" + gson.toJson(operations), dbName), ExecutionState[].class);
+        assertEquals(1, states[1].getCode(), "Failed operation lost its state.");
+        assertEquals(3, states[2].getCode(), "Operation after failure was performed.");
+
+        Book book = BatchTest.read("READ batch2:password/b/My Book");
+        assertEquals("My Book", book.getName(), "Operation after failure was performed.");
+
+        if (StorageBuilder.storage().isTransactional())
+        {
+            assertEquals(3, states[0].getCode(), "Operation before failure wasn't rolled back.");
+            assertNotEquals("Author", book.getAuthor(), "BATCH wasn't rolled back.");
+        }
+        else
+        {
+            assertEquals(0, states[0].getCode(), "Committed operation lost its state.");
+            assertEquals("Author", book.getAuthor(), "Operation before failure wasn't committed.");
+        }
+    }
+
+    /**
+     * Read a book.
+     *
+     * @param request READ request of the book.
+     * @return The read book.
+     */
+    private static Book read(String request)
+    {
+        final Gson gson = new GsonBuilder().registerTypeAdapter(BookState.class, new BookStateDeserializer())
+                                           .registerTypeAdapter(Note.class, new NoteDeserializer())
+                                           .create();
+
+        return gson.fromJson(Protocol.handle(request, "testDB"), BookImp.class);
+    }
+}
@@ -0,0 +1,231 @@
+package com.github.sudo_sturbia.agatha.server;
+
+import com.github.sudo_sturbia.agatha.core.ExecutionState;
+import com.github.sudo_sturbia.agatha.core.Frame;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Test handing of connections to a bounded pool of workers.
+ */
+public class ConnectionHandlerTest
+{
+    @DisplayName("Test rejection of connections when workers and queue are full.")
+    @Test
+    void busy() throws IOException
+    {
+        ConnectionHandler handler = new ConnectionHandler("testDB", 1, 1, ServerBuilder.ThreadType.PLATFORM);
+        try (ServerSocket serverSocket = new ServerSocket(0))
+        {
+            Thread acceptor = new Thread(() -> {
+                try
+                {
+                    while (true)
+                    {
+                        handler.handle(serverSocket.accept());
+                    }
+                }
+                catch (IOException e)
+                {
+                    // Socket closed
+                }
+            });
+            acceptor.start();
+
+            int port = serverSocket.getLocalPort();
+            try (
+                    Socket working = new Socket("localhost", port); // Takes the only worker
+                    Socket waiting = new Socket("localhost", port); // Takes the only place in queue
+                    Socket rejected = new Socket("localhost", port);
+                    BufferedReader in = new BufferedReader(new InputStreamReader(rejected.getInputStream()));
+                    PrintWriter out = new PrintWriter(working.getOutputStream(), true);
+                    BufferedReader workingIn = new BufferedReader(new InputStreamReader(working.getInputStream()));
+            ) {
+                assertEquals(6, new Gson().fromJson(in.readLine(), ExecutionState.class).getCode(),
+                        "Connection wasn't rejected.");
+                assertNull(in.readLine(), "Rejected connection wasn't closed.");
+
+                // Working connection is still served
+                out.println("Gibberish.");
+                assertEquals(1, new Gson().fromJson(workingIn.readLine(), ExecutionState.class).getCode(),
+                        "Working connection wasn't served.");
+            }
+        }
+        finally
+        {
+            handler.shutdown();
+        }
+    }
+
+    @DisplayName("Test idle connections don't hold platform workers.")
+    @Test
+    void idle() throws IOException, InterruptedException
+    {
+        ConnectionHandler handler = new ConnectionHandler("testDB", 1, 0, ServerBuilder.ThreadType.PLATFORM);
+        try (ServerSocket serverSocket = new ServerSocket(0))
+        {
+            Thread acceptor = new Thread(() -> {
+                try
+                {
+                    while (true)
+                    {
+                        handler.handle(serverSocket.accept());
+                    }
+                }
+                catch (IOException e)
+                {
+                    // Socket closed
+                }
+            });
+            acceptor.start();
+
+            int port = serverSocket.getLocalPort();
+            try (
+                    Socket idle = new Socket("localhost", port); // Takes the only worker
+                    PrintWriter out = new PrintWriter(idle.getOutputStream(), true);
+                    BufferedReader in = new BufferedReader(new InputStreamReader(idle.getInputStream()));
+            ) {
+                idle.setSoTimeout(ConnectionHandler.POOLED_IDLE_TIMEOUT * 10);
+
+                out.println("Gibberish.");
+                assertEquals(1, new Gson().fromJson(in.readLine(), ExecutionState.class).getCode(),
+                        "Request wasn't answered.");
+                assertNull(in.readLine(), "Idle connection wasn't closed.");
+            }
+
+            // Worker is freed right after it closes the connection
+            int code = 6;
+            for (int i = 0; i < 20 && code == 6; i++)
+            {
+                try (
+                        Socket next = new Socket("localhost", port);
+                        PrintWriter out = new PrintWriter(next.getOutputStream(), true);
+                        BufferedReader in = new BufferedReader(new InputStreamReader(next.getInputStream()));
+                ) {
+                    out.println("Gibberish.");
+                    code = new Gson().fromJson(in.readLine(), ExecutionState.class).getCode();
+                }
+
+                Thread.sleep(50);
+            }
+
+            assertEquals(1, code, "Worker wasn't freed by idle connection.");
+        }
+        finally
+        {
+            handler.shutdown();
+        }
+    }
+
+    @DisplayName("Test requests sent without waiting for responses.")
+    @Test
+    void pipelined() throws IOException
+    {
+        ConnectionHandler handler = new ConnectionHandler("testDB", 2, 0, ServerBuilder.ThreadType.PLATFORM);
+        try (ServerSocket serverSocket = new ServerSocket(0))
+        {
+            new Thread(() -> {
+                try
+                {
+                    handler.handle(serverSocket.accept());
+                }
+                catch (IOException e)
+                {
+                    // Socket closed
+                }
+            }).start();
+
+            try (
+                    Socket socket = new Socket("localhost", serverSocket.getLocalPort());
+                    PrintWriter out = new PrintWriter(socket.getOutputStream(), false);
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            ) {
+                for (int i = 0; i < 100; i++)
+                {
+                    out.println("Gibberish.");
+                }
+                out.println();
+                out.flush();
+
+                for (int i = 0; i < 100; i++)
+                {
+                    assertEquals(1, new Gson().fromJson(in.readLine(), ExecutionState.class).getCode(),
+                            "Pipelined request wasn't answered.");
+                }
+                assertNull(in.readLine(), "Connection wasn't closed.");
+            }
+        }
+        finally
+        {
+            handler.shutdown();
+        }
+    }
+
+    @DisplayName("Test requests sent using the binary protocol.")
+    @Test
+    void binary() throws IOException
+    {
+        ConnectionHandler handler = new ConnectionHandler("testDB", 2, 0, ServerBuilder.ThreadType.PLATFORM);
+        try (ServerSocket serverSocket = new ServerSocket(0))
+        {
+            new Thread(() -> {
+                try
+                {
+                    handler.handle(serverSocket.accept());
+                }
+                catch (IOException e)
+                {
+                    // Socket closed
+                }
+            }).start();
+
+            try (
+                    Socket socket = new Socket("localhost", serverSocket.getLocalPort());
+                    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+            ) {
+                out.write(Frame.MAGIC);
+                out.flush();
+
+                byte[] handshake = new byte[Frame.MAGIC.length];
+                in.readFully(handshake);
+                assertArrayEquals(Frame.MAGIC, handshake, "Handshake wasn't answered.");
+
+                for (int i = 0; i < 20; i++)
+                {
+                    new Frame(Frame.Opcode.READ, i, "user\n").write(out);
+                }
+                out.flush();
+
+                for (int i = 0; i < 20; i++)
+                {
+                    Frame response = Frame.read(in);
+                    assertEquals(i, response.getRequestId(), "Response has wrong id.");
+                    assertEquals(1, new Gson().fromJson(response.getPayload(), ExecutionState.class).getCode(),
+                            "Wrong response.");
+                }
+
+                socket.shutdownOutput();
+                assertNull(Frame.read(in), "Connection wasn't closed.");
+            }
+        }
+        finally
+        {
+            handler.shutdown();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.sudo_sturbia.agatha.server;
+
+import com.github.sudo_sturbia.agatha.core.ExecutionState;
+import com.github.sudo_sturbia.agatha.core.Session;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test handling of LOGIN requests and use of session tokens.
+ */
+public class LoginTest
+{
+    @BeforeAll
+    static void setup()
+    {
+        TestUtil.setup();
+    }
+
+    @DisplayName("Test LOGIN and requests with a token.")
+    @Test
+    void login()
+    {
+        final String dbName = "testDB";
+        final Gson gson = new Gson();
+        TestUtil.create("login1");
+
+        Session session = gson.fromJson(Protocol.handle("LOGIN login1:password", dbName), Session.class);
+        assertEquals(0, gson.fromJson(Protocol.handle("READ login1:" + session.getToken(), dbName),
+                ExecutionState.class).getCode(), "Token was rejected.");
+        assertEquals(0, gson.fromJson(Protocol.handle("DELETE login1:" + session.getToken() + "/l/label", dbName),
+                ExecutionState.class).getCode(), "Token was rejected.");
+
+        assertEquals(2, gson.fromJson(Protocol.handle("LOGIN login1:" + session.getToken(), dbName),
+                ExecutionState.class).getCode(), "Token was used to login.");
+        assertEquals(2, gson.fromJson(Protocol.handle("LOGIN login1:wrong", dbName),
+                ExecutionState.class).getCode(), "Incorrect password was accepted.");
+    }
+
+    @DisplayName("Test invalid tokens.")
+    @Test
+    void invalid()
+    {
+        final String dbName = "testDB";
+        final Gson gson = new Gson();
+        TestUtil.create("login2");
+        TestUtil.create("login3");
+
+        Session session = gson.fromJson(Protocol.handle("LOGIN login2:password", dbName), Session.class);
+        assertEquals(7, gson.fromJson(Protocol.handle("READ login3:" + session.getToken(), dbName),
+                ExecutionState.class).getCode(), "Token was accepted for another user.");
+        assertEquals(7, gson.fromJson(Protocol.handle("READ login2:@" + "a".repeat(43), dbName),
+                ExecutionState.class).getCode(), "Unknown token was accepted.");
+        assertEquals(2, gson.fromJson(Protocol.handle("READ login2:@unknown", dbName),
+                ExecutionState.class).getCode(), "Password that isn't a token wasn't verified as a password.");
+
+        // Deleting user ends its sessions
+        Protocol.handle("DELETE login2:password", dbName);
+        assertEquals(7, gson.fromJson(Protocol.handle("READ login2:" + session.getToken(), dbName),
+                ExecutionState.class).getCode(), "Session of deleted user was accepted.");
+    }
+
+    @DisplayName("Test passwords that look like tokens.")
+    @Test
+    void password()
+    {
+        assertEquals(5, new Gson().fromJson(Protocol.handle("CREATE login4:@password", "testDB"),
+                ExecutionState.class).getCode(), "Password that starts with a token prefix was accepted.");
+    }
+}
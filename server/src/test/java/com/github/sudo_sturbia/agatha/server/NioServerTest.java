@@ -0,0 +1,133 @@
+package com.github.sudo_sturbia.agatha.server;
+
+import com.github.sudo_sturbia.agatha.core.ExecutionState;
+import com.github.sudo_sturbia.agatha.core.Frame;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test framing and serving of requests by NioServer. Requests are
+ * invalid, so they are answered without touching the database.
+ */
+public class NioServerTest
+{
+    private NioServer server;
+    private ServerSocketChannel channel;
+
+    @BeforeEach
+    void start() throws IOException
+    {
+        this.server = new NioServer("testDB", 0, 2, 16);
+        this.channel = ServerSocketChannel.open();
+        this.channel.bind(new InetSocketAddress("localhost", 0));
+
+        new Thread(() -> {
+            try
+            {
+                this.server.serve(this.channel);
+            }
+            catch (IOException e)
+            {
+                System.err.println(e.getMessage());
+            }
+        }).start();
+    }
+
+    @AfterEach
+    void stop() throws IOException
+    {
+        this.server.stop();
+        this.channel.close();
+    }
+
+    @DisplayName("Test requests sent in one write and split over writes.")
+    @Test
+    void framing() throws Exception
+    {
+        try (
+                Socket socket = new Socket("localhost", this.channel.socket().getLocalPort());
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        ) {
+            OutputStream out = socket.getOutputStream();
+
+            out.write("Gibberish.\r\nREAD user\nGibb".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            Thread.sleep(100);
+            out.write("erish.\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            for (int i = 0; i < 3; i++)
+            {
+                assertEquals(1, new Gson().fromJson(in.readLine(), ExecutionState.class).getCode(),
+                        "Request wasn't answered in order.");
+            }
+
+            // Empty line ends connection
+            out.write("\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertNull(in.readLine(), "Connection wasn't closed.");
+        }
+    }
+
+    @DisplayName("Test binary protocol handshake is answered using text.")
+    @Test
+    void binary() throws Exception
+    {
+        try (
+                Socket socket = new Socket("localhost", this.channel.socket().getLocalPort());
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        ) {
+            socket.getOutputStream().write(Frame.MAGIC);
+            assertEquals(1, new Gson().fromJson(in.readLine(), ExecutionState.class).getCode(),
+                    "Handshake wasn't rejected.");
+        }
+    }
+
+    @DisplayName("Test many connections served at the same time.")
+    @Test
+    void connections() throws Exception
+    {
+        List<Socket> sockets = new ArrayList<>();
+        try
+        {
+            for (int i = 0; i < 200; i++)
+            {
+                Socket socket = new Socket("localhost", this.channel.socket().getLocalPort());
+                socket.getOutputStream().write("Gibberish.\n".getBytes(StandardCharsets.UTF_8));
+                sockets.add(socket);
+            }
+
+            for (Socket socket : sockets)
+            {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                int code = new Gson().fromJson(in.readLine(), ExecutionState.class).getCode();
+                assertTrue(code == 1 || code == 6, "Request wasn't answered.");
+            }
+        }
+        finally
+        {
+            for (Socket socket : sockets)
+            {
+                socket.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.sudo_sturbia.agatha.server;
+
+import com.github.sudo_sturbia.agatha.core.ExecutionState;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test ordering and concurrency of pipelined requests.
+ */
+public class PipelineTest
+{
+    @DisplayName("Test reads run concurrently and responses keep request order.")
+    @Test
+    void reads() throws InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<String> responses = Collections.synchronizedList(new ArrayList<>());
+
+        Pipeline pipeline = new Pipeline(executor, request -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            this.sleep(Math.floorMod(request.hashCode(), 3) * 10); // Finish out of order
+            running.decrementAndGet();
+            return request;
+        }, responses::add);
+
+        List<String> requests = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+        {
+            requests.add("READ user:pass/b/" + i);
+            pipeline.submit(requests.get(i));
+        }
+
+        pipeline.drain();
+        executor.shutdown();
+
+        assertEquals(requests, responses, "Responses are out of order.");
+        assertTrue(maxRunning.get() > 1, "Reads didn't run concurrently.");
+        assertTrue(maxRunning.get() <= Pipeline.MAX_IN_FLIGHT, "Too many requests in flight.");
+    }
+
+    @DisplayName("Test writes wait for earlier requests and block later ones.")
+    @Test
+    void writes() throws InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        List<String> responses = Collections.synchronizedList(new ArrayList<>());
+
+        Pipeline pipeline = new Pipeline(executor, request -> {
+            events.add("start " + request);
+            this.sleep(request.startsWith("READ") ? 50 : 10);
+            events.add("end " + request);
+            return request;
+        }, responses::add);
+
+        pipeline.submit("READ 1");
+        pipeline.submit("READ 2");
+        pipeline.submit("UPDATE 3");
+        pipeline.submit("READ 4");
+        pipeline.drain();
+        executor.shutdown();
+
+        assertEquals(List.of("READ 1", "READ 2", "UPDATE 3", "READ 4"), responses, "Responses are out of order.");
+
+        int update = events.indexOf("start UPDATE 3");
+        assertTrue(events.indexOf("end READ 1") < update, "Write didn't wait for earlier reads.");
+        assertTrue(events.indexOf("end READ 2") < update, "Write didn't wait for earlier reads.");
+        assertTrue(events.indexOf("end UPDATE 3") < events.indexOf("start READ 4"), "Later read didn't wait for write.");
+    }
+
+    @DisplayName("Test requests that can't be executed get a server busy response.")
+    @Test
+    void rejected() throws InterruptedException
+    {
+        List<String> responses = new ArrayList<>();
+        Pipeline pipeline = new Pipeline(runnable -> {
+            throw new RejectedExecutionException();
+        }, request -> request, responses::add);
+
+        pipeline.submit("READ user:pass/b/*");
+        pipeline.submit("DELETE user:pass/b/book");
+        pipeline.drain();
+
+        assertEquals(2, responses.size(), "Requests weren't answered.");
+        for (String response : responses)
+        {
+            assertEquals(6, new Gson().fromJson(response, ExecutionState.class).getCode(), "Wrong response.");
+        }
+    }
+
+    @DisplayName("Test functions are matched ignoring case.")
+    @Test
+    void isRead()
+    {
+        assertTrue(Pipeline.isRead("READ user:pass/b/*"), "READ isn't a read.");
+        assertTrue(Pipeline.isRead("read user:pass/b/*"), "Lower case read isn't a read.");
+        assertFalse(Pipeline.isRead("reading user:pass/b/*"), "Other function is a read.");
+        assertFalse(Pipeline.isRead("update user:pass/b/book/{}"), "Update is a read.");
+    }
+
+    @DisplayName("Test requests submitted after executor is shut down get a server busy response.")
+    @Test
+    void shutdown() throws InterruptedException
+    {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new ConnectionHandler.CallerRunsUntilShutdown());
+        executor.shutdownNow();
+
+        List<String> responses = new ArrayList<>();
+        Pipeline pipeline = new Pipeline(executor, request -> request, responses::add);
+
+        pipeline.submit("READ user:pass/b/*");
+        pipeline.submit("DELETE user:pass/b/book");
+        pipeline.drain();
+
+        assertEquals(2, responses.size(), "Requests weren't answered.");
+        for (String response : responses)
+        {
+            assertEquals(6, new Gson().fromJson(response, ExecutionState.class).getCode(), "Wrong response.");
+        }
+    }
+
+    private void sleep(int millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
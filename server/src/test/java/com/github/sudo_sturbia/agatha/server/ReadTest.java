@@ -73,6 +73,28 @@ public class ReadTest
                 "Wrong page number for note.");
     }
 
+    @DisplayName("Test READ books.")
+    @Test
+    void readBooks()
+    {
+        final String dbName = "testDB";
+        final Gson gson = new GsonBuilder().registerTypeAdapter(BookState.class, new BookStateDeserializer())
+                                           .registerTypeAdapter(Note.class, new NoteDeserializer())
+                                           .create();
+
+        // Missing books are left out
+        Book[] books = gson.fromJson(Protocol.handle("READ username:password/b/My Book,Missing Book", dbName),
+                BookImp[].class);
+
+        assertEquals(1, books.length, "Wrong number of books.");
+        assertEquals("My Book", books[0].getName(), "Wrong book name.");
+        assertEquals(1, books[0].getNotes().size(), "Wrong number of notes.");
+        assertEquals("Note #1", books[0].getNotes().get(0).getNote(), "Wrong note at page #10.");
+
+        assertEquals(1, new Gson().fromJson(Protocol.handle("READ username:password/b/My Book,My-Book", dbName),
+                ExecutionState.class).getCode(), "Wrong name was accepted.");
+    }
+
     @DisplayName("Test READ books' names.")
     @Test
     void readBooksNames()
@@ -91,6 +91,16 @@ public class UpdateTest
                 "Remove label from book failed.");
     }
 
+    @DisplayName("Test add label that doesn't exist to book.")
+    @Test
+    void addMissingLabel()
+    {
+        final String dbName = "testDB";
+        String response = Protocol.handle("UPDATE username:password/l/missing/add/b/My Book", dbName);
+        assertEquals(3, new Gson().fromJson(response, ExecutionState.class).getCode(),
+                "Missing label was added to book.");
+    }
+
     @AfterAll
     static void clean()
     {
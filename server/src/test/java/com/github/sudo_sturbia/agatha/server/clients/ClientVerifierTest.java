@@ -0,0 +1,184 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test ClientVerifier using credentials stored in memory.
+ */
+public class ClientVerifierTest
+{
+    private Map<String, String[]> users;
+    private ClientVerifier verifier;
+    private AtomicInteger queries;
+
+    @BeforeEach
+    void setup()
+    {
+        this.users = new ConcurrentHashMap<>();
+        for (int i = 0; i < 50; i++)
+        {
+            String salt = "salt" + i;
+            this.users.put("username" + i, new String[]{"username" + i, DigestUtils.sha256Hex("password" + i + salt), salt});
+        }
+
+        this.queries = new AtomicInteger();
+        this.verifier = new ClientVerifier((dbName, username) -> {
+            this.queries.incrementAndGet();
+            return this.users.get(username);
+        }, new CredentialCache(CredentialCache.CAPACITY, CredentialCache.TTL));
+    }
+
+    @AfterEach
+    void clean()
+    {
+        this.verifier.close();
+    }
+
+    @DisplayName("Test verification of credentials.")
+    @Test
+    void verify()
+    {
+        assertEquals(ClientManager.LoginStatus.SUCCEEDED, this.verifier.verify("testDB", "username0", "password0"),
+                "Authentication failed.");
+        assertEquals(ClientManager.LoginStatus.FAILED, this.verifier.verify("testDB", "username0", "password1"),
+                "Incorrect authentication succeeded.");
+        assertEquals(ClientManager.LoginStatus.FAILED, this.verifier.verify("testDB", "unknown", "password0"),
+                "Unknown user was authenticated.");
+
+        assertTrue(this.verifier.exists("testDB", "username0"), "Existing user wasn't found.");
+        assertFalse(this.verifier.exists("testDB", "unknown"), "Unknown user was found.");
+    }
+
+    @DisplayName("Test account lockout.")
+    @Test
+    void lockout()
+    {
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals(ClientManager.LoginStatus.FAILED, this.verifier.verify("testDB", "username1", "wrong"),
+                    "Incorrect authentication succeeded.");
+        }
+
+        assertEquals(ClientManager.LoginStatus.TIMEOUT, this.verifier.verify("testDB", "username1", "password1"),
+                "Account wasn't locked.");
+        assertEquals(ClientManager.LoginStatus.SUCCEEDED, this.verifier.verify("testDB", "username2", "password2"),
+                "Another account was locked.");
+    }
+
+    @DisplayName("Test verification using cached credentials.")
+    @Test
+    void cached()
+    {
+        assertEquals(ClientManager.LoginStatus.SUCCEEDED, this.verifier.verify("testDB", "username3", "password3"),
+                "Authentication failed.");
+        assertEquals(ClientManager.LoginStatus.SUCCEEDED, this.verifier.verify("testDB", "username3", "password3"),
+                "Authentication failed.");
+        assertEquals(1, this.queries.get(), "Cached credentials were queried.");
+
+        assertEquals(ClientManager.LoginStatus.FAILED, this.verifier.verify("testDB", "username3", "password4"),
+                "Incorrect authentication succeeded.");
+        assertEquals(2, this.queries.get(), "Incorrect credentials weren't queried.");
+
+        // User is deleted
+        this.users.remove("username3");
+        this.verifier.invalidate("testDB", "username3");
+        assertEquals(ClientManager.LoginStatus.FAILED, this.verifier.verify("testDB", "username3", "password3"),
+                "Deleted user was authenticated.");
+    }
+
+    @DisplayName("Test concurrent verification.")
+    @Test
+    void concurrent() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try
+        {
+            List<Future<ClientManager.LoginStatus>> correct = new ArrayList<>();
+            List<Future<ClientManager.LoginStatus>> incorrect = new ArrayList<>();
+            for (int i = 0; i < 1000; i++)
+            {
+                final int user = i % 50;
+                correct.add(executor.submit(() -> this.verifier.verify("testDB", "username" + user, "password" + user)));
+                incorrect.add(executor.submit(() -> this.verifier.verify("testDB", "unknown" + user, "password")));
+            }
+
+            // Each caller gets its own result
+            for (int i = 0; i < correct.size(); i++)
+            {
+                assertEquals(ClientManager.LoginStatus.SUCCEEDED, correct.get(i).get(), "Authentication failed.");
+                assertTrue(incorrect.get(i).get() != ClientManager.LoginStatus.SUCCEEDED, "Incorrect authentication succeeded.");
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @DisplayName("Test usernames that don't exist aren't queried.")
+    @Test
+    void filtered()
+    {
+        this.verifier.close();
+        this.verifier = new ClientVerifier(new ClientVerifier.Users()
+        {
+            @Override
+            public String[] find(String dbName, String username)
+            {
+                ClientVerifierTest.this.queries.incrementAndGet();
+                return ClientVerifierTest.this.users.get(username);
+            }
+
+            @Override
+            public UsernameFilter.Source all(String dbName)
+            {
+                return action -> ClientVerifierTest.this.users.keySet().forEach(action);
+            }
+
+            @Override
+            public int count(String dbName)
+            {
+                return ClientVerifierTest.this.users.size();
+            }
+        }, new CredentialCache(CredentialCache.CAPACITY, CredentialCache.TTL));
+        this.verifier.load("testDB");
+
+        assertTrue(this.verifier.exists("testDB", "username0"), "Existing user wasn't found.");
+        assertTrue(this.verifier.getUsernames().mightExist("testDB", "USERNAME0 "),
+                "Username's case or trailing spaces weren't ignored.");
+
+        this.queries.set(0);
+        for (int i = 0; i < 1000; i++)
+        {
+            assertFalse(this.verifier.exists("testDB", "unknown" + i), "Unknown user was found.");
+        }
+        assertTrue(this.queries.get() < 50, "Unknown usernames were queried.");
+
+        // User is created
+        this.verifier.added("testDB", "new user");
+        this.users.put("new user", new String[]{"new user", "", ""});
+        assertTrue(this.verifier.exists("testDB", "new user"), "Created user wasn't found.");
+
+        // User is deleted
+        this.users.remove("new user");
+        this.verifier.removed("testDB", "new user");
+        assertFalse(this.verifier.exists("testDB", "new user"), "Deleted user was found.");
+    }
+}
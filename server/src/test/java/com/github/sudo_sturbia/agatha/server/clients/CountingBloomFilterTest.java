@@ -0,0 +1,75 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test adding and removing items of a CountingBloomFilter.
+ */
+public class CountingBloomFilterTest
+{
+    @DisplayName("Test added items are found.")
+    @Test
+    void add()
+    {
+        CountingBloomFilter filter = new CountingBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++)
+        {
+            filter.add("username" + i);
+        }
+
+        int positives = 0;
+        for (int i = 0; i < 10_000; i++)
+        {
+            assertTrue(filter.mightContain("username" + i), "Added item wasn't found.");
+            positives += filter.mightContain("unknown" + i) ? 1 : 0;
+        }
+
+        assertTrue(positives < 300, "Too many false positives: " + positives);
+    }
+
+    @DisplayName("Test removed items aren't found.")
+    @Test
+    void remove()
+    {
+        CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++)
+        {
+            filter.add("username" + i);
+        }
+
+        for (int i = 0; i < 1000; i += 2)
+        {
+            filter.remove("username" + i);
+        }
+
+        for (int i = 1; i < 1000; i += 2)
+        {
+            assertTrue(filter.mightContain("username" + i), "Removing an item hid another item.");
+        }
+
+        assertFalse(filter.mightContain("username0") && filter.mightContain("username2") && filter.mightContain("username4"),
+                "Removed items were found.");
+    }
+
+    @DisplayName("Test saturated counters.")
+    @Test
+    void saturate()
+    {
+        CountingBloomFilter filter = new CountingBloomFilter(1, 0.5);
+        for (int i = 0; i < 100; i++)
+        {
+            filter.add("username" + i);
+        }
+
+        for (int i = 0; i < 99; i++)
+        {
+            filter.remove("username" + i);
+        }
+
+        assertTrue(filter.mightContain("username99"), "Saturated counter was decremented.");
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test caching of verified credentials.
+ */
+public class CredentialCacheTest
+{
+    @DisplayName("Test cache hits and misses.")
+    @Test
+    void lookup()
+    {
+        CredentialCache cache = new CredentialCache(CredentialCache.CAPACITY, CredentialCache.TTL);
+        assertFalse(cache.contains("testDB", "username", "password"), "Empty cache has credentials.");
+
+        cache.put("testDB", "username", "password");
+        assertTrue(cache.contains("testDB", "username", "password"), "Cached credentials weren't found.");
+        assertFalse(cache.contains("testDB", "username", "wrong"), "Incorrect password was found.");
+        assertFalse(cache.contains("otherDB", "username", "password"), "Credentials were found in another database.");
+
+        assertEquals(1, cache.getHits(), "Incorrect number of hits.");
+        assertEquals(3, cache.getMisses(), "Incorrect number of misses.");
+
+        cache.invalidate("testDB", "username");
+        assertFalse(cache.contains("testDB", "username", "password"), "Invalidated credentials were found.");
+    }
+
+    @DisplayName("Test expiration of credentials.")
+    @Test
+    void expiration() throws InterruptedException
+    {
+        CredentialCache cache = new CredentialCache(CredentialCache.CAPACITY, 50);
+        cache.put("testDB", "username", "password");
+
+        Thread.sleep(100);
+        assertFalse(cache.contains("testDB", "username", "password"), "Expired credentials were found.");
+    }
+
+    @DisplayName("Test cache's bound.")
+    @Test
+    void bound()
+    {
+        CredentialCache cache = new CredentialCache(64, CredentialCache.TTL);
+        for (int i = 0; i < 1000; i++)
+        {
+            cache.put("testDB", "username" + i, "password");
+        }
+
+        int found = 0;
+        for (int i = 0; i < 1000; i++)
+        {
+            found += cache.contains("testDB", "username" + i, "password") ? 1 : 0;
+        }
+
+        assertTrue(found <= 64, "Cache holds more entries than its capacity.");
+        assertTrue(cache.contains("testDB", "username999", "password"), "Most recent entry was evicted.");
+    }
+}
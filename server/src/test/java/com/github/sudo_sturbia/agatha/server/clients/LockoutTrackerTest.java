@@ -0,0 +1,98 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test counting of failed logins and locking of accounts.
+ */
+public class LockoutTrackerTest
+{
+    @DisplayName("Test account locking.")
+    @Test
+    void lock() throws InterruptedException
+    {
+        LockoutTracker tracker = new LockoutTracker(LockoutTracker.STRIPES, 5, 100, 60_000, 10);
+        try
+        {
+            for (int i = 0; i < 4; i++)
+            {
+                tracker.failed("username");
+            }
+            assertFalse(tracker.isLocked("username"), "Account was locked early.");
+
+            tracker.failed("username");
+            assertTrue(tracker.isLocked("username"), "Account wasn't locked.");
+            assertFalse(tracker.isLocked("other"), "Another account was locked.");
+
+            Thread.sleep(200);
+            assertFalse(tracker.isLocked("username"), "Account wasn't unlocked.");
+        }
+        finally
+        {
+            tracker.close();
+        }
+    }
+
+    @DisplayName("Test forgetting failed logins.")
+    @Test
+    void count() throws InterruptedException
+    {
+        LockoutTracker tracker = new LockoutTracker(LockoutTracker.STRIPES, 5, 60_000, 50, 10);
+        try
+        {
+            for (int i = 0; i < 4; i++)
+            {
+                tracker.failed("username");
+            }
+
+            Thread.sleep(200);
+            tracker.failed("username");
+            assertFalse(tracker.isLocked("username"), "Old failed logins were counted.");
+        }
+        finally
+        {
+            tracker.close();
+        }
+    }
+
+    @DisplayName("Test concurrent failed logins.")
+    @Test
+    void concurrent() throws Exception
+    {
+        LockoutTracker tracker = new LockoutTracker(4, 1000, 60_000, 60_000, 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 999; i++)
+            {
+                futures.add(executor.submit(() -> tracker.failed("username")));
+            }
+
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+
+            // No failed login was lost
+            assertFalse(tracker.isLocked("username"), "Account was locked early.");
+            tracker.failed("username");
+            assertTrue(tracker.isLocked("username"), "Failed logins were lost.");
+        }
+        finally
+        {
+            executor.shutdownNow();
+            tracker.close();
+        }
+    }
+}
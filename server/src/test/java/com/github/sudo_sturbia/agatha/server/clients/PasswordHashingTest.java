@@ -0,0 +1,112 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test hashing and verifying passwords using PasswordHashing.
+ */
+public class PasswordHashingTest
+{
+    @DisplayName("Test hashes of each scheme are verified.")
+    @Test
+    void verify()
+    {
+        PasswordHashing hashing = new PasswordHashing(2, 16);
+        try
+        {
+            String sha256 = hashing.hash(PasswordHasher.sha256(), "password", "salt");
+            assertEquals(DigestUtils.sha256Hex("passwordsalt"), sha256, "SHA-256 hash changed.");
+
+            String pbkdf2 = hashing.hash(PasswordHasher.pbkdf2(1000), "password", "salt");
+            assertTrue(pbkdf2.startsWith("pbkdf2$1000$"), "Cost wasn't stored with hash.");
+            assertNotEquals(hashing.hash(PasswordHasher.pbkdf2(1000), "password", "salt2"), pbkdf2,
+                    "Salt wasn't used.");
+
+            for (String hash : new String[]{sha256, pbkdf2})
+            {
+                assertTrue(hashing.verify("password", "salt", hash), "Correct password wasn't verified.");
+                assertFalse(hashing.verify("wrong", "salt", hash), "Incorrect password was verified.");
+                assertFalse(hashing.verify("password", "other", hash), "Incorrect salt was verified.");
+            }
+
+            assertFalse(hashing.verify("password", "salt", "unknown$hash"), "Unknown scheme was verified.");
+            assertEquals(9, hashing.getCount(), "Incorrect number of hashes.");
+            assertTrue(hashing.getMaxNanos() >= hashing.getMeanNanos(), "Incorrect latency.");
+        }
+        finally
+        {
+            hashing.close();
+        }
+    }
+
+    @DisplayName("Test hashes are verified with their own cost.")
+    @Test
+    void cost()
+    {
+        PasswordHashing hashing = new PasswordHashing(1, 16);
+        try
+        {
+            String hash = hashing.hash(PasswordHasher.pbkdf2(2000), "password", "salt");
+            assertNotEquals(hashing.hash(PasswordHasher.pbkdf2(1000), "password", "salt"), hash,
+                    "Cost didn't change hash.");
+            assertTrue(hashing.verify("password", "salt", hash), "Hash wasn't verified with its own cost.");
+        }
+        finally
+        {
+            hashing.close();
+        }
+    }
+
+    @DisplayName("Test hashes are rejected when queue is full.")
+    @Test
+    void rejected() throws Exception
+    {
+        PasswordHashing hashing = new PasswordHashing(1, 1);
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        try
+        {
+            List<Future<String>> hashes = new ArrayList<>();
+            for (int i = 0; i < 16; i++)
+            {
+                hashes.add(callers.submit(() -> hashing.hash(PasswordHasher.pbkdf2(200_000), "password", "salt")));
+            }
+
+            int rejected = 0;
+            for (Future<String> hash : hashes)
+            {
+                try
+                {
+                    hash.get();
+                }
+                catch (Exception e)
+                {
+                    assertTrue(e.getCause() instanceof RejectedExecutionException, "Hashing failed.");
+                    rejected++;
+                }
+            }
+
+            assertTrue(rejected > 0, "No hashes were rejected.");
+            assertEquals(rejected, hashing.getRejected(), "Incorrect number of rejected hashes.");
+            assertEquals(16 - rejected, hashing.getCount(), "Incorrect number of hashes.");
+        }
+        finally
+        {
+            callers.shutdownNow();
+            hashing.close();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import com.github.sudo_sturbia.agatha.core.Session;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test creation, verification, and expiration of sessions.
+ */
+public class SessionManagerTest
+{
+    @DisplayName("Test session verification.")
+    @Test
+    void verify()
+    {
+        SessionManager manager = new SessionManager(SessionManager.TTL);
+        Session session = manager.create("testDB", "username");
+
+        assertTrue(SessionManager.isToken(session.getToken()), "Token doesn't start with prefix.");
+        assertFalse(session.getToken().contains(":") || session.getToken().contains("/"), "Token contains : or /.");
+        assertEquals(SessionManager.TTL / 1000, session.getExpiresIn(), "Incorrect expiration time.");
+
+        assertTrue(manager.isValid("testDB", "username", session.getToken()), "Valid session was rejected.");
+        assertFalse(manager.isValid("testDB", "other", session.getToken()), "Session was accepted for another user.");
+        assertFalse(manager.isValid("otherDB", "username", session.getToken()), "Session was accepted for another database.");
+        assertFalse(manager.isValid("testDB", "username", SessionManager.TOKEN_PREFIX + "token"), "Unknown token was accepted.");
+
+        // Old passwords may start with the prefix
+        assertFalse(SessionManager.isToken(SessionManager.TOKEN_PREFIX + "password"), "Password was taken for a token.");
+        assertFalse(SessionManager.isToken(session.getToken() + "a"), "Password was taken for a token.");
+
+        assertNotEquals(session.getToken(), manager.create("testDB", "username").getToken(), "Tokens are repeated.");
+    }
+
+    @DisplayName("Test session expiration.")
+    @Test
+    void expiration() throws InterruptedException
+    {
+        SessionManager manager = new SessionManager(50);
+        Session session = manager.create("testDB", "username");
+
+        Thread.sleep(100);
+        assertFalse(manager.isValid("testDB", "username", session.getToken()), "Expired session was accepted.");
+    }
+
+    @DisplayName("Test ending user's sessions.")
+    @Test
+    void invalidate()
+    {
+        SessionManager manager = new SessionManager(SessionManager.TTL);
+        Session first = manager.create("testDB", "username");
+        Session second = manager.create("testDB", "username");
+        Session other = manager.create("testDB", "other");
+
+        manager.invalidate("testDB", "username");
+        assertFalse(manager.isValid("testDB", "username", first.getToken()), "Session wasn't ended.");
+        assertFalse(manager.isValid("testDB", "username", second.getToken()), "Session wasn't ended.");
+        assertTrue(manager.isValid("testDB", "other", other.getToken()), "Another user's session was ended.");
+    }
+}
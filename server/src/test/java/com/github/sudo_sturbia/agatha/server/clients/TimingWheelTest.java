@@ -0,0 +1,94 @@
+package com.github.sudo_sturbia.agatha.server.clients;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test expiration of keys using TimingWheel.
+ */
+public class TimingWheelTest
+{
+    @DisplayName("Test keys expire at their time.")
+    @Test
+    void expire()
+    {
+        List<String> expired = new ArrayList<>();
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, expired::add);
+
+        long now = System.currentTimeMillis();
+        wheel.schedule("first", now + 20);
+        wheel.schedule("second", now + 50);
+        wheel.schedule("late", now + 500); // Many rotations away
+
+        wheel.advance(now + 30);
+        assertEquals(List.of("first"), expired, "Incorrect keys expired.");
+
+        wheel.advance(now + 60);
+        assertEquals(List.of("first", "second"), expired, "Incorrect keys expired.");
+
+        wheel.advance(now + 200);
+        assertEquals(2, expired.size(), "Key expired early.");
+
+        wheel.advance(now + 520);
+        assertEquals(List.of("first", "second", "late"), expired, "Incorrect keys expired.");
+    }
+
+    @DisplayName("Test a key expires when the wheel advanced during its tick, before its time.")
+    @Test
+    void withinTick()
+    {
+        List<String> expired = new ArrayList<>();
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, expired::add);
+
+        long start = (System.currentTimeMillis() / 10 + 2) * 10; // Start of a later tick
+        wheel.schedule("key", start + 7);
+
+        wheel.advance(start + 3);
+        assertEquals(0, expired.size(), "Key expired early.");
+
+        wheel.advance(start + 12);
+        assertEquals(List.of("key"), expired, "Key wasn't expired.");
+    }
+
+    @DisplayName("Test keys that are already expired.")
+    @Test
+    void past()
+    {
+        List<String> expired = new ArrayList<>();
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, expired::add);
+
+        long now = System.currentTimeMillis();
+        wheel.advance(now);
+        wheel.schedule("past", now - 1000);
+
+        wheel.advance(now + 10);
+        assertEquals(List.of("past"), expired, "Expired key wasn't expired.");
+    }
+
+    @DisplayName("Test many keys.")
+    @Test
+    void many()
+    {
+        AtomicInteger expired = new AtomicInteger();
+        TimingWheel<Integer> wheel = new TimingWheel<>(1000, 4096, key -> expired.incrementAndGet());
+
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 1_000_000; i++)
+        {
+            wheel.schedule(i, now + (i % 3600) * 5000L); // Up to 5 hours
+        }
+
+        wheel.advance(now + 3600 * 1000L);
+        assertTrue(expired.get() > 0 && expired.get() < 1_000_000, "Incorrect number of keys expired.");
+
+        wheel.advance(now + 5 * 3600 * 1000L);
+        assertEquals(1_000_000, expired.get(), "Not all keys expired.");
+    }
+}
@@ -0,0 +1,333 @@
+package com.github.sudo_sturbia.agatha.server.database;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test ConnectionPool using connections that don't connect to a
+ * database.
+ */
+public class ConnectionPoolTest
+{
+    private AtomicInteger opened;
+    private AtomicBoolean valid;
+    private AtomicBoolean slow;
+
+    @BeforeEach
+    void setup()
+    {
+        this.opened = new AtomicInteger();
+        this.valid = new AtomicBoolean(true);
+        this.slow = new AtomicBoolean();
+    }
+
+    @DisplayName("Test returned connections are reused.")
+    @Test
+    void reuse() throws Exception
+    {
+        ConnectionPool pool = ConnectionPoolTest.pool(this::open, 4, 2, 1000, 60_000);
+        pool.setup();
+        assertEquals(2, this.opened.get(), "Incorrect number of initial connections.");
+
+        for (int i = 0; i < 100; i++)
+        {
+            try (Connection connection = pool.connection())
+            {
+                assertFalse(connection.isClosed(), "Connection is closed.");
+            }
+        }
+
+        assertEquals(2, this.opened.get(), "Returned connections weren't reused.");
+        assertEquals(0, pool.getActive(), "Connections weren't returned.");
+        pool.clean();
+    }
+
+    @DisplayName("Test acquire times out at maximum size.")
+    @Test
+    void timeout() throws Exception
+    {
+        ConnectionPool pool = ConnectionPoolTest.pool(this::open, 2, 0, 100, 60_000);
+        Connection first = pool.connection();
+        Connection second = pool.connection();
+
+        assertThrows(ConnectionTimeoutException.class, pool::connection, "Pool exceeded its maximum size.");
+        assertEquals(1, pool.getTimeouts(), "Timeout wasn't counted.");
+
+        // Closing twice returns connection once
+        first.close();
+        first.close();
+        assertTrue(first.isClosed(), "Closed connection isn't closed.");
+
+        Connection third = pool.connection();
+        assertThrows(ConnectionTimeoutException.class, pool::connection, "Connection was returned twice.");
+        assertEquals(2, this.opened.get(), "Pool exceeded its maximum size.");
+
+        second.close();
+        third.close();
+        pool.clean();
+    }
+
+    @DisplayName("Test pool under concurrent use.")
+    @Test
+    void concurrent() throws Exception
+    {
+        final int size = 8;
+        ConnectionPool pool = ConnectionPoolTest.pool(this::open, size, 0, 10_000, 60_000);
+        Set<Connection> inUse = ConcurrentHashMap.newKeySet();
+        AtomicInteger maxInUse = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 10_000; i++)
+            {
+                futures.add(executor.submit(() -> {
+                    try (Connection connection = pool.connection())
+                    {
+                        Connection physical = connection.unwrap(Connection.class);
+                        assertTrue(inUse.add(physical), "Connection was given to two threads.");
+                        maxInUse.accumulateAndGet(inUse.size(), Math::max);
+                        inUse.remove(physical);
+                    }
+
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertTrue(maxInUse.get() <= size, "Pool exceeded its maximum size.");
+        assertTrue(this.opened.get() <= size, "Pool opened too many connections.");
+        assertEquals(0, pool.getActive(), "Connections weren't returned.");
+        pool.clean();
+    }
+
+    @DisplayName("Test waiting threads are served when a connection is returned.")
+    @Test
+    void blocking() throws Exception
+    {
+        ConnectionPool pool = ConnectionPoolTest.pool(this::open, 1, 0, 10_000, 60_000);
+        Connection connection = pool.connection();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try (Connection other = pool.connection())
+            {
+                acquired.countDown();
+            }
+            catch (Exception e)
+            {
+                // Fails test by not counting down
+            }
+        });
+        waiter.start();
+
+        while (pool.getWaiting() == 0)
+        {
+            Thread.sleep(1);
+        }
+
+        connection.close();
+        waiter.join(5000);
+        assertEquals(0, acquired.getCount(), "Waiting thread wasn't served.");
+        pool.clean();
+    }
+
+    @DisplayName("Test connections that aren't returned are reported.")
+    @Test
+    void leak() throws Exception
+    {
+        ConnectionPool pool = ConnectionPoolTest.pool(this::open, 2, 0, 1000, 50);
+        Connection connection = pool.connection();
+
+        for (int i = 0; i < 100 && pool.getLeaks() == 0; i++)
+        {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, pool.getLeaks(), "Leak wasn't reported.");
+        connection.close();
+        pool.clean();
+    }
+
+    @DisplayName("Test a leak threshold of zero disables leak detection.")
+    @Test
+    void leakDisabled() throws Exception
+    {
+        ConnectionPool pool = new ConnectionPool(this::open, 2, 0, 1000, 0,
+                ConnectionPool.MAX_IDLE, ConnectionPool.MAX_LIFETIME, 10);
+        Connection connection = pool.connection();
+
+        Thread.sleep(100);
+        assertEquals(0, pool.getLeaks(), "Leak was reported.");
+        connection.close();
+        pool.clean();
+    }
+
+    @DisplayName("Test invalid connections are replaced.")
+    @Test
+    void invalid() throws Exception
+    {
+        ConnectionPool pool = new ConnectionPool(this::open, 4, 2, 1000, 60_000,
+                ConnectionPool.MAX_IDLE, ConnectionPool.MAX_LIFETIME, 10);
+        pool.setup();
+
+        // Database server dropped connections
+        this.valid.set(false);
+        for (int i = 0; i < 200 && pool.getEvictions() < 2; i++)
+        {
+            Thread.sleep(10);
+        }
+        assertTrue(pool.getEvictions() >= 2, "Invalid connections weren't evicted.");
+
+        this.valid.set(true);
+        for (int i = 0; i < 200 && pool.getIdle() < 2; i++)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(2, pool.getIdle(), "Minimum idle connections weren't kept.");
+        pool.clean();
+    }
+
+    @DisplayName("Test slow validation holds one connection at a time.")
+    @Test
+    void slowValidation() throws Exception
+    {
+        ConnectionPool pool = new ConnectionPool(this::open, 2, 2, 100, 60_000,
+                ConnectionPool.MAX_IDLE, ConnectionPool.MAX_LIFETIME, 10);
+        pool.setup();
+
+        // Housekeeping is stuck checking a connection
+        this.slow.set(true);
+        Thread.sleep(100);
+
+        for (int i = 0; i < 10; i++)
+        {
+            try (Connection connection = pool.connection())
+            {
+                assertFalse(connection.isClosed(), "Connection is closed.");
+            }
+        }
+
+        this.slow.set(false);
+        pool.clean();
+    }
+
+    @DisplayName("Test idle and old connections are closed.")
+    @Test
+    void expire() throws Exception
+    {
+        ConnectionPool pool = new ConnectionPool(this::open, 4, 1, 1000, 60_000, 50, 60_000, 10);
+        List<Connection> connections = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+        {
+            connections.add(pool.connection());
+        }
+        for (Connection connection : connections)
+        {
+            connection.close();
+        }
+        assertEquals(4, pool.getIdle(), "Connections weren't returned.");
+
+        // Idle connections are taken from the pool while they're checked
+        for (int i = 0; i < 200 && (pool.getEvictions() < 3 || pool.getIdle() != 1); i++)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(3, pool.getEvictions(), "Idle connections weren't closed down to minimum.");
+        assertEquals(1, pool.getIdle(), "Idle connections weren't closed down to minimum.");
+        pool.clean();
+
+        // Connection outlives its lifetime while in use
+        pool = new ConnectionPool(this::open, 4, 0, 1000, 60_000, 60_000, 20, 60_000);
+        Connection connection = pool.connection();
+        Thread.sleep(50);
+        connection.close();
+        assertEquals(0, pool.getIdle(), "Old connection was returned to pool.");
+        assertEquals(1, pool.getEvictions(), "Old connection wasn't evicted.");
+        pool.clean();
+    }
+
+    /**
+     * Create a pool whose connections never expire.
+     *
+     * @param source source of connections.
+     * @param maxSize maximum number of open connections.
+     * @param minIdle minimum number of idle connections.
+     * @param timeout time in milliseconds to wait for a connection.
+     * @param leakThreshold time in milliseconds after which a connection is leaked.
+     * @return A new ConnectionPool.
+     */
+    private static ConnectionPool pool(ConnectionPool.Source source, int maxSize, int minIdle, long timeout, long leakThreshold)
+    {
+        return new ConnectionPool(source, maxSize, minIdle, timeout, leakThreshold,
+                ConnectionPool.MAX_IDLE, ConnectionPool.MAX_LIFETIME, Math.min(leakThreshold / 2, ConnectionPool.HOUSEKEEPING));
+    }
+
+    /**
+     * Open a connection that only supports closing, validation, and
+     * unwrapping. Connections are valid while <code>valid</code> is true,
+     * and take a second to validate while <code>slow</code> is true.
+     *
+     * @return A new Connection.
+     */
+    private Connection open()
+    {
+        this.opened.incrementAndGet();
+
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName())
+                    {
+                        case "close":
+                            closed.set(true);
+                            return null;
+                        case "isClosed":
+                            return closed.get();
+                        case "isValid":
+                            if (this.slow.get())
+                            {
+                                Thread.sleep(1000);
+                            }
+                            return !closed.get() && this.valid.get();
+                        case "unwrap":
+                            return proxy;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
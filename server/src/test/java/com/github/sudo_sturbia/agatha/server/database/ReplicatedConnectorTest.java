@@ -0,0 +1,183 @@
+package com.github.sudo_sturbia.agatha.server.database;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test ReplicatedConnector using pools of connections that don't
+ * connect to a database.
+ */
+public class ReplicatedConnectorTest
+{
+    @DisplayName("Test reads are spread round-robin and writes go to primary.")
+    @Test
+    void roundRobin() throws Exception
+    {
+        ConnectionPool primary = ReplicatedConnectorTest.pool();
+        ConnectionPool first = ReplicatedConnectorTest.pool();
+        ConnectionPool second = ReplicatedConnectorTest.pool();
+        ReplicatedConnector connector = new ReplicatedConnector(primary, List.of(first, second),
+                ReplicatedConnector.Routing.ROUND_ROBIN, 60_000);
+
+        for (int i = 0; i < 4; i++)
+        {
+            try (Connection connection = connector.readConnection("testDB", "user"))
+            {
+                assertEquals(0, primary.getActive(), "Read was served by primary.");
+                assertEquals(1, first.getActive() + second.getActive(), "Read wasn't served by a replica.");
+            }
+        }
+
+        assertArrayEquals(new long[]{2, 2}, connector.getReplicaReads(), "Reads weren't spread evenly.");
+        assertEquals(0, first.getActive() + second.getActive(), "Replica connections weren't returned.");
+
+        try (Connection connection = connector.connection())
+        {
+            assertEquals(1, primary.getActive(), "Write wasn't served by primary.");
+        }
+
+        assertEquals(0, primary.getActive(), "Primary connection wasn't returned.");
+        connector.clean();
+    }
+
+    @DisplayName("Test reads go to replica with fewest connections in use.")
+    @Test
+    void leastLoaded() throws Exception
+    {
+        ConnectionPool first = ReplicatedConnectorTest.pool();
+        ConnectionPool second = ReplicatedConnectorTest.pool();
+        ReplicatedConnector connector = new ReplicatedConnector(ReplicatedConnectorTest.pool(), List.of(first, second),
+                ReplicatedConnector.Routing.LEAST_LOADED, 60_000);
+
+        Connection held = connector.readConnection("testDB", "user");
+        ConnectionPool busy = first.getActive() == 1 ? first : second;
+        ConnectionPool free = busy == first ? second : first;
+
+        for (int i = 0; i < 4; i++)
+        {
+            try (Connection connection = connector.readConnection("testDB", "user"))
+            {
+                assertEquals(1, busy.getActive(), "Read was served by busy replica.");
+                assertEquals(1, free.getActive(), "Read wasn't served by free replica.");
+            }
+        }
+
+        held.close();
+        assertEquals(0, busy.getActive(), "Replica connection wasn't returned.");
+        connector.clean();
+    }
+
+    @DisplayName("Test clients read from primary after writing.")
+    @Test
+    void readYourWrites() throws Exception
+    {
+        ConnectionPool primary = ReplicatedConnectorTest.pool();
+        ConnectionPool replica = ReplicatedConnectorTest.pool();
+        ReplicatedConnector connector = new ReplicatedConnector(primary, List.of(replica),
+                ReplicatedConnector.Routing.ROUND_ROBIN, 200);
+
+        connector.written("testDB", "Writer");
+        try (Connection connection = connector.readConnection("testDB", "writer"))
+        {
+            assertEquals(1, primary.getActive(), "Read after write wasn't served by primary.");
+        }
+
+        try (Connection connection = connector.readConnection("testDB", "reader"))
+        {
+            assertEquals(1, replica.getActive(), "Other client's read wasn't served by replica.");
+        }
+
+        Thread.sleep(300);
+        try (Connection connection = connector.readConnection("testDB", "writer"))
+        {
+            assertEquals(1, replica.getActive(), "Read after window wasn't served by replica.");
+        }
+
+        assertEquals(1, connector.getPrimaryReads(), "Incorrect number of primary reads.");
+        connector.clean();
+    }
+
+    @DisplayName("Test reads fall back to primary when replica fails.")
+    @Test
+    void fallback() throws Exception
+    {
+        ConnectionPool primary = ReplicatedConnectorTest.pool();
+        ConnectionPool replica = new ConnectionPool(() -> {
+            throw new SQLException("Replica is down.");
+        }, 4, 0, 1000, 60_000, 60_000, 60_000, 60_000);
+        ReplicatedConnector connector = new ReplicatedConnector(primary, List.of(replica),
+                ReplicatedConnector.Routing.ROUND_ROBIN, 60_000);
+
+        try (Connection connection = connector.readConnection("testDB", "user"))
+        {
+            assertEquals(1, primary.getActive(), "Read didn't fall back to primary.");
+        }
+
+        assertEquals(1, connector.getFallbacks(), "Fallback wasn't counted.");
+        connector.clean();
+    }
+
+    @DisplayName("Test reads fall back to primary when a replica has no free connection.")
+    @Test
+    void busyFallback() throws Exception
+    {
+        ConnectionPool primary = ReplicatedConnectorTest.pool();
+        ConnectionPool replica = new ConnectionPool(ReplicatedConnectorTest::open, 1, 0, 50,
+                60_000, 60_000, 60_000, 60_000);
+        ReplicatedConnector connector = new ReplicatedConnector(primary, List.of(replica),
+                ReplicatedConnector.Routing.ROUND_ROBIN, 60_000);
+
+        try (
+                Connection busy = connector.readConnection("testDB", "user");
+                Connection connection = connector.readConnection("testDB", "user")
+        ) {
+            assertEquals(1, primary.getActive(), "Read didn't fall back to primary.");
+        }
+
+        assertEquals(1, connector.getFallbacks(), "Fallback wasn't counted.");
+        connector.clean();
+    }
+
+    /**
+     * Create a pool of connections that don't connect to a database.
+     *
+     * @return A ConnectionPool.
+     */
+    private static ConnectionPool pool()
+    {
+        return new ConnectionPool(ReplicatedConnectorTest::open, 4, 0, 1000, 60_000, 60_000, 60_000, 60_000);
+    }
+
+    /**
+     * Open a connection that doesn't connect to a database.
+     *
+     * @return A Connection.
+     */
+    private static Connection open()
+    {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName())
+                    {
+                        case "close":
+                            return null;
+                        case "isClosed":
+                            return false;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.sudo_sturbia.agatha.server.database;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test StatementCache using statements that don't connect to a
+ * database.
+ */
+public class StatementCacheTest
+{
+    private List<AtomicBoolean> closed;
+    private AtomicInteger cleared;
+    private LongAdder hits;
+    private LongAdder misses;
+    private StatementCache cache;
+    private Connection owner;
+
+    @BeforeEach
+    void setup()
+    {
+        this.closed = new ArrayList<>();
+        this.cleared = new AtomicInteger();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+
+        Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement"))
+                    {
+                        return this.statement();
+                    }
+
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        this.cache = new StatementCache(connection, 2, this.hits, this.misses);
+        this.owner = new CustomConnection(connection, null, this.cache);
+    }
+
+    @DisplayName("Test statements are reused.")
+    @Test
+    void reuse() throws Exception
+    {
+        PreparedStatement first;
+        try (PreparedStatement statement = this.owner.prepareStatement("SELECT 1;"))
+        {
+            first = statement;
+            assertFalse(statement.isClosed(), "Prepared statement is closed.");
+            assertSame(this.owner, statement.getConnection(), "Statement's connection isn't its wrapper.");
+        }
+
+        assertTrue(first.isClosed(), "Returned statement isn't closed.");
+        assertFalse(this.closed.get(0).get(), "Returned statement was closed.");
+        assertEquals(1, this.cleared.get(), "Returned statement wasn't reset.");
+
+        for (int i = 0; i < 10; i++)
+        {
+            try (PreparedStatement statement = this.owner.prepareStatement("SELECT 1;"))
+            {
+                assertSame(first, statement, "Statement wasn't reused.");
+            }
+        }
+
+        assertEquals(10, this.hits.sum(), "Incorrect number of hits.");
+        assertEquals(1, this.misses.sum(), "Incorrect number of misses.");
+        assertEquals(1, this.closed.size(), "Statement was prepared again.");
+    }
+
+    @DisplayName("Test statement in use isn't given twice.")
+    @Test
+    void inUse() throws Exception
+    {
+        PreparedStatement first = this.owner.prepareStatement("SELECT 1;");
+        PreparedStatement second = this.owner.prepareStatement("SELECT 1;");
+        assertNotSame(first, second, "Statement in use was given twice.");
+
+        second.close();
+        first.close();
+        first.close(); // Closing twice releases once
+        assertSame(first, this.owner.prepareStatement("SELECT 1;"), "Cached statement wasn't reused.");
+    }
+
+    @DisplayName("Test least recently used statements are closed.")
+    @Test
+    void evict() throws Exception
+    {
+        this.owner.prepareStatement("SELECT 1;").close();
+        this.owner.prepareStatement("SELECT 2;").close();
+        this.owner.prepareStatement("SELECT 1;").close();
+
+        this.owner.prepareStatement("SELECT 3;").close();
+        assertFalse(this.closed.get(0).get(), "Recently used statement was closed.");
+        assertTrue(this.closed.get(1).get(), "Least recently used statement wasn't closed.");
+
+        // Evicted while in use, closed when returned
+        PreparedStatement inUse = this.owner.prepareStatement("SELECT 1;");
+        this.owner.prepareStatement("SELECT 4;").close();
+        this.owner.prepareStatement("SELECT 5;").close();
+        assertFalse(this.closed.get(0).get(), "Statement in use was closed.");
+
+        inUse.close();
+        assertTrue(this.closed.get(0).get(), "Evicted statement wasn't closed.");
+    }
+
+    /**
+     * Create a statement that only supports closing and resetting.
+     *
+     * @return A new PreparedStatement.
+     */
+    private PreparedStatement statement()
+    {
+        AtomicBoolean closed = new AtomicBoolean();
+        this.closed.add(closed);
+
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    switch (method.getName())
+                    {
+                        case "close":
+                            closed.set(true);
+                            return null;
+                        case "isClosed":
+                            return closed.get();
+                        case "getResultSet":
+                        case "clearBatch":
+                            return null;
+                        case "clearParameters":
+                            this.cleared.incrementAndGet();
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -50,6 +50,10 @@ public class RequestBuilderTest
         requests.put("DELETE username:password/b/bookName", Delete.class);
         requests.put("DELETE username:password/b/*",        Delete.class);
 
+        requests.put("BATCH username:password/[\"DELETE /b/bookName\"]", Batch.class);
+
+        requests.put("LOGIN username:password", Login.class);
+
         for (String request : requests.keySet())
         {
             assertEquals(
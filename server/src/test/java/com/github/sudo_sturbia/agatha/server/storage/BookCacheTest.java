@@ -0,0 +1,94 @@
+package com.github.sudo_sturbia.agatha.server.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test caching of books' JSON.
+ */
+public class BookCacheTest
+{
+    @DisplayName("Test cache hits, misses, and invalidation.")
+    @Test
+    void lookup()
+    {
+        BookCache cache = new BookCache(StorageBuilder.CACHE_CAPACITY, BookCache.WEIGHT);
+        assertNull(cache.get("testDB", "username", "My Book"), "Empty cache has a book.");
+
+        cache.put("testDB", "username", "My Book", "{}", cache.version("testDB", "username", "My Book"));
+        assertEquals("{}", cache.get("testDB", "username", "My Book"), "Cached book wasn't found.");
+        assertEquals("{}", cache.get("testDB", "Username", "my book "), "Book's name wasn't normalized.");
+        assertNull(cache.get("testDB", "other", "My Book"), "Book was found for another user.");
+
+        assertEquals(2, cache.getHits(), "Incorrect number of hits.");
+        assertEquals(2, cache.getMisses(), "Incorrect number of misses.");
+        assertEquals(0.5, cache.getHitRatio(), "Incorrect hit ratio.");
+
+        cache.invalidate("testDB", "username", "My Book");
+        assertNull(cache.get("testDB", "username", "My Book"), "Invalidated book was found.");
+    }
+
+    @DisplayName("Test a book loaded before an invalidation isn't cached.")
+    @Test
+    void version()
+    {
+        BookCache cache = new BookCache(StorageBuilder.CACHE_CAPACITY, BookCache.WEIGHT);
+
+        long version = cache.version("testDB", "username", "My Book");
+        cache.invalidate("testDB", "username", "My Book");
+        cache.put("testDB", "username", "My Book", "{}", version);
+
+        assertNull(cache.get("testDB", "username", "My Book"), "Book loaded before invalidation was cached.");
+    }
+
+    @DisplayName("Test invalidating all of a user's books.")
+    @Test
+    void invalidateUser()
+    {
+        BookCache cache = new BookCache(StorageBuilder.CACHE_CAPACITY, BookCache.WEIGHT);
+        for (int i = 0; i < 100; i++)
+        {
+            cache.put("testDB", "username", "Book " + i, "{}", cache.version("testDB", "username", "Book " + i));
+        }
+
+        cache.put("testDB", "user", "Book 0", "{}", cache.version("testDB", "user", "Book 0"));
+        cache.invalidate("testDB", "username");
+
+        assertEquals(1, cache.getSize(), "User's books weren't invalidated.");
+        assertNotNull(cache.get("testDB", "user", "Book 0"), "Another user's book was invalidated.");
+    }
+
+    @DisplayName("Test cache's bounds.")
+    @Test
+    void bound()
+    {
+        BookCache cache = new BookCache(64, BookCache.WEIGHT);
+        for (int i = 0; i < 1000; i++)
+        {
+            cache.put("testDB", "username", "Book " + i, "{}", cache.version("testDB", "username", "Book " + i));
+        }
+
+        assertTrue(cache.getSize() <= 64, "Cache holds more books than its capacity.");
+        assertEquals(1000 - cache.getSize(), cache.getEvictions(), "Incorrect number of evictions.");
+        assertNotNull(cache.get("testDB", "username", "Book 999"), "Most recent book was evicted.");
+
+        // Weight of each segment is 100
+        cache = new BookCache(64, 1600);
+        String json = "x".repeat(60);
+        for (int i = 0; i < 1000; i++)
+        {
+            cache.put("testDB", "username", "Book " + i, json, cache.version("testDB", "username", "Book " + i));
+        }
+
+        assertTrue(cache.getWeight() <= 1600, "Cache is heavier than its weight.");
+        assertEquals(cache.getSize() * 60L, cache.getWeight(), "Incorrect weight.");
+
+        cache.put("testDB", "username", "Large", "x".repeat(101), cache.version("testDB", "username", "Large"));
+        assertNull(cache.get("testDB", "username", "Large"), "Book heavier than a segment was cached.");
+    }
+}
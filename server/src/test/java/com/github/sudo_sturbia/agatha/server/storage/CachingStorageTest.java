@@ -0,0 +1,81 @@
+package com.github.sudo_sturbia.agatha.server.storage;
+
+import com.github.sudo_sturbia.agatha.core.BookBuilder;
+import com.google.gson.stream.JsonWriter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test reading books through CachingStorage.
+ */
+public class CachingStorageTest
+{
+    @DisplayName("Test cached books are read without storage, and changes invalidate them.")
+    @Test
+    void cache() throws SQLException, IOException
+    {
+        int[] reads = {0};
+        Storage storage = (Storage) Proxy.newProxyInstance(Storage.class.getClassLoader(), new Class<?>[]{Storage.class},
+                (proxy, method, args) -> {
+                    switch (method.getName())
+                    {
+                        case "writeBook":
+                            ((JsonWriter) args[3]).beginObject().name("reads").value(++reads[0]).endObject();
+                            return true;
+                        case "createNote":
+                        case "labelBook":
+                            return true;
+                        case "updateBook":
+                            return 0;
+                        default:
+                            return null;
+                    }
+                });
+
+        CachingStorage caching = new CachingStorage(storage, new BookCache(StorageBuilder.CACHE_CAPACITY, BookCache.WEIGHT));
+
+        assertEquals("{\"reads\":1}", CachingStorageTest.read(caching), "Book wasn't read.");
+        assertEquals("{\"reads\":1}", CachingStorageTest.read(caching), "Cached book wasn't used.");
+        assertEquals(1, reads[0], "Cached book was read from storage.");
+
+        caching.createNote("testDB", "username", "My Book", null);
+        assertEquals("{\"reads\":2}", CachingStorageTest.read(caching), "Note didn't invalidate book.");
+
+        caching.updateBook("testDB", "username", "My Book", BookBuilder.newBook("My Book", 100).build());
+        assertEquals("{\"reads\":3}", CachingStorageTest.read(caching), "Update didn't invalidate book.");
+
+        caching.labelBook("testDB", "username", "My Book", "label", true);
+        assertEquals("{\"reads\":3}", CachingStorageTest.read(caching), "Label invalidated book.");
+
+        caching.deleteUser("testDB", "username");
+        assertEquals("{\"reads\":4}", CachingStorageTest.read(caching), "Deleting user didn't invalidate book.");
+
+        assertEquals(2, caching.getCacheHits(), "Incorrect number of hits.");
+        assertEquals(4, caching.getCacheMisses(), "Incorrect number of misses.");
+    }
+
+    /**
+     * Read a book the way Read does.
+     *
+     * @param storage storage to read from.
+     * @return Book's JSON.
+     * @throws SQLException in case of a SQL error.
+     * @throws IOException if writer fails.
+     */
+    private static String read(Storage storage) throws SQLException, IOException
+    {
+        StringWriter json = new StringWriter();
+        JsonWriter writer = new JsonWriter(json);
+        writer.setSerializeNulls(false);
+
+        storage.writeBook("testDB", "username", "My Book", writer);
+        return json.toString();
+    }
+}
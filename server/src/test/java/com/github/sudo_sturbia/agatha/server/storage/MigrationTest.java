@@ -0,0 +1,60 @@
+package com.github.sudo_sturbia.agatha.server.storage;
+
+import com.github.sudo_sturbia.agatha.core.Book;
+import com.github.sudo_sturbia.agatha.server.Protocol;
+import com.github.sudo_sturbia.agatha.server.TestUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Test copying clients' data from TableStorage to SharedStorage.
+ */
+public class MigrationTest
+{
+    @BeforeAll
+    static void setup()
+    {
+        TestUtil.setup();
+        TestUtil.create("migrated");
+        Protocol.handle("UPDATE migrated:password/l/label/add/b/My Book", "testDB");
+    }
+
+    @DisplayName("Test books, notes, and labels are copied.")
+    @Test
+    void migrate() throws SQLException
+    {
+        final String dbName = "testDB";
+        SharedStorage shared = new SharedStorage();
+
+        // Running twice replaces what was copied the first time
+        for (int i = 0; i < 2; i++)
+        {
+            Migration migration = new Migration(dbName);
+            migration.run();
+
+            Book book = shared.readBook(dbName, "migrated", "My Book");
+            assertNotNull(book, "Book wasn't copied.");
+            assertEquals(100, book.getNumberOfPages(), "Wrong number of pages.");
+            assertEquals(1, book.getNotes().size(), "Wrong number of notes.");
+            assertEquals("Note #1", book.getNotes().get(0).getNote(), "Wrong note.");
+            assertEquals(10, book.getNotes().get(0).getPageNumber(), "Wrong page number for note.");
+
+            assertEquals(List.of("My Book"), shared.readBookNames(dbName, "migrated", "label"),
+                    "Label wasn't copied.");
+        }
+    }
+
+    @AfterAll
+    static void clean()
+    {
+        TestUtil.clean();
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.sudo_sturbia.agatha.server.storage;
+
+import com.github.sudo_sturbia.agatha.core.Note;
+import com.github.sudo_sturbia.agatha.core.NoteImp;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test computing differences of notes using NoteDiff.
+ */
+public class NoteDiffTest
+{
+    @DisplayName("Test unchanged notes aren't written.")
+    @Test
+    void unchanged()
+    {
+        Map<Integer, String> stored = new HashMap<>();
+        List<Note> notes = new ArrayList<>();
+        for (int i = 1; i <= 3000; i++)
+        {
+            stored.put(i, "Note " + i);
+            notes.add(new NoteImp(3000, "Note " + i, i));
+        }
+
+        assertEquals(0, new NoteDiff(stored, notes).size(), "Unchanged notes were written.");
+
+        // Edit one note
+        notes.set(99, new NoteImp(3000, "Edited", 100));
+        NoteDiff diff = new NoteDiff(stored, notes);
+
+        assertEquals(1, diff.size(), "Incorrect number of written notes.");
+        assertEquals(List.of(notes.get(99)), diff.getUpdated(), "Edited note wasn't updated.");
+    }
+
+    @DisplayName("Test inserted, updated, and deleted notes.")
+    @Test
+    void changed()
+    {
+        Map<Integer, String> stored = Map.of(1, "First", 2, "Second", 3, "Third");
+        Note updated = new NoteImp(10, "Second, edited", 2);
+        Note inserted = new NoteImp(10, "Fourth", 4);
+
+        NoteDiff diff = new NoteDiff(stored, List.of(new NoteImp(10, "First", 1), updated, inserted));
+
+        assertEquals(List.of(inserted), diff.getInserted(), "New note wasn't inserted.");
+        assertEquals(List.of(updated), diff.getUpdated(), "Edited note wasn't updated.");
+        assertEquals(List.of(3), diff.getDeleted(), "Removed note wasn't deleted.");
+        assertEquals(3, diff.size(), "Incorrect number of written notes.");
+    }
+
+    @DisplayName("Test notes of an empty book.")
+    @Test
+    void empty()
+    {
+        Map<Integer, String> stored = Map.of(1, "First", 2, "Second");
+
+        assertEquals(2, new NoteDiff(stored, List.of()).getDeleted().size(), "Notes weren't deleted.");
+        assertEquals(1, new NoteDiff(Map.of(), List.of(new NoteImp(10, "First", 1))).getInserted().size(),
+                "Note wasn't inserted.");
+    }
+}
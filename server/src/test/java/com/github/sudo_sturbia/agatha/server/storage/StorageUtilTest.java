@@ -0,0 +1,95 @@
+package com.github.sudo_sturbia.agatha.server.storage;
+
+import com.github.sudo_sturbia.agatha.core.Book;
+import com.github.sudo_sturbia.agatha.core.BookBuilder;
+import com.github.sudo_sturbia.agatha.core.BookState;
+import com.github.sudo_sturbia.agatha.core.NoteImp;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test writing books from a result set to JSON.
+ */
+public class StorageUtilTest
+{
+    /** Columns of rows given to writeBooks. */
+    private static final List<String> COLUMNS =
+            List.of("bookName", "author", "state", "pages", "readPages", "coverPath", "page", "note");
+
+    @DisplayName("Test written books are the same as Gson's.")
+    @Test
+    void writeBooks() throws SQLException, IOException
+    {
+        Book reading = BookBuilder.newBook("Reading", 100).author("Author").build();
+        reading.setState(BookState.State.CURRENTLY_READING);
+        reading.setNumberOfReadPages(40);
+        reading.addNote(new NoteImp(100, "Note #1", 10));
+        reading.addNote(new NoteImp(100, "Note #2", 20));
+
+        Book interested = BookBuilder.newBook("Interested", 50).coverPath("cover.png").build();
+
+        ResultSet set = StorageUtilTest.resultSet(
+                new Object[]{"Reading", "Author", "reading", 100, 40, null, 10, "Note #1"},
+                new Object[]{"Reading", "Author", "reading", 100, 40, null, 20, "Note #2"},
+                new Object[]{"Interested", null, "interested", 50, 0, "cover.png", null, null}
+        );
+
+        StringWriter json = new StringWriter();
+        JsonWriter writer = new JsonWriter(json);
+        writer.setSerializeNulls(false);
+
+        writer.beginArray();
+        assertEquals(2, StorageUtil.writeBooks(set, writer), "Wrong number of books.");
+        writer.endArray();
+
+        JsonArray expected = new JsonArray();
+        expected.add(JsonParser.parseString(new Gson().toJson(reading)));
+        expected.add(JsonParser.parseString(new Gson().toJson(interested)));
+
+        assertEquals(expected, JsonParser.parseString(json.toString()), "Books differ from Gson's.");
+    }
+
+    /**
+     * Create a result set over given rows of COLUMNS.
+     *
+     * @param rows rows of result set.
+     * @return A result set.
+     */
+    private static ResultSet resultSet(Object[]... rows)
+    {
+        int[] row = {-1};
+        boolean[] wasNull = {false};
+
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName())
+                    {
+                        case "next":
+                            return ++row[0] < rows.length;
+                        case "wasNull":
+                            return wasNull[0];
+                        case "getString":
+                        case "getInt":
+                            Object value = rows[row[0]][COLUMNS.indexOf((String) args[0])];
+                            wasNull[0] = value == null;
+                            return value == null && method.getName().equals("getInt") ? 0 : value;
+                        default:
+                            throw new UnsupportedOperationException(method.getName() + Arrays.toString(args));
+                    }
+                });
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.sudo_sturbia.agatha.server.storage;
+
+import com.github.sudo_sturbia.agatha.server.TestUtil;
+import com.github.sudo_sturbia.agatha.server.database.ConnectorBuilder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test TableStorage's labels.
+ */
+public class TableStorageTest
+{
+    @BeforeAll
+    static void setup()
+    {
+        TestUtil.setup();
+        TestUtil.create("labeled");
+    }
+
+    @DisplayName("Test label columns of older versions are moved to UserLabels.")
+    @Test
+    void labelColumns() throws SQLException
+    {
+        final String dbName = "testDB";
+        try (
+                Connection connection = ConnectorBuilder.connector().connection();
+                Statement statement = connection.createStatement()
+        ) {
+            statement.executeUpdate("ALTER TABLE " + dbName + ".labeled ADD old bool NOT NULL DEFAULT 0;");
+            statement.executeUpdate("ALTER TABLE " + dbName + ".labeled ADD unused bool NOT NULL DEFAULT 0;");
+            statement.executeUpdate("UPDATE " + dbName + ".labeled SET old = 1 WHERE bookName = 'My Book';");
+        }
+
+        TableStorage storage = new TableStorage();
+        storage.setup(dbName);
+
+        assertEquals(List.of("My Book"), storage.readBookNames(dbName, "labeled", "old"),
+                "Labeled book wasn't moved.");
+        assertEquals(List.of(), storage.readBookNames(dbName, "labeled", "unused"),
+                "Label without books wasn't moved.");
+
+        // Label exists, so it can be added to a book
+        assertTrue(storage.labelBook(dbName, "labeled", "My Book", "unused", true), "Failed to label book.");
+        assertEquals(List.of("My Book"), storage.readBookNames(dbName, "labeled", "unused"),
+                "Failed to label book.");
+
+        assertFalse(storage.labelBook(dbName, "labeled", "My Book", "missing", true), "Missing label was added.");
+        assertFalse(storage.labelBook(dbName, "labeled", "Missing Book", "unused", true), "Missing book was labeled.");
+
+        storage.deleteLabel(dbName, "labeled", "old");
+        assertEquals(List.of(), storage.readBookNames(dbName, "labeled", "old"), "Failed to delete label.");
+    }
+
+    @AfterAll
+    static void clean()
+    {
+        TestUtil.clean();
+    }
+}